@@ -0,0 +1,56 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import server.ClientHandler;
+
+/**
+ * Custo de uma transmissão ({@link ClientHandler#broadcastMessage(String, boolean)})
+ * para salas com cada vez mais espectadores. Mede o lado de quem transmite:
+ * formatação, codificação e a entrega para as filas de saída.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    /** Espectadores na sala, além de quem transmite. */
+    @Param({ "1", "10", "100", "1000", "10000" })
+    public int spectators;
+
+    /** Protocolo dos clients (texto ou binário). */
+    @Param({ "false", "true" })
+    public boolean binary;
+
+    private ClientHandler sender;
+
+    @Setup
+    public void setUp() {
+        sender = Fixture.room(spectators + 1, binary).get(0);
+    }
+
+    @Benchmark
+    public void chat() {
+        sender.broadcastMessage("user0: olá, sala!", true);
+    }
+
+    @Benchmark
+    public void serverMessage() {
+        sender.sendServerMessage("O jogo foi reiniciado! Escolham suas jogadas ✅.");
+    }
+}
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import protocol.Command;
+import protocol.Move;
+import server.ClientHandler;
+import server.LineReader;
+
+/**
+ * Reconhecimento de comandos, do byte recebido até o despacho: o parse isolado
+ * de jogadas e comandos, a tabela de resultados das jogadas e o loop de leitura
+ * de {@link ClientHandler#run()}, com um stream em memória no lugar do socket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandParsingBenchmark {
+
+    /** Linhas enviadas no loop de leitura, como um client de texto as envia. */
+    private static final String[] LINES = { "user0: /comandos", "user0: /fila", "user0: /pedra",
+            "user0: /jogar", "user0: /invalido" };
+
+    /** Quantidade de linhas lidas por chamada de {@link #readLoop()}. */
+    private static final int READ_LOOP_LINES = 1000;
+
+    private final byte[] move = "/tesoura".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] command = "/comandos".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] input;
+
+    private ClientHandler handler;
+
+    @Setup
+    public void setUp() {
+        handler = Fixture.room(1, false).get(0);
+
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+
+        for (int i = 0; i < READ_LOOP_LINES; i++)
+            lines.writeBytes((LINES[i % LINES.length] + "\n").getBytes(StandardCharsets.UTF_8));
+
+        input = lines.toByteArray();
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        blackhole.consume(Move.parse(move, 0, move.length));
+        blackhole.consume(Command.parse(command, 0, command.length));
+    }
+
+    /** Apenas a tabela de resultados, para todos os pares de jogadas. */
+    @Benchmark
+    public void outcomeTable(Blackhole blackhole) {
+        for (Move a : Move.values()) {
+            for (Move b : Move.values())
+                blackhole.consume(a.against(b));
+        }
+    }
+
+    /** Leitura e despacho de cada linha, como no loop de {@link ClientHandler#run()}. */
+    @Benchmark
+    @OperationsPerInvocation(READ_LOOP_LINES)
+    public void readLoop() throws IOException {
+        LineReader reader = new LineReader(new ByteArrayInputStream(input));
+        int length;
+
+        while ((length = reader.readLine()) >= 0)
+            handler.handleLine(reader.getLine(), length);
+    }
+}
@@ -0,0 +1,128 @@
+package benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import protocol.Move;
+import protocol.MoveCommitment;
+import server.ClientHandler;
+import server.Room;
+
+/**
+ * Custo das jogadas seladas ({@link MoveCommitment}): o selo e a conferência
+ * isolados, nas duas formas do nonce, e uma rodada inteira recebida por
+ * {@link ClientHandler#handleLine(byte[], int)}, com e sem {@link Room#sealedMoves}.
+ * A diferença entre as duas rodadas é o que o anti-trapaça custa ao servidor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommitRevealBenchmark {
+
+    private final byte[] identity = "user0".getBytes(StandardCharsets.UTF_8);
+
+    private byte[] nonce;
+
+    private byte[] commitment;
+
+    /** Revelação em texto: {@code /revelar pedra <nonce>}. */
+    private byte[] revealLine;
+
+    @Setup
+    public void setUp() {
+        nonce = MoveCommitment.newNonce();
+        commitment = MoveCommitment.seal(Move.PEDRA, nonce, identity);
+        revealLine = MoveCommitment.revealCommand(Move.PEDRA, nonce).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Sala com os dois jogadores e as linhas de uma rodada, com ou sem jogadas seladas. */
+    @State(Scope.Benchmark)
+    public static class Match {
+
+        /** Indica se a rodada usa jogadas seladas. */
+        @Param({ "false", "true" })
+        public boolean sealed;
+
+        /** Linhas de uma rodada, na ordem em que chegam ao servidor. */
+        private byte[][] lines;
+
+        /** Client de cada linha de {@link #lines}. */
+        private ClientHandler[] senders;
+
+        @Setup
+        public void setUp() {
+            Room.sealedMoves = sealed;
+            List<ClientHandler> clients = Fixture.room(Room.MAX_PLAYERS, false);
+            ClientHandler player1 = clients.get(0);
+            ClientHandler player2 = clients.get(1);
+
+            if (!sealed) {
+                senders = new ClientHandler[] { player1, player2 };
+                lines = new byte[][] { line("user0", Move.PEDRA.getCommand()),
+                        line("user1", Move.TESOURA.getCommand()) };
+                return;
+            }
+
+            byte[] nonce1 = MoveCommitment.newNonce();
+            byte[] nonce2 = MoveCommitment.newNonce();
+            byte[] commitment1 = MoveCommitment.seal(Move.PEDRA, nonce1, "user0".getBytes(StandardCharsets.UTF_8));
+            byte[] commitment2 = MoveCommitment.seal(Move.TESOURA, nonce2, "user1".getBytes(StandardCharsets.UTF_8));
+
+            senders = new ClientHandler[] { player1, player2, player1, player2 };
+            lines = new byte[][] { line("user0", MoveCommitment.sealCommand(commitment1)),
+                    line("user1", MoveCommitment.sealCommand(commitment2)),
+                    line("user0", MoveCommitment.revealCommand(Move.PEDRA, nonce1)),
+                    line("user1", MoveCommitment.revealCommand(Move.TESOURA, nonce2)) };
+        }
+
+        private static byte[] line(String username, String message) {
+            return (username + ": " + message).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Selo feito pelo client: nonce já sorteado, um SHA-256 e o compromisso. */
+    @Benchmark
+    public byte[] seal() {
+        return MoveCommitment.seal(Move.PEDRA, nonce, identity);
+    }
+
+    /** Conferência de uma revelação binária, como chega no frame. Não aloca. */
+    @Benchmark
+    public boolean verify() {
+        return MoveCommitment.verify(commitment, Move.PEDRA, nonce, 0, identity);
+    }
+
+    /** Conferência de uma revelação de texto, com o nonce em hex direto do buffer. Não aloca. */
+    @Benchmark
+    public boolean verifyHex() {
+        int from = MoveCommitment.revealNonceStart(0, Move.PEDRA);
+        return MoveCommitment.verifyHex(commitment, Move.PEDRA, revealLine, from, revealLine.length, identity);
+    }
+
+    /**
+     * Uma rodada completa recebida dos dois clients: as duas jogadas (ou os dois
+     * selos e as duas revelações), o resultado e a nova partida.
+     */
+    @Benchmark
+    public void round(Match match, Blackhole blackhole) {
+        for (int i = 0; i < match.lines.length; i++)
+            blackhole.consume(match.senders[i].handleLine(match.lines[i], match.lines[i].length));
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import server.Bot;
+import server.ClientHandler;
+import server.EventLog;
+import server.FifoPairing;
+import server.LogLevel;
+import server.RoomRegistry;
+import server.TokenBucket;
+
+/**
+ * Monta salas em memória para os benchmarks: os clients usam o construtor do
+ * {@link server.NioServer}, com um stream de saída que descarta os bytes no
+ * lugar do socket.
+ */
+final class Fixture {
+
+    private Fixture() {
+    }
+
+    /**
+     * Cria um registro de salas novo e conecta {@code size} clients a uma mesma
+     * sala, onde formam as mesas aos pares, na ordem de entrada. Os limites de taxa
+     * ficam desativados: os benchmarks repetem as mesmas mensagens muito acima
+     * de qualquer limite, e mediriam apenas o descarte. Os bots também: um
+     * client sozinho na sala não ganha um adversário no meio da medição.
+     *
+     * @param size   Quantidade de clients na sala.
+     * @param binary Se os clients usam o protocolo binário.
+     * @return Clients na ordem em que entraram.
+     */
+    static List<ClientHandler> room(int size, boolean binary) {
+        return clients(size, size, binary);
+    }
+
+    /**
+     * Cria um registro de salas novo e conecta {@code size} clients, divididos
+     * em salas de {@code capacity} clients, como em {@link #room(int, boolean)}.
+     *
+     * @param size     Quantidade de clients.
+     * @param capacity Capacidade de cada sala.
+     * @param binary   Se os clients usam o protocolo binário.
+     * @return Clients na ordem em que entraram.
+     */
+    static List<ClientHandler> clients(int size, int capacity, boolean binary) {
+        EventLog.setLevel(LogLevel.WARN); // Sem os registros de entrada na saída do JMH.
+        TokenBucket.clientRate = 0;
+        TokenBucket.roomRate = 0;
+        Bot.lobbyDelayMillis = 0;
+        ClientHandler.rooms = new RoomRegistry(capacity, new FifoPairing());
+
+        List<ClientHandler> clients = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++)
+            clients.add(new ClientHandler("user" + i, OutputStream.nullOutputStream(), binary));
+
+        return clients;
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import protocol.Move;
+import server.ClientHandler;
+import server.Room;
+
+/**
+ * Fim de uma partida: a segunda jogada, que resolve a rodada em uma mesa da
+ * {@link Room} e anuncia o resultado à sala
+ * ({@link ClientHandler#playerMove(Move)}), e a troca de jogadores de
+ * {@link ClientHandler#resetGame()}, que desfaz e forma de novo todas as mesas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+    /** Outros usuários na sala, jogando nas outras mesas. */
+    @Param({ "0", "10", "100", "1000" })
+    public int spectators;
+
+    private Room room;
+
+    /** Jogador da primeira mesa. Ao fim de cada série, volta a enfrentar o mesmo adversário. */
+    private ClientHandler player;
+
+    @Setup
+    public void setUp() {
+        player = Fixture.room(spectators + Room.MAX_PLAYERS, false).get(0);
+        room = player.getRoom();
+    }
+
+    /** Uma rodada completa: as duas jogadas, o resultado e a nova partida. */
+    @Benchmark
+    public void round() {
+        ClientHandler opponent = room.getOpponent(player);
+
+        player.playerMove(Move.PEDRA);
+        opponent.playerMove(Move.TESOURA); // Resolve a rodada.
+    }
+
+    @Benchmark
+    public void resetGame() {
+        player.resetGame();
+    }
+}
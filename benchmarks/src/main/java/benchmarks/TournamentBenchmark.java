@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import protocol.Move;
+import server.ClientHandler;
+import server.Room;
+import server.Tournament;
+import server.TournamentFormat;
+import server.TournamentMatch;
+
+/**
+ * Um torneio inteiro ({@link Tournament}): inscrições, chave, todas as
+ * partidas de cada rodada e a formação da rodada seguinte. As jogadas são
+ * feitas em sequência, na thread do benchmark, e sempre têm um vencedor; o
+ * tempo medido é o custo do servidor por torneio, sem a espera pelos jogadores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TournamentBenchmark {
+
+    /** Inscritos no torneio. */
+    @Param({ "16", "256", "4096" })
+    public int entrants;
+
+    /** Formato do torneio ({@code eliminatoria} ou {@code suico}). */
+    @Param({ "eliminatoria", "suico" })
+    public String format;
+
+    private List<ClientHandler> clients;
+
+    @Setup
+    public void setUp() {
+        clients = Fixture.clients(entrants, Room.DEFAULT_CAPACITY, false);
+    }
+
+    @Benchmark
+    public Tournament tournament() {
+        Tournament tournament = new Tournament(TournamentFormat.byName(format),
+                Tournament.DEFAULT_REGISTRATION_SECONDS); // Começa antes do fim das inscrições.
+
+        for (ClientHandler client : clients)
+            tournament.register(client);
+
+        tournament.start();
+
+        while (tournament.isRunning()) {
+            // A última partida de cada rodada forma a próxima.
+            for (TournamentMatch match : tournament.getMatches()) {
+                tournament.submitMove(match.getPlayer(0), Move.PEDRA);
+                tournament.submitMove(match.getPlayer(1), Move.TESOURA);
+            }
+        }
+
+        return tournament;
+    }
+}
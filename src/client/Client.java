@@ -1,18 +1,99 @@
 package client;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
+import protocol.BinaryProtocol;
+import protocol.Command;
+import protocol.Heartbeat;
+import protocol.JoinRequest;
+import protocol.Move;
+import protocol.MoveCommitment;
+import protocol.Redirect;
+import protocol.ResumeRequest;
+import server.Server;
+
+/**
+ * Client do jogo, sem interface: conecta ao server, envia chat, jogadas e
+ * comandos, e entrega as mensagens recebidas a um {@link ClientListener}. É
+ * usado pelo console ({@link ConsoleView}), pelo gerador de carga e por bots ou
+ * interfaces alternativas:
+ *
+ * <pre>
+ * Client client = Client.connect("localhost", 7777, "ana", false);
+ * client.start(messages -&gt; ...);
+ * client.sendMove(Move.PEDRA);
+ * </pre>
+ *
+ * Os envios não disputam o socket: a mensagem entra em uma fila e apenas uma
+ * thread escreve por vez, levando tudo o que se acumulou em um único flush (ver
+ * {@link #send(String)}). Na leitura, as mensagens que já chegaram são
+ * entregues juntas, em rajadas. Quedas, retomadas de sessão e redirecionamentos
+ * entre os nós do cluster são tratados pelo client, sem participação de quem o
+ * usa. O mesmo vale para as jogadas seladas (ver {@link MoveCommitment}): se o
+ * server as exige, cada jogada é selada no envio e revelada quando o server
+ * pede.
+ */
 public class Client {
 
+    /** Mensagens entregues, no máximo, em uma única rajada ao {@link ClientListener}. */
+    private static final int MAX_BURST = 256;
+
+    /** Marca as mensagens de controle lidas por {@link #readNext()}, que não são repassadas. */
+    private static final String CONTROL = new String();
+
+    /** Jogadas seladas guardadas à espera da revelação. As mais antigas são descartadas. */
+    private static final int MAX_SEALED = 16;
+
+    /** Tentativas de reconexão após uma queda. */
+    private static final int RECONNECT_ATTEMPTS = 30;
+
+    /** Intervalo entre as tentativas de reconexão, em milissegundos. */
+    private static final long RECONNECT_INTERVAL = 1000;
+
+    /** Agenda os heartbeats de todos os clients do processo (ver {@link #startHeartbeat()}). */
+    private static final ScheduledExecutorService HEARTBEATS = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /** Socket passado pela classe server. Utilizado para estabelecer conexão. */
-    private Socket socket;
+    private volatile Socket socket;
+
+    /** Endereço do server, utilizado nas reconexões. */
+    private InetAddress host;
+
+    private int port;
 
     /** Utilizado para ler dados/mensagens enviadas pelo server. */
     private BufferedReader reader;
@@ -20,79 +101,778 @@ public class Client {
     /** Utilizado para enviar dados/mensagens para o server. */
     private BufferedWriter writer;
 
+    /** Utilizado para ler os frames do server no protocolo binário. */
+    private DataInputStream frameReader;
+
+    /** Utilizado para enviar frames ao server no protocolo binário. */
+    private DataOutputStream frameWriter;
+
+    /** Stream do socket sob {@link #writer} e {@link #frameWriter}: conta os bytes entregues ao socket. */
+    private CountingOutputStream output;
+
+    /**
+     * Indica se uma escrita da fila de saída falhou na conexão atual. Os buffers
+     * dos streams podem ter ficado com parte do lote: nada mais é escrito até
+     * {@link #open(Socket)} trocar a conexão.
+     */
+    private boolean broken;
+
+    /** Indica se o client usa o protocolo binário (ver {@link BinaryProtocol}). */
+    private boolean binary;
+
     private String username;
 
+    /** Token para retomar a sessão após uma queda, recebido ao entrar no server. */
+    private volatile String token;
+
+    /**
+     * Linhas (ou frames, no protocolo binário) recebidas na sessão atual.
+     * Informado ao server na retomada, para que ele reenvie o que se perdeu.
+     */
+    private volatile long received;
+
+    /** Indica se o usuário saiu com /sair (a queda que vem em seguida é esperada). */
+    private volatile boolean quitting;
+
+    /** Momento (nanoTime) da última reconexão bem-sucedida. */
+    private long reconnectedAt;
+
+    /** Indica se uma reconexão está em andamento (os heartbeats são suspensos). */
+    private volatile boolean reconnecting;
+
+    /** Momento (nanoTime) do último envio ao server. */
+    private volatile long lastSent = System.nanoTime();
+
+    /** Verificação periódica dos heartbeats, ou {@code null} se não foram iniciados. */
+    private volatile ScheduledFuture<?> heartbeat;
+
+    /** Mensagens aguardando a escrita no socket, na ordem de envio. */
+    private final Deque<String> outbox = new ConcurrentLinkedDeque<>();
+
+    /** Indica se alguma thread está escrevendo a {@link #outbox}. */
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    /**
+     * Protege os streams da conexão: escritas, handshakes e trocas de conexão
+     * (reconexão e redirecionamento). Nunca é segurado enquanto se abre um
+     * socket ou se espera entre tentativas de reconexão.
+     */
+    private final ReentrantLock connectionLock = new ReentrantLock();
+
+    /**
+     * Garante que apenas uma thread reconecte por vez. As esperas entre as
+     * tentativas acontecem sob ele, sem travar as escritas, que seguem na
+     * {@link #outbox} até a reconexão.
+     */
+    private final ReentrantLock reconnectLock = new ReentrantLock();
+
+    /** Indica se a conexão foi encerrada de vez (ver {@link ClientListener#onClosed()}). */
+    private volatile boolean closed;
+
+    /** Indica se o server exige jogadas seladas (ver {@link MoveCommitment}). */
+    private volatile boolean sealed;
+
+    /** Jogada e nonce de cada compromisso enviado, pelo compromisso em hex, até a revelação. */
+    private final Map<String, SealedMove> pendingReveals = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SealedMove> eldest) {
+            return size() > MAX_SEALED; // Rodadas que terminaram sem revelação.
+        }
+    };
+
     // Construtor:
     public Client(Socket socket, String username) {
+        this(socket, username, false);
+    }
+
+    /**
+     * @param socket   Socket de conexão com o server.
+     * @param username Nome de usuário.
+     * @param binary   {@code true} para usar o protocolo binário em vez do de
+     *                 texto.
+     */
+    public Client(Socket socket, String username, boolean binary) {
         try {
-            this.socket = socket;
+            this.binary = binary;
+            this.username = username;
+            this.host = socket.getInetAddress();
+            this.port = socket.getPort();
+
+            open(socket);
+        } catch (IOException e) {
+            closeConnection(socket, reader, writer); // Encerrando a conexão com o server.
+        }
+    }
+
+    /** Passa a utilizar o socket informado, criando os streams do protocolo do client. */
+    private void open(Socket socket) throws IOException {
+        this.socket = socket;
 
+        // Com heartbeats, o server responde pelo menos a cada intervalo; o silêncio indica uma queda.
+        if (heartbeat != null)
+            socket.setSoTimeout((int) Heartbeat.TIMEOUT_MILLIS);
+
+        this.output = new CountingOutputStream(socket.getOutputStream());
+        this.broken = false;
+
+        if (binary) {
+            this.frameReader = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.frameWriter = new DataOutputStream(new BufferedOutputStream(output));
+        } else {
             // Converte o stream de bits em caractéres.
-            this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+            this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        }
+    }
 
-            this.username = username;
+    /**
+     * Conecta a um server e se identifica. As mensagens só começam a ser lidas
+     * após {@link #start(ClientListener)}.
+     *
+     * @param host     Endereço do server.
+     * @param port     Porta do server.
+     * @param username Nome de usuário.
+     * @param binary   {@code true} para usar o protocolo binário.
+     * @return Client conectado.
+     * @throws IOException Se a conexão ou o handshake falharem.
+     */
+    public static Client connect(String host, int port, String username, boolean binary) throws IOException {
+        Client client = new Client(new Socket(host, port), username, binary);
+        client.sendHandshake();
+        return client;
+    }
+
+    /**
+     * Inicia os heartbeats e a leitura das mensagens do server, em uma virtual
+     * thread quando disponível. Os eventos são entregues ao listener até a
+     * conexão ser encerrada de vez.
+     *
+     * @param listener Destino das mensagens e eventos da conexão.
+     */
+    public void start(ClientListener listener) {
+        try {
+            startHeartbeat(); // Mantém a conexão viva enquanto o usuário não envia nada.
         } catch (IOException e) {
-            closeConnection(socket, reader, writer); // Encerrando a conexão com o server.
+            // Sem prazo de leitura; a queda ainda é percebida pelo fim do stream.
+        }
+
+        Readers.EXECUTOR.execute(() -> listen(listener));
+    }
+
+    /**
+     * Lê as mensagens do server e as entrega em rajadas: uma leitura bloqueante
+     * pela primeira, seguida das que já estão no buffer, até
+     * {@link #MAX_BURST}. Se a conexão cair, tenta retomar a sessão.
+     */
+    private void listen(ClientListener listener) {
+        List<String> burst = new ArrayList<>();
+
+        // Enquanto houver conexão:
+        while (socket.isConnected()) {
+            Socket current = socket;
+
+            try {
+                String message;
+
+                while ((message = readNext()) != null) {
+                    if (message != CONTROL)
+                        burst.add(message);
+
+                    if (burst.size() >= MAX_BURST || !hasBufferedMessage())
+                        deliver(listener, burst); // Nada mais chegou: entrega a rajada.
+                }
+            } catch (IOException e) {
+                // A conexão caiu; tratada abaixo, como o fim do stream.
+            }
+
+            deliver(listener, burst); // O que chegou antes da queda.
+
+            // Se não estiver recebendo mais mensagens, tenta retomar a sessão.
+            if (!quitting)
+                listener.onConnectionLost();
+
+            if (!reconnect(current)) {
+                closeConnection(socket, reader, writer); // Encerra as conexões.
+                closed = true;
+                listener.onClosed();
+                break; // Sai do loop.
+            }
+        }
+    }
+
+    private static void deliver(ClientListener listener, List<String> burst) {
+        if (burst.isEmpty())
+            return;
+
+        listener.onMessages(List.copyOf(burst));
+        burst.clear();
+    }
+
+    /**
+     * Envia uma jogada.
+     *
+     * @param move Jogada escolhida.
+     * @throws IOException Se a escrita falhar (a jogada fica pendente até a
+     *                     reconexão).
+     */
+    public void sendMove(Move move) throws IOException {
+        send(move.getCommand());
+    }
+
+    /**
+     * Envia um comando sem argumentos (ex.: {@link Command#RANKING}).
+     *
+     * @param command Comando.
+     * @throws IOException Se a escrita falhar (o comando fica pendente até a
+     *                     reconexão).
+     */
+    public void sendCommand(Command command) throws IOException {
+        send(command.getText());
+    }
+
+    /**
+     * Envia uma linha digitada pelo usuário (chat, jogada ou comando) no
+     * protocolo do client. Pode ser chamado por várias threads.
+     *
+     * A mensagem entra na fila de saída. Se nenhuma outra thread estiver
+     * escrevendo, esta escreve a fila inteira e faz um único flush; senão,
+     * retorna em seguida, e a mensagem segue no flush da outra. Assim, rajadas
+     * de envios (ex.: chat e jogada de threads diferentes) custam um flush, e
+     * apenas uma thread espera pelo socket.
+     *
+     * @param message Linha digitada, sem o username.
+     * @throws IOException Se a escrita falhar. As mensagens não escritas
+     *                     continuam na fila e são enviadas após a reconexão.
+     */
+    public void send(String message) throws IOException {
+        String trimmed = message.trim();
+
+        if (trimmed.equals(Command.SAIR.getText()))
+            quitting = true; // O server vai encerrar a conexão; não é uma queda.
+
+        Move move = sealed ? Move.fromText(trimmed) : null;
+
+        outbox.add((move != null) ? seal(move) : message);
+        flush();
+    }
+
+    /**
+     * Sela a jogada e guarda o nonce até o server pedir a revelação.
+     *
+     * @return Comando {@link MoveCommitment#SEAL_COMMAND} a enviar no lugar da jogada.
+     */
+    private String seal(Move move) {
+        byte[] nonce = MoveCommitment.newNonce();
+        byte[] commitment = MoveCommitment.seal(move, nonce, username.getBytes(StandardCharsets.UTF_8));
+
+        synchronized (pendingReveals) {
+            pendingReveals.put(MoveCommitment.hex(commitment), new SealedMove(move, nonce));
+        }
+
+        return MoveCommitment.sealCommand(commitment);
+    }
+
+    /**
+     * Revela a jogada do compromisso cuja revelação o server pediu.
+     *
+     * @param commitment Compromisso em hex.
+     */
+    private void reveal(String commitment) throws IOException {
+        SealedMove pending;
+
+        synchronized (pendingReveals) {
+            pending = pendingReveals.remove(commitment);
+        }
+
+        if (pending != null) {
+            outbox.add(MoveCommitment.revealCommand(pending.move, pending.nonce));
+            flush();
+        }
+    }
+
+    /** Escreve a fila de saída, se nenhuma outra thread já estiver escrevendo. */
+    private void flush() throws IOException {
+        // Refaz a verificação após liberar a escrita: outra thread pode ter enfileirado nesse meio tempo.
+        while (!outbox.isEmpty() && flushing.compareAndSet(false, true)) {
+            try {
+                writeOutbox();
+            } finally {
+                flushing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Escreve as mensagens da fila de saída e faz o flush. Sob o
+     * {@link #connectionLock}, sincronizado com as trocas de conexão.
+     *
+     * Se a escrita falhar, voltam para a fila apenas as mensagens que não foram
+     * entregues inteiras ao socket (ver {@link CountingOutputStream}): as que
+     * já saíram em uma escrita anterior do buffer não são reenviadas após a
+     * reconexão. O server não descarta mensagens repetidas, então o reenvio é
+     * decidido aqui. Uma mensagem que estava na escrita que falhou é reenviada,
+     * mesmo que o sistema tenha aceitado parte dela: a conexão caiu no meio, e
+     * o server não a recebeu inteira.
+     *
+     * Sem confirmação do server, uma mensagem aceita pelo socket e perdida na
+     * queda não é reenviada, como já acontecia com os lotes escritos sem erro:
+     * o client prefere perder a duplicar, pois uma jogada repetida poderia
+     * valer para a rodada seguinte.
+     */
+    private void writeOutbox() throws IOException {
+        List<String> batch = new ArrayList<>();
+        String message;
+
+        connectionLock.lock();
+
+        try {
+            if (broken)
+                throw new IOException("A conexão falhou; a fila de saída aguarda a reconexão.");
+
+            while ((message = outbox.poll()) != null)
+                batch.add(message);
+
+            long start = output.getWritten();
+
+            try {
+                for (String pending : batch) {
+                    if (binary) {
+                        // Jogadas e comandos viajam como códigos; o username não é reenviado.
+                        frameWriter.write(BinaryProtocol.clientFrame(pending));
+                    } else {
+                        writer.write(username + ": " + pending); // Imprimindo a entrada do usuário no server.
+                        writer.newLine();
+                    }
+                }
+
+                if (binary)
+                    frameWriter.flush();
+                else
+                    writer.flush();
+            } catch (IOException e) {
+                broken = true;
+                requeueUndelivered(batch, output.getWritten() - start);
+                throw e;
+            }
+
+            lastSent = System.nanoTime();
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    /**
+     * Devolve ao início da fila, na ordem original, as mensagens do lote que não
+     * foram entregues inteiras ao socket.
+     *
+     * @param batch     Lote que estava sendo escrito.
+     * @param delivered Bytes do lote aceitos pelo socket antes da falha.
+     */
+    private void requeueUndelivered(List<String> batch, long delivered) {
+        long end = 0;
+        int sent = 0;
+
+        while (sent < batch.size() && (end += encodedLength(batch.get(sent))) <= delivered)
+            sent++;
+
+        for (int i = batch.size() - 1; i >= sent; i--)
+            outbox.addFirst(batch.get(i));
+    }
+
+    /** @return Bytes que a mensagem ocupa no socket, como escrita em {@link #writeOutbox()}. */
+    private int encodedLength(String message) {
+        if (binary)
+            return BinaryProtocol.clientFrame(message).length;
+
+        return (username + ": " + message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Inicia os heartbeats (ver {@link Heartbeat}): um /ping sempre que o client
+     * passar um intervalo sem enviar nada, para que o server não o dê como
+     * perdido. A leitura passa a ter um prazo: se o server ficar em silêncio
+     * (nem as respostas aos pings chegam), a leitura falha e o client tenta
+     * retomar a sessão.
+     * 
+     * @throws IOException Se não for possível definir o prazo de leitura.
+     */
+    public void startHeartbeat() throws IOException {
+        if (heartbeat != null)
+            return;
+
+        long period = Heartbeat.INTERVAL_MILLIS / 2;
+        heartbeat = HEARTBEATS.scheduleAtFixedRate(this::ping, period, period, TimeUnit.MILLISECONDS);
+        socket.setSoTimeout((int) Heartbeat.TIMEOUT_MILLIS);
+    }
+
+    /** Envia um /ping se o client estiver há meio intervalo sem enviar nada. */
+    private void ping() {
+        if (reconnecting || quitting || System.nanoTime() - lastSent < Heartbeat.INTERVAL_MILLIS * 500_000L)
+            return;
+
+        try {
+            send(Command.PING.getText());
+        } catch (IOException e) {
+            // A leitura também vai falhar e tratar a queda.
         }
     }
 
     /**
-     * Método responsável por enviar mensagens para o servidor.
+     * Identifica o client para o server: no protocolo de texto envia o username
+     * como primeira linha; no binário, envia o byte mágico, a versão e um frame
+     * {@link BinaryProtocol#HELLO}.
+     * 
+     * @throws IOException Se a escrita falhar.
      */
-    public void sendMessage() {
+    public void sendHandshake() throws IOException {
+        connectionLock.lock();
+
         try {
-            writer.write(username); // Para que o ClientHandler possa identificar.
+            if (binary) {
+                frameWriter.write(BinaryProtocol.MAGIC);
+                frameWriter.write(BinaryProtocol.VERSION);
+                frameWriter.write(BinaryProtocol.frame(BinaryProtocol.HELLO, username.getBytes(StandardCharsets.UTF_8)));
+                frameWriter.flush();
+                return;
+            }
+
+            writer.write(username);
             writer.newLine();
             writer.flush();
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    /**
+     * Lê a próxima mensagem enviada pelo server, em qualquer protocolo. O token
+     * da sessão é guardado para uma eventual retomada, sem ser repassado, e as
+     * respostas aos heartbeats são descartadas. Redirecionamentos para outro nó
+     * do cluster são seguidos sem interromper a leitura.
+     * 
+     * @return Texto da mensagem, ou {@code null} se a conexão foi encerrada.
+     * @throws IOException Se a leitura falhar.
+     */
+    public String readServerMessage() throws IOException {
+        String message;
+
+        while ((message = readNext()) == CONTROL)
+            ; // Token, pong ou redirecionamento, já tratados.
+
+        return message;
+    }
+
+    /**
+     * Lê uma única linha (ou frame) do server e trata as mensagens de controle.
+     * 
+     * @return Texto da mensagem; {@link #CONTROL} se era uma mensagem de
+     *         controle; ou {@code null} se a conexão foi encerrada.
+     * @throws IOException Se a leitura falhar.
+     */
+    private String readNext() throws IOException {
+        if (!binary) {
+            String line = reader.readLine();
+
+            if (line == null)
+                return null;
+
+            received++;
+
+            if (line.equals(Heartbeat.PONG_LINE))
+                return CONTROL; // Resposta a um heartbeat, não exibida.
+
+            Redirect target = Redirect.fromLine(line);
+
+            if (target != null) {
+                follow(target); // As próximas linhas vêm do novo nó.
+                return CONTROL;
+            }
+
+            if (line.equals(MoveCommitment.SEALED_LINE)) {
+                sealed = true; // As próximas jogadas serão seladas.
+                return CONTROL;
+            }
+
+            String commitment = MoveCommitment.parseRevealRequest(line);
+
+            if (commitment != null) {
+                reveal(commitment);
+                return CONTROL;
+            }
+
+            String sessionToken = ResumeRequest.parseTokenLine(line);
+
+            if (sessionToken == null)
+                return line;
+
+            token = sessionToken;
+            return CONTROL;
+        }
+
+        byte[] frame = BinaryProtocol.readFrame(frameReader);
+
+        if (frame == null)
+            return null;
+
+        received++;
+
+        if (frame[0] == BinaryProtocol.TEXT)
+            return BinaryProtocol.payloadText(frame, frame.length);
+
+        if (frame[0] == BinaryProtocol.SESSION)
+            token = BinaryProtocol.payloadText(frame, frame.length);
+
+        if (frame[0] == BinaryProtocol.SEALED)
+            sealed = true;
 
-            Scanner scanner = new Scanner(System.in); // Para receber entradas pelo console.
+        if (frame[0] == BinaryProtocol.REVEAL_REQUEST && frame.length == 1 + MoveCommitment.DIGEST_LENGTH)
+            reveal(MoveCommitment.hex(Arrays.copyOfRange(frame, 1, frame.length)));
 
-            // Enquanto o usuário estiver conectado no server:
-            while (socket.isConnected()) {
-                String message = scanner.nextLine(); // Recebendo a entrada do usuário.
+        if (frame[0] == BinaryProtocol.REDIRECT) {
+            Redirect target = Redirect.fromFrame(frame, frame.length);
 
-                writer.write(username + ": " + message); // Imprimindo a entrada do usuário no server.
+            if (target != null)
+                follow(target); // Os próximos frames vêm do novo nó.
+        }
+
+        // Pongs, tokens, selos e os frames reservados para versões futuras não são repassados.
+        return CONTROL;
+    }
+
+    /**
+     * @return {@code true} se já há dados recebidos no buffer de leitura, isto
+     *         é, se a próxima leitura não precisa esperar pela rede.
+     * @throws IOException Se a conexão estiver encerrada.
+     */
+    private boolean hasBufferedMessage() throws IOException {
+        return binary ? frameReader.available() > 0 : reader.ready();
+    }
+
+    /**
+     * Segue um redirecionamento: conecta ao nó do cluster onde está a sala do
+     * client e pede a sala, no lugar do username. A conexão anterior, que o
+     * server já está encerrando, é fechada.
+     * 
+     * @param target Nó e sala de destino.
+     * @throws IOException Se a conexão com o novo nó falhar.
+     */
+    private void follow(Redirect target) throws IOException {
+        InetAddress targetHost = InetAddress.getByName(target.getHost());
+        Socket next = new Socket(targetHost, target.getPort()); // Conecta sem travar as escritas.
+        JoinRequest request = new JoinRequest(target.getRoom(), username);
+
+        connectionLock.lock();
+
+        try {
+            Socket previous = socket;
+
+            this.host = targetHost;
+            this.port = target.getPort();
+            open(next);
+            received = 0; // O redirecionamento não faz parte da sessão.
+
+            if (binary) {
+                frameWriter.write(BinaryProtocol.MAGIC);
+                frameWriter.write(BinaryProtocol.VERSION);
+                frameWriter.write(request.toFrame());
+                frameWriter.flush();
+            } else {
+                writer.write(request.toLine());
                 writer.newLine();
                 writer.flush();
             }
-        } catch (IOException e) {
-            closeConnection(socket, reader, writer); // Encerrando a conexão.
+
+            previous.close();
+        } finally {
+            connectionLock.unlock();
         }
     }
 
     /**
-     * Método responsável por receber mensagens do servidor. Age como thread para
-     * não comprometer o funcionamento da aplicação.
+     * Restabelece a conexão após uma queda. Se houver um token, pede ao server
+     * para retomar a sessão (mesma vaga, jogada e posição na fila, além das
+     * mensagens perdidas); se a sessão já expirou, entra como um novo usuário.
+     * Pode ser chamado pelas threads de leitura e de escrita ao mesmo tempo:
+     * apenas a primeira reconecta. Os envios feitos enquanto isso não esperam
+     * pela reconexão: as mensagens seguem na fila de saída.
+     * 
+     * @param failed Socket da conexão que caiu.
+     * @return {@code false} se o usuário saiu com /sair ou se não foi possível
+     *         reconectar.
      */
-    public void listenForMessage() {
-        new Thread(new Runnable() {
+    public boolean reconnect(Socket failed) {
+        reconnectLock.lock();
 
-            @Override
-            public void run() {
-                // Mensagem enviada no chat.
-                String serverMessage;
+        try {
+            if (quitting)
+                return false;
 
-                // Enquanto houver conexão:
-                while (socket.isConnected()) {
-                    try {
-                        serverMessage = reader.readLine(); // Lendo a mensagem enviada no chat.
+            if (socket != failed)
+                return true; // Outra thread já reconectou.
 
-                        // Se não estiver recebendo mais mensagens.
-                        if (serverMessage == null) {
-                            closeConnection(socket, reader, writer); // Encerra as conexões.
-                            System.out.println("\n🚨 Conexão encerrada com o host.");
-                            break; // Sai do loop.
-                        }
+            try {
+                failed.close(); // Desbloqueia a thread que ainda estiver lendo da conexão antiga.
+            } catch (IOException e) {
+                // A conexão já estava encerrada.
+            }
 
-                        System.out.println(serverMessage); // Imprimindo a mensagem no console.
-                    } catch (IOException e) {
-                        closeConnection(socket, reader, writer); // Encerrando a conexão.
-                        break; // Encerra o loop.
-                    }
-                }
+            // A primeira tentativa é imediata, a não ser que a última reconexão tenha acabado de cair.
+            boolean wait = System.nanoTime() - reconnectedAt < RECONNECT_INTERVAL * 1_000_000L;
+            reconnecting = true;
+
+            try {
+                return retryConnection(wait);
+            } finally {
+                reconnecting = false;
             }
-        }).start();
+        } finally {
+            reconnectLock.unlock();
+        }
+    }
+
+    /**
+     * Tenta reconectar até conseguir ou esgotar as tentativas.
+     * 
+     * @param wait Se a primeira tentativa também deve aguardar o intervalo.
+     */
+    private boolean retryConnection(boolean wait) {
+        for (int attempt = 0; attempt < RECONNECT_ATTEMPTS; attempt++, wait = true) {
+            try {
+                if (wait)
+                    Thread.sleep(RECONNECT_INTERVAL); // Fora do connectionLock: as escritas não esperam.
+
+                // Sessão expirada: o server encerra a conexão, e o usuário entra de novo.
+                if (token != null && !resume(new Socket(host, port)))
+                    token = null;
+
+                if (token == null)
+                    rejoin(new Socket(host, port));
+
+                reconnectedAt = System.nanoTime();
+                flushAfterReconnect();
+                return true;
+            } catch (IOException e) {
+                // Server inacessível, tenta de novo em seguida.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    /** Envia as mensagens que ficaram na fila de saída durante a queda. */
+    private void flushAfterReconnect() {
+        try {
+            flush();
+        } catch (IOException e) {
+            // A nova conexão também caiu; a leitura vai perceber.
+        }
+    }
+
+    /**
+     * Passa a utilizar a nova conexão e pede a retomada da sessão. Se o server a
+     * recusar, a conexão é encerrada.
+     * 
+     * @param next Nova conexão, já aberta.
+     * @return {@code true} se a sessão foi retomada.
+     * @throws IOException Se a conexão falhar antes da resposta.
+     */
+    private boolean resume(Socket next) throws IOException {
+        connectionLock.lock();
+
+        try {
+            open(next);
+
+            if (requestResume())
+                return true;
+
+            next.close();
+            return false;
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    /**
+     * Passa a utilizar a nova conexão e entra como um novo usuário.
+     * 
+     * @param next Nova conexão, já aberta.
+     * @throws IOException Se o handshake falhar.
+     */
+    private void rejoin(Socket next) throws IOException {
+        connectionLock.lock();
+
+        try {
+            open(next);
+            received = 0;
+            sendHandshake();
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    /**
+     * Envia o pedido de retomada da sessão e aguarda a confirmação, que não entra
+     * na contagem de mensagens recebidas.
+     * 
+     * @return {@code true} se a sessão foi retomada, {@code false} se o server
+     *         a recusou (ex.: período de tolerância encerrado).
+     * @throws IOException Se a conexão falhar antes da resposta.
+     */
+    private boolean requestResume() throws IOException {
+        ResumeRequest request = new ResumeRequest(token, received);
+
+        if (binary) {
+            frameWriter.write(BinaryProtocol.MAGIC);
+            frameWriter.write(BinaryProtocol.VERSION);
+            frameWriter.write(request.toFrame());
+            frameWriter.flush();
+
+            byte[] frame = BinaryProtocol.readFrame(frameReader);
+
+            if (frame == null)
+                throw new EOFException("Conexão encerrada antes da resposta.");
+
+            return frame[0] == BinaryProtocol.RESUMED;
+        }
+
+        writer.write(request.toLine());
+        writer.newLine();
+        writer.flush();
+
+        String line = reader.readLine();
+
+        if (line == null)
+            throw new EOFException("Conexão encerrada antes da resposta.");
+
+        return line.equals(ResumeRequest.RESUMED_LINE);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /** @return {@code true} se a conexão foi encerrada de vez. */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Encerra a conexão do client com o server. Pode ser chamado enquanto outra
+     * thread está bloqueada na leitura.
+     */
+    public void close() {
+        closed = true;
+
+        try {
+            socket.close(); // Desbloqueia a leitura antes de fechar o reader.
+        } catch (IOException e) {
+            // A conexão já estava encerrada.
+        }
+
+        closeConnection(socket, reader, writer);
     }
 
     /**
@@ -103,6 +883,11 @@ public class Client {
      * @param writer BufferedWriter.
      */
     public void closeConnection(Socket socket, BufferedReader reader, BufferedWriter writer) {
+        ScheduledFuture<?> current = heartbeat;
+
+        if (current != null)
+            current.cancel(false); // Encerra os heartbeats.
+
         // Fechando o reader, writer e socket.
         try {
             if (reader != null)
@@ -111,15 +896,19 @@ public class Client {
             if (writer != null)
                 writer.close();
 
+            if (frameWriter != null)
+                frameWriter.close();
+
             if (socket != null)
                 socket.close(); // Fechar o socket também encerra o Output/InputStreamWriter.
         } catch (IOException e) {
-            e.printStackTrace(); // Imprimindo a pilha da exception no console.
+            // A conexão já estava encerrada; não há mais nada a liberar.
         }
     }
 
     /**
-     * Se conecta a um servidor.
+     * Se conecta a um servidor. Com o argumento {@code --binario}, utiliza o
+     * protocolo binário.
      * 
      * @param args
      * @throws IOException
@@ -133,10 +922,67 @@ public class Client {
         String username = scanner.nextLine(); // Nome de usuário.
         System.out.println(); // Pulando uma linha.
 
-        Socket socket = new Socket("localhost", 7777); // Socket de conexão com o server.
-        Client client = new Client(socket, username); // Instânciando um novo client.
+        boolean binary = args.length > 0 && args[0].equals("--binario");
+        Client client = connect("localhost", 7777, username, binary); // Instânciando um novo client.
+        ConsoleView view = new ConsoleView(client);
+
+        client.start(view); // Recebe mensagens vindas do server.
+        view.readInput(scanner); // Envia mensagens para o server.
+    }
 
-        client.listenForMessage(); // Recebe mensagens vindas do server.
-        client.sendMessage(); // Envia mensagens para o server.
+    /**
+     * Threads de leitura dos clients iniciados com {@link #start(ClientListener)}:
+     * virtual threads quando disponíveis; senão, threads de plataforma daemon,
+     * que não impedem o console de encerrar (ver
+     * {@link Server#newVirtualThreadExecutor(String)}). Criadas apenas no
+     * primeiro uso: quem lê por conta própria (ver {@link #readServerMessage()})
+     * não precisa delas.
+     */
+    private static class Readers {
+
+        static final ExecutorService EXECUTOR = Server.newVirtualThreadExecutor("client-reader");
+    }
+
+    /**
+     * Conta os bytes que o socket aceitou: uma escrita só é contada quando
+     * retorna sem erro. Acessado sob o {@link Client#connectionLock}.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long written;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        /** @return Bytes aceitos pelo socket desde a abertura da conexão. */
+        long getWritten() {
+            return written;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len); // Sem o laço byte a byte de FilterOutputStream.
+            written += len;
+        }
+    }
+
+    /** Jogada selada à espera da revelação. */
+    private static class SealedMove {
+
+        private final Move move;
+
+        private final byte[] nonce;
+
+        SealedMove(Move move, byte[] nonce) {
+            this.move = move;
+            this.nonce = nonce;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,33 @@
+package client;
+
+import java.util.List;
+
+/**
+ * Recebe os eventos de um {@link Client} iniciado com
+ * {@link Client#start(ClientListener)}. Os métodos são chamados pela thread de
+ * leitura do client, um de cada vez; quem precisar de mais tempo deve repassar o
+ * trabalho, para não atrasar a leitura.
+ *
+ * Implementado pelo console ({@link ConsoleView}), e por bots e interfaces
+ * alternativas que usam o client como biblioteca.
+ */
+public interface ClientListener {
+
+    /**
+     * Mensagens recebidas do server. As que chegam juntas (ex.: o histórico da
+     * sala, ou o resultado de uma rodada com o placar) são entregues em uma única
+     * chamada, na ordem de chegada.
+     *
+     * @param messages Textos das mensagens, sem tokens nem respostas aos
+     *                 heartbeats. Nunca vazia.
+     */
+    void onMessages(List<String> messages);
+
+    /** A conexão caiu e o client está tentando retomar a sessão. */
+    default void onConnectionLost() {
+    }
+
+    /** A conexão foi encerrada de vez: o usuário saiu ou a reconexão falhou. */
+    default void onClosed() {
+    }
+}
@@ -0,0 +1,77 @@
+package client;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/**
+ * Interface de console do {@link Client}: lê as linhas digitadas pelo usuário
+ * e imprime as mensagens do server.
+ *
+ * Cada rajada de mensagens recebida (ver {@link ClientListener#onMessages(List)})
+ * é impressa com uma única escrita no terminal, em vez de uma escrita por linha
+ * (o {@code System.out} descarrega a cada {@code println}); rajadas como o
+ * histórico da sala aparecem de uma vez, sem travar a leitura da conexão.
+ */
+public class ConsoleView implements ClientListener {
+
+    /** Tamanho do buffer de impressão, suficiente para as maiores rajadas. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Client client;
+
+    /** Saída do console, descarregada uma vez por rajada. */
+    private final PrintStream out = new PrintStream(new BufferedOutputStream(System.out, BUFFER_SIZE), false);
+
+    /** @param client Client conectado, ainda não iniciado. */
+    public ConsoleView(Client client) {
+        this.client = client;
+    }
+
+    @Override
+    public void onMessages(List<String> messages) {
+        for (String message : messages)
+            out.println(message);
+
+        out.flush();
+    }
+
+    @Override
+    public void onConnectionLost() {
+        out.println("\n🔌 Conexão perdida. Tentando reconectar...");
+        out.flush();
+    }
+
+    @Override
+    public void onClosed() {
+        out.println("\n🚨 Conexão encerrada com o host.");
+        out.flush();
+    }
+
+    /**
+     * Envia ao server cada linha digitada (chat, jogada ou comando), até o fim
+     * da entrada ou da conexão. Os envios não esperam a escrita no socket.
+     *
+     * @param scanner Entrada do usuário.
+     */
+    public void readInput(Scanner scanner) {
+        while (!client.isClosed()) {
+            String message;
+
+            try {
+                message = scanner.nextLine(); // Recebendo a entrada do usuário.
+            } catch (NoSuchElementException e) {
+                break; // Fim da entrada.
+            }
+
+            try {
+                client.send(message);
+            } catch (IOException e) {
+                // A mensagem fica pendente; a leitura percebe a queda e a reenvia após a reconexão.
+            }
+        }
+    }
+}
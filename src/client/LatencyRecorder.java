@@ -0,0 +1,51 @@
+package client;
+
+import java.util.Arrays;
+
+/**
+ * Acumula amostras de latência (em nanossegundos) e calcula seus percentis.
+ * Pode ser utilizado por várias threads.
+ */
+public class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+
+    private int count;
+
+    /**
+     * @param nanos Latência medida, em nanossegundos.
+     */
+    public synchronized void record(long nanos) {
+        if (count == samples.length)
+            samples = Arrays.copyOf(samples, count * 2);
+
+        samples[count++] = nanos;
+    }
+
+    /** @return Quantidade de amostras registradas. */
+    public synchronized int count() {
+        return count;
+    }
+
+    /**
+     * @param percentiles Percentis desejados (ex.: 50, 99, 99.9).
+     * @return Latência de cada percentil, em milissegundos, na mesma ordem. Zero
+     *         se não houver amostras.
+     */
+    public synchronized double[] percentilesMillis(double... percentiles) {
+        double[] result = new double[percentiles.length];
+
+        if (count == 0)
+            return result;
+
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+
+        for (int i = 0; i < percentiles.length; i++) {
+            int index = (int) Math.ceil(percentiles[i] / 100.0 * count) - 1;
+            result[i] = sorted[Math.max(0, Math.min(index, count - 1))] / 1_000_000.0;
+        }
+
+        return result;
+    }
+}
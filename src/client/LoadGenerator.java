@@ -0,0 +1,238 @@
+package client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+import server.Server;
+
+/**
+ * Gerador de carga sem interface: conecta milhares de usuários simulados
+ * ({@link SimulatedClient}) a um server local e mede o comportamento dele sob
+ * carga.
+ *
+ * Ao final (e periodicamente durante o teste) informa os percentis da latência
+ * de uma rodada, da jogada que a completa até a mensagem com o vencedor,
+ * as mensagens enviadas e recebidas por segundo e as falhas de conexão.
+ */
+public class LoadGenerator {
+
+    /** Intervalo entre os relatórios parciais, em segundos. */
+    private static final int REPORT_INTERVAL_SECONDS = 5;
+
+    /** Percentis informados nos relatórios. */
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 100 };
+
+    /** Executa os envios agendados (chat e jogadas) de todos os usuários. */
+    private final ScheduledExecutorService scheduler;
+
+    private final long chatPeriodMillis;
+
+    private final long movePeriodMillis;
+
+    private final long thinkMillis;
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder received = new LongAdder();
+
+    private final LongAdder connectFailures = new LongAdder();
+
+    private final LongAdder connectionsLost = new LongAdder();
+
+    private final LatencyRecorder roundLatency = new LatencyRecorder();
+
+    /**
+     * @param chatPerMinute  Mensagens de chat por minuto, por usuário (0 para
+     *                       nenhuma).
+     * @param movesPerMinute Jogadas por minuto, no máximo, por jogador (0 para
+     *                       sem limite).
+     * @param thinkMillis    Tempo médio de reflexão antes de cada jogada.
+     */
+    public LoadGenerator(int chatPerMinute, int movesPerMinute, long thinkMillis) {
+        this.chatPeriodMillis = (chatPerMinute > 0) ? 60_000L / chatPerMinute : 0;
+        this.movePeriodMillis = (movesPerMinute > 0) ? 60_000L / movesPerMinute : 0;
+        this.thinkMillis = thinkMillis;
+        this.scheduler = Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "load-scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    long getChatPeriodMillis() {
+        return chatPeriodMillis;
+    }
+
+    long getMovePeriodMillis() {
+        return movePeriodMillis;
+    }
+
+    long getThinkMillis() {
+        return thinkMillis;
+    }
+
+    void messageSent() {
+        sent.increment();
+    }
+
+    void messageReceived() {
+        received.increment();
+    }
+
+    void connectionLost() {
+        connectionsLost.increment();
+    }
+
+    void roundFinished(long latencyNanos) {
+        roundLatency.record(latencyNanos);
+    }
+
+    /**
+     * Conecta os usuários, mantém a carga pelo tempo informado e imprime o
+     * relatório final.
+     *
+     * @param host    Endereço do server.
+     * @param port    Porta do server.
+     * @param clients Quantidade de usuários simulados.
+     * @param binary  Se os usuários usam o protocolo binário.
+     * @param seconds Duração do teste, contada após todas as conexões.
+     */
+    public void run(String host, int port, int clients, boolean binary, int seconds) throws InterruptedException {
+        ExecutorService readers = Server.newVirtualThreadExecutor("load-reader"); // Uma leitura bloqueante por usuário.
+        List<SimulatedClient> connected = new ArrayList<>(clients);
+
+        // As conexões são abertas em sequência para não estourar o backlog do server.
+        long connectStart = System.nanoTime();
+
+        for (int i = 0; i < clients; i++) {
+            try {
+                SimulatedClient client = new SimulatedClient(this, host, port, "carga" + i, binary);
+                connected.add(client);
+                readers.execute(client);
+            } catch (IOException e) {
+                connectFailures.increment();
+            }
+        }
+
+        System.out.printf("%d usuários conectados em %d ms (%d falhas).%n", connected.size(),
+                (System.nanoTime() - connectStart) / 1_000_000L, connectFailures.sum());
+
+        // Mantém a carga, com relatórios parciais:
+        long start = System.nanoTime();
+        long lastSent = 0;
+        long lastReceived = 0;
+
+        for (int elapsed = 0; elapsed < seconds; elapsed += REPORT_INTERVAL_SECONDS) {
+            Thread.sleep(Math.min(REPORT_INTERVAL_SECONDS, seconds - elapsed) * 1000L);
+
+            long sentNow = sent.sum();
+            long receivedNow = received.sum();
+            int interval = Math.min(REPORT_INTERVAL_SECONDS, seconds - elapsed);
+
+            System.out.printf("[%3ds] enviadas/s: %d | recebidas/s: %d | rodadas: %d | conexões perdidas: %d%n",
+                    elapsed + interval, (sentNow - lastSent) / interval, (receivedNow - lastReceived) / interval,
+                    roundLatency.count(), connectionsLost.sum());
+
+            lastSent = sentNow;
+            lastReceived = receivedNow;
+        }
+
+        double duration = (System.nanoTime() - start) / 1e9;
+
+        // Encerra as conexões antes do relatório, para não contar as saídas como falhas.
+        for (SimulatedClient client : connected)
+            client.close();
+
+        scheduler.shutdownNow();
+        readers.shutdownNow();
+
+        report(duration);
+    }
+
+    private void report(double seconds) {
+        double[] latencies = roundLatency.percentilesMillis(PERCENTILES);
+
+        System.out.println();
+        System.out.println("📊 Resultado");
+        System.out.printf("Rodadas: %d (%.1f/s)%n", roundLatency.count(), roundLatency.count() / seconds);
+        System.out.printf("Latência da rodada (ms): p50 %.2f | p90 %.2f | p99 %.2f | p99.9 %.2f | máx %.2f%n",
+                latencies[0], latencies[1], latencies[2], latencies[3], latencies[4]);
+        System.out.printf("Mensagens enviadas: %d (%.0f/s)%n", sent.sum(), sent.sum() / seconds);
+        System.out.printf("Mensagens recebidas: %d (%.0f/s)%n", received.sum(), received.sum() / seconds);
+        System.out.printf("Falhas de conexão: %d | conexões perdidas: %d%n", connectFailures.sum(),
+                connectionsLost.sum());
+    }
+
+    /**
+     * Roda o gerador de carga contra um server local. Argumentos aceitos:
+     * <ul>
+     * <li>{@code --host <endereço>} e {@code --porta <n>} (padrão:
+     * {@code localhost:7777});</li>
+     * <li>{@code --clientes <n>}: usuários simulados (padrão: 1000);</li>
+     * <li>{@code --binario}: usa o protocolo binário;</li>
+     * <li>{@code --chat <n>}: mensagens de chat por minuto, por usuário (padrão:
+     * 6);</li>
+     * <li>{@code --jogadas <n>}: jogadas por minuto, no máximo, por jogador
+     * (padrão: sem limite);</li>
+     * <li>{@code --pensar <ms>}: tempo médio de reflexão antes de cada jogada
+     * (padrão: 500);</li>
+     * <li>{@code --duracao <s>}: duração do teste (padrão: 60).</li>
+     * </ul>
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws InterruptedException {
+        String host = "localhost";
+        int port = 7777;
+        int clients = 1000;
+        boolean binary = false;
+        int chatPerMinute = 6;
+        int movesPerMinute = 0;
+        long thinkMillis = 500;
+        int seconds = 60;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host":
+                    host = args[++i];
+                    break;
+                case "--porta":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--clientes":
+                    clients = Integer.parseInt(args[++i]);
+                    break;
+                case "--binario":
+                    binary = true;
+                    break;
+                case "--chat":
+                    chatPerMinute = Integer.parseInt(args[++i]);
+                    break;
+                case "--jogadas":
+                    movesPerMinute = Integer.parseInt(args[++i]);
+                    break;
+                case "--pensar":
+                    thinkMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--duracao":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.out.println("Argumento desconhecido: " + args[i]);
+                    return;
+            }
+        }
+
+        new LoadGenerator(chatPerMinute, movesPerMinute, thinkMillis).run(host, port, clients, binary, seconds);
+    }
+}
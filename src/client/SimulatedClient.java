@@ -0,0 +1,180 @@
+package client;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import protocol.Command;
+import protocol.Move;
+
+/**
+ * Usuário simulado pelo {@link LoadGenerator}. Usa o mesmo {@link Client} do
+ * console, mas reage às mensagens do server em vez de ler do teclado: quando
+ * vira jogador (ou começa uma nova rodada da série), escolhe uma jogada após o
+ * tempo de reflexão; o server anuncia o resultado assim que as duas jogadas
+ * chegam. Em qualquer papel, conversa no chat na taxa configurada.
+ *
+ * A leitura roda em uma thread própria (virtual, quando disponível); os envios
+ * agendados rodam no scheduler compartilhado do gerador.
+ */
+public class SimulatedClient implements Runnable {
+
+    private final LoadGenerator generator;
+
+    private final Client client;
+
+    /** Envio periódico de mensagens de chat, ou {@code null}. */
+    private ScheduledFuture<?> chat;
+
+    /** Indica se o usuário ocupa uma vaga de jogador. */
+    private volatile boolean player;
+
+    /** Indica se já enviou sua jogada na partida atual. */
+    private volatile boolean moved;
+
+    /** Indica se o oponente já jogou na rodada atual. */
+    private volatile boolean opponentMoved;
+
+    /**
+     * Momento (nanoTime) da jogada que completou a rodada, ainda sem resultado,
+     * ou 0. Só é marcado por quem joga por último.
+     */
+    private volatile long playSentAt;
+
+    /** Momento (nanoTime) da última jogada enviada. */
+    private volatile long lastMoveAt;
+
+    private volatile boolean closed;
+
+    /**
+     * Conecta ao server e realiza o handshake.
+     *
+     * @throws IOException Se a conexão falhar.
+     */
+    public SimulatedClient(LoadGenerator generator, String host, int port, String username, boolean binary)
+            throws IOException {
+        this.generator = generator;
+        this.client = new Client(new Socket(host, port), username, binary);
+        this.client.sendHandshake();
+        this.client.startHeartbeat(); // Usuários que só assistem também precisam se manter vivos.
+
+        long chatPeriod = generator.getChatPeriodMillis();
+
+        if (chatPeriod > 0) {
+            long initialDelay = ThreadLocalRandom.current().nextLong(chatPeriod); // Espalha os envios.
+            this.chat = generator.getScheduler().scheduleAtFixedRate(this::sendChat, initialDelay, chatPeriod,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Lê as mensagens do server até a conexão ser encerrada. */
+    @Override
+    public void run() {
+        try {
+            String message;
+
+            while ((message = client.readServerMessage()) != null) {
+                generator.messageReceived();
+                onMessage(message);
+            }
+        } catch (IOException e) {
+            // Tratado abaixo, como qualquer outra desconexão.
+        }
+
+        if (!closed)
+            generator.connectionLost(); // O server encerrou a conexão durante o teste.
+
+        close();
+    }
+
+    /** Reage às mensagens do server que mudam o estado da partida. */
+    private void onMessage(String message) {
+        if (message.contains("como jogador.") || message.contains("Você agora é um jogador.")) {
+            player = true;
+            newRound();
+        } else if (message.contains("como espectador.") || message.contains("Você é um espectador.")) {
+            player = false;
+        } else if (message.contains(" da série (melhor de ") && player) {
+            newRound(); // Próxima rodada, com o mesmo oponente.
+        } else if (message.endsWith(" escolheu sua jogada.") && player) {
+            opponentMoved = true;
+        } else if (message.contains(" venceu! (") || message.contains("Empate") || message.contains("W.O.")) {
+            long sentAt = playSentAt;
+
+            if (sentAt != 0)
+                generator.roundFinished(System.nanoTime() - sentAt);
+
+            playSentAt = 0;
+        }
+    }
+
+    private void newRound() {
+        moved = false;
+        opponentMoved = false;
+        scheduleMove();
+    }
+
+    /**
+     * Agenda a próxima jogada após o tempo de reflexão (sorteado entre metade e
+     * uma vez e meia o valor configurado), respeitando a taxa máxima de jogadas.
+     */
+    private void scheduleMove() {
+        long think = generator.getThinkMillis();
+        long delay = (think > 0) ? ThreadLocalRandom.current().nextLong(think / 2, think + think / 2 + 1) : 0;
+        long sinceLastMove = (System.nanoTime() - lastMoveAt) / 1_000_000L;
+
+        delay = Math.max(delay, generator.getMovePeriodMillis() - sinceLastMove);
+        generator.getScheduler().schedule(this::sendMove, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void sendMove() {
+        if (!player || moved || closed)
+            return;
+
+        Move[] moves = Move.values();
+        moved = true;
+        lastMoveAt = System.nanoTime();
+
+        // Se o oponente já jogou, esta jogada completa a rodada: mede o tempo até o resultado.
+        playSentAt = opponentMoved ? lastMoveAt : 0;
+        send(moves[ThreadLocalRandom.current().nextInt(moves.length)].getCommand());
+    }
+
+    private void sendChat() {
+        send("mensagem de carga " + ThreadLocalRandom.current().nextInt(1000));
+    }
+
+    private void send(String message) {
+        if (closed)
+            return;
+
+        try {
+            client.send(message);
+            generator.messageSent();
+        } catch (IOException e) {
+            close(); // A leitura percebe a desconexão e a contabiliza.
+        }
+    }
+
+    /** Encerra a conexão e os envios agendados. */
+    public void close() {
+        if (closed)
+            return;
+
+        closed = true;
+
+        if (chat != null)
+            chat.cancel(false);
+
+        // Sai com /sair: sem ele, o server manteria a sessão à espera da reconexão.
+        try {
+            client.send(Command.SAIR.getText());
+        } catch (IOException e) {
+            // A conexão já havia caído.
+        }
+
+        client.close();
+    }
+}
@@ -0,0 +1,226 @@
+package protocol;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Protocolo binário entre client e server, alternativo ao protocolo de linhas
+ * de texto.
+ *
+ * O client binário se identifica enviando {@link #MAGIC} e {@link #VERSION}
+ * como primeiros bytes da conexão (um client de texto sempre começa pelo
+ * username, que nunca contém o byte zero). A partir daí, tudo trafega em
+ * frames:
+ *
+ * <pre>
+ * [tamanho: u16 big-endian][opcode: u8][payload: tamanho - 1 bytes]
+ * </pre>
+ *
+ * O primeiro frame é sempre {@link #HELLO} com o username; depois disso a
+ * identidade fica associada à conexão e não é reenviada. Jogadas e comandos
+ * conhecidos ocupam um único byte de payload.
+ */
+public final class BinaryProtocol {
+
+    /** Primeiro byte enviado por um client binário. */
+    public static final int MAGIC = 0x00;
+
+    /** Versão do protocolo, enviada logo após o {@link #MAGIC}. */
+    public static final int VERSION = 1;
+
+    /** Tamanho máximo do corpo de um frame (opcode + payload). */
+    public static final int MAX_FRAME_LENGTH = 0xFFFF;
+
+    /** Tamanho máximo do username, em bytes UTF-8. Usernames maiores encerram a conexão. */
+    public static final int MAX_USERNAME_LENGTH = 255;
+
+    /**
+     * Tamanho máximo de uma mensagem de chat recebida, em bytes. Com o opcode e o
+     * prefixo {@code "username: "} do maior username, a mensagem transmitida
+     * ainda cabe em um frame {@link #TEXT}.
+     */
+    public static final int MAX_CHAT_LENGTH = MAX_FRAME_LENGTH - 1 - MAX_USERNAME_LENGTH - 2;
+
+    // Opcodes enviados pelo client:
+
+    /** Handshake. Payload: username em UTF-8. */
+    public static final byte HELLO = 0x01;
+
+    /** Mensagem de chat. Payload: texto em UTF-8. */
+    public static final byte CHAT = 0x02;
+
+    /** Jogada. Payload: código da jogada (ver {@link Move#fromCode(int)}). */
+    public static final byte MOVE = 0x03;
+
+    /** Comando conhecido. Payload: código do comando (ver {@link Command#fromCode(int)}). */
+    public static final byte COMMAND = 0x04;
+
+    /** Comando sem código próprio. Payload: o comando em UTF-8 (ex.: "/fila"). */
+    public static final byte RAW_COMMAND = 0x05;
+
+    /**
+     * Retomada de sessão, enviada no lugar do {@link #HELLO}. Payload: mensagens
+     * já recebidas (u64 big-endian) seguidas do token em UTF-8 (ver
+     * {@link ResumeRequest}).
+     */
+    public static final byte RESUME = 0x06;
+
+    /**
+     * Entrada em uma sala específica, enviada no lugar do {@link #HELLO} por um
+     * client redirecionado. Payload: id da sala (u32 big-endian) seguido do
+     * username em UTF-8 (ver {@link JoinRequest}).
+     */
+    public static final byte JOIN = 0x07;
+
+    /** Jogada selada. Payload: compromisso (ver {@link MoveCommitment}). */
+    public static final byte SEAL = 0x08;
+
+    /** Revelação de uma jogada selada. Payload: código da jogada e nonce (ver {@link MoveCommitment}). */
+    public static final byte REVEAL = 0x09;
+
+    // Opcodes enviados pelo server:
+
+    /** Linha de texto para ser exibida. Payload: texto em UTF-8. */
+    public static final byte TEXT = 0x10;
+
+    /** Token para retomar a sessão após uma queda. Payload: token em UTF-8. */
+    public static final byte SESSION = 0x11;
+
+    /**
+     * Confirma a retomada da sessão; as mensagens perdidas vêm em seguida. Não
+     * entra na contagem de mensagens recebidas. Payload vazio.
+     */
+    public static final byte RESUMED = 0x12;
+
+    /** Resposta a um {@link Command#PING} (ver {@link Heartbeat}). Payload vazio. */
+    public static final byte PONG = 0x13;
+
+    /**
+     * A sala do client está em outro nó do cluster. Payload: porta (u16
+     * big-endian), id da sala (u32 big-endian) e host em UTF-8 (ver
+     * {@link Redirect}).
+     */
+    public static final byte REDIRECT = 0x14;
+
+    /** O server exige jogadas seladas (ver {@link MoveCommitment}). Payload vazio. */
+    public static final byte SEALED = 0x15;
+
+    /** Pedido de revelação de uma jogada selada. Payload: compromisso (ver {@link MoveCommitment}). */
+    public static final byte REVEAL_REQUEST = 0x16;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Monta um frame completo (cabeçalho, opcode e payload).
+     *
+     * @param opcode  Opcode do frame.
+     * @param payload Payload do frame.
+     * @return Bytes prontos para serem escritos no socket.
+     */
+    public static byte[] frame(byte opcode, byte[] payload) {
+        int length = payload.length + 1;
+
+        if (length > MAX_FRAME_LENGTH)
+            throw new IllegalArgumentException("Frame grande demais: " + length + " bytes.");
+
+        byte[] frame = new byte[length + 2];
+        frame[0] = (byte) (length >>> 8);
+        frame[1] = (byte) length;
+        frame[2] = opcode;
+        System.arraycopy(payload, 0, frame, 3, payload.length);
+
+        return frame;
+    }
+
+    /**
+     * Monta um frame {@link #TEXT} com a linha informada.
+     *
+     * @param line Linha de texto, sem terminador.
+     * @return Frame codificado.
+     */
+    public static byte[] textFrame(String line) {
+        return frame(TEXT, line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Converte uma linha digitada pelo usuário no frame correspondente: jogadas e
+     * comandos conhecidos viram códigos de um byte, outros comandos seguem como
+     * texto e o restante é chat.
+     *
+     * @param line Linha digitada pelo usuário.
+     * @return Frame codificado.
+     */
+    public static byte[] clientFrame(String line) {
+        String trimmed = line.trim();
+
+        if (!trimmed.startsWith("/"))
+            return frame(CHAT, line.getBytes(StandardCharsets.UTF_8));
+
+        Move move = Move.fromText(trimmed);
+
+        if (move != null)
+            return frame(MOVE, new byte[] { (byte) move.ordinal() });
+
+        byte[] sealed = MoveCommitment.toFrame(trimmed); // Jogada selada ou revelação.
+
+        if (sealed != null)
+            return sealed;
+
+        Command command = Command.fromText(trimmed);
+
+        if (command != null)
+            return frame(COMMAND, new byte[] { (byte) command.ordinal() });
+
+        return frame(RAW_COMMAND, trimmed.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Lê o próximo frame do stream.
+     *
+     * @param in Stream de entrada da conexão.
+     * @return Corpo do frame ({@code [opcode, payload...]}), ou {@code null} se
+     *         a conexão foi encerrada.
+     * @throws ProtocolException Se o frame estiver malformado.
+     * @throws IOException       Se a leitura falhar.
+     */
+    public static byte[] readFrame(DataInputStream in) throws IOException {
+        int length;
+
+        try {
+            length = in.readUnsignedShort();
+        } catch (EOFException e) {
+            return null; // Conexão encerrada entre dois frames.
+        }
+
+        if (length == 0)
+            throw new ProtocolException("Frame vazio.");
+
+        byte[] body = new byte[length];
+        in.readFully(body);
+
+        return body;
+    }
+
+    /**
+     * @param username Username recebido no handshake.
+     * @return {@code true} se o username cabe em {@link #MAX_USERNAME_LENGTH}.
+     */
+    public static boolean fitsUsername(String username) {
+        return username.getBytes(StandardCharsets.UTF_8).length <= MAX_USERNAME_LENGTH;
+    }
+
+    /**
+     * Lê o texto UTF-8 do payload de um frame.
+     *
+     * @param body   Corpo do frame, começando pelo opcode.
+     * @param length Tamanho do corpo.
+     * @return Payload como texto.
+     */
+    public static String payloadText(byte[] body, int length) {
+        return new String(body, 1, length - 1, StandardCharsets.UTF_8);
+    }
+}
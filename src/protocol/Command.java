@@ -0,0 +1,99 @@
+package protocol;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Comandos que não são jogadas. O ordinal de cada comando é o seu código no
+ * protocolo binário (ver {@link BinaryProtocol#COMMAND}).
+ */
+public enum Command {
+
+    JOGAR("/jogar"),
+    SAIR("/sair"),
+    COMANDOS("/comandos"),
+    FILA("/fila"),
+    RANKING("/ranking"),
+    HISTORICO("/historico"),
+
+    /** Heartbeat do client (ver {@link Heartbeat}). Respondido sem ser exibido. */
+    PING("/ping"),
+
+    /** Inscrição no torneio do servidor, ou a situação do torneio em andamento. */
+    TORNEIO("/torneio");
+
+    /** Cópia de {@link #values()}, para não alocar um array a cada consulta. */
+    private static final Command[] VALUES = values();
+
+    /** Comando de texto (ex.: "/jogar"). */
+    private final String text;
+
+    /** Bytes ASCII de {@link #text}, usados na leitura sem alocação. */
+    private final byte[] bytes;
+
+    Command(String text) {
+        this.text = text;
+        this.bytes = ascii(text);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @param code Código do comando no protocolo binário.
+     * @return Comando correspondente, ou {@code null} se o código for inválido.
+     */
+    public static Command fromCode(int code) {
+        return (code >= 0 && code < VALUES.length) ? VALUES[code] : null;
+    }
+
+    /**
+     * Procura o comando escrito em {@code buffer[from, to)}, sem criar strings.
+     * Argumentos após o comando (separados por espaço) são ignorados.
+     *
+     * @return Comando encontrado, ou {@code null}.
+     */
+    public static Command parse(byte[] buffer, int from, int to) {
+        for (Command command : VALUES) {
+            if (matches(command.bytes, buffer, from, to))
+                return command;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param text Comando digitado (ex.: "/jogar").
+     * @return Comando correspondente, ou {@code null}.
+     */
+    public static Command fromText(String text) {
+        for (Command command : VALUES) {
+            if (command.text.equals(text))
+                return command;
+        }
+
+        return null;
+    }
+
+    /**
+     * Verifica se {@code buffer[from, to)} começa com {@code expected} seguido do
+     * fim do trecho ou de um espaço.
+     */
+    static boolean matches(byte[] expected, byte[] buffer, int from, int to) {
+        int end = from + expected.length;
+
+        if (end > to)
+            return false;
+
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer[from + i] != expected[i])
+                return false;
+        }
+
+        return end == to || buffer[end] == ' ';
+    }
+
+    static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,30 @@
+package protocol;
+
+/**
+ * Heartbeats entre client e server, que detectam conexões meio abertas (um
+ * lado sumiu sem fechar o TCP, e a leitura do outro nunca termina).
+ *
+ * O client envia {@link Command#PING} sempre que passa
+ * {@link #INTERVAL_MILLIS} sem enviar nada, e o server responde com
+ * {@link #PONG_LINE} no protocolo de texto ou com um frame
+ * {@link BinaryProtocol#PONG} no binário. Cada lado dá a conexão como perdida
+ * se passar {@link #TIMEOUT_MILLIS} sem receber nada: o server a encerra, e o
+ * client tenta retomar a sessão.
+ *
+ * A resposta conta como uma mensagem recebida (ver {@link ResumeRequest}), mas
+ * não é exibida ao usuário.
+ */
+public final class Heartbeat {
+
+    /** Tempo máximo sem enviar nada antes de um ping. */
+    public static final long INTERVAL_MILLIS = 10_000;
+
+    /** Tempo sem receber nada após o qual a conexão é dada como perdida. */
+    public static final long TIMEOUT_MILLIS = 3 * INTERVAL_MILLIS;
+
+    /** Resposta do server de texto a um ping. */
+    public static final String PONG_LINE = "💓";
+
+    private Heartbeat() {
+    }
+}
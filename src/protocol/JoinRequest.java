@@ -0,0 +1,86 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pedido de entrada em uma sala específica, enviado por um client redirecionado
+ * (ver {@link Redirect}) como primeira mensagem da conexão com o novo nó, no
+ * lugar do username.
+ *
+ * <pre>
+ * texto:   /entrar &lt;sala&gt; &lt;username&gt;
+ * binário: [JOIN][sala: u32][username: UTF-8]
+ * </pre>
+ */
+public final class JoinRequest {
+
+    /** Comando enviado pelo client de texto no lugar do username. */
+    public static final String COMMAND = "/entrar";
+
+    private final int room;
+
+    private final String username;
+
+    public JoinRequest(int room, String username) {
+        this.room = room;
+        this.username = username;
+    }
+
+    public int getRoom() {
+        return room;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /** @return Linha do pedido no protocolo de texto, sem o terminador. */
+    public String toLine() {
+        return COMMAND + " " + room + " " + username;
+    }
+
+    /** @return Frame {@link BinaryProtocol#JOIN} do pedido. */
+    public byte[] toFrame() {
+        byte[] usernameBytes = username.getBytes(StandardCharsets.UTF_8);
+
+        return BinaryProtocol.frame(BinaryProtocol.JOIN,
+                ByteBuffer.allocate(Integer.BYTES + usernameBytes.length).putInt(room).put(usernameBytes).array());
+    }
+
+    /**
+     * @param line Primeira linha recebida de um client de texto.
+     * @return Pedido de entrada, ou {@code null} se a linha for um username.
+     */
+    public static JoinRequest fromLine(String line) {
+        if (!line.startsWith(COMMAND + " "))
+            return null;
+
+        String[] parts = line.split(" ", 3); // O username pode conter espaços.
+
+        if (parts.length != 3 || parts[2].isEmpty())
+            return null;
+
+        try {
+            return new JoinRequest(Integer.parseInt(parts[1]), parts[2]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param body   Corpo de um frame {@link BinaryProtocol#JOIN}, começando pelo
+     *               opcode.
+     * @param length Tamanho do corpo.
+     * @return Pedido de entrada, ou {@code null} se o payload for inválido.
+     */
+    public static JoinRequest fromFrame(byte[] body, int length) {
+        if (length <= 1 + Integer.BYTES)
+            return null;
+
+        int room = ByteBuffer.wrap(body, 1, Integer.BYTES).getInt();
+        String username = new String(body, 1 + Integer.BYTES, length - 1 - Integer.BYTES, StandardCharsets.UTF_8);
+
+        return new JoinRequest(room, username);
+    }
+}
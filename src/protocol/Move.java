@@ -0,0 +1,117 @@
+package protocol;
+
+/**
+ * Jogadas possíveis. O ordinal de cada jogada é o seu código no protocolo
+ * binário (ver {@link BinaryProtocol#MOVE}).
+ *
+ * As jogadas estão em ordem cíclica: cada uma vence as {@code (n - 1) / 2}
+ * anteriores e perde para as {@code (n - 1) / 2} seguintes. O resultado de
+ * todos os confrontos é pré-calculado em uma tabela, então adicionar jogadas
+ * (ex.: pedra, Spock, papel, lagarto e tesoura) exige apenas inseri-las na
+ * ordem correta, mantendo um número ímpar de jogadas.
+ */
+public enum Move {
+
+    PEDRA("pedra"),
+    PAPEL("papel"),
+    TESOURA("tesoura");
+
+    /** Cópia de {@link #values()}, para não alocar um array a cada consulta. */
+    private static final Move[] VALUES = values();
+
+    /**
+     * Resultado de cada confronto: {@code OUTCOMES[a][b]} é 1 se {@code a} vence
+     * {@code b}, -1 se perde e 0 em caso de empate.
+     */
+    private static final int[][] OUTCOMES = new int[VALUES.length][VALUES.length];
+
+    static {
+        int n = VALUES.length;
+
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                int distance = (a - b + n) % n;
+                OUTCOMES[a][b] = (distance == 0) ? 0 : (distance <= n / 2) ? 1 : -1;
+            }
+        }
+    }
+
+    /** Nome exibido aos usuários. */
+    private final String label;
+
+    /** Comando de texto correspondente (ex.: "/pedra"). */
+    private final String command;
+
+    /** Bytes ASCII de {@link #command}, usados na leitura sem alocação. */
+    private final byte[] commandBytes;
+
+    Move(String label) {
+        this.label = label;
+        this.command = "/" + label;
+        this.commandBytes = Command.ascii(command);
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * @param other Jogada do adversário.
+     * @return 1 se esta jogada vence, -1 se perde e 0 em caso de empate.
+     */
+    public int against(Move other) {
+        return OUTCOMES[ordinal()][other.ordinal()];
+    }
+
+    /**
+     * @return Jogada que vence esta. Com mais de três jogadas, a primeira
+     *         seguinte na ordem cíclica.
+     */
+    public Move counter() {
+        return VALUES[(ordinal() + 1) % VALUES.length];
+    }
+
+    /** @return Quantidade de jogadas. */
+    public static int count() {
+        return VALUES.length;
+    }
+
+    /**
+     * @param code Código da jogada no protocolo binário.
+     * @return Jogada correspondente, ou {@code null} se o código for inválido.
+     */
+    public static Move fromCode(int code) {
+        return (code >= 0 && code < VALUES.length) ? VALUES[code] : null;
+    }
+
+    /**
+     * Procura a jogada escrita em {@code buffer[from, to)}, sem criar strings.
+     *
+     * @return Jogada encontrada, ou {@code null}.
+     */
+    public static Move parse(byte[] buffer, int from, int to) {
+        for (Move move : VALUES) {
+            if (Command.matches(move.commandBytes, buffer, from, to))
+                return move;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param text Comando digitado (ex.: "/pedra").
+     * @return Jogada correspondente, ou {@code null}.
+     */
+    public static Move fromText(String text) {
+        for (Move move : VALUES) {
+            if (move.command.equals(text))
+                return move;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,328 @@
+package protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Jogadas seladas (commit-reveal). Com elas ativadas no server, o client não
+ * envia a jogada: envia um compromisso, o SHA-256 de um nonce aleatório, da
+ * jogada e do seu username. Só depois que os dois jogadores selaram, o server
+ * pede a revelação, e o client envia a jogada e o nonce; o server confere que
+ * eles produzem o mesmo compromisso.
+ *
+ * Assim, nenhuma jogada existe em claro enquanto o adversário ainda pode
+ * escolher a sua: nem no server, nem no caminho até ele, nem para quem
+ * repassasse o que vê na sala. O username entra no hash para que um jogador
+ * não possa copiar o compromisso do outro e revelar a mesma jogada depois
+ * dele.
+ *
+ * <pre>
+ * compromisso: SHA-256(nonce [16 bytes] || código da jogada [1 byte] || username [UTF-8])
+ *
+ * client -&gt; server
+ *   texto:   /selar &lt;compromisso em hex&gt;
+ *            /revelar &lt;jogada&gt; &lt;nonce em hex&gt;
+ *   binário: [SEAL][compromisso: 32 bytes]
+ *            [REVEAL][código da jogada: u8][nonce: 16 bytes]
+ *
+ * server -&gt; client
+ *   texto:   🔒: jogadas seladas         (ao entrar, se o server exige)
+ *            🔓: revelar &lt;compromisso em hex&gt;
+ *   binário: [SEALED]
+ *            [REVEAL_REQUEST][compromisso: 32 bytes]
+ * </pre>
+ *
+ * A verificação não aloca: o {@link MessageDigest} e os buffers de cada thread
+ * são reaproveitados (ver {@link #verify(byte[], Move, byte[], int, byte[])}).
+ */
+public final class MoveCommitment {
+
+    /** Tamanho do compromisso (SHA-256). */
+    public static final int DIGEST_LENGTH = 32;
+
+    /** Tamanho do nonce. */
+    public static final int NONCE_LENGTH = 16;
+
+    /** Comando com que o client sela a jogada. */
+    public static final String SEAL_COMMAND = "/selar";
+
+    /** Comando com que o client revela a jogada. */
+    public static final String REVEAL_COMMAND = "/revelar";
+
+    /** Linha com que o server de texto informa que exige jogadas seladas. */
+    public static final String SEALED_LINE = "🔒: jogadas seladas";
+
+    /** Prefixo da linha com que o server de texto pede a revelação de um compromisso. */
+    public static final String REVEAL_PREFIX = "🔓: revelar ";
+
+    private static final byte[] SEAL_BYTES = Command.ascii(SEAL_COMMAND);
+
+    private static final byte[] REVEAL_BYTES = Command.ascii(REVEAL_COMMAND);
+
+    /** Nome de cada jogada em ASCII, pelo código, usado na leitura sem alocação. */
+    private static final byte[][] LABELS = new byte[Move.count()][];
+
+    static {
+        for (int i = 0; i < LABELS.length; i++)
+            LABELS[i] = Command.ascii(Move.fromCode(i).getLabel());
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /** Digest e buffers de cada thread: verificar não aloca. */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private MoveCommitment() {
+    }
+
+    /** Estado reaproveitado pelas verificações de uma thread. */
+    private static final class Scratch {
+
+        private final MessageDigest digest = sha256();
+
+        private final byte[] hash = new byte[DIGEST_LENGTH];
+
+        private final byte[] nonce = new byte[NONCE_LENGTH];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível.", e); // Obrigatório em toda JVM.
+        }
+    }
+
+    /** @return Nonce aleatório para selar uma jogada. */
+    public static byte[] newNonce() {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        return nonce;
+    }
+
+    /**
+     * Calcula o compromisso de uma jogada.
+     *
+     * @param move     Jogada.
+     * @param nonce    Nonce de {@link #NONCE_LENGTH} bytes.
+     * @param identity Username do jogador, em UTF-8.
+     * @return Compromisso de {@link #DIGEST_LENGTH} bytes.
+     */
+    public static byte[] seal(Move move, byte[] nonce, byte[] identity) {
+        Scratch scratch = SCRATCH.get();
+        byte[] commitment = new byte[DIGEST_LENGTH];
+
+        System.arraycopy(hash(scratch, move, nonce, 0, identity), 0, commitment, 0, DIGEST_LENGTH);
+        return commitment;
+    }
+
+    /**
+     * Confere uma revelação com o compromisso, sem alocar.
+     *
+     * @param commitment Compromisso recebido ao selar.
+     * @param move       Jogada revelada.
+     * @param nonce      Buffer com o nonce revelado.
+     * @param offset     Posição do nonce no buffer ({@link #NONCE_LENGTH} bytes).
+     * @param identity   Username do jogador, em UTF-8.
+     * @return {@code true} se a jogada e o nonce produzem o compromisso.
+     */
+    public static boolean verify(byte[] commitment, Move move, byte[] nonce, int offset, byte[] identity) {
+        if (nonce.length - offset < NONCE_LENGTH)
+            return false;
+
+        return MessageDigest.isEqual(commitment, hash(SCRATCH.get(), move, nonce, offset, identity));
+    }
+
+    /**
+     * Confere uma revelação no formato de texto ({@code <jogada> <nonce em hex>},
+     * os argumentos de {@link #REVEAL_COMMAND}) com o compromisso, sem alocar.
+     *
+     * @param commitment Compromisso recebido ao selar.
+     * @param move       Jogada lida dos argumentos (ver {@link #parseRevealMove}).
+     * @param buffer     Buffer com o nonce em hex em {@code [from, to)}.
+     * @param identity   Username do jogador, em UTF-8.
+     * @return {@code true} se a jogada e o nonce produzem o compromisso.
+     */
+    public static boolean verifyHex(byte[] commitment, Move move, byte[] buffer, int from, int to, byte[] identity) {
+        Scratch scratch = SCRATCH.get();
+
+        if (!decodeHex(buffer, from, to, scratch.nonce, 0))
+            return false;
+
+        return MessageDigest.isEqual(commitment, hash(scratch, move, scratch.nonce, 0, identity));
+    }
+
+    /** Calcula o hash no buffer da thread. */
+    private static byte[] hash(Scratch scratch, Move move, byte[] nonce, int offset, byte[] identity) {
+        MessageDigest digest = scratch.digest;
+
+        digest.update(nonce, offset, NONCE_LENGTH);
+        digest.update((byte) move.ordinal());
+        digest.update(identity);
+
+        try {
+            digest.digest(scratch.hash, 0, DIGEST_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e); // O buffer tem sempre o tamanho do SHA-256.
+        }
+
+        return scratch.hash;
+    }
+
+    /**
+     * @return {@code true} se {@code buffer[from, to)} é um {@link #SEAL_COMMAND}.
+     */
+    public static boolean isSeal(byte[] buffer, int from, int to) {
+        return Command.matches(SEAL_BYTES, buffer, from, to);
+    }
+
+    /**
+     * @return {@code true} se {@code buffer[from, to)} é um {@link #REVEAL_COMMAND}.
+     */
+    public static boolean isReveal(byte[] buffer, int from, int to) {
+        return Command.matches(REVEAL_BYTES, buffer, from, to);
+    }
+
+    /**
+     * Lê o compromisso de um {@link #SEAL_COMMAND} em {@code buffer[from, to)}.
+     *
+     * @return Compromisso, ou {@code null} se o argumento for inválido.
+     */
+    public static byte[] parseSeal(byte[] buffer, int from, int to) {
+        int start = from + SEAL_BYTES.length + 1;
+        byte[] commitment = new byte[DIGEST_LENGTH];
+
+        return decodeHex(buffer, start, to, commitment, 0) ? commitment : null;
+    }
+
+    /**
+     * Lê a jogada de um {@link #REVEAL_COMMAND} em {@code buffer[from, to)}, sem
+     * criar strings. O nonce começa em {@link #revealNonceStart}.
+     *
+     * @return Jogada revelada, ou {@code null} se o argumento for inválido.
+     */
+    public static Move parseRevealMove(byte[] buffer, int from, int to) {
+        int start = from + REVEAL_BYTES.length + 1;
+
+        for (int i = 0; i < LABELS.length; i++) {
+            byte[] label = LABELS[i];
+            int end = start + label.length;
+
+            if (end < to && buffer[end] == ' ' && regionMatches(label, buffer, start))
+                return Move.fromCode(i);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param move Jogada lida por {@link #parseRevealMove}.
+     * @return Posição do nonce em hex no buffer de um {@link #REVEAL_COMMAND}.
+     */
+    public static int revealNonceStart(int from, Move move) {
+        return from + REVEAL_BYTES.length + 1 + LABELS[move.ordinal()].length + 1;
+    }
+
+    private static boolean regionMatches(byte[] expected, byte[] buffer, int from) {
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer[from + i] != expected[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    /** @return Linha de {@link #SEAL_COMMAND} com o compromisso. */
+    public static String sealCommand(byte[] commitment) {
+        return SEAL_COMMAND + " " + hex(commitment);
+    }
+
+    /** @return Linha de {@link #REVEAL_COMMAND} com a jogada e o nonce. */
+    public static String revealCommand(Move move, byte[] nonce) {
+        return REVEAL_COMMAND + " " + move.getLabel() + " " + hex(nonce);
+    }
+
+    /** @return Linha com que o server de texto pede a revelação do compromisso. */
+    public static String revealRequestLine(byte[] commitment) {
+        return REVEAL_PREFIX + hex(commitment);
+    }
+
+    /**
+     * @param line Linha recebida do server.
+     * @return Compromisso em hex cuja revelação foi pedida, ou {@code null} se a
+     *         linha não for {@link #revealRequestLine(byte[])}.
+     */
+    public static String parseRevealRequest(String line) {
+        return line.startsWith(REVEAL_PREFIX) ? line.substring(REVEAL_PREFIX.length()).trim() : null;
+    }
+
+    /**
+     * Converte uma linha de {@link #SEAL_COMMAND} ou {@link #REVEAL_COMMAND} no
+     * frame binário correspondente.
+     *
+     * @param line Linha do comando.
+     * @return Frame {@link BinaryProtocol#SEAL} ou {@link BinaryProtocol#REVEAL},
+     *         ou {@code null} se a linha não for um desses comandos válido.
+     */
+    static byte[] toFrame(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+
+        if (isSeal(bytes, 0, bytes.length)) {
+            byte[] commitment = parseSeal(bytes, 0, bytes.length);
+            return (commitment != null) ? BinaryProtocol.frame(BinaryProtocol.SEAL, commitment) : null;
+        }
+
+        Move move = isReveal(bytes, 0, bytes.length) ? parseRevealMove(bytes, 0, bytes.length) : null;
+
+        if (move == null)
+            return null;
+
+        byte[] payload = new byte[1 + NONCE_LENGTH];
+        payload[0] = (byte) move.ordinal();
+
+        if (!decodeHex(bytes, revealNonceStart(0, move), bytes.length, payload, 1))
+            return null;
+
+        return BinaryProtocol.frame(BinaryProtocol.REVEAL, payload);
+    }
+
+    /** @return Bytes em hex minúsculo. */
+    public static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >>> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Decodifica {@code buffer[from, to)}, em hex, para {@code out}, a partir de
+     * {@code offset}, preenchendo exatamente o restante de {@code out}.
+     *
+     * @return {@code false} se o trecho não tiver o tamanho certo ou não for hex.
+     */
+    private static boolean decodeHex(byte[] buffer, int from, int to, byte[] out, int offset) {
+        if (to - from != (out.length - offset) * 2)
+            return false;
+
+        for (int i = offset; i < out.length; i++, from += 2) {
+            int high = Character.digit(buffer[from], 16);
+            int low = Character.digit(buffer[from + 1], 16);
+
+            if (high < 0 || low < 0)
+                return false;
+
+            out[i] = (byte) ((high << 4) | low);
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,100 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Redirecionamento de um client para o nó do cluster onde está a sua sala,
+ * enviado pelo server logo após o handshake, no lugar da entrada na sala. O
+ * server encerra a conexão em seguida; o client se conecta ao nó indicado e
+ * pede a sala com um {@link JoinRequest}.
+ *
+ * Não entra na contagem de mensagens recebidas: o client ainda não tem sessão.
+ *
+ * <pre>
+ * texto:   ↪️: nó &lt;host&gt; &lt;porta&gt; sala &lt;sala&gt;
+ * binário: [REDIRECT][porta: u16][sala: u32][host: UTF-8]
+ * </pre>
+ */
+public final class Redirect {
+
+    /** Prefixo da linha de redirecionamento no protocolo de texto. */
+    public static final String LINE_PREFIX = "↪️: nó ";
+
+    private final String host;
+
+    private final int port;
+
+    /** Sala que o client deve pedir ao nó de destino. */
+    private final int room;
+
+    public Redirect(String host, int port, int room) {
+        this.host = host;
+        this.port = port;
+        this.room = room;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getRoom() {
+        return room;
+    }
+
+    /** @return Linha do redirecionamento no protocolo de texto, sem o terminador. */
+    public String toLine() {
+        return LINE_PREFIX + host + " " + port + " sala " + room;
+    }
+
+    /** @return Frame {@link BinaryProtocol#REDIRECT} do redirecionamento. */
+    public byte[] toFrame() {
+        byte[] hostBytes = host.getBytes(StandardCharsets.UTF_8);
+
+        return BinaryProtocol.frame(BinaryProtocol.REDIRECT, ByteBuffer.allocate(2 + Integer.BYTES + hostBytes.length)
+                .putShort((short) port).putInt(room).put(hostBytes).array());
+    }
+
+    /**
+     * @param line Linha recebida do server.
+     * @return Redirecionamento, ou {@code null} se a linha não for um.
+     */
+    public static Redirect fromLine(String line) {
+        if (!line.startsWith(LINE_PREFIX))
+            return null;
+
+        String[] parts = line.substring(LINE_PREFIX.length()).trim().split(" +");
+
+        if (parts.length != 4 || !parts[2].equals("sala"))
+            return null;
+
+        try {
+            return new Redirect(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[3]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param body   Corpo de um frame {@link BinaryProtocol#REDIRECT}, começando
+     *               pelo opcode.
+     * @param length Tamanho do corpo.
+     * @return Redirecionamento, ou {@code null} se o payload for inválido.
+     */
+    public static Redirect fromFrame(byte[] body, int length) {
+        if (length <= 1 + 2 + Integer.BYTES)
+            return null;
+
+        ByteBuffer buffer = ByteBuffer.wrap(body, 1, length - 1);
+        int port = buffer.getShort() & 0xFFFF;
+        int room = buffer.getInt();
+        String host = new String(body, 1 + 2 + Integer.BYTES, length - 1 - 2 - Integer.BYTES,
+                StandardCharsets.UTF_8);
+
+        return new Redirect(host, port, room);
+    }
+}
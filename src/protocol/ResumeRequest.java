@@ -0,0 +1,123 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pedido de retomada de uma sessão, enviado pelo client como primeira mensagem
+ * de uma nova conexão, no lugar do username.
+ *
+ * Ao entrar, o client recebe um token ({@link #tokenLine(String)} no protocolo
+ * de texto, frame {@link BinaryProtocol#SESSION} no binário). Se a conexão cair,
+ * ele se reconecta e envia o token junto com a quantidade de mensagens que já
+ * recebeu; o server reenvia as que se perderam no caminho.
+ *
+ * As mensagens são contadas na unidade que o client consegue observar: linhas
+ * no protocolo de texto e frames no binário.
+ *
+ * <pre>
+ * texto:   /retomar &lt;token&gt; &lt;recebidas&gt;
+ * binário: [RESUME][recebidas: u64][token: UTF-8]
+ * </pre>
+ */
+public final class ResumeRequest {
+
+    /** Comando enviado pelo client de texto no lugar do username. */
+    public static final String COMMAND = "/retomar";
+
+    /** Prefixo da linha em que o server de texto informa o token da sessão. */
+    public static final String TOKEN_PREFIX = "🔑: sessão ";
+
+    /**
+     * Linha que confirma a retomada no protocolo de texto. Não entra na contagem
+     * de mensagens recebidas.
+     */
+    public static final String RESUMED_LINE = "🔑: sessão retomada";
+
+    private final String token;
+
+    /** Mensagens que o client já havia recebido antes da queda. */
+    private final long received;
+
+    public ResumeRequest(String token, long received) {
+        this.token = token;
+        this.received = received;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    /** @return Linha do pedido no protocolo de texto, sem o terminador. */
+    public String toLine() {
+        return COMMAND + " " + token + " " + received;
+    }
+
+    /** @return Frame {@link BinaryProtocol#RESUME} do pedido. */
+    public byte[] toFrame() {
+        byte[] tokenBytes = token.getBytes(StandardCharsets.UTF_8);
+
+        return BinaryProtocol.frame(BinaryProtocol.RESUME,
+                ByteBuffer.allocate(Long.BYTES + tokenBytes.length).putLong(received).put(tokenBytes).array());
+    }
+
+    /**
+     * @param line Primeira linha recebida de um client de texto.
+     * @return Pedido de retomada, ou {@code null} se a linha for um username.
+     */
+    public static ResumeRequest fromLine(String line) {
+        if (!line.startsWith(COMMAND + " "))
+            return null;
+
+        String[] parts = line.trim().split(" +");
+
+        if (parts.length != 3)
+            return null;
+
+        try {
+            return new ResumeRequest(parts[1], Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param body   Corpo de um frame {@link BinaryProtocol#RESUME}, começando
+     *               pelo opcode.
+     * @param length Tamanho do corpo.
+     * @return Pedido de retomada, ou {@code null} se o payload for inválido.
+     */
+    public static ResumeRequest fromFrame(byte[] body, int length) {
+        if (length <= 1 + Long.BYTES)
+            return null;
+
+        long received = ByteBuffer.wrap(body, 1, Long.BYTES).getLong();
+        String token = new String(body, 1 + Long.BYTES, length - 1 - Long.BYTES, StandardCharsets.UTF_8);
+
+        return new ResumeRequest(token, received);
+    }
+
+    /**
+     * @param token Token da sessão.
+     * @return Linha que informa o token ao client de texto.
+     */
+    public static String tokenLine(String token) {
+        return TOKEN_PREFIX + token;
+    }
+
+    /**
+     * @param line Linha recebida do server.
+     * @return Token informado na linha, ou {@code null} se ela não for
+     *         {@link #tokenLine(String)}.
+     */
+    public static String parseTokenLine(String line) {
+        if (!line.startsWith(TOKEN_PREFIX) || line.equals(RESUMED_LINE))
+            return null;
+
+        return line.substring(TOKEN_PREFIX.length()).trim();
+    }
+}
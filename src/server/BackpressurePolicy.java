@@ -0,0 +1,31 @@
+package server;
+
+/**
+ * O que fazer quando a fila de saída de um client lento está cheia.
+ */
+public enum BackpressurePolicy {
+
+    /** Descarta a mensagem mais antiga da fila para abrir espaço. */
+    DROP_OLDEST,
+
+    /** Desconecta o client que não está dando conta das mensagens. */
+    DISCONNECT;
+
+    /**
+     * Retorna a política correspondente ao nome informado na linha de comando.
+     * 
+     * @param name {@code descartar} ou {@code desconectar}.
+     * @return Política de backpressure.
+     * @throws IllegalArgumentException Se o nome for desconhecido.
+     */
+    public static BackpressurePolicy byName(String name) {
+        switch (name) {
+            case "descartar":
+                return DROP_OLDEST;
+            case "desconectar":
+                return DISCONNECT;
+            default:
+                throw new IllegalArgumentException("Política de backpressure desconhecida: " + name);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import protocol.Move;
+
+/**
+ * Jogador controlado pelo servidor. Ocupa as vagas e a fila das salas como
+ * qualquer usuário (é um {@link ClientHandler}), mas não tem socket, fila de
+ * saída nem thread: as mensagens enviadas a ele são descartadas, e a sala o
+ * avisa quando a rodada começa (ver {@link #turnStarted()}). A jogada sai depois
+ * de um tempo de reflexão, no {@link HashedWheelTimer} compartilhado, e é
+ * escolhida pela {@link BotStrategy} configurada. O timer apenas entrega a
+ * jogada aos {@link Workers}, que resolvem e anunciam a rodada. Assim, cada bot
+ * custa apenas memória e uma entrada no timer por rodada.
+ *
+ * Os bots servem a dois propósitos:
+ * <ul>
+ * <li>quem fica sozinho em uma mesa por {@link #lobbyDelayMillis} enfrenta um
+ * bot, que sai quando a sala tiver outro usuário para jogar (ver
+ * {@link #yieldSeats(Room)});</li>
+ * <li>carga interna para testes de capacidade: {@link #spawn(RoomRegistry, int)}
+ * coloca milhares de bots jogando entre si, sem clients nem conexões.</li>
+ * </ul>
+ */
+public class Bot extends ClientHandler {
+
+    /** Tempo padrão que um jogador sozinho aguarda até um bot entrar, em segundos. */
+    public static final int DEFAULT_LOBBY_SECONDS = 10;
+
+    /** Tempo de reflexão padrão de um bot, em milissegundos. */
+    public static final long DEFAULT_THINK_MILLIS = 800;
+
+    /** Estratégia padrão dos bots (ver {@link BotStrategy#byName(String)}). */
+    public static final String DEFAULT_STRATEGY = "markov";
+
+    /** Chance de o bot jogar ao acaso, para não ser totalmente previsível. */
+    private static final double EXPLORATION = 0.1;
+
+    /**
+     * Tempo que um jogador sozinho na sala aguarda até um bot entrar para
+     * enfrentá-lo. Zero ou negativo desativa.
+     */
+    public static long lobbyDelayMillis = DEFAULT_LOBBY_SECONDS * 1000L;
+
+    /**
+     * Tempo médio de reflexão: cada jogada sai entre a metade e uma vez e meia
+     * desse tempo após o início da rodada. Zero faz o bot jogar no próximo tick
+     * do timer.
+     */
+    public static long thinkMillis = DEFAULT_THINK_MILLIS;
+
+    /** Estratégia dos bots (ver {@link BotStrategy#byName(String)}). */
+    public static String strategyName = DEFAULT_STRATEGY;
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    /** Bots em alguma sala. */
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+    private final BotStrategy strategy;
+
+    /**
+     * Indica se o bot entrou para enfrentar quem estava sozinho (e sai quando não
+     * for mais necessário), e não como carga.
+     */
+    private final boolean filler;
+
+    /** Indica se o bot ainda está na sala. */
+    private final AtomicBoolean active = new AtomicBoolean(true);
+
+    /** Indica se há uma jogada agendada no timer. */
+    private final AtomicBoolean thinking = new AtomicBoolean();
+
+    /** Jogada agendada, ou {@code null}. */
+    private volatile HashedWheelTimer.Timeout think;
+
+    /** Adversário da última rodada. A estratégia recomeça quando ele muda. */
+    private ClientHandler opponent;
+
+    private Bot(boolean filler) {
+        super("bot-" + NEXT_ID.incrementAndGet());
+        this.strategy = BotStrategy.byName(strategyName);
+        this.filler = filler;
+    }
+
+    /** @return Bots em alguma sala. */
+    public static int activeCount() {
+        return ACTIVE.get();
+    }
+
+    /**
+     * Coloca bots no servidor, aos pares, cada par em uma sala nova: carga interna
+     * para testes de capacidade. Os bots jogam entre si até o servidor encerrar.
+     *
+     * @param rooms Salas do servidor.
+     * @param count Quantidade de bots.
+     */
+    public static void spawn(RoomRegistry rooms, int count) {
+        for (int i = 0; i < count; i += Room.MAX_PLAYERS) {
+            Room room = rooms.openNext();
+
+            for (int j = i; j < Math.min(count, i + Room.MAX_PLAYERS); j++)
+                new Bot(false).join(room);
+        }
+
+        EventLog.info("bots_started", "bots", count, "strategy", strategyName, "think_ms", thinkMillis);
+    }
+
+    /**
+     * Prazo de {@link #lobbyDelayMillis} vencido em uma sala com um jogador
+     * sozinho em uma mesa (ver {@link Room#lonePlayer()}). Se ele é um usuário,
+     * um bot entra para enfrentá-lo, a não ser que outro bot já complete uma
+     * mesa da sala: ao fim daquela série, quem está sozinho enfrenta o usuário
+     * que o bot deixa. Se é um bot que completava uma partida, ele sai, pois
+     * não há mais ninguém para enfrentar. Executado nos {@link Workers}, a
+     * partir do timer.
+     *
+     * @param room Sala do prazo.
+     */
+    static void lobbyExpired(Room room) {
+        ClientHandler alone = room.lonePlayer();
+
+        if (alone == null || Room.closing)
+            return; // Alguém chegou (ou saiu) a tempo.
+
+        if (alone instanceof Bot) {
+            Bot bot = (Bot) alone;
+
+            if (bot.filler)
+                bot.leave();
+
+            return;
+        }
+
+        for (ClientHandler client : room.getClients()) {
+            if (client instanceof Bot && ((Bot) client).filler)
+                return; // O adversário do bot fica livre ao fim da série (ver yieldSeats).
+        }
+
+        if (room.isFull())
+            return; // Sem lugar para o bot: a fila tem usuários com a sessão suspensa.
+
+        Bot bot = new Bot(true);
+
+        if (bot.join(room) != room) {
+            bot.leave(); // A sala lotou nesse meio-tempo.
+            return;
+        }
+
+        ClientHandler.sendServerMessage(room, "🤖 Ninguém chegou, então " + bot.getUsername() + " (estratégia "
+                + bot.strategy.getName() + ") vai enfrentar " + alone.getUsername() + ". Escolham suas jogadas ✅.");
+    }
+
+    /**
+     * Ao fim de uma série, tira da sala os bots que completavam uma partida e,
+     * na nova formação das mesas, ficaram sem um usuário para enfrentar: os
+     * usuários voltam à fila antes dos bots (ver {@link Room#fillEmptySeats()}),
+     * então um bot só continua jogando se não havia outro usuário disponível.
+     *
+     * @param room Sala em que a série terminou.
+     */
+    static void yieldSeats(Room room) {
+        List<Bot> idle = new ArrayList<>();
+
+        for (ClientHandler client : room.getClients()) {
+            if (!(client instanceof Bot) || !((Bot) client).filler)
+                continue;
+
+            ClientHandler opponent = room.getOpponent(client);
+
+            if (opponent == null || opponent instanceof Bot)
+                idle.add((Bot) client);
+        }
+
+        for (Bot bot : idle)
+            bot.leave();
+    }
+
+    /**
+     * Repassa uma rodada resolvida às estratégias dos bots que a jogaram.
+     *
+     * @param result Resultado da rodada.
+     */
+    static void observe(RoundResult result) {
+        ClientHandler player1 = result.getPlayer1();
+        ClientHandler player2 = result.getPlayer2();
+
+        if (player1 instanceof Bot)
+            ((Bot) player1).observe(player2, result.getMove1(), result.getMove2());
+
+        if (player2 instanceof Bot)
+            ((Bot) player2).observe(player1, result.getMove2(), result.getMove1());
+    }
+
+    private synchronized void observe(ClientHandler opponent, Move own, Move theirs) {
+        if (opponent != this.opponent) {
+            strategy.reset(); // O que valia contra o adversário anterior não vale contra este.
+            this.opponent = opponent;
+        }
+
+        strategy.observe(own, theirs);
+    }
+
+    /**
+     * A rodada começou com o bot em uma vaga e sem jogada: a jogada é agendada
+     * no timer. Chamado sob o monitor da sala, então apenas agenda.
+     */
+    void turnStarted() {
+        if (!active.get() || !thinking.compareAndSet(false, true))
+            return; // Já há uma jogada agendada.
+
+        long delay = (thinkMillis > 0) ? ThreadLocalRandom.current().nextLong(thinkMillis / 2, thinkMillis * 3 / 2 + 1)
+                : 0;
+        think = HashedWheelTimer.shared().schedule(() -> Workers.execute(this::makeMove), delay,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Faz a jogada agendada, se o bot ainda estiver em uma vaga e sem jogada.
+     * Executado nos {@link Workers}: a jogada pode resolver a rodada.
+     */
+    private void makeMove() {
+        thinking.set(false);
+        think = null;
+
+        Room room = getRoom();
+
+        if (!active.get() || !isPlayer() || room.getMove(this) != null)
+            return; // Saiu da sala ou da vaga, ou a rodada foi desfeita.
+
+        playerMove(choose());
+    }
+
+    private synchronized Move choose() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        if (random.nextDouble() < EXPLORATION)
+            return Move.fromCode(random.nextInt(Move.count()));
+
+        return strategy.choose(random);
+    }
+
+    /** Coloca o bot na sala. */
+    private Room join(Room target) {
+        Room room = enter(target.getId());
+        ACTIVE.incrementAndGet();
+
+        EventLog.debug("bot_join", "session", getSessionId(), "user", getUsername(), "room", room.getId(),
+                "strategy", strategy.getName(), "filler", filler);
+        return room;
+    }
+
+    /** Tira o bot da sala; a vaga que ele ocupava vai para o próximo da fila. */
+    private void leave() {
+        if (!deactivate())
+            return;
+
+        userLeft();
+        EventLog.debug("bot_leave", "session", getSessionId(), "user", getUsername(), "room", getRoom().getId());
+    }
+
+    /** @return {@code false} se o bot já tinha saído. */
+    private boolean deactivate() {
+        if (!active.compareAndSet(true, false))
+            return false;
+
+        HashedWheelTimer.Timeout pending = think;
+
+        if (pending != null)
+            pending.cancel();
+
+        ACTIVE.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * O servidor está encerrando (ou passando as sessões a outro processo): o
+     * bot para de jogar e sai como os demais.
+     */
+    @Override
+    void disconnect(DisconnectReason reason) {
+        deactivate();
+        super.disconnect(reason);
+    }
+}
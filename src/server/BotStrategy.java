@@ -0,0 +1,83 @@
+package server;
+
+import java.util.Random;
+
+import protocol.Move;
+
+/**
+ * Estratégia de um {@link Bot}: escolhe a jogada de cada rodada a partir das
+ * rodadas anteriores contra o adversário atual. Cada bot tem a sua própria
+ * instância; o estado é pequeno e de tamanho fixo, para que milhares de bots
+ * caibam em um nó.
+ */
+public interface BotStrategy {
+
+    /** @return Nome da estratégia, exibido aos usuários e no log. */
+    String getName();
+
+    /**
+     * Escolhe a jogada da rodada.
+     *
+     * @param random Gerador da thread que chama.
+     * @return Jogada escolhida.
+     */
+    Move choose(Random random);
+
+    /**
+     * Registra uma rodada resolvida.
+     *
+     * @param own      Jogada do bot, ou {@code null} se ele não jogou.
+     * @param opponent Jogada do adversário, ou {@code null} se ele não jogou
+     *                 (W.O.).
+     */
+    void observe(Move own, Move opponent);
+
+    /** Esquece as rodadas anteriores: o bot tem um novo adversário. */
+    void reset();
+
+    /**
+     * Escolhe a posição de maior peso, com empates decididos ao acaso.
+     *
+     * @param weights Peso de cada jogada, pelo código (ver {@link Move#fromCode(int)}).
+     * @param random  Gerador da thread que chama.
+     * @return Código da jogada de maior peso, ou -1 se todos os pesos forem zero.
+     */
+    static int heaviest(double[] weights, Random random) {
+        int best = -1;
+        int ties = 0;
+
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] <= 0)
+                continue;
+
+            if (best < 0 || weights[i] > weights[best]) {
+                best = i;
+                ties = 1;
+            } else if (weights[i] == weights[best] && random.nextInt(++ties) == 0) {
+                best = i; // Amostragem de reservatório entre os empatados.
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Retorna a estratégia correspondente ao nome informado na linha de comando.
+     *
+     * @param name {@code aleatoria}, {@code frequencia} ou {@code markov}.
+     * @return Nova instância da estratégia, para um bot.
+     * @throws IllegalArgumentException Se o nome for desconhecido.
+     */
+    static BotStrategy byName(String name) {
+        switch (name) {
+            case "aleatoria":
+                return new RandomBotStrategy();
+            case "frequencia":
+                return new FrequencyBotStrategy();
+            case "markov":
+                return new MarkovBotStrategy();
+            default:
+                throw new IllegalArgumentException("Estratégia de bot desconhecida: " + name);
+        }
+    }
+}
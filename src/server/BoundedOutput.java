@@ -0,0 +1,29 @@
+package server;
+
+/**
+ * Saída que guarda os bytes até o canal aceitá-los (ver {@link NioConnection}).
+ * A {@link OutboundQueue} só entrega mensagens a ela enquanto os bytes
+ * pendentes estiverem abaixo do limite; as demais esperam na fila, onde a
+ * capacidade e a {@link BackpressurePolicy} valem, e o tamanho da fila mostra o
+ * atraso real do client.
+ */
+interface BoundedOutput {
+
+    /** @return {@code true} se os bytes ainda não escritos no canal chegaram ao limite. */
+    boolean isSaturated();
+
+    /** @return Bytes entregues e ainda não escritos no canal. */
+    int pendingBytes();
+
+    /** @return Mensagens entregues e ainda não escritas por inteiro no canal. */
+    int pendingFrames();
+
+    /**
+     * Agenda a tarefa para quando os bytes pendentes ficarem abaixo do limite.
+     * Executada pelo event loop da conexão; uma nova chamada substitui a
+     * anterior.
+     *
+     * @param task Continuação da escrita da fila.
+     */
+    void whenWritable(Runnable task);
+}
@@ -0,0 +1,130 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Broker mínimo do {@link RemoteBus}, embutido em um dos nós do cluster (ver
+ * {@code --barramento-servidor} em {@link Server#main(String[])}). Cada nó
+ * mantém uma conexão com o broker, e cada linha recebida de um nó é repassada
+ * a todos, inclusive ao que a enviou; a filtragem por tópico fica com os
+ * assinantes.
+ *
+ * Duas threads por nó conectado, uma de leitura e a do seu {@link BusOutbox}:
+ * o cluster tem poucos nós, e o tráfego é de controle (membros e ocupação das
+ * salas), não de partidas. Repassar uma linha apenas a coloca nas filas, então
+ * um nó que não lê não atrasa os outros; se a fila dele encher, ele é
+ * desconectado, reconecta e recebe o estado na próxima republicação.
+ *
+ * <pre>
+ * &lt;tópico&gt; &lt;mensagem&gt;\n
+ * </pre>
+ */
+public class BusBroker implements Runnable {
+
+    /** Porta padrão do broker. */
+    public static final int DEFAULT_PORT = 7700;
+
+    private final ServerSocket serverSocket;
+
+    /** Nós conectados. */
+    private final Set<Peer> peers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param port Porta em que o broker irá escutar.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public BusBroker(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port);
+    }
+
+    /** Inicia o broker em uma thread própria. */
+    public void start() {
+        Thread thread = new Thread(this, "bus-broker");
+        thread.setDaemon(true);
+        thread.start();
+
+        EventLog.info("bus_broker_started", "port", serverSocket.getLocalPort());
+    }
+
+    @Override
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Peer peer = new Peer(serverSocket.accept());
+                peers.add(peer);
+
+                Thread thread = new Thread(peer, "bus-peer-" + peer.socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // Falha ao aceitar um nó: ele tentará de novo.
+            }
+        }
+    }
+
+    /** Repassa uma linha a todos os nós conectados. */
+    private void relay(String line) {
+        for (Peer peer : peers)
+            peer.write(line);
+    }
+
+    /** Conexão com um nó do cluster. */
+    private class Peer implements Runnable {
+
+        private final Socket socket;
+
+        private final BusOutbox outbox;
+
+        Peer(Socket socket) throws IOException {
+            this.socket = socket;
+            this.outbox = new BusOutbox(socket.getOutputStream(), "bus-peer-writer-" + socket.getPort(), this::close);
+        }
+
+        @Override
+        public void run() {
+            EventLog.debug("bus_peer_connected", "peer", socket.getRemoteSocketAddress());
+
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+
+                while ((line = reader.readLine()) != null)
+                    relay(line);
+            } catch (IOException e) {
+                // O nó caiu; tratado abaixo.
+            }
+
+            close();
+        }
+
+        void write(String line) {
+            if (outbox.offer(line) || !peers.contains(this))
+                return; // Na fila, ou o nó já foi desconectado.
+
+            EventLog.warn("bus_peer_slow", "peer", socket.getRemoteSocketAddress(), "pending", BusOutbox.CAPACITY);
+            close();
+        }
+
+        /** Fecha a conexão; a thread de leitura do nó percebe o fechamento. */
+        void close() {
+            if (!peers.remove(this))
+                return;
+
+            EventLog.debug("bus_peer_disconnected", "peer", socket.getRemoteSocketAddress());
+            outbox.close();
+
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Já estava fechado.
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package server;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fila de saída de uma conexão do barramento ({@link RemoteBus} e cada nó do
+ * {@link BusBroker}). Quem publica apenas coloca a linha na fila; uma thread
+ * própria da conexão a escreve no socket, juntando as pendentes em um único
+ * flush. Assim um nó que não lê não trava quem publica (ex.: a thread da sala
+ * em {@link Cluster#roomChanged}) nem a leitura dos demais nós no broker.
+ *
+ * A fila é limitada: quando enche, a conexão está atrasada demais e
+ * {@link #offer(String)} recusa a linha. Quem a usa decide entre descartar a
+ * mensagem e derrubar a conexão; em ambos os casos o {@link Cluster} se
+ * recupera quando o estado for republicado.
+ */
+class BusOutbox implements Runnable {
+
+    /** Linhas pendentes por conexão antes de ela ser considerada atrasada. */
+    static final int CAPACITY = 4096;
+
+    /** Linhas recusadas por filas cheias, em todas as conexões. */
+    private static final LongAdder DROPPED = new LongAdder();
+
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(CAPACITY);
+
+    private final BufferedWriter writer;
+
+    /** Executado, na thread de escrita, quando a escrita falha. */
+    private final Runnable onFailure;
+
+    private final Thread thread;
+
+    private volatile boolean closed;
+
+    /**
+     * Cria a fila e inicia sua thread de escrita.
+     *
+     * @param output    Stream de saída da conexão.
+     * @param name      Nome da thread de escrita.
+     * @param onFailure Executado quando a escrita falha; deve fechar a conexão.
+     */
+    BusOutbox(OutputStream output, String name, Runnable onFailure) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        this.onFailure = onFailure;
+
+        this.thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** @return Linhas recusadas por filas cheias desde o início do processo. */
+    static long getDroppedCount() {
+        return DROPPED.sum();
+    }
+
+    /**
+     * Coloca uma linha na fila, sem bloquear.
+     *
+     * @param line Linha sem o terminador.
+     * @return {@code false} se a fila estava cheia (a linha foi descartada) ou
+     *         já foi encerrada.
+     */
+    boolean offer(String line) {
+        if (closed)
+            return false;
+
+        if (queue.offer(line))
+            return true;
+
+        DROPPED.increment();
+        return false;
+    }
+
+    /** Para a thread de escrita e descarta as linhas pendentes. Não fecha o socket. */
+    void close() {
+        closed = true;
+        queue.clear();
+        thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                String line = queue.take();
+
+                do {
+                    writer.write(line);
+                    writer.newLine();
+                } while ((line = queue.poll()) != null);
+
+                writer.flush(); // Uma única escrita no socket para todo o lote.
+            }
+        } catch (InterruptedException e) {
+            // Encerrada por close().
+        } catch (IOException e) {
+            if (!closed)
+                onFailure.run();
+        }
+    }
+}
@@ -1,437 +1,1897 @@
 package server;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import protocol.BinaryProtocol;
+import protocol.Command;
+import protocol.Heartbeat;
+import protocol.JoinRequest;
+import protocol.Move;
+import protocol.MoveCommitment;
+import protocol.Redirect;
+import protocol.ResumeRequest;
 
 /**
  * Trata a conexão com clients. Instâncias são executadas em threads separadas.
  */
 public class ClientHandler implements Runnable {
 
-    /** Monitora e guarda os clients conectados ao servidor. */
-    public static List<ClientHandler> clients = new ArrayList<>();
+    /** Registro das salas do servidor. Cada client é colocado em uma delas. */
+    public static RoomRegistry rooms = new RoomRegistry(Room.DEFAULT_CAPACITY, new FifoPairing());
+
+    /** Histórico durável das partidas, ou {@code null} se estiver desativado. */
+    public static MatchHistory history;
+
+    /** Retomada de sessões após quedas de conexão, ou {@code null} se estiver desativada. */
+    public static SessionResumption resumption;
+
+    /** Cluster do qual este servidor é um nó, ou {@code null} se ele roda sozinho. */
+    public static Cluster cluster;
+
+    /** Torneio do servidor (ver /torneio), ou {@code null} se os torneios estão desativados. */
+    public static Tournament tournament;
+
+    /** Penalidade para quem excede o limite de mensagens da conexão (ver {@link TokenBucket}). */
+    public static FloodPolicy floodPolicy = FloodPolicy.DROP;
+
+    /** Quantidade de usuários exibidos pelo /ranking. */
+    private static final int RANKING_SIZE = 10;
+
+    /** Resposta a um ping de client de texto (ver {@link Heartbeat}), já codificada. */
+    private static final byte[] PONG_LINE = OutboundQueue.encode(Heartbeat.PONG_LINE);
+
+    /** Resposta a um ping de client binário, já codificada. */
+    private static final byte[] PONG_FRAME = BinaryProtocol.frame(BinaryProtocol.PONG, new byte[0]);
+
+    /** Aviso de que o servidor exige jogadas seladas, para client de texto, já codificado. */
+    private static final byte[] SEALED_LINE = OutboundQueue.encode(MoveCommitment.SEALED_LINE);
+
+    /** Aviso de que o servidor exige jogadas seladas, para client binário, já codificado. */
+    private static final byte[] SEALED_FRAME = BinaryProtocol.frame(BinaryProtocol.SEALED, new byte[0]);
+
+    /** Confirmação da retomada para client de texto, já codificada. */
+    private static final byte[] RESUMED_LINE = OutboundQueue.encode(ResumeRequest.RESUMED_LINE);
+
+    /** Confirmação da retomada para client binário, já codificada. */
+    private static final byte[] RESUMED_FRAME = BinaryProtocol.frame(BinaryProtocol.RESUMED, new byte[0]);
+
+    /** Gerador dos ids de sessão. */
+    private static final AtomicLong NEXT_SESSION_ID = new AtomicLong();
+
+    /** Identifica a conexão no servidor, independente do username. */
+    private final long sessionId = NEXT_SESSION_ID.incrementAndGet();
+
+    /** Sala em que o client está. Definida ao entrar no servidor. */
+    private volatile Room room;
+
+    /** Papel do client na sala. Atualizado pela própria {@link Room}. */
+    private volatile Role role = Role.SPECTATOR;
 
     /** Utilizado para estabelecer uma conexão com o server. */
     private Socket socket;
 
-    /** Utilizado para ler dados/mensagens enviadas pelo client. */
-    private BufferedReader reader;
+    /** Stream de entrada do socket. Permite espiar o primeiro byte do handshake. */
+    private BufferedInputStream input;
+
+    /** Utilizado para ler as linhas enviadas por um client de texto. */
+    private LineReader lines;
+
+    /** Utilizado para ler os frames enviados por um client binário. */
+    private DataInputStream frames;
+
+    /** Indica se o client usa o protocolo binário (ver {@link BinaryProtocol}). */
+    private boolean binary;
 
-    /** Utilizado para enviar dados/mensagens pelo server. */
-    private BufferedWriter writer;
+    /**
+     * Utilizado para enviar dados/mensagens pelo server. Recebe as mensagens já
+     * codificadas em UTF-8 (ver {@link OutboundQueue#encode(String)}).
+     */
+    private OutputStream output;
 
-    /** Número máximo de jogadores por partida. */
-    private static final int MAX_PLAYERS = 2;
+    /**
+     * Fila de saída do client. Todas as mensagens passam por ela, e apenas a
+     * tarefa de escrita da fila utiliza o {@link #output}. Substituída quando a
+     * sessão é retomada em outra conexão.
+     */
+    private volatile OutboundQueue outbound;
 
-    /** Jogada efetuada pelo usuário. */
-    private String playerChoice;
+    /**
+     * Onde a {@link #outbound} escreve: o pool de escrita do {@link Server} ou o
+     * event loop da conexão no {@link NioServer}.
+     */
+    private Executor writer = OutboundQueue.WRITERS;
 
     private String username;
 
+    /** Prefixo {@code "username: "} enviado pelo client de texto, em UTF-8. */
+    private byte[] chatPrefix;
+
+    /** Username em UTF-8, parte dos compromissos das jogadas seladas (ver {@link MoveCommitment}). */
+    private byte[] identity;
+
+    /**
+     * Rating (Elo) do usuário, utilizado pelo pareamento por faixa. Lido sem
+     * lock pelo pareamento de qualquer sala; alterado por
+     * {@link RatingPairing#updateRatings(ClientHandler, ClientHandler, boolean)}.
+     */
+    private volatile int rating = RatingPairing.INITIAL_RATING;
+
+    /**
+     * Estado da sessão. As transições (queda, retomada e encerramento) e a troca
+     * de conexão acontecem sob o {@link #sessionLock}.
+     */
+    private volatile SessionState state = SessionState.CONNECTED;
+
+    private final Object sessionLock = new Object();
+
+    /** Token para retomar a sessão, ou {@code null} se a retomada estiver desativada. */
+    private String token;
+
+    /** Mensagens entregues à conexão, para reenvio após uma queda. */
+    private ReplayBuffer replay;
+
+    /** Fim do período de tolerância da sessão suspensa. */
+    private HashedWheelTimer.Timeout expiry;
+
+    /** Motivo da queda que suspendeu a sessão. */
+    private DisconnectReason suspendReason;
+
+    /** Pedido de retomada recebido no handshake, no lugar do username. */
+    private ResumeRequest resumeRequest;
+
+    /** Sala pedida por um client redirecionado de outro nó (ver {@link JoinRequest}), ou 0. */
+    private int requestedRoom;
+
+    /**
+     * Versão do {@link SpectatorFeed} até a qual as mensagens da sala já foram
+     * entregues pela inscrição. Até a inscrição, nenhuma é entregue.
+     */
+    private volatile long feedVersion = Long.MAX_VALUE;
+
+    /** Indica se o espectador está recebendo apenas atualizações resumidas. */
+    private volatile boolean conflated;
+
+    /** Limite de mensagens (chat e comandos) da sessão, ou {@code null} se desativado. */
+    private final TokenBucket messageLimit = TokenBucket.forClient();
+
+    /** Fim (nanoTime) do silêncio imposto pela {@link FloodPolicy#MUTE}, ou 0. */
+    private volatile long mutedUntil;
+
+    /** Indica se o client já foi avisado das mensagens descartadas desde a última aceita. */
+    private volatile boolean floodWarned;
+
     public String getUsername() {
         return username;
     }
 
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    /** @return {@code true} se a conexão caiu e a sessão aguarda a reconexão. */
+    public boolean isSuspended() {
+        return state == SessionState.SUSPENDED;
+    }
+
+    void setRole(Role role) {
+        this.role = role;
+    }
+
+    /** @return Token para retomar a sessão, ou {@code null} se a retomada estiver desativada. */
+    String getToken() {
+        return token;
+    }
+
+    /** @return {@code true} se o client usa o protocolo binário. */
+    boolean isBinary() {
+        return binary;
+    }
+
+    /** @return Mensagens guardadas para reenvio, ou {@code null} se a retomada estiver desativada. */
+    ReplayBuffer getReplay() {
+        return replay;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+
+    public void setRating(int rating) {
+        this.rating = rating;
+    }
+
     // Construtor:
     public ClientHandler(Socket socket) {
         try {
             this.socket = socket;
 
-            // Convertem os streams de bytes em streams de char.
-            this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
-            this.username = reader.readLine(); // Recebe o username do client.
-            userJoined(); // Adiciona o usuário ao servidor.
+            // O leitor de linhas (ou de frames) e a fila de saída são criados após o handshake.
+            this.input = new BufferedInputStream(socket.getInputStream());
+            this.output = new BufferedOutputStream(socket.getOutputStream());
         } catch (IOException e) {
-            e.printStackTrace();
+            EventLog.error("accept_failed", e, "session", sessionId);
+        }
+    }
+
+    /**
+     * Construtor utilizado pelo {@link NioServer}. O handshake já foi feito pelo
+     * event loop, e as mensagens enviadas ao client são entregues ao canal pelo
+     * stream informado.
+     * 
+     * @param username Nome de usuário recebido no handshake.
+     * @param output   Stream de saída da conexão não bloqueante.
+     * @param binary   {@code true} se o client usa o protocolo binário.
+     */
+    public ClientHandler(String username, OutputStream output, boolean binary) {
+        this(username, 0, output, OutboundQueue.WRITERS, binary);
+    }
+
+    /**
+     * Construtor utilizado pelo {@link NioServer} para um client redirecionado
+     * por outro nó do {@link Cluster}. Se a sala estiver em outro nó, o client é
+     * redirecionado e o handler fica sem sala (ver {@link #getRoom()}).
+     * 
+     * @param username      Nome de usuário recebido no handshake.
+     * @param requestedRoom Sala pedida pelo client (ver {@link JoinRequest}), ou 0.
+     * @param output        Stream de saída da conexão não bloqueante.
+     * @param writer        Onde escrever as mensagens no stream (o event loop da
+     *                      conexão).
+     * @param binary        {@code true} se o client usa o protocolo binário.
+     */
+    public ClientHandler(String username, int requestedRoom, OutputStream output, Executor writer, boolean binary) {
+        this.output = output;
+        this.writer = writer;
+        this.binary = binary;
+        this.requestedRoom = requestedRoom;
+        setUsername(username);
+        userJoined(); // Adiciona o usuário ao servidor.
+    }
+
+    /**
+     * Construtor de um usuário sem conexão, controlado pelo servidor (ver
+     * {@link Bot}). As mensagens enviadas a ele são descartadas.
+     *
+     * @param username Nome do usuário.
+     */
+    ClientHandler(String username) {
+        setUsername(username);
+    }
+
+    /**
+     * Construtor de uma sessão transferida de outro processo (ver
+     * {@link #restore(String, String, boolean, int, ReplayBuffer)}).
+     */
+    private ClientHandler(String username, boolean binary, int rating, ReplayBuffer replay) {
+        this.binary = binary;
+        this.rating = rating;
+        this.replay = replay;
+        this.state = SessionState.SUSPENDED;
+        this.suspendReason = DisconnectReason.HANDOFF;
+        this.feedVersion = 0; // Tudo o que a sala transmitir vai para o replay.
+        setUsername(username);
+    }
+
+    /**
+     * Recria uma sessão transferida de outro processo (ver {@link Handoff}). A
+     * sessão chega suspensa e sem conexão, e é retomada como após uma queda: o
+     * client reconecta com o mesmo token e recebe as mensagens que não chegaram
+     * a ele. A sala é definida em seguida, por {@link #restored(Room)}.
+     *
+     * @param token    Token emitido pelo processo anterior.
+     * @param username Nome do usuário.
+     * @param binary   {@code true} se o client usa o protocolo binário.
+     * @param rating   Rating do usuário.
+     * @param replay   Mensagens guardadas pelo processo anterior.
+     * @return Sessão suspensa.
+     */
+    static ClientHandler restore(String token, String username, boolean binary, int rating, ReplayBuffer replay) {
+        ClientHandler session = new ClientHandler(username, binary, rating, replay);
+        session.token = token;
+        resumption.restore(token, session);
+        return session;
+    }
+
+    /**
+     * Conclui a recriação da sessão, já colocada na sala (ver
+     * {@link Room#restore}): o período de tolerância começa agora.
+     *
+     * @param room Sala recriada.
+     */
+    void restored(Room room) {
+        synchronized (sessionLock) {
+            this.room = room;
+            expiry = resumption.scheduleExpiry(this::expire);
         }
     }
 
     /**
-     * Envia uma mensagem para todos os clientes conectados ao servidor, exceto para
-     * o cliente que a enviou.
+     * Envia uma mensagem para todos os clientes da sala, exceto para o cliente que
+     * a enviou.
      * 
      * O método permite a adição de um prefixo, dependendo se o cliente é um jogador
-     * ou espectador, para personalizar a mensagem. Caso um erro ocorra durante o
-     * envio
-     * da mensagem, a conexão com o cliente é encerrada.
+     * ou espectador, para personalizar a mensagem. A mensagem é formatada e
+     * codificada uma única vez, e o mesmo array de bytes é colocado na fila de
+     * saída de cada cliente; a escrita acontece em segundo plano (ver
+     * {@link OutboundQueue}).
      * 
-     * @param message   A mensagem a ser enviada para todos os clientes, exceto o
-     *                  que a enviou.
+     * @param message   A mensagem a ser enviada para todos os clientes da sala,
+     *                  exceto o que a enviou.
      * @param addPrefix Se {@code true}, adiciona um prefixo indicando se o cliente
      *                  é um jogador ou espectador.
      */
     public void broadcastMessage(String message, boolean addPrefix) {
+        long start = System.nanoTime();
+        int recipients = 0;
         String playerStatus = addPrefix ? ((isPlayer()) ? "[jogador] " : "[espectador] ") : "";
 
-        // Percorre a lista de usuários conectados.
-        clients.forEach(client -> {
-            try {
-                // Não envia a mensagem para si mesmo.
-                if (!client.username.equals(username)) {
-                    String formatted = playerStatus + message; // Preenche a mensagem com o prefixo do jogador.
+        // Percorre a lista de usuários da sala.
+        // Preenche a mensagem com o prefixo do jogador; é codificada uma única vez por protocolo.
+        OutboundMessage outboundMessage = new OutboundMessage(playerStatus + message);
+        long version = room.getFeed().publish(outboundMessage);
 
-                    client.writer.write(formatted); // Imprime a mensagem para o client.
-                    client.writer.newLine(); // Para de aguardar por uma mensagem.
-                    client.writer.flush();
-                }
-            } catch (IOException e) {
-                closeConnection(socket, reader, writer); // Encerra a conexão.
+        for (ClientHandler client : room.getClients()) {
+            // Não envia a mensagem para si mesmo.
+            if (client != this) {
+                client.deliver(outboundMessage, version); // Coloca a mensagem na fila do client.
+                recipients++;
             }
-        });
+        }
+
+        Metrics.get().broadcast(recipients, System.nanoTime() - start);
     }
 
     /**
-     * Envia uma mensagem para todos os clientes conectados ao servidor.
+     * Envia uma mensagem para todos os clientes da sala.
      * 
-     * Este método percorre a lista de clientes conectados e envia uma mensagem para
+     * Este método percorre a lista de clientes da sala e envia uma mensagem para
      * cada um,
-     * prefixando com "🖥️:" para indicar que é uma mensagem do servidor. Caso
-     * ocorra um erro ao
-     * enviar a mensagem, a conexão com o cliente é encerrada.
+     * prefixando com "📢:" para indicar que é uma mensagem do servidor. A escrita
+     * acontece em segundo plano, pela fila de saída de cada cliente.
      * 
-     * @param message Mensagem a ser enviada para todos os clientes.
+     * @param message Mensagem a ser enviada para todos os clientes da sala.
      */
     public void sendServerMessage(String message) {
-        // Percorre a lista de usuários conectados.
-        clients.forEach(client -> {
-            try {
-                // Envia a mensagem para todos os clientes conectados.
-                client.writer.write("📢: " + message); // Envia a mensagem.
-                client.writer.newLine(); // Adiciona uma nova linha.
-                client.writer.flush(); // Garante que a mensagem seja enviada.
-            } catch (IOException e) {
-                closeConnection(socket, reader, writer); // Encerra a conexão se houver erro.
-            }
-        });
+        sendServerMessage(room, message);
+    }
+
+    /**
+     * Envia uma mensagem do servidor para todos os clientes de uma sala, sem um
+     * cliente de origem (ex.: avisos de encerramento, ver {@link Drain}).
+     * 
+     * @param room    Sala de destino.
+     * @param message Mensagem, sem o prefixo "📢:".
+     */
+    static void sendServerMessage(Room room, String message) {
+        long start = System.nanoTime();
+        int recipients = 0;
+
+        // Percorre a lista de usuários da sala.
+        OutboundMessage outboundMessage = new OutboundMessage("📢: " + message); // Codificada uma única vez.
+        long version = room.getFeed().publish(outboundMessage);
+
+        // Envia a mensagem para todos os clientes conectados.
+        for (ClientHandler client : room.getClients()) {
+            client.deliver(outboundMessage, version);
+            recipients++;
+        }
+
+        Metrics.get().broadcast(recipients, System.nanoTime() - start);
     }
 
     /**
      * Envia uma mensagem exclusivamente para o cliente conectado.
-     * A mensagem é precedida pelo ícone 🖥️ e é enviada ao cliente por meio do
-     * writer.
+     * A mensagem é precedida pelo ícone 🖥️ e é enviada ao cliente por meio da
+     * fila de saída.
      * 
      * @param message A mensagem a ser enviada ao cliente.
      */
-    private void sendMessageToClient(String message) {
-        try {
-            writer.write("🖥️: " + message);
-            writer.newLine();
-            writer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    void sendMessageToClient(String message) {
+        sendLine("🖥️: " + message);
+    }
+
+    /**
+     * Coloca uma linha na fila de saída deste client. Não bloqueia: se o client
+     * estiver lento, a {@link BackpressurePolicy} da fila é aplicada.
+     * 
+     * @param line Linha a ser enviada, sem o terminador.
+     */
+    private void sendLine(String line) {
+        send(new OutboundMessage(line));
     }
 
     /**
-     * Verifica se o cliente é um jogador ou um espectador, com base em sua posição
-     * na lista de clientes.
+     * Coloca uma mensagem na fila de saída deste client, codificada no protocolo
+     * que ele utiliza. A mesma mensagem pode ser enviada a vários clients.
      * 
-     * O método considera que os primeiros {@code MAX_PLAYERS} clientes na lista são
-     * jogadores,
-     * e os demais são espectadores.
+     * @param message Mensagem a ser enviada.
+     */
+    void send(OutboundMessage message) {
+        send(message.encoded(binary));
+    }
+
+    /**
+     * Entrega uma mensagem transmitida para a sala (ver {@link SpectatorFeed}).
+     * Mensagens que já vieram na cauda da inscrição são ignoradas. Se o atraso
+     * de um espectador (ver {@link OutboundQueue#backlog()}: a fila e o que ainda
+     * não saiu pelo canal) passar de {@link SpectatorFeed#LAG_THRESHOLD}, as
+     * mensagens deixam de ser enfileiradas até ele alcançar, quando recebe o
+     * estado atual da sala no lugar das que perdeu.
+     * 
+     * @param message Mensagem transmitida.
+     * @param version Versão da mensagem no feed da sala.
+     */
+    private void deliver(OutboundMessage message, long version) {
+        if (version <= feedVersion)
+            return;
+
+        OutboundQueue queue = outbound;
+
+        if (role == Role.SPECTATOR && state == SessionState.CONNECTED && queue != null) {
+            int pending = queue.backlog();
+
+            if (pending >= queue.getCapacity() * SpectatorFeed.LAG_THRESHOLD) {
+                conflated = true;
+                Metrics.get().messageConflated();
+                return;
+            }
+
+            if (conflated) {
+                if (pending > queue.getCapacity() * SpectatorFeed.CATCH_UP_THRESHOLD) {
+                    Metrics.get().messageConflated();
+                    return;
+                }
+
+                conflated = false;
+                sendLine("📺: " + room.getFeed().describe()); // O estado atual resume o que ficou para trás.
+            }
+        }
+
+        send(message);
+    }
+
+    /** Define a versão do feed da sala a partir da qual as mensagens são entregues. */
+    void setFeedVersion(long version) {
+        feedVersion = version;
+    }
+
+    /**
+     * Coloca uma mensagem codificada na fila de saída. Com a sessão suspensa, a
+     * mensagem vai direto para o {@link ReplayBuffer}, para ser entregue na
+     * retomada.
+     */
+    private void send(byte[] frame) {
+        if (state == SessionState.SUSPENDED) {
+            synchronized (sessionLock) {
+                if (state == SessionState.SUSPENDED) {
+                    replay.record(frame);
+                    return;
+                }
+            }
+        }
+
+        OutboundQueue queue = outbound;
+
+        if (queue != null)
+            queue.offer(frame);
+    }
+
+    /**
+     * Cria a fila de saída de uma conexão. Em caso de falha, a fila encerra a
+     * conexão para a qual foi criada, mesmo que a sessão já esteja em outra.
+     */
+    private OutboundQueue newOutbound(Socket socket, InputStream input, OutputStream output) {
+        return new OutboundQueue(output, replay, writer, reason -> closeConnection(socket, input, output, reason));
+    }
+
+    /** @return Fila de saída deste client. */
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    /**
+     * Verifica se o cliente é um jogador ou um espectador. O papel é mantido pela
+     * sala a cada mudança de vaga, então a consulta é O(1) e não trava a sala.
      * 
      * @return {@code true} se o cliente for um jogador, {@code false} se for um
      *         espectador.
      */
     public boolean isPlayer() {
-        return clients.indexOf(this) < MAX_PLAYERS; // Verifica se é um jogador ou espectador.
+        return room != null && role == Role.PLAYER; // Verifica se é um jogador ou espectador.
     }
 
     /**
-     * Informa que um cliente se conectou ao servidor e é adicionado à lista de
-     * usuários conectados.
+     * Informa que um cliente se conectou ao servidor e o coloca em uma sala com
+     * vaga (ver {@link RoomRegistry#join(ClientHandler)}).
      * 
      * Envia uma mensagem ao cliente informando seu papel (jogador ou espectador) e
      * oferece a lista de comandos.
-     * Em seguida, transmite uma mensagem a todos os clientes conectados,
+     * Em seguida, transmite uma mensagem a todos os clientes da sala,
      * notificando sobre a entrada do usuário,
      * seja como jogador ou espectador.
+     * 
+     * Em um {@link Cluster}, a sala escolhida pode estar em outro nó: nesse caso
+     * o client é redirecionado para ele, e a conexão deve ser encerrada.
+     * 
+     * @return {@code false} se o client foi redirecionado para outro nó.
      */
-    public void userJoined() {
-        clients.add(this); // Adiciona o client à lista de usuários conectados.
-        sendMessageToClient("Você entrou como " + ((isPlayer()) ? "jogador." : "espectador.")
+    public boolean userJoined() {
+        int roomId = requestedRoom;
+
+        // Clients redirecionados já chegam ao nó da sala; os demais passam pelo cluster.
+        if (cluster != null && roomId == 0) {
+            roomId = cluster.place();
+            Redirect target = cluster.redirectFor(roomId);
+
+            if (target != null) {
+                redirect(target);
+                return false;
+            }
+        }
+
+        if (resumption != null)
+            replay = resumption.newReplayBuffer(binary);
+
+        outbound = newOutbound(socket, input, output);
+        room = (roomId > 0) ? rooms.join(this, roomId) : rooms.join(this); // Adiciona o client a uma sala com vaga.
+
+        if (cluster != null)
+            cluster.roomChanged(room);
+
+        EventLog.info("join", "session", sessionId, "user", username, "room", room.getId(), "role",
+                role.name().toLowerCase(), "protocol", binary ? "binary" : "text");
+
+        room.getFeed().subscribe(this); // Estado atual e últimas mensagens, se a sala já tem alguém.
+
+        sendMessageToClient("Você entrou na sala " + room.getId() + " como "
+                + ((isPlayer()) ? "jogador." : "espectador.")
                 + " Digite /comandos para a lista de comandos 😉.");
 
+        // Token para retomar a sessão caso a conexão caia.
+        if (resumption != null) {
+            token = resumption.register(this);
+
+            if (binary)
+                send(BinaryProtocol.frame(BinaryProtocol.SESSION, token.getBytes(StandardCharsets.UTF_8)));
+            else
+                sendLine(ResumeRequest.tokenLine(token));
+        }
+
+        if (Room.sealedMoves)
+            send(binary ? SEALED_FRAME : SEALED_LINE); // O client passa a selar as jogadas.
+
         if (isPlayer())
             broadcastMessage("🖥️: " + username + " entrou na partida 🎮!", false);
         else
             broadcastMessage("🖥️: " + username + " está assistindo à partida 👀!", false);
+
+        return true;
+    }
+
+    /**
+     * Coloca um usuário sem conexão (ver {@link Bot}) na sala informada, sem
+     * passar pelo redirecionamento do cluster nem pela retomada de sessões.
+     *
+     * @param roomId Id da sala. Se ela estiver cheia, o usuário vai para a
+     *               primeira sala com vaga.
+     * @return Sala em que o usuário foi colocado.
+     */
+    Room enter(int roomId) {
+        room = rooms.join(this, roomId);
+
+        if (cluster != null)
+            cluster.roomChanged(room);
+
+        return room;
+    }
+
+    /**
+     * Envia o client para o nó do cluster em que está a sua sala. A mensagem é
+     * escrita direto na conexão: o client ainda não tem fila de saída.
+     * 
+     * @param target Nó e sala de destino.
+     */
+    private void redirect(Redirect target) {
+        EventLog.info("redirect", "session", sessionId, "user", username, "room", target.getRoom(), "node",
+                target.getHost() + ":" + target.getPort());
+
+        try {
+            output.write(binary ? target.toFrame() : OutboundQueue.encode(target.toLine()));
+            output.flush();
+        } catch (IOException e) {
+            // A conexão será encerrada de qualquer forma.
+        }
     }
 
     /**
-     * Remove o cliente da lista de clientes conectados e notifica os outros
-     * clientes
-     * sobre a desconexão do usuário.
+     * Remove o cliente de sua sala e notifica os outros clientes da sala sobre a
+     * desconexão do usuário.
      * 
-     * A mensagem de saída do usuário é enviada a todos os clientes conectados,
-     * e um log é gerado no servidor.
+     * A mensagem de saída do usuário é enviada a todos os clientes da sala.
      */
     public void userLeft() {
-        clients.remove(this); // Remove o jogador da lista de conectados.
+        // Remove o jogador da lista de conectados. Se ele não estava na lista (ex.:
+        // caiu antes do handshake ou já saiu), não há ninguém a notificar.
+        if (room == null || !rooms.leave(this, room))
+            return;
+
+        if (cluster != null)
+            cluster.roomChanged(room); // Vaga aberta (ou sala fechada) para os outros nós.
+
+        // No encerramento do servidor, todos saem juntos e a sala já foi avisada.
+        if (Room.closing)
+            return;
 
         broadcastMessage("🖥️: " + username + " saiu do servidor 😔!", false);
-        System.out.println(username + " saiu do servidor!"); // Log no servidor.
+
+        // Se era um jogador, chama o próximo da fila para a vaga.
+        for (ClientHandler client : room.fillEmptySeats())
+            client.sendMessageToClient("Você agora é um jogador. Escolha sua jogada.");
     }
 
     /**
-     * Encerra a conexão do client e fecha os objetos reader e writer.
+     * Encerra a conexão do client e fecha os objetos input e output.
      * Este método é responsável por fechar a conexão com o client, encerrando os
      * fluxos
-     * de entrada e saída de dados (reader e writer) e o socket de comunicação.
+     * de entrada e saída de dados (input e output) e o socket de comunicação.
+     * 
+     * Se a conexão caiu (erro, fim do stream ou prazo de leitura) e a retomada
+     * está ativada, a sessão é apenas suspensa (ver {@link SessionResumption}); o usuário só sai
+     * da sala com /sair, por violar o protocolo, por lentidão ou ao fim do
+     * período de tolerância.
+     * 
+     * Apenas a primeira chamada para cada conexão tem efeito, então o motivo
+     * registrado nas {@link Metrics} é o da causa original (ex.: /sair, e não o
+     * fim do stream que vem em seguida). Chamadas vindas de uma conexão já
+     * substituída por uma retomada são ignoradas.
      * 
      * @param socket O socket de conexão que será fechado.
-     * @param reader O BufferedReader usado para ler dados do client.
-     * @param writer O BufferedWriter usado para enviar dados ao client.
+     * @param input  O InputStream usado para ler dados do client.
+     * @param output O OutputStream usado para enviar dados ao client. Identifica
+     *               a conexão que está sendo encerrada.
+     * @param reason Motivo do encerramento.
      */
-    public void closeConnection(Socket socket, BufferedReader reader, BufferedWriter writer) {
-        userLeft(); // Informa os usuários conectados.
+    public void closeConnection(Socket socket, InputStream input, OutputStream output, DisconnectReason reason) {
+        boolean suspended;
+
+        synchronized (sessionLock) {
+            if (output != this.output || state != SessionState.CONNECTED)
+                return; // Já encerrada por outra thread ou caminho, ou a sessão já está em outra conexão.
+
+            suspended = canSuspend(reason);
+            state = suspended ? SessionState.SUSPENDED : SessionState.CLOSED;
+
+            if (outbound != null)
+                outbound.close(); // Descarta as mensagens pendentes ou, se suspensa, as guarda no replay.
+
+            if (suspended) {
+                suspendReason = reason;
+                room.suspend(this); // Mantém a vaga, mas sai da disputa pelas vagas livres.
+                expiry = resumption.scheduleExpiry(this::expire);
+            }
+        }
+
+        Metrics.get().disconnected(reason);
+
+        // No NioServer, a conexão é contabilizada pelo próprio NioConnection.
+        if (socket != null)
+            Metrics.get().connectionClosed();
+
+        if (suspended)
+            suspend(reason);
+        else
+            leave(reason);
 
-        // Encerra a conexão e o reader e writer:
+        // Encerra a conexão e o input e output:
         try {
-            if (reader != null)
-                reader.close();
+            if (input != null)
+                input.close();
 
-            if (writer != null)
-                writer.close();
+            if (output != null)
+                output.close();
 
             if (socket != null)
                 socket.close(); // Encerra o socket e o Output/InputStreamWriter.
         } catch (IOException e) {
-            e.printStackTrace(); // Pilha de execução.
+            EventLog.error("close_failed", e, "session", sessionId);
         }
     }
 
     /**
-     * Lida com os comandos executados pelos jogadores (não espectadores).
-     * Este método processa comandos como "/pedra", "/papel", "/tesoura", e "/jogar"
-     * para definir a escolha do jogador ou iniciar a partida.
-     * 
-     * @param command O comando executado pelo jogador. Pode ser "/pedra", "/papel",
-     *                "/tesoura", ou "/jogar".
+     * Encerra a conexão atual pelo servidor (ex.: no encerramento ou na
+     * transferência para outro processo). Sem efeito se a sessão já estiver
+     * suspensa ou encerrada.
+     *
+     * @param reason Motivo do encerramento.
      */
-    public void playerCommand(String command) {
-        if (!command.equals("/jogar") && playerChoice != null) {
-            sendMessageToClient("Você já escolheu " + playerChoice + ".");
-            return; // Sai da função.
-        }
+    void disconnect(DisconnectReason reason) {
+        Socket socket;
+        InputStream input;
+        OutputStream output;
 
-        // Processando os comandos do usuário:
-        switch (command.trim()) {
-            case "/pedra":
-                playerChoice = "pedra";
-                break;
-            case "/papel":
-                playerChoice = "papel";
-                break;
-            case "/tesoura":
-                playerChoice = "tesoura";
-                break;
-            case "/jogar":
-                play();
-                return; // Sai do método.
-            default:
-                sendMessageToClient("Comando inválido! Digite /comandos para uma lista de comandos válidos.");
-                return; // Sai do método em caso de comando inválido.
+        synchronized (sessionLock) {
+            socket = this.socket;
+            input = this.input;
+            output = this.output;
         }
 
-        sendMessageToClient("Você escolheu " + playerChoice + ".");
-        broadcastMessage("📢: " + username + " escolheu sua jogada.", false);
+        closeConnection(socket, input, output, reason);
     }
 
     /**
-     * Verifica se existem dois jogadores no servidor, contando quantos
-     * clientes estão registrados como jogadores.
-     * 
-     * @return true se houver exatamente dois jogadores no servidor,
-     *         false caso contrário.
+     * @return {@code true} se uma queda pelo motivo informado suspende a sessão
+     *         em vez de encerrá-la.
      */
-    private boolean hasTwoPlayers() {
-        int playerCount = 0;
+    private boolean canSuspend(DisconnectReason reason) {
+        if (resumption == null || room == null)
+            return false; // Retomada desativada, ou a conexão caiu antes do handshake.
 
-        for (ClientHandler client : clients) {
-            if (client.isPlayer()) {
-                playerCount++;
-            }
-        }
+        if (this instanceof Bot)
+            return false; // Não há conexão a retomar: o bot sai e libera a vaga (ver Handoff).
 
-        return playerCount == 2; // Retornando a quantidade de clients conectados.
+        return reason == DisconnectReason.CLOSED || reason == DisconnectReason.ERROR
+                || reason == DisconnectReason.REPLACED || reason == DisconnectReason.IDLE
+                || reason == DisconnectReason.HANDOFF;
     }
 
-    /**
-     * Valida as escolhas dos jogadores e chama o método para calcular o resultado
-     * da partida.
-     * <p>
-     * Este método realiza as seguintes validações:
-     * <ul>
-     * <li>Verifica se há exatamente dois jogadores conectados ao servidor;</li>
-     * <li>Verifica se o jogador atual já fez sua escolha de jogada;</li>
-     * <li>Verifica se o outro jogador também fez sua escolha de jogada.</li>
-     * </ul>
-     * Caso todas as condições sejam atendidas, o método chama o método
-     * {@link #calculateResult()} para calcular o resultado da partida.
-     */
-    public void play() {
-        // Verifica se há dois jogadores no servidor
-        if (!hasTwoPlayers()) {
-            sendMessageToClient("Aguardando outro jogador conectar para iniciar a partida.");
-            return;
-        }
+    /** Tira o usuário da sala e registra a saída. */
+    private void leave(DisconnectReason reason) {
+        if (token != null)
+            resumption.unregister(token);
 
-        // Verifica se o jogador atual já escolheu sua jogada
-        if (playerChoice == null) {
-            sendMessageToClient("Você ainda não escolheu sua jogada.");
-            return;
-        }
+        userLeft(); // Informa os usuários conectados.
 
-        // Verifica se o outro jogador fez sua escolha
-        for (ClientHandler client : clients) {
-            if (!client.equals(this) && client.isPlayer() && client.playerChoice == null) {
-                sendMessageToClient(client.username + " ainda não fez sua jogada.");
-                return;
-            }
-        }
+        if (tournament != null)
+            tournament.withdraw(this); // Perde a partida do torneio, se estiver em uma.
 
-        // Calcula o resultado da partida
-        calculateResult();
+        if (room != null)
+            EventLog.info("leave", "session", sessionId, "user", username, "room", room.getId(), "reason",
+                    reason.getLabel());
+        else
+            EventLog.debug("disconnect", "session", sessionId, "reason", reason.getLabel(), "handshake", false);
     }
 
     /**
-     * Calcula o resultado de uma partida de Jokenpo entre dois jogadores.
-     * 
-     * O método compara as escolhas dos dois jogadores (armazenadas em
-     * `playerChoice`) e determina o vencedor
-     * com base nas regras do jogo Jokenpo (Pedra, Papel e Tesoura). Se ambos os
-     * jogadores escolherem a mesma opção,
-     * o resultado é um empate. Caso contrário, o vencedor é determinado conforme as
-     * regras do jogo.
-     * 
-     * Após determinar o vencedor ou o empate, o método envia uma mensagem para o
-     * servidor informando o resultado
-     * e então reinicia o jogo.
-     * 
-     * @see {@link #resetGame()} Para reiniciar o jogo após calcular o resultado.
+     * Avisa a sala que o usuário caiu. A vaga, a jogada e a posição na fila ficam
+     * reservadas durante o período de tolerância, aguardando a reconexão.
      */
-    public void calculateResult() {
-        // Identificando os jogadores:
-        ClientHandler player1 = clients.get(0);
-        ClientHandler player2 = clients.get(1);
+    private void suspend(DisconnectReason reason) {
+        long graceSeconds = resumption.getGraceMillis() / 1000;
+        EventLog.info("suspend", "session", sessionId, "user", username, "room", room.getId(), "reason",
+                reason.getLabel(), "grace_s", graceSeconds);
 
-        // Verifica se ambos fizeram suas escolhas
-        if (player1.playerChoice == null || player2.playerChoice == null)
-            return; // Não processa se as escolhas não forem feitas.
+        if (reason == DisconnectReason.HANDOFF)
+            return; // Todos caem juntos e voltam ao novo processo; a sala já foi avisada.
 
-        // Se os dois jogadores escolheram a mesma coisa:
-        if (player1.playerChoice.equals(player2.playerChoice)) {
-            sendServerMessage("Ambos os jogadores escolheram " + player1.playerChoice + ". Empate 🔥!");
-            resetGame(); // Reseta a partida.
-        }
+        broadcastMessage("🖥️: " + username + " perdeu a conexão. Aguardando a reconexão por " + graceSeconds
+                + "s ⏳.", false);
+    }
 
-        // Verifica quem ganhou:
-        if ((player1.playerChoice.equals("pedra") && player2.playerChoice.equals("tesoura")) ||
-                (player1.playerChoice.equals("tesoura") && player2.playerChoice.equals("papel")) ||
-                (player1.playerChoice.equals("papel") && player2.playerChoice.equals("pedra"))) {
-            sendServerMessage(
-                    player1.username + " venceu! (" + player1.playerChoice + " vs. " + player2.playerChoice + ") 🔥!");
-        } else {
-            sendServerMessage(
-                    player2.username + " venceu! (" + player2.playerChoice + " vs. " + player1.playerChoice + ") 🔥!");
+    /** Fim do período de tolerância: se o usuário não voltou, ele sai da sala. */
+    private void expire() {
+        synchronized (sessionLock) {
+            if (state != SessionState.SUSPENDED)
+                return; // Retomada a tempo.
+
+            state = SessionState.CLOSED;
         }
 
-        resetGame(); // Reseta o jogo.
+        Metrics.get().sessionExpired();
+        EventLog.debug("session_expired", "session", sessionId, "user", username);
+        leave(suspendReason);
     }
 
     /**
-     * Embaralha a lista de clientes, redefinindo os dois primeiros como jogadores e
-     * os demais como espectadores.
-     * Reseta as escolhas dos jogadores e envia mensagens para todos os clientes
-     * informando suas funções.
+     * Atende um pedido de retomada recebido no handshake de uma nova conexão. Se
+     * a sessão ainda existir, ela passa a usar a nova conexão; senão, o client é
+     * avisado para entrar novamente como um novo usuário.
+     * 
+     * @param request Pedido recebido no lugar do username.
+     * @param socket  Socket da nova conexão, ou {@code null} no {@link NioServer}.
+     * @param input   Stream de entrada da nova conexão, ou {@code null}.
+     * @param lines   Leitor de linhas da nova conexão, ou {@code null}.
+     * @param frames  Leitor de frames da nova conexão, ou {@code null}.
+     * @param output  Stream de saída da nova conexão.
+     * @param writer  Onde escrever as mensagens no stream da nova conexão.
+     * @param binary  {@code true} se a nova conexão usa o protocolo binário.
+     * @return Sessão retomada, ou {@code null} se o pedido foi recusado.
+     * @throws IOException Se a escrita na nova conexão falhar.
      */
-    public void resetGame() {
-        // Embaralha a lista de clientes.
-        Collections.shuffle(clients);
+    static ClientHandler resume(ResumeRequest request, Socket socket, BufferedInputStream input, LineReader lines,
+            DataInputStream frames, OutputStream output, Executor writer, boolean binary) throws IOException {
+        SessionResumption sessions = resumption;
+        ClientHandler session = (sessions != null) ? sessions.find(request.getToken()) : null;
 
-        // Itera sobre a lista de clientes.
-        for (int i = 0; i < clients.size(); i++) {
-            ClientHandler client = clients.get(i);
+        if (session != null
+                && session.attach(socket, input, lines, frames, output, writer, binary, request.getReceived()))
+            return session;
 
-            if (i < 2) { // Os dois primeiros clientes serão jogadores.
-                client.playerChoice = null; // Reseta a escolha do jogador.
-                client.sendMessageToClient("Você agora é um jogador. Escolha sua jogada.");
-            } else { // Os outros clientes serão espectadores.
-                client.sendMessageToClient("Você é um espectador.");
-            }
-        }
+        EventLog.info("resume_rejected", "known_token", session != null, "protocol", binary ? "binary" : "text");
 
-        // Envia uma mensagem para todos os clientes (jogadores e espectadores).
-        sendServerMessage("O jogo foi reiniciado! Escolham suas jogadas ✅.\n");
+        output.write(new OutboundMessage("🖥️: Sessão expirada ou inválida. Entre novamente.").encoded(binary));
+        output.flush();
+        return null;
     }
 
     /**
-     * Aguarda por mensagens do cliente e processa comandos ou transmite mensagens.
+     * Passa a sessão para uma nova conexão e reenvia as mensagens que o client
+     * não recebeu. Se a conexão anterior ainda não tiver sido dada como perdida,
+     * ela é encerrada e substituída.
      * 
-     * O método executa um loop enquanto a conexão do cliente estiver ativa. Ele
-     * aguarda mensagens do cliente,
-     * processa comandos específicos (como /sair, /comandos, ou jogadas de pedra,
-     * papel e tesoura),
-     * e as transmite para outros clientes ou processa as ações de jogador conforme
-     * apropriado.
+     * Sob o {@link #sessionLock}, apenas a troca de estado e a cópia do replay:
+     * a confirmação e as mensagens perdidas vão para a fila de saída da nova
+     * conexão, na frente de qualquer mensagem nova. Assim, um client lento na
+     * retomada não trava os envios de outras threads para esta sessão.
      * 
-     * Se o cliente enviar uma mensagem de desconexão ou ocorrer um erro de leitura,
-     * a conexão é encerrada.
+     * @param received Linhas (ou frames) que o client recebeu antes da queda.
+     * @return {@code false} se a sessão já foi encerrada ou usa outro protocolo.
      */
-    @Override
-    public void run() {
-        String message; // Mensagem enviada pelo usuário.
+    private boolean attach(Socket socket, BufferedInputStream input, LineReader lines, DataInputStream frames,
+            OutputStream output, Executor writer, boolean binary, long received) {
+        if (binary != this.binary)
+            return false; // O replay está codificado no protocolo da conexão original.
 
-        // Equanto o client ainda estiver conectado:
-        while (socket.isConnected()) {
+        // A conexão anterior ainda parece ativa (a queda não foi percebida): é substituída.
+        if (state == SessionState.CONNECTED)
+            closeConnection(this.socket, this.input, this.output, DisconnectReason.REPLACED);
+
+        List<byte[]> missed;
+        long lost;
+        List<ClientHandler> seated;
+
+        synchronized (sessionLock) {
+            if (state != SessionState.SUSPENDED)
+                return false; // O período de tolerância acabou.
+
+            missed = replay.since(received);
+            lost = replay.lostSince(received);
+
+            this.socket = socket;
+            this.input = input;
+            this.lines = lines;
+            this.frames = frames;
+            this.output = output;
+            this.writer = writer;
+            this.outbound = newOutbound(socket, input, output);
+            state = SessionState.CONNECTED;
+
+            // Confirmação seguida das mensagens perdidas, antes de qualquer mensagem nova.
+            List<byte[]> resent = new ArrayList<>(missed.size() + 1);
+            resent.add(binary ? RESUMED_FRAME : RESUMED_LINE);
+            resent.addAll(missed);
+            outbound.resend(resent);
+
+            expiry.cancel();
+
+            // Volta a disputar as vagas livres, a não ser que esteja no torneio (ele devolve o usuário ao terminar).
+            seated = (tournament != null && tournament.isCompeting(this)) ? List.of() : room.resume(this);
+        }
+
+        Metrics.get().sessionResumed();
+        EventLog.info("resume", "session", sessionId, "user", username, "room", room.getId(), "replayed",
+                missed.size(), "lost", lost);
+
+        sendMessageToClient("Sessão retomada na sala " + room.getId() + " como "
+                + ((isPlayer()) ? "jogador." : "espectador.")
+                + ((lost > 0) ? " " + lost + " mensagens antigas não puderam ser recuperadas." : ""));
+        broadcastMessage("🖥️: " + username + " reconectou 🔌!", false);
+
+        // Se havia vaga livre, quem voltou pode ter sido chamado para jogar.
+        for (ClientHandler client : seated)
+            client.sendMessageToClient("Você agora é um jogador. Escolha sua jogada.");
+
+        return true;
+    }
+
+    /**
+     * Registra a jogada de um jogador (não espectador). A jogada fica na
+     * {@link Room}; se for a segunda da rodada, o resultado é calculado na
+     * mesma operação e anunciado em seguida, sem esperar por um /jogar.
+     * 
+     * @param move Jogada escolhida.
+     */
+    public void playerMove(Move move) {
+        Move current = room.getMove(this);
+
+        if (current != null) {
+            sendMessageToClient("Você já escolheu " + current.getLabel() + ".");
+            return; // Sai da função.
+        }
+
+        RoundResult result = room.submitMove(this, move); // A primeira jogada inicia a contagem da rodada.
+        EventLog.debug("move", "session", sessionId, "user", username, "room", room.getId(), "move",
+                move.getLabel());
+
+        sendMessageToClient("Você escolheu " + move.getLabel() + ".");
+        broadcastMessage("📢: " + username + " escolheu sua jogada.", false);
+
+        if (result != null)
+            announce(result); // Esta foi a segunda jogada.
+        else if (Room.sealedMoves)
+            requestReveals(room.takeRevealRequests(this), room::getCommitment); // O adversário já havia selado.
+    }
+
+    /**
+     * Sela a jogada de um jogador (ver {@link Room#sealedMoves}). Os outros
+     * usuários sabem apenas que ele escolheu; quando as duas vagas fixaram suas
+     * jogadas, a revelação é pedida.
+     * 
+     * @param commitment Compromisso enviado pelo client.
+     */
+    private void playerSeal(byte[] commitment) {
+        if (!room.seal(this, commitment)) {
+            sendMessageToClient("Você já escolheu sua jogada.");
+            return;
+        }
+
+        EventLog.debug("seal", "session", sessionId, "user", username, "room", room.getId());
+
+        sendMessageToClient("Você selou sua jogada 🔒.");
+        broadcastMessage("📢: " + username + " selou sua jogada 🔒.", false);
+        requestReveals(room.takeRevealRequests(this), room::getCommitment);
+    }
+
+    /**
+     * Registra a jogada revelada por um jogador, já conferida com o compromisso.
+     * Como em {@link #playerMove(Move)}, a segunda jogada resolve a rodada.
+     * 
+     * @param move       Jogada revelada.
+     * @param commitment Compromisso conferido.
+     */
+    private void playerReveal(Move move, byte[] commitment) {
+        RoundResult result = room.reveal(this, move, commitment);
+        EventLog.debug("reveal", "session", sessionId, "user", username, "room", room.getId(), "move",
+                move.getLabel());
+
+        sendMessageToClient("Você revelou " + move.getLabel() + ".");
+
+        if (result != null)
+            announce(result);
+    }
+
+    /**
+     * Pede a revelação aos jogadores que selaram, quando todos já fixaram suas
+     * jogadas (ver {@link Room#takeRevealRequests(ClientHandler)}).
+     * 
+     * @param players     Jogadores a quem pedir.
+     * @param commitments Compromisso de cada jogador na partida.
+     */
+    static void requestReveals(ClientHandler[] players, Function<ClientHandler, byte[]> commitments) {
+        for (ClientHandler player : players) {
+            byte[] commitment = commitments.apply(player);
+
+            if (commitment == null)
+                continue; // A rodada foi resolvida ou desfeita nesse meio-tempo.
+
+            if (player.binary)
+                player.send(BinaryProtocol.frame(BinaryProtocol.REVEAL_REQUEST, commitment));
+            else
+                player.sendLine(MoveCommitment.revealRequestLine(commitment));
+        }
+    }
+
+    /**
+     * Tira o usuário da partida da sala enquanto ele disputa o {@link Tournament}
+     * (ver {@link Room#withdraw(ClientHandler)}). A vaga que ele ocupava fica
+     * livre até {@link #fillSeats(Room)}.
+     *
+     * @return Sala do usuário.
+     */
+    Room withdrawFromRoom() {
+        boolean wasPlayer = isPlayer();
+        room.withdraw(this);
+
+        if (wasPlayer)
+            broadcastMessage("📢: " + username + " deixou a partida para disputar o torneio.", false);
+
+        return room;
+    }
+
+    /**
+     * Chama os próximos da fila para as vagas livres da sala e os avisa.
+     *
+     * @param room Sala com vagas liberadas.
+     */
+    static void fillSeats(Room room) {
+        for (ClientHandler client : room.fillEmptySeats())
+            client.sendMessageToClient("Você agora é um jogador. Escolha sua jogada.");
+    }
+
+    /**
+     * Devolve à fila da sala um usuário que saiu do {@link Tournament}. Uma
+     * sessão suspensa volta à fila na retomada.
+     */
+    void returnToRoom() {
+        List<ClientHandler> seated;
+
+        synchronized (sessionLock) {
+            if (state != SessionState.CONNECTED)
+                return;
+
+            seated = room.resume(this);
+        }
+
+        for (ClientHandler client : seated)
+            client.sendMessageToClient("Você agora é um jogador. Escolha sua jogada.");
+
+        if (!isPlayer())
+            sendMessageToClient("De volta à fila da sala " + room.getId() + ". Posição na fila: "
+                    + room.getMatchmaker().positionOf(this) + ".");
+    }
+
+    /**
+     * Informa a situação da rodada. O resultado sai automaticamente quando os
+     * dois jogadores escolhem suas jogadas; o /jogar apenas informa o que falta.
+     */
+    public void play() {
+        // Verifica se há dois jogadores na mesa
+        if (room.getRoundState(this) == RoundState.WAITING_PLAYERS) {
+            sendMessageToClient("Aguardando outro jogador conectar para iniciar a partida."
+                    + ((Bot.lobbyDelayMillis > 0) ? " Se ninguém chegar, um bot 🤖 entra na partida." : ""));
+            return;
+        }
+
+        // Verifica se o jogador atual já escolheu (ou selou) sua jogada
+        if (room.getMove(this) == null && room.getCommitment(this) == null) {
+            sendMessageToClient("Você ainda não escolheu sua jogada.");
+            return;
+        }
+
+        ClientHandler opponent = room.getOpponent(this);
+
+        if (opponent != null)
+            sendMessageToClient(opponent.username + " ainda não fez sua jogada. O resultado sai assim que a jogada chegar.");
+    }
+
+    /**
+     * Anuncia o resultado de uma rodada resolvida pela {@link Room} (ver
+     * {@link Room#submitMove(ClientHandler, Move)}): informa a sala, atualiza o
+     * rating dos jogadores e grava o histórico. Se a série acabou, a sala já
+     * formou a próxima partida e cada usuário é informado do seu papel; senão, a
+     * próxima rodada da série começa.
+     * 
+     * @param result Resultado da rodada.
+     */
+    private void announce(RoundResult result) {
+        ClientHandler player1 = result.getPlayer1();
+        ClientHandler player2 = result.getPlayer2();
+        Move move1 = result.getMove1();
+        Move move2 = result.getMove2();
+        int outcome = result.getOutcome();
+
+        Bot.observe(result); // Os bots aprendem com as jogadas do adversário.
+
+        if (!result.isTimedOut())
+            Metrics.get().roundFinished(result.getNanos());
+
+        if (result.isAbandoned()) {
+            // Ninguém jogou a tempo: a série é encerrada sem resultado.
+            Metrics.get().roundForfeited();
+            sendServerMessage("⏰ Tempo esgotado! Nenhum jogador fez sua jogada.");
+            EventLog.info("round_timeout", "room", room.getId(), "player1", player1.username, "player2",
+                    player2.username);
+        } else if (outcome == 0) {
+            // Se os dois jogadores escolheram a mesma coisa:
+            sendServerMessage("Ambos os jogadores escolheram " + move1.getLabel() + ". Empate 🔥!");
+            EventLog.info("result", "room", room.getId(), "draw", true, "player1", player1.username, "player2",
+                    player2.username, "move", move1.getLabel(), "move1_ms", result.getMoveNanos1() / 1_000_000,
+                    "move2_ms", result.getMoveNanos2() / 1_000_000);
+            RatingPairing.updateRatings(player1, player2, true);
+            recordMatch(player1, player2, move1, move2, outcome);
+        } else {
+            // Verifica quem ganhou:
+            ClientHandler winner = (outcome > 0) ? player1 : player2;
+            ClientHandler loser = (outcome > 0) ? player2 : player1;
+            Move winnerMove = (outcome > 0) ? move1 : move2;
+            Move loserMove = (outcome > 0) ? move2 : move1;
+
+            if (result.isForfeit()) {
+                // Quem não jogou a tempo perde por W.O.
+                Metrics.get().roundForfeited();
+                sendServerMessage("⏰ " + loser.username + " não jogou a tempo e perdeu por W.O. "
+                        + winner.username + " venceu 🔥!");
+                EventLog.info("forfeit", "room", room.getId(), "winner", winner.username, "loser",
+                        loser.username);
+            } else {
+                sendServerMessage(winner.username + " venceu! (" + winnerMove.getLabel() + " vs. "
+                        + loserMove.getLabel() + ") 🔥!");
+                EventLog.info("result", "room", room.getId(), "winner", winner.username, "loser",
+                        loser.username, "winner_move", winnerMove.getLabel(), "loser_move", loserMove.getLabel(),
+                        "move1_ms", result.getMoveNanos1() / 1_000_000, "move2_ms",
+                        result.getMoveNanos2() / 1_000_000);
+            }
+
+            RatingPairing.updateRatings(winner, loser, false);
+            recordMatch(player1, player2, move1, move2, outcome);
+        }
+
+        String score = player1.username + " " + result.getWins1() + " x " + result.getWins2() + " "
+                + player2.username;
+
+        // A série continua com os mesmos jogadores.
+        if (!result.isSeriesOver()) {
+            sendServerMessage("Rodada " + (result.getSeriesRound() + 1) + " da série (melhor de "
+                    + Room.seriesLength + "): " + score + ". Escolham suas jogadas ✅.");
+            return;
+        }
+
+        if (Room.seriesLength > 1 && !result.isAbandoned()) {
+            int series = Integer.compare(result.getWins1(), result.getWins2());
+            ClientHandler champion = (series > 0) ? player1 : player2;
+
+            sendServerMessage((series == 0) ? "A série terminou empatada: " + score + "."
+                    : "🏆 " + champion.username + " venceu a série! " + score + ".");
+        }
+
+        if (Room.closing)
+            return; // O servidor está sendo encerrado: não há próxima partida.
+
+        Bot.yieldSeats(room); // O bot que completava a partida sai se ficou sem um usuário para enfrentar.
+        announceRoles(result); // A sala já formou as próximas partidas.
+    }
+
+    /**
+     * Encerra a rodada cujo prazo de jogada venceu (ver
+     * {@link Room#moveTimeoutMillis}). Executado nos {@link Workers}, a partir
+     * do {@link HashedWheelTimer}: o anúncio percorre a sala inteira.
+     * 
+     * Se apenas um dos jogadores jogou, o outro perde por W.O.; se nenhum jogou,
+     * a série é desfeita e a sala segue para a próxima partida.
+     * 
+     * @param room  Sala da partida.
+     * @param table Mesa da partida.
+     * @param round Rodada do prazo. Se ela já tiver terminado, nada acontece.
+     */
+    static void moveDeadlineExpired(Room room, Table table, long round) {
+        RoundResult result = room.expireRound(table, round);
+
+        if (result != null)
+            result.getPlayer1().announce(result);
+    }
+
+    /**
+     * Grava o resultado no {@link MatchHistory}, se estiver ativado. A gravação
+     * acontece em segundo plano.
+     */
+    private void recordMatch(ClientHandler player1, ClientHandler player2, Move move1, Move move2, int outcome) {
+        if (history != null)
+            history.append(new MatchRecord(System.currentTimeMillis(), room.getId(), player1.username,
+                    player2.username, move1, move2, outcome));
+    }
+
+    /**
+     * Devolve os jogadores para a fila da sala e chama os próximos jogadores,
+     * escolhidos pelo {@link Matchmaker} (ver {@link Room#rotatePlayers()}).
+     * Descarta as jogadas da rodada e envia mensagens para todos os clientes
+     * informando suas funções.
+     */
+    public void resetGame() {
+        room.rotatePlayers(); // Forma a próxima partida a partir da fila.
+        announceRoles();
+    }
+
+    /**
+     * Informa o novo papel a quem a formação das mesas no fim de uma série
+     * mudou: os jogadores da série e os chamados da fila. As outras mesas
+     * seguem com suas partidas.
+     */
+    private void announceRoles(RoundResult result) {
+        for (ClientHandler client : result.getSeated())
+            client.sendMessageToClient("Você agora é um jogador. Escolha sua jogada.");
+
+        for (ClientHandler client : new ClientHandler[] { result.getPlayer1(), result.getPlayer2() }) {
+            if (!client.isPlayer())
+                client.sendMessageToClient("Você é um espectador. Posição na fila: "
+                        + room.getMatchmaker().positionOf(client) + ".");
+        }
+
+        if (!result.getSeated().isEmpty())
+            sendServerMessage("Nova partida formada! Escolham suas jogadas ✅.");
+    }
+
+    /** Informa a cada usuário da sala seu papel nas novas partidas. */
+    private void announceRoles() {
+        // Itera sobre a lista de clientes.
+        for (ClientHandler client : room.getClients()) {
+            if (client.isPlayer()) {
+                client.sendMessageToClient("Você agora é um jogador. Escolha sua jogada.");
+            } else { // Os outros clientes serão espectadores.
+                client.sendMessageToClient("Você é um espectador. Posição na fila: "
+                        + room.getMatchmaker().positionOf(client) + ".");
+            }
+        }
+
+        // Envia uma mensagem para todos os clientes (jogadores e espectadores).
+        sendServerMessage("O jogo foi reiniciado! Escolham suas jogadas ✅.\n");
+    }
+
+    /**
+     * Aguarda por mensagens do cliente e processa comandos ou transmite mensagens.
+     * 
+     * Primeiro realiza o handshake, fora da thread que aceita conexões: identifica
+     * o protocolo do client (texto ou binário, ver {@link BinaryProtocol}) e
+     * recebe o username. Em seguida, executa um loop enquanto a conexão do
+     * cliente estiver ativa, repassando as mensagens para
+     * {@link #handleLine(byte[], int)} ou {@link #handleFrame(byte[], int)}.
+     * Se, em vez do username, o client pedir para retomar uma sessão que caiu, o
+     * loop segue com a sessão retomada.
+     * 
+     * Se o cliente enviar uma mensagem de desconexão ou ocorrer um erro de leitura,
+     * a conexão é encerrada. Se nada chegar dentro do prazo de leitura (ver
+     * {@link ReadDeadline}), o socket é fechado pelo timer, o que desbloqueia a
+     * leitura; assim uma conexão meio aberta não prende a thread e a vaga.
+     */
+    @Override
+    public void run() {
+        Socket socket = this.socket;
+        ReadDeadline deadline = ReadDeadline.start(() -> closeIdle(socket));
+
+        try {
+            // Recebe o username do client (handshake).
+            if (!handshake()) {
+                closeConnection(socket, input, output, DisconnectReason.CLOSED); // Desconectou antes de se identificar.
+                return;
+            }
+
+            // Em vez do username, o client pediu para retomar uma sessão que caiu.
+            if (resumeRequest != null) {
+                ClientHandler session = resume(resumeRequest, socket, input, lines, frames, output,
+                        OutboundQueue.WRITERS, binary);
+
+                if (session == null)
+                    closeConnection(socket, input, output, DisconnectReason.CLOSED);
+                else
+                    session.readLoop(deadline); // A sessão segue nesta thread, com a nova conexão.
+
+                return;
+            }
+
+            // Adiciona o usuário ao servidor, ou o envia para outro nó do cluster.
+            if (!userJoined()) {
+                closeConnection(socket, input, output, DisconnectReason.REDIRECTED);
+                return;
+            }
+
+            readLoop(deadline);
+        } catch (ProtocolException e) {
+            closeConnection(socket, input, output, DisconnectReason.PROTOCOL);
+        } catch (IOException e) {
+            closeConnection(socket, input, output, failure(deadline, DisconnectReason.ERROR));
+        } catch (RuntimeException e) {
+            // Um erro no tratamento de uma mensagem encerra apenas esta conexão.
+            EventLog.error("handler_failed", e, "session", sessionId, "user", username);
+            closeConnection(socket, input, output, DisconnectReason.ERROR);
+        } finally {
+            if (deadline != null)
+                deadline.cancel();
+        }
+    }
+
+    /**
+     * Fecha o socket de uma conexão cujo prazo de leitura venceu. Executado na
+     * thread do timer; a thread da conexão percebe o fechamento na leitura.
+     */
+    private static void closeIdle(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Já estava fechado.
+        }
+    }
+
+    /**
+     * @return {@link DisconnectReason#IDLE} se a leitura falhou porque o prazo
+     *         venceu, ou o motivo informado.
+     */
+    private static DisconnectReason failure(ReadDeadline deadline, DisconnectReason reason) {
+        return (deadline != null && deadline.isExpired()) ? DisconnectReason.IDLE : reason;
+    }
+
+    /**
+     * Recebe as mensagens da conexão atual até ela ser encerrada. A conexão é
+     * fixada no início: se a sessão for retomada em outra, este loop termina sem
+     * afetá-la.
+     * 
+     * @param deadline Prazo de leitura da conexão, renovado a cada mensagem, ou
+     *                 {@code null} se estiver desativado.
+     */
+    private void readLoop(ReadDeadline deadline) {
+        Socket socket = this.socket;
+        InputStream input = this.input;
+        OutputStream output = this.output;
+        LineReader lines = this.lines;
+        DataInputStream frames = this.frames;
+
+        // Equanto o client ainda estiver conectado:
+        while (socket.isConnected()) {
             try {
-                message = reader.readLine(); // Recebe a mensagem do usuário.
+                boolean connected;
+
+                if (binary) {
+                    byte[] frame = BinaryProtocol.readFrame(frames); // Recebe o próximo frame.
+                    connected = frame != null && handleFrame(frame, frame.length);
+                } else {
+                    int length = lines.readLine(); // Recebe a mensagem do usuário.
+                    connected = length >= 0 && handleLine(lines.getLine(), length);
+                }
 
                 // Se não receber mais mensagens ou se o usuário sair:
-                if (message == null) {
-                    closeConnection(socket, reader, writer); // Encerra a conexão.
+                if (!connected) {
+                    closeConnection(socket, input, output, failure(deadline, DisconnectReason.CLOSED)); // Encerra a conexão (se ainda aberta).
                     break; // Para de aguardar mensagens (sai do loop).
                 }
 
-                // Verifica se o player executou um comando.
-                if (message.trim().contains("/")) {
-                    String[] parts = message.split(":"); // Divide a mensagem no nome de usuário.
-                    message = parts[1].trim(); // Mantém a parte após o nome de usuário e status.
-
-                    // Se o client utilizou o comando de sair:
-                    if (message.startsWith("/sair")) {
-                        closeConnection(socket, reader, writer); // Encerra a conexão.
-                        break; // Encerra o loop.
-                    }
-
-                    // Se o client deseja ver a lista de comandos:
-                    if (message.startsWith("/comandos")) {
-                        sendMessageToClient("Comandos disponíveis: /jogar, /sair, /pedra, /papel e /tesoura.");
-                        continue;
-                    }
-
-                    // Se for um jogador e não executou os comandos acima, verifica a entrada do
-                    // comando:
-                    if (isPlayer())
-                        playerCommand(message); // Trata as entradas.
-                    else
-                        sendMessageToClient("Você deve ser um jogador para executar este comando.");
-                } else {
-                    broadcastMessage(message, true); // Envia a mensagens para todos os usuários.
-                }
+                if (deadline != null)
+                    deadline.touch(); // O client está vivo: renova o prazo de leitura.
+            } catch (ProtocolException e) {
+                closeConnection(socket, input, output, DisconnectReason.PROTOCOL); // Linha ou frame malformado.
+                break;
             } catch (IOException e) {
-                closeConnection(socket, reader, writer); // Encerra a conexão.
+                closeConnection(socket, input, output, failure(deadline, DisconnectReason.ERROR)); // Encerra a conexão.
                 break; // Para de aguardar mensages.
+            } catch (RuntimeException e) {
+                EventLog.error("handler_failed", e, "session", sessionId, "user", username);
+                closeConnection(socket, input, output, DisconnectReason.ERROR); // Apenas esta conexão.
+                break;
             }
         }
     }
+
+    /**
+     * Identifica o protocolo do client pelo primeiro byte recebido e lê o
+     * username, ou o pedido de retomada de uma sessão (ver {@link ResumeRequest}).
+     * 
+     * @return {@code false} se o client desconectou antes de se identificar.
+     * @throws ProtocolException Se o handshake for inválido.
+     * @throws IOException       Se a leitura falhar.
+     */
+    private boolean handshake() throws IOException {
+        input.mark(1);
+
+        if (input.read() != BinaryProtocol.MAGIC) {
+            input.reset(); // O byte lido faz parte do username.
+
+            this.lines = new LineReader(input);
+            int length = lines.readLine();
+
+            if (length < 0)
+                return false;
+
+            String first = new String(lines.getLine(), 0, length, StandardCharsets.UTF_8);
+            resumeRequest = ResumeRequest.fromLine(first);
+
+            if (resumeRequest != null)
+                return true;
+
+            JoinRequest join = JoinRequest.fromLine(first); // Client redirecionado de outro nó.
+
+            if (join != null) {
+                requestedRoom = join.getRoom();
+                acceptUsername(join.getUsername());
+            } else {
+                acceptUsername(first);
+            }
+
+            return true;
+        }
+
+        this.binary = true;
+        this.frames = new DataInputStream(input);
+
+        if (frames.readUnsignedByte() != BinaryProtocol.VERSION)
+            throw new ProtocolException("Versão do protocolo não suportada.");
+
+        byte[] hello = BinaryProtocol.readFrame(frames);
+
+        if (hello == null)
+            return false;
+
+        if (hello[0] == BinaryProtocol.RESUME) {
+            resumeRequest = ResumeRequest.fromFrame(hello, hello.length);
+
+            if (resumeRequest == null)
+                throw new ProtocolException("Pedido de retomada inválido.");
+
+            return true;
+        }
+
+        if (hello[0] == BinaryProtocol.JOIN) {
+            JoinRequest join = JoinRequest.fromFrame(hello, hello.length);
+
+            if (join == null)
+                throw new ProtocolException("Pedido de entrada inválido.");
+
+            requestedRoom = join.getRoom();
+            acceptUsername(join.getUsername());
+            return true;
+        }
+
+        if (hello[0] != BinaryProtocol.HELLO)
+            throw new ProtocolException("Handshake sem HELLO.");
+
+        acceptUsername(BinaryProtocol.payloadText(hello, hello.length));
+        return true;
+    }
+
+    /**
+     * Define o username recebido no handshake.
+     *
+     * @throws ProtocolException Se o username for grande demais (ver
+     *                           {@link BinaryProtocol#MAX_USERNAME_LENGTH}).
+     */
+    private void acceptUsername(String username) throws ProtocolException {
+        if (!BinaryProtocol.fitsUsername(username))
+            throw new ProtocolException("Username grande demais.");
+
+        setUsername(username);
+    }
+
+    private void setUsername(String username) {
+        this.username = username;
+        this.chatPrefix = (username + ": ").getBytes(StandardCharsets.UTF_8);
+        this.identity = username.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Processa uma única linha recebida de um client de texto, direto do buffer
+     * de leitura.
+     * 
+     * O client de texto envia as linhas no formato {@code "username: mensagem"}.
+     * O prefixo é comparado byte a byte com o username conhecido da conexão, então
+     * usernames ou mensagens com ':' não atrapalham. Linhas que começam com '/'
+     * são comandos e são reconhecidas sem criar strings; apenas as mensagens de
+     * chat são decodificadas e transmitidas para os outros clientes. É utilizado
+     * tanto pela thread do handler quanto pelo event loop do {@link NioServer}.
+     * 
+     * @param line   Buffer com a linha recebida, sem o terminador. Não é
+     *               guardado após o retorno.
+     * @param length Tamanho da linha.
+     * @return {@code false} se a conexão foi encerrada, {@code true} caso
+     *         contrário.
+     */
+    public boolean handleLine(byte[] line, int length) {
+        Metrics.get().messageReceived();
+
+        int start = startsWith(line, length, chatPrefix) ? chatPrefix.length : 0;
+        int end = length;
+
+        // Ignora espaços nas pontas:
+        while (start < end && line[start] == ' ')
+            start++;
+
+        while (end > start && line[end - 1] == ' ')
+            end--;
+
+        // Verifica se o player executou um comando.
+        if (start < end && line[start] == '/')
+            return handleCommand(line, start, end);
+
+        // O limite é aplicado antes da transmissão, que multiplica a linha pela sala.
+        if (!admit(true))
+            return state == SessionState.CONNECTED;
+
+        // Envia a mensagens para todos os usuários.
+        broadcastMessage(new String(line, 0, length, StandardCharsets.UTF_8), true);
+        return true;
+    }
+
+    /**
+     * Processa um frame recebido de um client binário. Jogadas e comandos chegam
+     * como códigos e são despachados sem passar por texto.
+     * 
+     * @param frame  Corpo do frame, começando pelo opcode. Não é guardado após o
+     *               retorno.
+     * @param length Tamanho do corpo.
+     * @return {@code false} se a conexão foi encerrada, {@code true} caso
+     *         contrário.
+     */
+    public boolean handleFrame(byte[] frame, int length) {
+        Metrics.get().messageReceived();
+
+        switch (frame[0]) {
+            case BinaryProtocol.CHAT:
+                if (length - 1 > BinaryProtocol.MAX_CHAT_LENGTH) {
+                    // Com o prefixo do username, a mensagem não caberia nos frames da transmissão.
+                    disconnect(DisconnectReason.PROTOCOL);
+                    return false;
+                }
+
+                if (!admit(true))
+                    return state == SessionState.CONNECTED;
+
+                broadcastMessage(username + ": " + BinaryProtocol.payloadText(frame, length), true);
+                return true;
+            case BinaryProtocol.MOVE:
+                Move move = (length == 2) ? Move.fromCode(frame[1]) : null;
+
+                if (move != null)
+                    return handleMove(move);
+                break;
+            case BinaryProtocol.COMMAND:
+                Command command = (length == 2) ? Command.fromCode(frame[1]) : null;
+
+                if (command != null)
+                    return handleCommand(command);
+                break;
+            case BinaryProtocol.RAW_COMMAND:
+                return handleCommand(frame, 1, length);
+            case BinaryProtocol.SEAL:
+                if (length == 1 + MoveCommitment.DIGEST_LENGTH)
+                    return handleSeal(Arrays.copyOfRange(frame, 1, length));
+                break;
+            case BinaryProtocol.REVEAL:
+                Move revealed = (length == 2 + MoveCommitment.NONCE_LENGTH) ? Move.fromCode(frame[1]) : null;
+
+                if (revealed != null)
+                    return handleReveal(revealed, frame, 2, length, false);
+                break;
+            default:
+                break;
+        }
+
+        if (admit(false))
+            sendMessageToClient("Comando inválido! Digite /comandos para uma lista de comandos válidos.");
+
+        return state == SessionState.CONNECTED;
+    }
+
+    /**
+     * Reconhece o comando escrito em {@code buffer[from, to)} e o executa.
+     * 
+     * @return {@code false} se a conexão foi encerrada, {@code true} caso
+     *         contrário.
+     */
+    private boolean handleCommand(byte[] buffer, int from, int to) {
+        if (MoveCommitment.isSeal(buffer, from, to)) {
+            byte[] commitment = MoveCommitment.parseSeal(buffer, from, to);
+
+            if (commitment != null)
+                return handleSeal(commitment);
+        } else if (MoveCommitment.isReveal(buffer, from, to)) {
+            Move revealed = MoveCommitment.parseRevealMove(buffer, from, to);
+
+            if (revealed != null)
+                return handleReveal(revealed, buffer, MoveCommitment.revealNonceStart(from, revealed), to, true);
+        }
+
+        Move move = Move.parse(buffer, from, to);
+
+        if (move != null)
+            return handleMove(move);
+
+        Command command = Command.parse(buffer, from, to);
+
+        if (command != null)
+            return handleCommand(command);
+
+        if (admit(false))
+            sendMessageToClient("Comando inválido! Digite /comandos para uma lista de comandos válidos.");
+
+        return state == SessionState.CONNECTED;
+    }
+
+    /**
+     * Executa um comando do client (como /sair, /comandos, /fila ou /jogar).
+     * 
+     * @param command Comando recebido.
+     * @return {@code false} se a conexão foi encerrada, {@code true} caso
+     *         contrário.
+     */
+    private boolean handleCommand(Command command) {
+        // Heartbeats e /sair não contam para o limite.
+        if (command != Command.PING && command != Command.SAIR && !admit(false))
+            return state == SessionState.CONNECTED;
+
+        switch (command) {
+            // Se o client utilizou o comando de sair:
+            case SAIR:
+                closeConnection(socket, input, output, DisconnectReason.QUIT); // Encerra a conexão.
+                return false;
+
+            // Se o client deseja ver a lista de comandos:
+            case COMANDOS:
+                sendMessageToClient(
+                        "Comandos disponíveis: /jogar, /sair, /fila, /ranking, /historico, /torneio, /pedra, /papel e /tesoura.");
+                return true;
+
+            // Se o client deseja ver sua situação na fila de jogadores:
+            case FILA:
+                Matchmaker matchmaker = room.getMatchmaker();
+                int position = matchmaker.positionOf(this);
+
+                sendMessageToClient(((position > 0) ? "Sua posição na fila: " + position + ". " : "")
+                        + "Aguardando: " + matchmaker.getQueueDepth()
+                        + ". Espera mediana: " + matchmaker.getMedianWaitMillis() / 1000 + "s.");
+                return true;
+
+            // Se o client deseja ver os melhores usuários:
+            case RANKING:
+                sendRanking();
+                return true;
+
+            // Se o client deseja ver suas últimas partidas:
+            case HISTORICO:
+                sendHistory();
+                return true;
+
+            // Se o client deseja se inscrever no torneio (ou ver como ele está):
+            case TORNEIO:
+                if (tournament != null)
+                    tournament.register(this);
+                else
+                    sendMessageToClient("Os torneios estão desativados neste servidor.");
+                return true;
+
+            // Heartbeat do client: a resposta não é exibida.
+            case PING:
+                send(binary ? PONG_FRAME : PONG_LINE);
+                return true;
+
+            case JOGAR:
+            default:
+                if (isPlayer())
+                    play();
+                else
+                    sendMessageToClient("Você deve ser um jogador para executar este comando.");
+                return true;
+        }
+    }
+
+    /**
+     * Registra a jogada do client, se ele for um jogador.
+     * 
+     * @param move Jogada recebida.
+     * @return {@code false} se a conexão foi encerrada pelo limite de mensagens.
+     */
+    private boolean handleMove(Move move) {
+        if (!admit(false))
+            return state == SessionState.CONNECTED;
+
+        if (Room.sealedMoves) {
+            sendMessageToClient("Este servidor exige jogadas seladas (/selar e /revelar). Atualize o seu client.");
+            return true;
+        }
+
+        if (tournament != null && tournament.submitMove(this, move))
+            return true; // Jogada da partida do torneio.
+
+        if (isPlayer())
+            playerMove(move);
+        else
+            sendMessageToClient("Você deve ser um jogador para executar este comando.");
+
+        return true;
+    }
+
+    /**
+     * Sela a jogada do client, se ele for um jogador (ver {@link Room#sealedMoves}).
+     * 
+     * @param commitment Compromisso recebido.
+     * @return {@code false} se a conexão foi encerrada pelo limite de mensagens.
+     */
+    private boolean handleSeal(byte[] commitment) {
+        if (!admit(false))
+            return state == SessionState.CONNECTED;
+
+        if (!Room.sealedMoves)
+            sendMessageToClient("Este servidor não utiliza jogadas seladas: envie a jogada diretamente.");
+        else if (tournament != null && tournament.seal(this, commitment))
+            return true; // Jogada da partida do torneio.
+        else if (isPlayer())
+            playerSeal(commitment);
+        else
+            sendMessageToClient("Você deve ser um jogador para executar este comando.");
+
+        return true;
+    }
+
+    /**
+     * Confere a jogada revelada com o compromisso selado e a registra. A
+     * conferência (um SHA-256, sem alocação) é feita aqui, na thread da conexão,
+     * fora do monitor da sala ou da partida: o motor recebe apenas o compromisso
+     * conferido e o compara por identidade.
+     * 
+     * @param move   Jogada revelada.
+     * @param buffer Buffer com o nonce.
+     * @param from   Início do nonce.
+     * @param to     Fim do nonce (exclusivo).
+     * @param hex    {@code true} se o nonce está em hexadecimal (client de texto).
+     * @return {@code false} se a conexão foi encerrada pelo limite de mensagens.
+     */
+    private boolean handleReveal(Move move, byte[] buffer, int from, int to, boolean hex) {
+        if (!admit(false))
+            return state == SessionState.CONNECTED;
+
+        boolean competing = tournament != null && tournament.isCompeting(this);
+        TournamentMatch match = competing ? tournament.matchOf(this) : null;
+
+        if (!competing && !isPlayer()) {
+            sendMessageToClient("Você deve ser um jogador para executar este comando.");
+            return true;
+        }
+
+        byte[] commitment = competing ? ((match != null) ? match.getCommitment(this) : null)
+                : room.getCommitment(this);
+
+        if (commitment == null) {
+            sendMessageToClient("Você não tem jogada selada para revelar.");
+            return true;
+        }
+
+        if (!(competing ? match.isRevealing(this) : room.isRevealing(this))) {
+            sendMessageToClient(
+                    "Aguarde o adversário: a revelação será pedida quando as duas jogadas estiverem seladas.");
+            return true;
+        }
+
+        boolean valid = hex ? MoveCommitment.verifyHex(commitment, move, buffer, from, to, identity)
+                : MoveCommitment.verify(commitment, move, buffer, from, identity);
+
+        if (!valid) {
+            Metrics.get().revealRejected();
+            EventLog.warn("reveal_rejected", "session", sessionId, "user", username, "room", room.getId());
+            sendMessageToClient("⚠️ A jogada revelada não confere com a selada. Revele a jogada que você selou.");
+            return true;
+        }
+
+        if (competing)
+            tournament.reveal(this, match, move, commitment);
+        else
+            playerReveal(move, commitment);
+
+        return true;
+    }
+
+    /**
+     * Aplica os limites de taxa (ver {@link TokenBucket}) a uma mensagem recebida,
+     * antes de processá-la ou transmiti-la: o limite da conexão vale para chat,
+     * comandos e jogadas; o da sala, apenas para o chat. Quem excede o limite da
+     * conexão recebe a penalidade da {@link #floodPolicy}. O limite da sala só
+     * descarta: o excesso pode ser culpa dos outros clients.
+     * 
+     * @param chat {@code true} se a mensagem é de chat, transmitida para a sala.
+     * @return {@code true} se a mensagem pode ser processada.
+     */
+    private boolean admit(boolean chat) {
+        long now = System.nanoTime();
+        long muted = mutedUntil;
+
+        if (chat && muted != 0 && now - muted < 0) {
+            Metrics.get().messageShed(false); // Silenciado pela FloodPolicy.MUTE.
+            return false;
+        }
+
+        if (messageLimit != null && !messageLimit.tryAcquire(now)) {
+            Metrics.get().messageShed(false);
+            penalize(now);
+            return false;
+        }
+
+        if (chat && !room.tryChat(now)) {
+            Metrics.get().messageShed(true);
+            warnFlood("A sala está recebendo mensagens demais. Sua mensagem foi descartada.");
+            return false;
+        }
+
+        floodWarned = false;
+        return true;
+    }
+
+    /** Aplica a {@link #floodPolicy} a quem excedeu o limite da conexão. */
+    private void penalize(long now) {
+        switch (floodPolicy) {
+            case DISCONNECT:
+                EventLog.warn("flood", "session", sessionId, "user", username, "policy", "disconnect");
+                closeConnection(socket, input, output, DisconnectReason.FLOOD);
+                break;
+            case MUTE:
+                long muted = mutedUntil;
+
+                if (muted != 0 && now - muted < 0)
+                    break; // Já silenciado.
+
+                mutedUntil = now + TimeUnit.MILLISECONDS.toNanos(FloodPolicy.MUTE_MILLIS);
+                Metrics.get().floodMuted();
+                EventLog.info("flood", "session", sessionId, "user", username, "policy", "mute");
+                sendMessageToClient("🔇 Você enviou mensagens demais e foi silenciado por "
+                        + FloodPolicy.MUTE_MILLIS / 1000 + "s.");
+                break;
+            case DROP:
+            default:
+                warnFlood("Você está enviando mensagens rápido demais. Algumas foram descartadas.");
+                break;
+        }
+    }
+
+    /** Avisa o client uma única vez enquanto as mensagens dele estiverem sendo descartadas. */
+    private void warnFlood(String message) {
+        if (floodWarned)
+            return;
+
+        floodWarned = true;
+        sendMessageToClient("⚠️ " + message);
+    }
+
+    /** Envia ao client os melhores usuários e a sua posição, a partir do índice em memória. */
+    private void sendRanking() {
+        if (history == null) {
+            sendMessageToClient("O histórico de partidas está desativado.");
+            return;
+        }
+
+        List<PlayerStats> ranking = history.getRanking(RANKING_SIZE);
+
+        if (ranking.isEmpty()) {
+            sendMessageToClient("Nenhuma partida registrada ainda.");
+            return;
+        }
+
+        sendMessageToClient("Ranking (vitórias/derrotas/empates):");
+
+        for (int i = 0; i < ranking.size(); i++) {
+            PlayerStats player = ranking.get(i);
+            sendLine("   " + (i + 1) + ". " + player.getUsername() + " — " + player.getWins() + "/"
+                    + player.getLosses() + "/" + player.getDraws());
+        }
+
+        int position = history.positionOf(username);
+
+        if (position > RANKING_SIZE)
+            sendLine("   Sua posição: " + position + ".");
+    }
+
+    /** Envia ao client suas últimas partidas, a partir do índice em memória. */
+    private void sendHistory() {
+        if (history == null) {
+            sendMessageToClient("O histórico de partidas está desativado.");
+            return;
+        }
+
+        PlayerStats stats = history.getStats(username);
+
+        if (stats == null) {
+            sendMessageToClient("Você ainda não tem partidas registradas.");
+            return;
+        }
+
+        sendMessageToClient("Suas últimas partidas (" + stats.getWins() + " vitórias, " + stats.getLosses()
+                + " derrotas, " + stats.getDraws() + " empates):");
+
+        for (MatchRecord match : stats.getRecent())
+            sendLine("   " + match.describe(username));
+    }
+
+    private static boolean startsWith(byte[] buffer, int length, byte[] prefix) {
+        if (prefix.length > length)
+            return false;
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[i] != prefix[i])
+                return false;
+        }
+
+        return true;
+    }
 }
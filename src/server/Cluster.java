@@ -0,0 +1,275 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import protocol.Redirect;
+
+/**
+ * Nó de um cluster de servidores que dividem as salas entre si. Cada sala vive
+ * em um único nó, com todo o seu estado (vagas, jogadas, série); o cluster
+ * decide onde cada usuário que chega deve jogar e, se for em outro nó, o
+ * client é redirecionado para ele (ver {@link Redirect}).
+ *
+ * Os nós trocam, pelo {@link MessageBus}:
+ * <ul>
+ * <li>{@value #NODES_TOPIC}: um heartbeat por nó a cada
+ * {@link #HEARTBEAT_MILLIS}, com o endereço em que ele atende os clients. Um nó
+ * que passa {@link #MISSED_HEARTBEATS} intervalos em silêncio sai do cluster,
+ * junto com as suas salas;</li>
+ * <li>{@value #ROOMS_TOPIC}: a ocupação de cada sala, publicada a cada entrada
+ * ou saída e republicada junto com o heartbeat, para corrigir o que se perdeu.</li>
+ * </ul>
+ *
+ * Um usuário que chega entra, nesta ordem: em uma sala deste nó com vaga; na
+ * sala com vaga de menor id do cluster; ou em uma sala nova, cujo nó é escolhido
+ * pelo {@link ConsistentHashRing} a partir do id. Assim, as salas novas se
+ * espalham entre os nós, e a capacidade cresce com a quantidade de nós.
+ */
+public class Cluster {
+
+    /** Intervalo entre os heartbeats de cada nó. */
+    public static final long HEARTBEAT_MILLIS = 1000;
+
+    /** Heartbeats perdidos após os quais um nó é dado como fora do cluster. */
+    public static final int MISSED_HEARTBEATS = 3;
+
+    /** Tópico dos heartbeats: {@code "<nó> <host> <porta>"}. */
+    public static final String NODES_TOPIC = "nos";
+
+    /** Tópico da ocupação das salas: {@code "<nó> <sala> <clients> <capacidade>"}. */
+    public static final String ROOMS_TOPIC = "salas";
+
+    private final String nodeId;
+
+    /** Endereço em que este nó atende os clients, informado nos redirecionamentos. */
+    private final String host;
+
+    private final int port;
+
+    private final MessageBus bus;
+
+    /** Registro das salas deste nó. */
+    private final RoomRegistry rooms;
+
+    /** Dono das salas novas. */
+    private final ConsistentHashRing ring = new ConsistentHashRing();
+
+    /** Nós do cluster, inclusive este, indexados pelo id. */
+    private final Map<String, Member> members = new ConcurrentHashMap<>();
+
+    /** Salas dos outros nós, indexadas pelo id. */
+    private final Map<Integer, RemoteRoom> directory = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param nodeId Id deste nó, único no cluster e sem espaços.
+     * @param host   Endereço em que os clients alcançam este nó.
+     * @param port   Porta em que este nó atende os clients.
+     * @param bus    Barramento compartilhado pelos nós.
+     * @param rooms  Registro das salas deste nó.
+     */
+    public Cluster(String nodeId, String host, int port, MessageBus bus, RoomRegistry rooms) {
+        this.nodeId = nodeId;
+        this.host = host;
+        this.port = port;
+        this.bus = bus;
+        this.rooms = rooms;
+    }
+
+    /** Entra no cluster: assina os tópicos e inicia os heartbeats. */
+    public void start() {
+        members.put(nodeId, new Member(host, port));
+        ring.add(nodeId);
+
+        // O registro só abre por conta própria as salas que o anel atribui a este nó.
+        rooms.setOwnership(id -> !directory.containsKey(id) && nodeId.equals(ring.nodeFor(id)));
+
+        bus.subscribe(NODES_TOPIC, this::onNode);
+        bus.subscribe(ROOMS_TOPIC, this::onRoom);
+        scheduler.scheduleAtFixedRate(this::heartbeat, 0, HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+
+        EventLog.info("cluster_started", "node", nodeId, "address", host + ":" + port);
+    }
+
+    /**
+     * Escolhe a sala de um usuário que acabou de se conectar a este nó.
+     *
+     * @return Id da sala escolhida, ou 0 se há vaga em uma sala deste nó.
+     */
+    public int place() {
+        if (rooms.hasVacancy())
+            return 0;
+
+        int best = 0;
+
+        for (Map.Entry<Integer, RemoteRoom> entry : directory.entrySet()) {
+            if (entry.getValue().hasVacancy() && (best == 0 || entry.getKey() < best))
+                best = entry.getKey();
+        }
+
+        if (best != 0)
+            return best;
+
+        // Sala nova: o menor id livre no cluster; o anel decide o nó.
+        int id = 1;
+
+        while (directory.containsKey(id) || rooms.contains(id))
+            id++;
+
+        return id;
+    }
+
+    /**
+     * @param roomId Sala escolhida por {@link #place()}.
+     * @return Redirecionamento para o nó da sala, ou {@code null} se ela é (ou
+     *         será aberta) neste nó.
+     */
+    public Redirect redirectFor(int roomId) {
+        if (roomId == 0 || rooms.contains(roomId))
+            return null;
+
+        RemoteRoom remote = directory.get(roomId);
+        String owner = (remote != null) ? remote.node : ring.nodeFor(roomId);
+        Member member = (owner != null) ? members.get(owner) : null;
+
+        if (member == null || owner.equals(nodeId))
+            return null;
+
+        return new Redirect(member.host, member.port, roomId);
+    }
+
+    /**
+     * Publica a ocupação de uma sala deste nó. Chamado a cada entrada ou saída.
+     *
+     * @param room Sala cuja ocupação mudou.
+     */
+    public void roomChanged(Room room) {
+        int clients = room.getClients().size(); // Zero: a sala foi fechada.
+        bus.publish(ROOMS_TOPIC, nodeId + " " + room.getId() + " " + clients + " " + room.getCapacity());
+    }
+
+    /** @return Quantidade de nós no cluster, inclusive este. */
+    public int size() {
+        return members.size();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /** Sai do cluster. Os outros nós percebem pela falta dos heartbeats. */
+    public void close() {
+        scheduler.shutdownNow();
+        bus.close();
+    }
+
+    /** Anuncia este nó e suas salas, e remove os nós que pararam de responder. */
+    private void heartbeat() {
+        bus.publish(NODES_TOPIC, nodeId + " " + host + " " + port);
+
+        for (Room room : rooms.getRooms())
+            roomChanged(room);
+
+        long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_MILLIS * MISSED_HEARTBEATS);
+
+        for (Map.Entry<String, Member> entry : members.entrySet()) {
+            if (!entry.getKey().equals(nodeId) && entry.getValue().lastSeen < deadline)
+                removeMember(entry.getKey());
+        }
+    }
+
+    private void onNode(String message) {
+        String[] parts = message.split(" ");
+
+        if (parts.length != 3 || parts[0].equals(nodeId))
+            return;
+
+        Member member = members.get(parts[0]);
+
+        if (member != null) {
+            member.lastSeen = System.nanoTime();
+            return;
+        }
+
+        try {
+            members.put(parts[0], new Member(parts[1], Integer.parseInt(parts[2])));
+        } catch (NumberFormatException e) {
+            return; // Heartbeat malformado.
+        }
+
+        ring.add(parts[0]);
+        EventLog.info("node_joined", "node", parts[0], "address", parts[1] + ":" + parts[2], "nodes", members.size());
+    }
+
+    private void onRoom(String message) {
+        String[] parts = message.split(" ");
+
+        if (parts.length != 4 || parts[0].equals(nodeId) || !members.containsKey(parts[0]))
+            return; // Salas deste nó, ou de um nó que ainda não se anunciou.
+
+        try {
+            int id = Integer.parseInt(parts[1]);
+            int clients = Integer.parseInt(parts[2]);
+
+            if (clients == 0)
+                directory.computeIfPresent(id, (key, room) -> room.node.equals(parts[0]) ? null : room);
+            else
+                directory.put(id, new RemoteRoom(parts[0], clients, Integer.parseInt(parts[3])));
+        } catch (NumberFormatException e) {
+            // Ocupação malformada.
+        }
+    }
+
+    private void removeMember(String node) {
+        members.remove(node);
+        ring.remove(node);
+        directory.values().removeIf(room -> room.node.equals(node));
+
+        EventLog.warn("node_left", "node", node, "nodes", members.size());
+    }
+
+    /** Nó do cluster. */
+    private static class Member {
+
+        private final String host;
+
+        private final int port;
+
+        /** Instante (nanoTime) do último heartbeat recebido. */
+        private volatile long lastSeen = System.nanoTime();
+
+        Member(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+    }
+
+    /** Ocupação de uma sala de outro nó. */
+    private static class RemoteRoom {
+
+        private final String node;
+
+        private final int clients;
+
+        private final int capacity;
+
+        RemoteRoom(String node, int clients, int capacity) {
+            this.node = node;
+            this.clients = clients;
+            this.capacity = capacity;
+        }
+
+        boolean hasVacancy() {
+            return clients < capacity;
+        }
+    }
+}
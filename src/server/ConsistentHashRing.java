@@ -0,0 +1,85 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Anel de hashing consistente que define o nó dono de cada sala nova do
+ * {@link Cluster}. Cada nó ocupa {@link #VIRTUAL_NODES} pontos do anel, e uma
+ * chave pertence ao primeiro ponto a partir do seu hash, no sentido horário.
+ *
+ * Quando um nó entra ou sai, apenas as chaves dos arcos vizinhos aos seus
+ * pontos mudam de dono (cerca de 1/N delas), e os pontos virtuais espalham a
+ * carga de maneira uniforme: cada nó a mais recebe a sua parte das salas novas.
+ */
+public class ConsistentHashRing {
+
+    /** Pontos de cada nó no anel. */
+    public static final int VIRTUAL_NODES = 160;
+
+    /** Pontos do anel, ordenados pelo hash. */
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * Adiciona um nó ao anel. Nós já presentes são ignorados.
+     *
+     * @param node Id do nó.
+     */
+    public synchronized void add(String node) {
+        for (int i = 0; i < VIRTUAL_NODES; i++)
+            ring.putIfAbsent(hash(node + "#" + i), node);
+    }
+
+    /**
+     * Remove um nó do anel; as chaves dele passam para os vizinhos.
+     *
+     * @param node Id do nó.
+     */
+    public synchronized void remove(String node) {
+        ring.values().removeIf(node::equals);
+    }
+
+    /**
+     * @param key Chave procurada (ex.: id da sala).
+     * @return Id do nó dono da chave, ou {@code null} se o anel estiver vazio.
+     */
+    public synchronized String nodeFor(int key) {
+        if (ring.isEmpty())
+            return null;
+
+        Map.Entry<Long, String> point = ring.ceilingEntry(mix(key));
+        return ((point != null) ? point : ring.firstEntry()).getValue();
+    }
+
+    /** @return Quantidade de nós no anel. */
+    public synchronized int size() {
+        return (int) ring.values().stream().distinct().count();
+    }
+
+    /** Hash FNV-1a de 64 bits, espalhado pelo {@link #mix(long)}. */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+
+        return mix(hash);
+    }
+
+    /**
+     * Finalizador do MurmurHash3: chaves vizinhas (salas 1, 2, 3...) caem em
+     * pontos distantes do anel.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
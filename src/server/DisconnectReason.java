@@ -0,0 +1,55 @@
+package server;
+
+/**
+ * Motivo pelo qual a conexão de um client foi encerrada. Contabilizado pelas
+ * {@link Metrics}.
+ */
+public enum DisconnectReason {
+
+    /** O usuário saiu com /sair. */
+    QUIT("quit"),
+
+    /** O client fechou a conexão. */
+    CLOSED("closed"),
+
+    /** Erro de leitura ou escrita no socket. */
+    ERROR("error"),
+
+    /** Desconectado pela {@link BackpressurePolicy} por não consumir as mensagens. */
+    SLOW("slow"),
+
+    /** O client violou o protocolo (handshake inválido, linha ou frame malformado). */
+    PROTOCOL("protocol"),
+
+    /** A sessão foi retomada em outra conexão antes desta ser dada como perdida. */
+    REPLACED("replaced"),
+
+    /** Nada chegou do client dentro do prazo de leitura (ver {@link ReadDeadline}). */
+    IDLE("idle"),
+
+    /** A sala do client está em outro nó do {@link Cluster}, para onde ele foi redirecionado. */
+    REDIRECTED("redirected"),
+
+    /** O client excedeu o limite de mensagens, com a {@link FloodPolicy#DISCONNECT}. */
+    FLOOD("flood"),
+
+    /** O servidor foi encerrado (ver {@link Drain}). */
+    SHUTDOWN("shutdown"),
+
+    /**
+     * O servidor foi reiniciado e a sessão passou para o novo processo, onde o
+     * client a retoma (ver {@link Handoff}).
+     */
+    HANDOFF("handoff");
+
+    /** Nome utilizado na exposição das métricas. */
+    private final String label;
+
+    DisconnectReason(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
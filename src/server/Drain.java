@@ -0,0 +1,164 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Encerramento gracioso do servidor, executado ao receber o sinal de término
+ * (ex.: {@code kill} ou Ctrl+C, pelo shutdown hook) ou antes da transferência
+ * para um novo processo (ver {@link Handoff}).
+ *
+ * O servidor para de aceitar conexões, avisa as salas e deixa as partidas em
+ * andamento terminarem (ver {@link Room#isPlaying()}) até o prazo de drenagem,
+ * sem formar partidas novas (ver {@link Room#closing}). Em seguida, avisa que
+ * está encerrando, dá um instante para as filas de saída esvaziarem e encerra
+ * as conexões; os resultados já anunciados chegam aos clients e ao
+ * {@link MatchHistory}.
+ */
+public class Drain {
+
+    /** Prazo padrão para as partidas em andamento terminarem, em segundos. */
+    public static final int DEFAULT_DEADLINE_SECONDS = 30;
+
+    /** Intervalo entre as verificações das partidas em andamento. */
+    private static final long POLL_MILLIS = 100;
+
+    /** Tempo máximo para as filas de saída entregarem o aviso final. */
+    private static final long LINGER_MILLIS = 1000;
+
+    /** Indica se o servidor parou de aceitar conexões para encerrar. */
+    private static volatile boolean draining;
+
+    private final RoomRegistry rooms;
+
+    /** Fecha a porta do servidor, sem encerrar as conexões já aceitas. */
+    private final Runnable stopAccepting;
+
+    /** Prazo para as partidas em andamento terminarem. */
+    private final long deadlineMillis;
+
+    /** Garante que apenas um encerramento (drenagem ou transferência) aconteça. */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * @param rooms          Salas do servidor.
+     * @param stopAccepting  Fecha a porta do servidor (ex.:
+     *                       {@link Server#stopAccepting()}).
+     * @param deadlineMillis Prazo para as partidas em andamento terminarem.
+     */
+    public Drain(RoomRegistry rooms, Runnable stopAccepting, long deadlineMillis) {
+        this.rooms = rooms;
+        this.stopAccepting = stopAccepting;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    /** @return {@code true} se o servidor está encerrando ou passando as sessões a outro processo. */
+    public static boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Para de aceitar conexões, se nenhum encerramento começou ainda.
+     *
+     * @return {@code false} se outro encerramento já está em andamento.
+     */
+    boolean stopAccepting() {
+        if (!started.compareAndSet(false, true))
+            return false;
+
+        draining = true;
+        stopAccepting.run();
+        return true;
+    }
+
+    /**
+     * Drena e encerra as conexões. Retorna quando todas estiverem encerradas; o
+     * processo termina em seguida. Chamadas após o início de um encerramento não
+     * têm efeito.
+     */
+    public void run() {
+        if (!stopAccepting())
+            return;
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+
+        Room.closing = true;
+        EventLog.info("drain_started", "sessions", rooms.sessionCount(), "playing", playingCount(), "deadline_s",
+                deadlineMillis / 1000);
+
+        broadcast("🚧 O servidor será encerrado. As partidas em andamento têm até " + deadlineMillis / 1000
+                + "s para terminar; nenhuma partida nova será iniciada.");
+
+        int playing;
+
+        while ((playing = playingCount()) > 0 && System.nanoTime() - deadline < 0)
+            pause(POLL_MILLIS);
+
+        // O resultado é anunciado fora do monitor da sala, logo após a última jogada: dá tempo para ele sair.
+        pause(POLL_MILLIS);
+
+        broadcast("🚨 O servidor foi encerrado. Até a próxima!");
+        awaitOutbound(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LINGER_MILLIS));
+
+        int sessions = 0;
+
+        for (ClientHandler client : rooms.getSessions()) {
+            client.disconnect(DisconnectReason.SHUTDOWN);
+            sessions++;
+        }
+
+        EventLog.info("drain_finished", "sessions", sessions, "unfinished", playing, "duration_ms",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /** @return Salas com partida em andamento. */
+    private int playingCount() {
+        int playing = 0;
+
+        for (Room room : rooms.getRooms()) {
+            if (room.isPlaying())
+                playing++;
+        }
+
+        return playing;
+    }
+
+    /** Envia um aviso do servidor a todas as salas. */
+    void broadcast(String message) {
+        for (Room room : rooms.getRooms())
+            ClientHandler.sendServerMessage(room, message);
+    }
+
+    /**
+     * Aguarda as filas de saída esvaziarem e seus bytes chegarem aos sockets, até
+     * o instante informado (nanoTime).
+     */
+    private void awaitOutbound(long until) {
+        while (System.nanoTime() - until < 0) {
+            boolean idle = true;
+
+            for (ClientHandler client : rooms.getSessions()) {
+                OutboundQueue queue = client.getOutbound();
+
+                if (!client.isSuspended() && queue != null && !queue.isIdle()) {
+                    idle = false;
+                    break;
+                }
+            }
+
+            if (idle)
+                return;
+
+            pause(POLL_MILLIS / 10);
+        }
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
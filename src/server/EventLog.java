@@ -0,0 +1,322 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log de eventos assíncrono do servidor (entradas, saídas, jogadas, resultados
+ * e erros).
+ *
+ * Quem registra um evento apenas reserva uma posição em um buffer circular e
+ * guarda o registro, sem travas e sem formatar texto. Uma thread própria
+ * esvazia o buffer em lotes, formata cada registro como {@code chave=valor}
+ * (logfmt) e faz uma única escrita por lote. Se o buffer estiver cheio, o
+ * registro é descartado e contado, em vez de bloquear a thread que o gerou.
+ */
+public final class EventLog {
+
+    /** Capacidade padrão do buffer (potência de dois). */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /** Quantidade máxima de registros escritos por lote. */
+    private static final int BATCH_SIZE = 512;
+
+    /** Espera da thread de escrita quando o buffer está vazio. */
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    /** Nível mínimo dos registros aceitos. */
+    private static volatile LogLevel level = LogLevel.INFO;
+
+    private static final EventLog INSTANCE = new EventLog(DEFAULT_CAPACITY, System.out);
+
+    /** Registros publicados. Uma posição {@code null} ainda não foi preenchida. */
+    private final AtomicReferenceArray<Record> slots;
+
+    private final int mask;
+
+    /** Próxima posição a ser reservada por quem registra. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Próxima posição a ser lida. Alterada apenas pela thread de escrita. */
+    private volatile long head;
+
+    /** Registros descartados por falta de espaço no buffer. */
+    private final LongAdder dropped = new LongAdder();
+
+    /** Destino dos registros. Utilizado apenas pela thread de escrita. */
+    private volatile Writer writer;
+
+    private final Thread thread;
+
+    /** Shutdown hook que encerra o log. */
+    private Thread stopHook;
+
+    /** Indica que o servidor está sendo encerrado: escreve o restante e para. */
+    private volatile boolean stopping;
+
+    private EventLog(int capacity, OutputStream output) {
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+
+        this.thread = new Thread(this::drain, "event-log");
+        this.thread.setDaemon(true);
+        this.thread.start();
+
+        // Escreve o que restou no buffer quando o servidor for encerrado.
+        this.stopHook = new Thread(this::stop, "event-log-stop");
+        Runtime.getRuntime().addShutdownHook(stopHook);
+    }
+
+    /** @param minimum Nível mínimo dos registros a partir de agora. */
+    public static void setLevel(LogLevel minimum) {
+        level = minimum;
+    }
+
+    /**
+     * Passa a escrever os registros no stream informado (ex.: um arquivo) em vez
+     * da saída padrão.
+     */
+    public static void setOutput(OutputStream output) {
+        INSTANCE.writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encerra o log só depois do shutdown hook informado, em vez de junto com
+     * ele: os eventos registrados durante o encerramento (ex.: a drenagem, ver
+     * {@link Drain}) também são escritos.
+     *
+     * @param hook Shutdown hook já registrado.
+     */
+    public static synchronized void stopAfter(Thread hook) {
+        Runtime.getRuntime().removeShutdownHook(INSTANCE.stopHook);
+
+        INSTANCE.stopHook = new Thread(() -> {
+            try {
+                hook.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            INSTANCE.stop();
+        }, "event-log-stop");
+
+        Runtime.getRuntime().addShutdownHook(INSTANCE.stopHook);
+    }
+
+    /** @return Registros descartados desde o início, por falta de espaço. */
+    public static long getDroppedCount() {
+        return INSTANCE.dropped.sum();
+    }
+
+    public static boolean isEnabled(LogLevel recordLevel) {
+        return recordLevel.compareTo(level) >= 0;
+    }
+
+    /**
+     * Registra um evento.
+     * 
+     * @param recordLevel Nível do registro.
+     * @param event       Nome do evento (ex.: {@code join}).
+     * @param fields      Pares chave/valor, alternados.
+     */
+    public static void log(LogLevel recordLevel, String event, Object... fields) {
+        if (isEnabled(recordLevel))
+            INSTANCE.offer(new Record(System.currentTimeMillis(), recordLevel, event, fields, null));
+    }
+
+    public static void debug(String event, Object... fields) {
+        log(LogLevel.DEBUG, event, fields);
+    }
+
+    public static void info(String event, Object... fields) {
+        log(LogLevel.INFO, event, fields);
+    }
+
+    public static void warn(String event, Object... fields) {
+        log(LogLevel.WARN, event, fields);
+    }
+
+    /**
+     * Registra um erro, com a pilha de execução da exceção.
+     * 
+     * @param event  Nome do evento.
+     * @param error  Exceção que causou o erro.
+     * @param fields Pares chave/valor, alternados.
+     */
+    public static void error(String event, Throwable error, Object... fields) {
+        if (isEnabled(LogLevel.ERROR))
+            INSTANCE.offer(new Record(System.currentTimeMillis(), LogLevel.ERROR, event, fields, error));
+    }
+
+    /** Reserva uma posição do buffer e publica o registro, sem bloquear. */
+    private void offer(Record record) {
+        long position;
+
+        do {
+            position = tail.get();
+
+            if (position - head >= slots.length()) {
+                dropped.increment(); // Buffer cheio: a escrita não está dando conta.
+                return;
+            }
+        } while (!tail.compareAndSet(position, position + 1));
+
+        slots.set((int) (position & mask), record);
+    }
+
+    /** @return Próximo registro publicado, ou {@code null}. */
+    private Record poll() {
+        int index = (int) (head & mask);
+        Record record = slots.get(index);
+
+        // Vazio, ou a posição foi reservada mas ainda não preenchida.
+        if (record == null)
+            return null;
+
+        slots.set(index, null); // Libera a posição antes de avançar a leitura.
+        head = head + 1;
+        return record;
+    }
+
+    /** Loop da thread de escrita. */
+    private void drain() {
+        StringBuilder batch = new StringBuilder(BATCH_SIZE * 128);
+        long reportedDrops = 0;
+
+        while (true) {
+            int count = 0;
+            Record record;
+
+            while (count < BATCH_SIZE && (record = poll()) != null) {
+                record.format(batch);
+                count++;
+            }
+
+            // Informa os descartes no próprio log, uma vez por lote.
+            long drops = dropped.sum();
+
+            if (drops > reportedDrops) {
+                new Record(System.currentTimeMillis(), LogLevel.WARN, "log_dropped",
+                        new Object[] { "count", drops - reportedDrops, "total", drops }, null).format(batch);
+                reportedDrops = drops;
+                count++;
+            }
+
+            if (count == 0) {
+                if (stopping)
+                    return; // Buffer vazio após o pedido de parada.
+
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            write(batch);
+        }
+    }
+
+    /** Escreve o lote com uma única escrita e um único flush. */
+    private void write(StringBuilder batch) {
+        try {
+            Writer out = writer;
+            out.append(batch);
+            out.flush();
+        } catch (IOException e) {
+            // Sem onde registrar a falha do próprio log: descarta o lote.
+        }
+
+        batch.setLength(0);
+    }
+
+    /** Pede para a thread de escrita esvaziar o buffer e aguarda, por pouco tempo. */
+    private void stop() {
+        stopping = true;
+        LockSupport.unpark(thread);
+
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Registro ainda não formatado. A formatação acontece na thread de escrita. */
+    private static final class Record {
+
+        private final long timestamp;
+
+        private final LogLevel level;
+
+        private final String event;
+
+        private final Object[] fields;
+
+        private final Throwable error;
+
+        Record(long timestamp, LogLevel level, String event, Object[] fields, Throwable error) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.event = event;
+            this.fields = fields;
+            this.error = error;
+        }
+
+        /** Formata o registro como uma linha {@code chave=valor}. */
+        void format(StringBuilder out) {
+            out.append("ts=").append(Instant.ofEpochMilli(timestamp))
+                    .append(" level=").append(level.name().toLowerCase())
+                    .append(" event=").append(event);
+
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                out.append(' ').append(fields[i]).append('=');
+                appendValue(out, fields[i + 1]);
+            }
+
+            if (error != null) {
+                out.append(" error=");
+                appendValue(out, error.toString());
+            }
+
+            out.append('\n');
+
+            // A pilha de execução segue o registro, indentada.
+            if (error != null) {
+                for (StackTraceElement element : error.getStackTrace())
+                    out.append("    at ").append(element).append('\n');
+            }
+        }
+
+        /** Valores com espaços, aspas ou '=' são escritos entre aspas. */
+        private static void appendValue(StringBuilder out, Object value) {
+            String text = String.valueOf(value);
+
+            if (!text.isEmpty() && text.chars().noneMatch(c -> c <= ' ' || c == '"' || c == '=')) {
+                out.append(text);
+                return;
+            }
+
+            out.append('"');
+
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+
+                if (c == '"' || c == '\\')
+                    out.append('\\').append(c);
+                else if (c == '\n')
+                    out.append("\\n");
+                else
+                    out.append(c);
+            }
+
+            out.append('"');
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package server;
+
+import java.util.List;
+
+/**
+ * Pareamento por ordem de chegada: o primeiro da fila sempre é o próximo a
+ * jogar.
+ */
+public class FifoPairing implements PairingStrategy {
+
+    @Override
+    public QueueEntry select(List<QueueEntry> waiting, ClientHandler opponent, long now) {
+        return waiting.get(0);
+    }
+}
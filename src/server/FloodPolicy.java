@@ -0,0 +1,44 @@
+package server;
+
+/**
+ * O que fazer quando um client excede o limite de mensagens da sua conexão
+ * (ver {@link TokenBucket}). As mensagens acima do limite nunca são
+ * processadas; a política define a penalidade.
+ */
+public enum FloodPolicy {
+
+    /** Descarta as mensagens acima do limite. O client é avisado uma vez. */
+    DROP,
+
+    /**
+     * Descarta as mensagens acima do limite e silencia o chat do client por
+     * {@link #MUTE_MILLIS}. Comandos e jogadas continuam sujeitos apenas ao limite.
+     */
+    MUTE,
+
+    /** Desconecta o client. */
+    DISCONNECT;
+
+    /** Duração do silêncio imposto por {@link #MUTE}. */
+    public static final long MUTE_MILLIS = 10_000;
+
+    /**
+     * Retorna a política correspondente ao nome informado na linha de comando.
+     *
+     * @param name {@code descartar}, {@code silenciar} ou {@code desconectar}.
+     * @return Política de flood.
+     * @throws IllegalArgumentException Se o nome for desconhecido.
+     */
+    public static FloodPolicy byName(String name) {
+        switch (name) {
+            case "descartar":
+                return DROP;
+            case "silenciar":
+                return MUTE;
+            case "desconectar":
+                return DISCONNECT;
+            default:
+                throw new IllegalArgumentException("Política de flood desconhecida: " + name);
+        }
+    }
+}
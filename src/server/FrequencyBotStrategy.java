@@ -0,0 +1,51 @@
+package server;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import protocol.Move;
+
+/**
+ * Prevê que o adversário repetirá a jogada que mais usa e joga a que vence
+ * ela. As rodadas antigas perdem peso a cada nova ({@link #DECAY}), então o
+ * bot acompanha quem muda de preferência no meio da partida.
+ */
+public class FrequencyBotStrategy implements BotStrategy {
+
+    /** Peso que as rodadas anteriores mantêm a cada nova rodada. */
+    static final double DECAY = 0.9;
+
+    /** Peso de cada jogada do adversário, pelo código. */
+    private final double[] weights = new double[Move.count()];
+
+    @Override
+    public String getName() {
+        return "frequência";
+    }
+
+    @Override
+    public Move choose(Random random) {
+        int predicted = BotStrategy.heaviest(weights, random);
+
+        if (predicted < 0)
+            return Move.fromCode(random.nextInt(Move.count())); // Ainda não viu o adversário jogar.
+
+        return Move.fromCode(predicted).counter();
+    }
+
+    @Override
+    public void observe(Move own, Move opponent) {
+        if (opponent == null)
+            return;
+
+        for (int i = 0; i < weights.length; i++)
+            weights[i] *= DECAY;
+
+        weights[opponent.ordinal()] += 1;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(weights, 0);
+    }
+}
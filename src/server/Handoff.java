@@ -0,0 +1,370 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import protocol.Move;
+
+/**
+ * Reinício sem queda: um novo processo (ex.: uma nova versão do servidor)
+ * assume a porta e as salas de um processo em execução, e os clients voltam à
+ * mesma partida sem perceber mais que uma queda de conexão.
+ *
+ * Os dois processos abrem a porta do servidor com {@code SO_REUSEPORT} (ver
+ * {@link Server#reusePort}). O processo em execução escuta uma porta de
+ * controle no endereço local; o novo processo abre a porta do servidor (as
+ * conexões que chegam a ele aguardam no backlog) e pede a transferência pela
+ * porta de controle. O processo anterior, então:
+ * <ol>
+ * <li>para de aceitar conexões (ver {@link Drain#stopAccepting()});</li>
+ * <li>avisa as salas e encerra as conexões, suspendendo as sessões como em uma
+ * queda (ver {@link SessionResumption}): as mensagens que não saíram ficam no
+ * {@link ReplayBuffer} de cada sessão;</li>
+ * <li>envia as salas (mesas, com vagas, jogadas e placar da série, e fila) e
+ * as sessões (token, username, protocolo, rating e replay), sala por sala, sob
+ * o monitor de cada uma;</li>
+ * <li>fecha o {@link MatchHistory} e encerra o processo quando o novo confirma
+ * o recebimento.</li>
+ * </ol>
+ * O novo processo recria as salas e as sessões suspensas (ver
+ * {@link Room#restore}) e só então começa a aceitar conexões: o client
+ * reconecta sozinho, apresenta o token e retoma a sessão, recebendo o que se
+ * perdeu na troca.
+ *
+ * O torneio em andamento não é transferido: os inscritos voltam para a fila da
+ * sala no novo processo.
+ *
+ * <pre>
+ * pedido:   [MAGIC: u32][VERSION: u8]
+ * resposta: [aceito: bool][salas: u32][sala]*[concluído: bool]
+ * sala:     [id: u32][mesas: u32][mesa]*[fila: u32][sessão?]*
+ * mesa:     [sessão? + jogada: u8] x 2[vitórias: u32 x 2][rodadas: u32]
+ * sessão?:  [presente: bool][token][username][binário: bool][rating: u32][replay]
+ * </pre>
+ */
+public class Handoff {
+
+    /** Porta de controle padrão, aberta apenas no endereço local. */
+    public static final int DEFAULT_PORT = 7779;
+
+    /** Identifica o pedido de transferência ("JKHO"). */
+    private static final int MAGIC = 0x4A4B484F;
+
+    /** Versão do formato da transferência. */
+    private static final byte VERSION = 2;
+
+    /** Código de uma vaga sem jogada. */
+    private static final byte NO_MOVE = (byte) 0xFF;
+
+    /** Tempo máximo de espera pela confirmação do novo processo. */
+    private static final int ACK_TIMEOUT_MILLIS = 10_000;
+
+    /** Porta de controle deste processo. */
+    private final int port;
+
+    private final RoomRegistry rooms;
+
+    /** Encerramento do servidor; a transferência o substitui. */
+    private final Drain drain;
+
+    private ServerSocket control;
+
+    /**
+     * @param port  Porta de controle, aberta no endereço local.
+     * @param rooms Salas do servidor.
+     * @param drain Encerramento do servidor. Apenas um dos dois (drenagem ou
+     *              transferência) acontece.
+     */
+    public Handoff(int port, RoomRegistry rooms, Drain drain) {
+        this.port = port;
+        this.rooms = rooms;
+        this.drain = drain;
+    }
+
+    /**
+     * Abre a porta de controle e aguarda o pedido de um novo processo em uma
+     * thread própria.
+     *
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public void start() throws IOException {
+        if (ClientHandler.resumption == null)
+            throw new IllegalStateException("A transferência exige a retomada de sessões (--retomada maior que 0).");
+
+        control = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+
+        // Não é daemon: durante a transferência, é a única thread que mantém o processo vivo.
+        new Thread(this::acceptSuccessor, "handoff-control").start();
+
+        EventLog.info("handoff_listening", "port", port);
+    }
+
+    /** Atende os pedidos de transferência até que um deles seja aceito. */
+    private void acceptSuccessor() {
+        while (!control.isClosed()) {
+            try (Socket socket = control.accept()) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+                if (in.readInt() != MAGIC || in.readByte() != VERSION)
+                    continue; // Não é um servidor (ou é de outra versão do formato).
+
+                boolean accepted = drain.stopAccepting();
+                out.writeBoolean(accepted);
+                out.flush();
+
+                if (accepted)
+                    handOver(socket, in, out); // Não retorna: o processo termina.
+            } catch (IOException e) {
+                if (!control.isClosed())
+                    EventLog.error("handoff_failed", e);
+            }
+        }
+    }
+
+    /**
+     * Passa as salas e as sessões ao novo processo e encerra este. Se a
+     * transferência falhar no meio, o processo também termina: a porta já foi
+     * fechada, e os clients entram no novo processo como novos usuários.
+     */
+    private void handOver(Socket socket, DataInputStream in, DataOutputStream out) {
+        long start = System.nanoTime();
+        int sessions = rooms.sessionCount();
+        int transferred = 0;
+        int status = 0;
+
+        try {
+            control.close(); // O novo processo abre a sua porta de controle.
+        } catch (IOException e) {
+            // Nenhum outro pedido será atendido de qualquer forma.
+        }
+
+        EventLog.info("handoff_started", "rooms", rooms.size(), "sessions", sessions);
+        drain.broadcast("🔄 O servidor está sendo atualizado. Você volta a esta sala em instantes, sem perder a partida.");
+
+        // Nenhuma mesa nova neste processo: os bots saem sem que a vaga seja preenchida aqui.
+        Room.closing = true;
+
+        // Depois disso, nenhuma mensagem chega dos clients: o estado só muda pelos prazos.
+        for (ClientHandler client : rooms.getSessions())
+            client.disconnect(DisconnectReason.HANDOFF);
+
+        try {
+            List<Room> snapshot = new ArrayList<>(rooms.getRooms());
+            out.writeInt(snapshot.size());
+
+            for (Room room : snapshot)
+                out.write(encode(room));
+
+            if (ClientHandler.history != null)
+                ClientHandler.history.close(); // O novo processo abre o histórico em seguida.
+
+            out.writeBoolean(true);
+            out.flush();
+
+            socket.setSoTimeout(ACK_TIMEOUT_MILLIS);
+            in.readByte(); // Confirmação de que o novo processo recebeu tudo.
+            transferred = sessions;
+        } catch (IOException e) {
+            EventLog.error("handoff_failed", e);
+            status = 1;
+        }
+
+        EventLog.info("handoff_finished", "sessions", transferred, "duration_ms",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        System.exit(status);
+    }
+
+    /**
+     * Codifica uma sala sob o seu monitor, para que as mesas (vagas, jogadas e
+     * placar) e a fila sejam do mesmo instante.
+     */
+    private static byte[] encode(Room room) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        synchronized (room) {
+            out.writeInt(room.getId());
+
+            List<Table> tables = room.getTables();
+            out.writeInt(tables.size());
+
+            for (Table table : tables) {
+                for (int seat = 0; seat < Room.MAX_PLAYERS; seat++) {
+                    ClientHandler player = table.getPlayer(seat);
+                    Move move = (player != null) ? table.getMove(seat) : null;
+
+                    writeSession(out, player);
+                    out.writeByte((move != null) ? move.ordinal() : NO_MOVE);
+                }
+
+                out.writeInt(table.getWins(0));
+                out.writeInt(table.getWins(1));
+                out.writeInt(table.getSeriesRound());
+            }
+
+            List<ClientHandler> queue = room.getMatchmaker().getQueued();
+            out.writeInt(queue.size());
+
+            for (ClientHandler client : queue)
+                writeSession(out, client);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Grava uma sessão, ou apenas a sua ausência (vaga livre, usuário ainda sem
+     * token ou {@link Bot}). Bots não são transferidos: a vaga vai como livre, e
+     * o novo processo a preenche com a fila ou com outro bot (ver
+     * {@link Room#fillEmptySeats()}).
+     */
+    private static void writeSession(DataOutputStream out, ClientHandler client) throws IOException {
+        String token = (client != null && !(client instanceof Bot)) ? client.getToken() : null;
+
+        out.writeBoolean(token != null);
+
+        if (token == null)
+            return;
+
+        out.writeUTF(token);
+        out.writeUTF(client.getUsername());
+        out.writeBoolean(client.isBinary());
+        out.writeInt(client.getRating());
+        client.getReplay().writeTo(out);
+    }
+
+    /**
+     * Assume as salas e as sessões do processo que escuta a porta de controle
+     * informada. Deve ser chamado com a porta do servidor já aberta (ver
+     * {@link Server#bind(int)}) e antes de aceitar conexões.
+     *
+     * @param port  Porta de controle do processo anterior.
+     * @param rooms Registro de salas deste processo, ainda vazio.
+     * @return Quantidade de sessões recebidas.
+     * @throws IOException Se o processo anterior estiver inacessível, recusar
+     *                     o pedido ou a transferência falhar.
+     */
+    public static int takeOver(int port, RoomRegistry rooms) throws IOException {
+        if (ClientHandler.resumption == null)
+            throw new IllegalStateException("A transferência exige a retomada de sessões (--retomada maior que 0).");
+
+        long start = System.nanoTime();
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.flush();
+
+            if (!in.readBoolean())
+                throw new IOException("O servidor em execução já está sendo encerrado.");
+
+            int roomCount = in.readInt();
+            int sessions = 0;
+
+            for (int i = 0; i < roomCount; i++)
+                sessions += readRoom(in, rooms);
+
+            if (!in.readBoolean())
+                throw new IOException("Transferência incompleta.");
+
+            out.writeByte(1); // Confirmação: o processo anterior pode terminar.
+            out.flush();
+
+            EventLog.info("handoff_received", "rooms", roomCount, "sessions", sessions, "duration_ms",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return sessions;
+        }
+    }
+
+    /**
+     * Recria uma sala e as suas sessões.
+     *
+     * @return Sessões recriadas.
+     */
+    private static int readRoom(DataInputStream in, RoomRegistry rooms) throws IOException {
+        int id = in.readInt();
+        int tableCount = in.readInt();
+        List<Table> tables = new ArrayList<>(tableCount);
+
+        for (int i = 0; i < tableCount; i++) {
+            Table table = readTable(in);
+
+            if (table != null)
+                tables.add(table);
+        }
+
+        int queueSize = in.readInt();
+        List<ClientHandler> queue = new ArrayList<>(queueSize);
+
+        for (int i = 0; i < queueSize; i++) {
+            ClientHandler client = readSession(in);
+
+            if (client != null)
+                queue.add(client);
+        }
+
+        if (tables.isEmpty() && queue.isEmpty())
+            return 0; // Ninguém na sala pôde ser transferido.
+
+        Room room = rooms.restore(id, tables, queue);
+
+        for (ClientHandler client : room.getClients())
+            client.restored(room);
+
+        if (ClientHandler.cluster != null)
+            ClientHandler.cluster.roomChanged(room);
+
+        return room.getClients().size();
+    }
+
+    /** @return Mesa recriada, ou {@code null} se nenhum dos jogadores foi transferido. */
+    private static Table readTable(DataInputStream in) throws IOException {
+        ClientHandler[] seated = new ClientHandler[Room.MAX_PLAYERS];
+        Move[] moves = new Move[Room.MAX_PLAYERS];
+
+        for (int seat = 0; seat < Room.MAX_PLAYERS; seat++) {
+            seated[seat] = readSession(in);
+            moves[seat] = Move.fromCode(in.readUnsignedByte());
+        }
+
+        int[] wins = { in.readInt(), in.readInt() };
+        int seriesRound = in.readInt();
+
+        if (seated[0] == null && seated[1] == null)
+            return null;
+
+        Table table = new Table();
+        table.restore(seated, moves, wins, seriesRound);
+        return table;
+    }
+
+    /** @return Sessão recriada, ou {@code null} se ela não foi transferida. */
+    private static ClientHandler readSession(DataInputStream in) throws IOException {
+        if (!in.readBoolean())
+            return null;
+
+        String token = in.readUTF();
+        String username = in.readUTF();
+        boolean binary = in.readBoolean();
+        int rating = in.readInt();
+
+        ReplayBuffer replay = ClientHandler.resumption.newReplayBuffer(binary);
+        replay.readFrom(in);
+
+        return ClientHandler.restore(token, username, binary, rating, replay);
+    }
+}
@@ -0,0 +1,299 @@
+package server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timer de roda (hashed wheel timer): um array circular de baldes percorrido
+ * por uma única thread, um balde a cada tick.
+ *
+ * Cada prazo vai para o balde do tick em que vence, com a quantidade de voltas
+ * que ainda faltam. Agendar e cancelar custam O(1), sem travas: os novos prazos
+ * e os cancelamentos entram em filas lidas pela thread do timer, e cada tick
+ * percorre apenas o balde atual. A precisão fica limitada ao tick, o que basta
+ * para prazos da ordem de segundos (leitura, jogada, retomada), e milhões de
+ * prazos pendentes custam apenas a memória de cada um.
+ *
+ * As tarefas rodam na thread do timer e devem ser curtas: encerrar uma conexão,
+ * enfileirar uma mensagem ou entregar o trabalho para outra thread.
+ */
+public class HashedWheelTimer {
+
+    /** Duração padrão de um tick, em milissegundos. */
+    public static final long DEFAULT_TICK_MILLIS = 100;
+
+    /** Quantidade padrão de baldes. Com o tick padrão, uma volta dura 51,2s. */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /** Timer compartilhado pelo servidor. A thread é criada no primeiro agendamento. */
+    private static final HashedWheelTimer SHARED = new HashedWheelTimer("wheel-timer", DEFAULT_TICK_MILLIS,
+            DEFAULT_WHEEL_SIZE);
+
+    private final String name;
+
+    private final long tickNanos;
+
+    private final Bucket[] wheel;
+
+    /** Máscara para o índice do balde (o tamanho da roda é potência de 2). */
+    private final int mask;
+
+    /** Prazos agendados que ainda não foram colocados na roda. */
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+
+    /** Prazos cancelados que ainda precisam sair de seus baldes. */
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    /** Prazos agendados e ainda não vencidos nem cancelados. */
+    private final LongAdder pending = new LongAdder();
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /** Instante (nanoTime) do tick 0. */
+    private volatile long startTime;
+
+    /** Tick atual. Utilizado apenas pela thread do timer. */
+    private long tick;
+
+    /**
+     * @param name       Nome da thread do timer.
+     * @param tickMillis Duração de cada tick.
+     * @param wheelSize  Quantidade de baldes, arredondada para a próxima potência
+     *                   de 2.
+     */
+    public HashedWheelTimer(String name, long tickMillis, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) * 2 - 1);
+
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.wheel = new Bucket[size];
+        this.mask = size - 1;
+
+        for (int i = 0; i < size; i++)
+            wheel[i] = new Bucket();
+    }
+
+    /** @return Timer compartilhado pelo servidor. */
+    public static HashedWheelTimer shared() {
+        return SHARED;
+    }
+
+    /**
+     * Agenda uma tarefa. Pode ser chamado de qualquer thread.
+     *
+     * @param task  Tarefa, executada na thread do timer.
+     * @param delay Tempo até o vencimento.
+     * @param unit  Unidade de {@code delay}.
+     * @return Prazo agendado, que pode ser cancelado.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        start();
+
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + unit.toNanos(delay));
+        pending.increment();
+        added.add(timeout);
+        return timeout;
+    }
+
+    /** @return Quantidade de prazos agendados que ainda não venceram. */
+    public long pendingCount() {
+        return pending.sum();
+    }
+
+    private void start() {
+        if (started.get() || !started.compareAndSet(false, true))
+            return;
+
+        startTime = System.nanoTime();
+
+        Thread worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Loop da thread do timer: aguarda cada tick e vence os prazos do balde atual. */
+    private void run() {
+        while (true) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long sleep = deadline - System.nanoTime();
+
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                continue; // Confere de novo: o sono pode terminar antes da hora.
+            }
+
+            removeCancelled();
+            transferAdded();
+            wheel[(int) (tick & mask)].expire(deadline);
+            tick++;
+        }
+    }
+
+    /** Coloca os prazos recém-agendados em seus baldes. */
+    private void transferAdded() {
+        Timeout timeout;
+
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state != Timeout.PENDING)
+                continue; // Cancelado antes de entrar na roda.
+
+            long ticks = (timeout.deadline - startTime) / tickNanos; // Tick em que o prazo vence.
+            timeout.rounds = Math.max(0, (ticks - tick) / wheel.length);
+
+            // Prazos já vencidos vão para o balde atual.
+            wheel[(int) (Math.max(ticks, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null)
+                timeout.bucket.remove(timeout);
+        }
+    }
+
+    /**
+     * Prazo agendado em um {@link HashedWheelTimer}.
+     */
+    public static final class Timeout {
+
+        private static final int PENDING = 0;
+
+        private static final int CANCELLED = 1;
+
+        private static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater
+                .newUpdater(Timeout.class, "state");
+
+        private final HashedWheelTimer timer;
+
+        private final Runnable task;
+
+        /** Instante (nanoTime) do vencimento. */
+        private final long deadline;
+
+        private volatile int state = PENDING;
+
+        // Utilizados apenas pela thread do timer:
+
+        /** Voltas completas da roda que ainda faltam até o vencimento. */
+        private long rounds;
+
+        private Bucket bucket;
+
+        private Timeout previous;
+
+        private Timeout next;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancela o prazo, se ainda não venceu. Pode ser chamado de qualquer thread.
+         *
+         * @return {@code false} se o prazo já havia vencido ou sido cancelado.
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED))
+                return false;
+
+            timer.pending.decrement();
+            timer.cancelled.add(this); // Sai do balde no próximo tick.
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, PENDING, EXPIRED))
+                return;
+
+            timer.pending.decrement();
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                EventLog.error("timer_task_failed", e, "timer", timer.name);
+            }
+        }
+    }
+
+    /** Balde da roda: lista duplamente ligada de prazos, manipulada só pela thread do timer. */
+    private static final class Bucket {
+
+        private Timeout head;
+
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+
+            if (head == null) {
+                head = tail = timeout;
+                return;
+            }
+
+            tail.next = timeout;
+            timeout.previous = tail;
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous != null)
+                timeout.previous.next = timeout.next;
+            else
+                head = timeout.next;
+
+            if (timeout.next != null)
+                timeout.next.previous = timeout.previous;
+            else
+                tail = timeout.previous;
+
+            timeout.previous = timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * Vence os prazos desta volta e desconta uma volta dos demais.
+         *
+         * @param deadline Fim do tick atual (nanoTime).
+         */
+        void expire(long deadline) {
+            Timeout timeout = head;
+
+            while (timeout != null) {
+                Timeout next = timeout.next;
+
+                if (timeout.rounds <= 0 && timeout.deadline <= deadline) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                }
+
+                timeout = next;
+            }
+        }
+    }
+}
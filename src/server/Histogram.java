@@ -0,0 +1,111 @@
+package server;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma concorrente de valores não negativos (tempos em nanossegundos,
+ * quantidades etc.), barato o bastante para ficar ligado em produção.
+ *
+ * Os valores são agrupados em faixas logarítmicas, cada potência de dois
+ * dividida em 8 subfaixas, então os percentis têm erro de no máximo 12,5%.
+ * Cada faixa é um {@link LongAdder}: registrar um valor não trava e não disputa
+ * a mesma linha de cache entre threads.
+ */
+public class Histogram {
+
+    /** Bits de subfaixa por potência de dois. */
+    private static final int SUB_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** Faixas suficientes para qualquer {@code long} positivo. */
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    /**
+     * @param value Valor a ser registrado. Negativos contam como zero.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+
+        buckets[indexOf(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /** @return Média dos valores registrados, ou 0. */
+    public double getMean() {
+        long samples = count.sum();
+        return (samples == 0) ? 0 : (double) sum.sum() / samples;
+    }
+
+    /**
+     * @param percentile Percentil desejado, entre 0 e 100.
+     * @return Limite superior da faixa que contém o percentil, ou 0 se não houver
+     *         valores.
+     */
+    public long getPercentile(double percentile) {
+        long samples = count.sum();
+
+        if (samples == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * samples));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+
+            if (seen >= target)
+                return Math.min(upperBound(i), max.get());
+        }
+
+        return max.get(); // Registros concorrentes à leitura.
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
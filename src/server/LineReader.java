@@ -0,0 +1,84 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.util.Arrays;
+
+import protocol.BinaryProtocol;
+
+/**
+ * Lê linhas de um stream diretamente para um buffer de bytes reutilizado, sem
+ * criar uma {@code String} por linha. Cabe a quem chama decodificar apenas o
+ * que precisar (ex.: mensagens de chat).
+ */
+public class LineReader {
+
+    /**
+     * Tamanho máximo de uma linha. Linhas maiores encerram a conexão: a linha
+     * transmitida como chat precisa caber em um frame para os clients binários.
+     */
+    public static final int MAX_LINE_LENGTH = BinaryProtocol.MAX_CHAT_LENGTH;
+
+    private final InputStream in;
+
+    /** Bytes lidos do stream e ainda não consumidos. */
+    private final byte[] buffer = new byte[4096];
+
+    private int position;
+
+    private int limit;
+
+    /** Linha atual, sem o terminador. */
+    private byte[] line = new byte[256];
+
+    public LineReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Lê a próxima linha. O conteúdo fica em {@link #getLine()} até a próxima
+     * chamada.
+     *
+     * @return Tamanho da linha (sem '\r' e '\n'), ou -1 se o stream terminou.
+     * @throws ProtocolException Se a linha for grande demais.
+     * @throws IOException       Se a leitura falhar.
+     */
+    public int readLine() throws IOException {
+        int length = 0;
+
+        while (true) {
+            // Buffer consumido: lê o próximo bloco do stream.
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+
+                if (limit == -1) {
+                    limit = 0;
+                    return (length > 0) ? length : -1; // Última linha sem terminador.
+                }
+            }
+
+            byte b = buffer[position++];
+
+            if (b == '\n')
+                return length;
+
+            if (b == '\r')
+                continue;
+
+            if (length >= MAX_LINE_LENGTH)
+                throw new ProtocolException("Linha grande demais.");
+
+            if (length == line.length)
+                line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_LINE_LENGTH));
+
+            line[length++] = b;
+        }
+    }
+
+    /** @return Buffer com a última linha lida. */
+    public byte[] getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,42 @@
+package server;
+
+/**
+ * Nível de um registro do {@link EventLog}. Registros abaixo do nível
+ * configurado são ignorados antes de qualquer alocação.
+ */
+public enum LogLevel {
+
+    /** Eventos frequentes, como cada jogada. */
+    DEBUG,
+
+    /** Entradas, saídas e resultados de partidas. */
+    INFO,
+
+    /** Situações anormais que o servidor contorna. */
+    WARN,
+
+    /** Falhas de I/O e erros inesperados. */
+    ERROR;
+
+    /**
+     * Retorna o nível correspondente ao nome informado na linha de comando.
+     * 
+     * @param name {@code debug}, {@code info}, {@code warn} ou {@code error}.
+     * @return Nível de log.
+     * @throws IllegalArgumentException Se o nome for desconhecido.
+     */
+    public static LogLevel byName(String name) {
+        switch (name) {
+            case "debug":
+                return DEBUG;
+            case "info":
+                return INFO;
+            case "warn":
+                return WARN;
+            case "error":
+                return ERROR;
+            default:
+                throw new IllegalArgumentException("Nível de log desconhecido: " + name);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * {@link MessageBus} dentro do próprio processo: as mensagens são entregues
+ * aos assinantes por uma thread do barramento, na ordem de publicação. Atende
+ * um cluster de um único nó e os testes locais da camada de roteamento, sem
+ * nenhuma dependência de rede.
+ */
+public class LoopbackBus implements MessageBus {
+
+    /** Assinantes de cada tópico. */
+    private final Map<String, List<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+
+    /** Thread que entrega as mensagens, fora da thread (e das travas) de quem publica. */
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bus-loopback");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void publish(String topic, String message) {
+        List<Consumer<String>> handlers = subscribers.get(topic);
+
+        if (handlers == null)
+            return; // Ninguém assina o tópico.
+
+        try {
+            dispatcher.execute(() -> {
+                for (Consumer<String> handler : handlers)
+                    handler.accept(message);
+            });
+        } catch (RejectedExecutionException e) {
+            // Barramento encerrado: a mensagem é descartada.
+        }
+    }
+
+    @Override
+    public void subscribe(String topic, Consumer<String> handler) {
+        subscribers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    @Override
+    public void close() {
+        dispatcher.shutdownNow();
+    }
+}
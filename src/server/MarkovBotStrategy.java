@@ -0,0 +1,73 @@
+package server;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import protocol.Move;
+
+/**
+ * Cadeia de Markov de primeira ordem sobre a rodada anterior: conta o que o
+ * adversário jogou depois de cada par (jogada dele, jogada do bot) e joga
+ * contra a continuação mais frequente do par atual.
+ *
+ * O par inclui a jogada do bot porque as pessoas costumam reagir ao resultado
+ * (repetir a jogada que venceu, trocar a que perdeu), e não apenas à própria
+ * jogada. Enquanto o par atual não tem histórico, usa a
+ * {@link FrequencyBotStrategy}.
+ */
+public class MarkovBotStrategy implements BotStrategy {
+
+    /** Peso de cada continuação, por estado (par da rodada anterior). */
+    private final double[][] transitions = new double[Move.count() * Move.count()][Move.count()];
+
+    /** Utilizada enquanto o estado atual não tem histórico. */
+    private final FrequencyBotStrategy fallback = new FrequencyBotStrategy();
+
+    /** Estado atual (par da última rodada), ou -1 se ela não teve as duas jogadas. */
+    private int state = -1;
+
+    @Override
+    public String getName() {
+        return "markov";
+    }
+
+    @Override
+    public Move choose(Random random) {
+        int predicted = (state >= 0) ? BotStrategy.heaviest(transitions[state], random) : -1;
+
+        if (predicted < 0)
+            return fallback.choose(random);
+
+        return Move.fromCode(predicted).counter();
+    }
+
+    @Override
+    public void observe(Move own, Move opponent) {
+        fallback.observe(own, opponent);
+
+        if (opponent == null) {
+            state = -1; // W.O.: a próxima rodada não continua esta.
+            return;
+        }
+
+        if (state >= 0) {
+            double[] row = transitions[state];
+
+            for (int i = 0; i < row.length; i++)
+                row[i] *= FrequencyBotStrategy.DECAY;
+
+            row[opponent.ordinal()] += 1;
+        }
+
+        state = (own != null) ? opponent.ordinal() * Move.count() + own.ordinal() : -1;
+    }
+
+    @Override
+    public void reset() {
+        for (double[] row : transitions)
+            Arrays.fill(row, 0);
+
+        fallback.reset();
+        state = -1;
+    }
+}
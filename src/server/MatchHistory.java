@@ -0,0 +1,515 @@
+package server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Histórico durável das partidas e ranking dos usuários.
+ *
+ * Cada resultado é gravado em um log somente de acréscimo ({@value #LOG_FILE}).
+ * Quem registra uma partida apenas a coloca em uma fila; uma thread própria
+ * grava as partidas pendentes em lote, com um único {@code force} por lote
+ * (group commit), e só então as aplica ao índice em memória.
+ *
+ * O índice (vitórias, derrotas, empates e últimas partidas de cada usuário) é
+ * o que os comandos /ranking e /historico consultam, sem acessar o disco. A
+ * cada {@value #COMPACT_EVERY} partidas ele é compactado em
+ * {@value #INDEX_FILE}, junto com a posição do log que já cobre. Na
+ * inicialização, o índice é carregado e apenas o final do log é relido, por
+ * mapeamento em memória.
+ *
+ * Se a gravação falhar (ex.: disco cheio), o histórico fica degradado (ver
+ * {@link #isDegraded()}): o lote é desfeito no log e gravado de novo a cada
+ * {@value #RETRY_MILLIS} ms, enquanto as partidas novas aguardam na fila. O
+ * ranking só volta a mudar quando o disco voltar a aceitar as gravações.
+ */
+public class MatchHistory {
+
+    /** Log com todas as partidas, na ordem em que terminaram. */
+    public static final String LOG_FILE = "partidas.log";
+
+    /** Índice compactado a partir do log. */
+    public static final String INDEX_FILE = "partidas.idx";
+
+    /** Partidas gravadas entre duas compactações do índice. */
+    public static final int COMPACT_EVERY = 10_000;
+
+    /** Quantidade máxima de partidas gravadas por lote. */
+    private static final int BATCH_SIZE = 256;
+
+    /** Partidas aguardando gravação. Com a fila cheia, novas partidas são descartadas. */
+    private static final int QUEUE_CAPACITY = 65_536;
+
+    /** Intervalo entre as tentativas de gravar um lote que falhou. */
+    private static final long RETRY_MILLIS = 1000;
+
+    /**
+     * Marca o fim da fila, colocada por {@link #close()}: nenhuma partida entra
+     * depois dela, então a thread de gravação termina ao encontrá-la.
+     */
+    private static final MatchRecord CLOSE = new MatchRecord(0, 0, "", "", null, null, 0);
+
+    /** Tamanho de cada janela do log mapeada em memória na recuperação. */
+    private static final long MAP_WINDOW = 64L << 20;
+
+    /** Identifica o arquivo de índice ("JKPI"). */
+    private static final int INDEX_MAGIC = 0x4A4B5049;
+
+    private static final int INDEX_VERSION = 1;
+
+    private final Path logPath;
+
+    private final Path indexPath;
+
+    private final FileChannel log;
+
+    private final BlockingQueue<MatchRecord> pending = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    /** Índice em memória. Alterado apenas pela thread de gravação. */
+    private final Map<String, PlayerStats> stats = new ConcurrentHashMap<>();
+
+    /** Ranking ordenado, recalculado apenas quando houve partidas novas. */
+    private volatile List<PlayerStats> ranking = List.of();
+
+    private volatile boolean rankingDirty;
+
+    /** Partidas aplicadas desde a última compactação. */
+    private long sinceCompaction;
+
+    private final Thread writer;
+
+    /**
+     * Guarda {@link #closed}: quem registra uma partida a coloca na fila sob o
+     * mesmo monitor em que {@link #close()} fecha o histórico, então toda partida
+     * aceita está na fila antes de {@link #CLOSE}.
+     */
+    private final Object closeLock = new Object();
+
+    private boolean closed;
+
+    /** Indica se a última gravação no log falhou. */
+    private volatile boolean degraded;
+
+    /**
+     * Abre (ou cria) o histórico no diretório informado, recuperando o índice.
+     *
+     * @param directory Diretório dos arquivos do histórico.
+     * @throws IOException Se não for possível ler ou criar os arquivos.
+     */
+    public MatchHistory(Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        this.logPath = directory.resolve(LOG_FILE);
+        this.indexPath = directory.resolve(INDEX_FILE);
+        this.log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        recover();
+
+        this.writer = new Thread(this::writeLoop, "match-history");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Registra uma partida. Não bloqueia: a gravação acontece em segundo plano.
+     *
+     * @param match Partida encerrada.
+     * @return {@code false} se o histórico estiver fechado ou sobrecarregado.
+     *         Uma partida aceita é gravada antes de {@link #close()} retornar,
+     *         a não ser que o disco continue falhando até lá.
+     */
+    public boolean append(MatchRecord match) {
+        synchronized (closeLock) {
+            if (closed)
+                return false;
+
+            if (pending.offer(match))
+                return true;
+        }
+
+        EventLog.warn("history_dropped", "player1", match.getPlayer1(), "player2", match.getPlayer2());
+        return false;
+    }
+
+    /**
+     * @return {@code true} se a última gravação no log falhou: as partidas novas
+     *         aguardam na fila (ou são descartadas, com ela cheia) até o disco
+     *         voltar a aceitá-las.
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    /**
+     * @param username Usuário consultado.
+     * @return Estatísticas do usuário, ou {@code null} se ele não tiver partidas.
+     */
+    public PlayerStats getStats(String username) {
+        return stats.get(username);
+    }
+
+    /**
+     * @param limit Quantidade máxima de usuários.
+     * @return Melhores usuários, em ordem de classificação.
+     */
+    public List<PlayerStats> getRanking(int limit) {
+        List<PlayerStats> current = ranking;
+
+        if (rankingDirty) {
+            synchronized (this) {
+                if (rankingDirty) {
+                    rankingDirty = false; // Antes da cópia: partidas aplicadas durante ela marcam de novo.
+
+                    List<PlayerStats> sorted = new ArrayList<>(stats.values());
+                    sorted.sort(PlayerStats::compareForRanking);
+                    ranking = current = sorted;
+                } else {
+                    current = ranking;
+                }
+            }
+        }
+
+        return current.subList(0, Math.min(limit, current.size()));
+    }
+
+    /**
+     * @param username Usuário consultado.
+     * @return Posição do usuário no ranking (começando em 1), ou 0.
+     */
+    public int positionOf(String username) {
+        List<PlayerStats> all = getRanking(Integer.MAX_VALUE);
+
+        for (int i = 0; i < all.size(); i++) {
+            if (all.get(i).getUsername().equals(username))
+                return i + 1;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Grava as partidas pendentes, compacta o índice e fecha o log. Com o
+     * histórico degradado, cada lote pendente é tentado uma última vez; o que
+     * não puder ser gravado é descartado.
+     */
+    public void close() {
+        boolean first;
+
+        synchronized (closeLock) {
+            first = !closed;
+            closed = true;
+        }
+
+        try {
+            if (first)
+                pending.put(CLOSE); // Pode aguardar uma vaga: a thread de gravação segue consumindo a fila.
+
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isClosed() {
+        synchronized (closeLock) {
+            return closed;
+        }
+    }
+
+    // Gravação:
+
+    private void writeLoop() {
+        List<MatchRecord> batch = new ArrayList<>(BATCH_SIZE);
+        boolean closing = false;
+
+        try {
+            while (!closing) {
+                batch.add(pending.take());
+                pending.drainTo(batch, BATCH_SIZE - 1);
+
+                // Nada entra na fila depois da marca, então ela só pode ser a última do lote.
+                if (batch.get(batch.size() - 1) == CLOSE) {
+                    batch.remove(batch.size() - 1);
+                    closing = true;
+                }
+
+                if (!batch.isEmpty())
+                    commitOrRetry(batch);
+
+                batch.clear();
+
+                if (sinceCompaction >= COMPACT_EVERY)
+                    compact();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        compact();
+
+        try {
+            log.close();
+        } catch (IOException e) {
+            EventLog.error("history_close_failed", e);
+        }
+    }
+
+    /**
+     * Grava o lote, repetindo a cada {@value #RETRY_MILLIS} ms enquanto o disco
+     * falhar. Depois de {@link #close()}, faz uma única tentativa e, se ela
+     * falhar, descarta o lote.
+     */
+    private void commitOrRetry(List<MatchRecord> batch) throws InterruptedException {
+        while (true) {
+            long start = -1;
+
+            try {
+                start = log.position();
+                commit(batch);
+
+                if (degraded) {
+                    degraded = false;
+                    EventLog.info("history_recovered", "matches", batch.size());
+                }
+
+                return;
+            } catch (IOException e) {
+                if (!degraded) {
+                    degraded = true;
+                    EventLog.error("history_write_failed", e, "matches", batch.size());
+                }
+
+                rollback(start);
+            }
+
+            if (isClosed()) {
+                EventLog.warn("history_lost", "matches", batch.size());
+                return;
+            }
+
+            Thread.sleep(RETRY_MILLIS);
+        }
+    }
+
+    /** Desfaz no log a parte do lote que chegou a ser escrita, para que a nova tentativa a sobrescreva. */
+    private void rollback(long start) {
+        if (start < 0)
+            return;
+
+        try {
+            log.truncate(start);
+            log.position(start);
+        } catch (IOException e) {
+            // A próxima tentativa (ou a recuperação, que descarta o final corrompido) resolve.
+        }
+    }
+
+    /** Grava o lote com uma única escrita e um único {@code force}, e o aplica ao índice. */
+    private void commit(List<MatchRecord> batch) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(batch.size());
+        int size = 0;
+
+        for (MatchRecord match : batch) {
+            byte[] bytes = match.encode();
+            encoded.add(bytes);
+            size += bytes.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        for (byte[] bytes : encoded)
+            buffer.put(bytes);
+
+        buffer.flip();
+
+        while (buffer.hasRemaining())
+            log.write(buffer);
+
+        log.force(false); // Durável antes de aparecer no ranking.
+
+        for (MatchRecord match : batch)
+            apply(match);
+    }
+
+    private void apply(MatchRecord match) {
+        stats.compute(match.getPlayer1(), (name, current) -> orEmpty(name, current).with(match, match.getOutcome()));
+        stats.compute(match.getPlayer2(), (name, current) -> orEmpty(name, current).with(match, -match.getOutcome()));
+
+        sinceCompaction++;
+        rankingDirty = true;
+    }
+
+    private static PlayerStats orEmpty(String username, PlayerStats stats) {
+        return (stats != null) ? stats : new PlayerStats(username, 0, 0, 0, List.of());
+    }
+
+    /**
+     * Grava o índice, se possível. Uma falha não perde partidas: o log tem todas
+     * elas, e a compactação é tentada de novo após outras
+     * {@value #COMPACT_EVERY} partidas.
+     */
+    private void compact() {
+        try {
+            writeIndex();
+        } catch (IOException e) {
+            EventLog.warn("history_compact_failed", "file", indexPath, "error", e.toString());
+            sinceCompaction = 0;
+        }
+    }
+
+    /**
+     * Grava o índice em um arquivo temporário e o substitui atomicamente. O
+     * índice cobre exatamente o log gravado até aqui.
+     */
+    private void writeIndex() throws IOException {
+        Path temporary = indexPath.resolveSibling(INDEX_FILE + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeLong(log.position());
+            out.writeInt(stats.size());
+
+            for (PlayerStats player : stats.values()) {
+                byte[] name = player.getUsername().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+                out.writeInt(player.getWins());
+                out.writeInt(player.getLosses());
+                out.writeInt(player.getDraws());
+                out.writeInt(player.getRecent().size());
+
+                for (MatchRecord match : player.getRecent())
+                    out.write(match.encode());
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+
+        Files.move(temporary, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sinceCompaction = 0;
+    }
+
+    // Recuperação:
+
+    /** Carrega o índice e reaplica as partidas gravadas depois dele. */
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        long offset = loadIndex();
+
+        // Log menor que o índice: o índice não corresponde a este log.
+        if (offset > log.size()) {
+            stats.clear();
+            offset = 0;
+        }
+
+        long replayed = replay(offset);
+
+        log.position(log.size());
+        rankingDirty = true;
+
+        EventLog.info("history_loaded", "file", logPath, "players", stats.size(), "replayed", replayed, "ms",
+                (System.nanoTime() - start) / 1_000_000L);
+    }
+
+    /** @return Posição do log coberta pelo índice, ou 0 se não houver um índice válido. */
+    private long loadIndex() {
+        if (!Files.exists(indexPath))
+            return 0;
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+
+            if (buffer.getInt() != INDEX_MAGIC || buffer.getInt() != INDEX_VERSION)
+                throw new IOException("Formato de índice desconhecido.");
+
+            long offset = buffer.getLong();
+            int players = buffer.getInt();
+
+            for (int i = 0; i < players; i++) {
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+
+                int wins = buffer.getInt();
+                int losses = buffer.getInt();
+                int draws = buffer.getInt();
+                List<MatchRecord> recent = new ArrayList<>();
+
+                for (int j = buffer.getInt(); j > 0; j--) {
+                    MatchRecord match = MatchRecord.decode(buffer);
+
+                    if (match == null)
+                        throw new IOException("Partida corrompida no índice.");
+
+                    recent.add(match);
+                }
+
+                String username = new String(name, StandardCharsets.UTF_8);
+                stats.put(username, new PlayerStats(username, wins, losses, draws, recent));
+            }
+
+            return offset;
+        } catch (IOException | RuntimeException e) {
+            // O log tem todas as partidas: basta relê-lo do início.
+            EventLog.warn("history_index_invalid", "file", indexPath, "error", e.toString());
+            stats.clear();
+            return 0;
+        }
+    }
+
+    /**
+     * Reaplica as partidas do log a partir da posição informada, mapeando o
+     * arquivo em janelas. Um registro incompleto ou corrompido no final (ex.:
+     * queda durante a escrita) é descartado, e o log é truncado antes dele.
+     *
+     * @return Quantidade de partidas reaplicadas.
+     */
+    private long replay(long offset) throws IOException {
+        long size = log.size();
+        long position = offset;
+        long replayed = 0;
+
+        while (position < size) {
+            long length = Math.min(MAP_WINDOW, size - position);
+            MappedByteBuffer window = log.map(FileChannel.MapMode.READ_ONLY, position, length);
+            MatchRecord match;
+
+            while ((match = MatchRecord.decode(window)) != null) {
+                apply(match);
+                replayed++;
+            }
+
+            position += window.position();
+
+            // Parou antes do fim da janela: se ela ia até o fim do arquivo, ou se nada
+            // foi lido, o registro está corrompido. Senão, ele só cruzou a janela.
+            if (window.hasRemaining() && (position + window.remaining() == size || window.position() == 0))
+                break;
+        }
+
+        if (position < size) {
+            EventLog.warn("history_truncated", "file", logPath, "position", position, "discarded", size - position);
+            log.truncate(position);
+        }
+
+        return replayed;
+    }
+}
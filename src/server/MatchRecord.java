@@ -0,0 +1,187 @@
+package server;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.CRC32;
+
+import protocol.Move;
+
+/**
+ * Resultado de uma partida, como gravado no {@link MatchHistory}. Imutável.
+ *
+ * No arquivo, cada registro ocupa:
+ *
+ * <pre>
+ * [tamanho: i32][crc32 do conteúdo: i32][conteúdo]
+ * conteúdo = [timestamp: i64][sala: i32][jogada 1: u8][jogada 2: u8][resultado: i8]
+ *            [jogador 1: i32 + UTF-8][jogador 2: i32 + UTF-8]
+ * </pre>
+ *
+ * O CRC permite descartar um registro escrito pela metade (ex.: queda durante a
+ * escrita) na recuperação. Numa vitória por W.O. (ver {@link Room#moveTimeoutMillis}),
+ * a jogada de quem não jogou é gravada como {@link #NO_MOVE}.
+ */
+public class MatchRecord {
+
+    /** Tamanho do cabeçalho de cada registro (tamanho e CRC). */
+    static final int HEADER_SIZE = 8;
+
+    /** Tamanho máximo do conteúdo de um registro. Acima disso, o arquivo está corrompido. */
+    static final int MAX_SIZE = 1 << 20;
+
+    /** Código gravado no lugar da jogada de quem perdeu por W.O. */
+    static final byte NO_MOVE = (byte) 0xFF;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM HH:mm")
+            .withZone(ZoneId.systemDefault());
+
+    private final long timestamp;
+
+    private final int room;
+
+    private final String player1;
+
+    private final String player2;
+
+    /** Jogada do jogador 1, ou {@code null} se ele perdeu por W.O. */
+    private final Move move1;
+
+    /** Jogada do jogador 2, ou {@code null} se ele perdeu por W.O. */
+    private final Move move2;
+
+    /** 1 se o jogador 1 venceu, -1 se o jogador 2 venceu e 0 em caso de empate. */
+    private final int outcome;
+
+    public MatchRecord(long timestamp, int room, String player1, String player2, Move move1, Move move2,
+            int outcome) {
+        this.timestamp = timestamp;
+        this.room = room;
+        this.player1 = player1;
+        this.player2 = player2;
+        this.move1 = move1;
+        this.move2 = move2;
+        this.outcome = outcome;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getPlayer1() {
+        return player1;
+    }
+
+    public String getPlayer2() {
+        return player2;
+    }
+
+    public int getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Descreve a partida do ponto de vista de um dos jogadores (ex.: "18/10 14:02
+     * — vitória contra ana (pedra vs. tesoura)").
+     *
+     * @param username Jogador do ponto de vista.
+     */
+    public String describe(String username) {
+        boolean first = player1.equals(username);
+        int result = first ? outcome : -outcome;
+        String opponent = first ? player2 : player1;
+        Move own = first ? move1 : move2;
+        Move other = first ? move2 : move1;
+
+        String verdict = (result > 0) ? "vitória" : (result < 0) ? "derrota" : "empate";
+
+        return DATE_FORMAT.format(Instant.ofEpochMilli(timestamp)) + " — " + verdict + " contra " + opponent
+                + " (" + label(own) + " vs. " + label(other) + ")";
+    }
+
+    private static String label(Move move) {
+        return (move != null) ? move.getLabel() : "sem jogada";
+    }
+
+    /** @return Registro codificado, com cabeçalho, pronto para ser gravado. */
+    byte[] encode() {
+        byte[] name1 = player1.getBytes(StandardCharsets.UTF_8);
+        byte[] name2 = player2.getBytes(StandardCharsets.UTF_8);
+        int size = 8 + 4 + 3 + 4 + name1.length + 4 + name2.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + size);
+        buffer.putInt(size).putInt(0); // O CRC é preenchido após o conteúdo.
+        buffer.putLong(timestamp).putInt(room);
+        buffer.put(code(move1)).put(code(move2)).put((byte) outcome);
+        buffer.putInt(name1.length).put(name1);
+        buffer.putInt(name2.length).put(name2);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, size);
+        buffer.putInt(4, (int) crc.getValue());
+
+        return buffer.array();
+    }
+
+    /**
+     * Lê o próximo registro do buffer, avançando sua posição.
+     *
+     * @return Registro lido, ou {@code null} se o buffer terminar no meio do
+     *         registro ou o registro estiver corrompido. Nesse caso, a posição não
+     *         é alterada.
+     */
+    static MatchRecord decode(ByteBuffer buffer) {
+        int start = buffer.position();
+
+        try {
+            int size = buffer.getInt();
+            int expectedCrc = buffer.getInt();
+
+            if (size <= 0 || size > MAX_SIZE || size > buffer.remaining()) {
+                buffer.position(start);
+                return null;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice().limit(size));
+
+            if ((int) crc.getValue() != expectedCrc) {
+                buffer.position(start);
+                return null;
+            }
+
+            long timestamp = buffer.getLong();
+            int room = buffer.getInt();
+            byte code1 = buffer.get();
+            byte code2 = buffer.get();
+            Move move1 = Move.fromCode(code1);
+            Move move2 = Move.fromCode(code2);
+            int outcome = buffer.get();
+            String player1 = readString(buffer);
+            String player2 = readString(buffer);
+
+            if ((move1 == null && code1 != NO_MOVE) || (move2 == null && code2 != NO_MOVE)) {
+                buffer.position(start);
+                return null;
+            }
+
+            return new MatchRecord(timestamp, room, player1, player2, move1, move2, outcome);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            buffer.position(start);
+            return null;
+        }
+    }
+
+    private static byte code(Move move) {
+        return (move != null) ? (byte) move.ordinal() : NO_MOVE;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
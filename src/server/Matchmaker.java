@@ -0,0 +1,191 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fila de espera de uma sala. A sala forma uma mesa ({@link Table}) nova a cada
+ * dois usuários na fila, e a vaga que fica livre em uma mesa vai para o
+ * próximo; em ambos os casos, quem sai da fila é escolhido pela
+ * {@link PairingStrategy} configurada. Também mede a profundidade da fila e o
+ * tempo até o pareamento.
+ */
+public class Matchmaker {
+
+    /** Quantidade de tempos de espera recentes usados no cálculo da mediana. */
+    private static final int RECENT_WAITS = 256;
+
+    private final PairingStrategy strategy;
+
+    /** Usuários aguardando uma vaga, em ordem de chegada na fila. */
+    private final List<QueueEntry> waiting = new ArrayList<>();
+
+    /**
+     * Usuários com a sessão suspensa (ver {@link SessionResumption}). Ficam fora
+     * da disputa pelas vagas até voltarem, sem perder a ordem de chegada.
+     */
+    private final List<QueueEntry> held = new ArrayList<>();
+
+    /** Tempo de espera acumulado de quem já passou pela fila. */
+    private final Map<ClientHandler, Long> previousWaits = new HashMap<>();
+
+    /** Últimos tempos até o pareamento, em nanossegundos (buffer circular). */
+    private final long[] recentWaits = new long[RECENT_WAITS];
+
+    private int recentCount;
+
+    private int recentIndex;
+
+    /** Quantidade de usuários já chamados da fila para jogar. */
+    private long matched;
+
+    public Matchmaker(PairingStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Coloca o usuário no fim da fila.
+     *
+     * @param client Usuário que aguardará uma vaga de jogador.
+     */
+    public synchronized void enqueue(ClientHandler client) {
+        long previousWait = previousWaits.getOrDefault(client, 0L);
+        QueueEntry entry = new QueueEntry(client, System.nanoTime(), previousWait);
+
+        if (client.isSuspended())
+            held.add(entry); // Ex.: jogador suspenso devolvido à fila ao fim da partida.
+        else
+            waiting.add(entry);
+    }
+
+    /**
+     * Tira da disputa pelas vagas um usuário com a sessão suspensa, mantendo sua
+     * ordem de chegada.
+     *
+     * @param client Usuário suspenso.
+     */
+    public synchronized void hold(ClientHandler client) {
+        for (int i = 0; i < waiting.size(); i++) {
+            if (waiting.get(i).getClient() == client) {
+                held.add(waiting.remove(i));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Devolve à fila um usuário que retomou a sessão, na posição correspondente à
+     * sua ordem de chegada.
+     *
+     * @param client Usuário que voltou.
+     */
+    public synchronized void release(ClientHandler client) {
+        for (int i = 0; i < held.size(); i++) {
+            QueueEntry entry = held.get(i);
+
+            if (entry.getClient() != client)
+                continue;
+
+            held.remove(i);
+
+            int position = 0;
+
+            while (position < waiting.size() && waiting.get(position).getEnqueuedAt() <= entry.getEnqueuedAt())
+                position++;
+
+            waiting.add(position, entry);
+            return;
+        }
+    }
+
+    /**
+     * Remove o usuário da fila (ex.: desconexão).
+     *
+     * @param client Usuário a ser removido.
+     */
+    public synchronized void remove(ClientHandler client) {
+        waiting.removeIf(entry -> entry.getClient() == client);
+        held.removeIf(entry -> entry.getClient() == client);
+        previousWaits.remove(client);
+    }
+
+    /**
+     * Retira da fila o próximo jogador, escolhido pela estratégia de pareamento.
+     *
+     * @param opponent Jogador que já ocupa a outra vaga da mesa, ou {@code null}.
+     * @return Usuário escolhido, ou {@code null} se a fila estiver vazia.
+     */
+    public synchronized ClientHandler next(ClientHandler opponent) {
+        if (waiting.isEmpty())
+            return null;
+
+        long now = System.nanoTime();
+        QueueEntry entry = strategy.select(waiting, opponent, now);
+        waiting.remove(entry);
+
+        // Registrando as métricas do pareamento:
+        recentWaits[recentIndex] = entry.waitedSince(now);
+        recentIndex = (recentIndex + 1) % RECENT_WAITS;
+        recentCount = Math.min(recentCount + 1, RECENT_WAITS);
+        matched++;
+
+        previousWaits.put(entry.getClient(), entry.totalWait(now));
+        return entry.getClient();
+    }
+
+    /**
+     * @return Usuários na fila, inclusive os retidos com a sessão suspensa, em
+     *         ordem de chegada.
+     */
+    public synchronized List<ClientHandler> getQueued() {
+        List<QueueEntry> entries = new ArrayList<>(waiting);
+        entries.addAll(held);
+        entries.sort(Comparator.comparingLong(QueueEntry::getEnqueuedAt));
+
+        List<ClientHandler> queued = new ArrayList<>(entries.size());
+
+        for (QueueEntry entry : entries)
+            queued.add(entry.getClient());
+
+        return queued;
+    }
+
+    /** @return Quantidade de usuários aguardando uma vaga. */
+    public synchronized int getQueueDepth() {
+        return waiting.size();
+    }
+
+    /**
+     * @param client Usuário consultado.
+     * @return Posição do usuário na fila (começando em 1), ou 0 se ele não
+     *         estiver nela.
+     */
+    public synchronized int positionOf(ClientHandler client) {
+        for (int i = 0; i < waiting.size(); i++) {
+            if (waiting.get(i).getClient() == client)
+                return i + 1;
+        }
+
+        return 0;
+    }
+
+    /** @return Mediana dos tempos recentes até o pareamento, em milissegundos. */
+    public synchronized long getMedianWaitMillis() {
+        if (recentCount == 0)
+            return 0;
+
+        long[] sorted = Arrays.copyOf(recentWaits, recentCount);
+        Arrays.sort(sorted);
+
+        return sorted[recentCount / 2] / 1_000_000L;
+    }
+
+    /** @return Quantidade de usuários chamados da fila desde a criação da sala. */
+    public synchronized long getMatchedCount() {
+        return matched;
+    }
+}
@@ -0,0 +1,38 @@
+package server;
+
+import java.util.function.Consumer;
+
+/**
+ * Barramento de mensagens entre os nós de um {@link Cluster}. Cada mensagem é
+ * uma linha de texto publicada em um tópico e entregue a todos os assinantes
+ * do tópico, em todos os nós, inclusive no que a publicou.
+ *
+ * A entrega é assíncrona e sem garantias: mensagens publicadas enquanto um nó
+ * está desconectado do barramento se perdem. Por isso o cluster republica seu
+ * estado periodicamente, em vez de depender de cada atualização.
+ *
+ * Implementações: {@link LoopbackBus} (um único processo) e {@link RemoteBus},
+ * conectado a um {@link BusBroker} embutido em um dos nós.
+ */
+public interface MessageBus {
+
+    /**
+     * Publica uma mensagem. Não bloqueia esperando os assinantes.
+     *
+     * @param topic   Tópico da mensagem, sem espaços.
+     * @param message Conteúdo da mensagem, sem quebras de linha.
+     */
+    void publish(String topic, String message);
+
+    /**
+     * Registra um assinante. As mensagens são entregues na ordem em que o
+     * barramento as recebeu, por uma única thread: o assinante deve ser curto.
+     *
+     * @param topic   Tópico assinado.
+     * @param handler Recebe o conteúdo de cada mensagem do tópico.
+     */
+    void subscribe(String topic, Consumer<String> handler);
+
+    /** Desconecta do barramento. As mensagens pendentes são descartadas. */
+    void close();
+}
@@ -0,0 +1,528 @@
+package server;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Métricas do servidor: conexões, mensagens recebidas e enviadas, transmissões,
+ * duração das partidas e motivos de desconexão.
+ *
+ * O registro é feito nos caminhos críticos, então usa apenas {@link LongAdder}s
+ * e {@link Histogram}s, sem travas: pode ficar ligado em produção. A leitura
+ * (JMX ou {@link MetricsEndpoint}) é que faz as somas e, no caso da fila de
+ * saída, percorre as sessões conectadas.
+ */
+public class Metrics implements MetricsMXBean {
+
+    /** Nome do MBean registrado por {@link #register()}. */
+    public static final String OBJECT_NAME = "jokenpo:type=Metrics";
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    /** Percentis exportados para os histogramas. */
+    private static final double[] QUANTILES = { 50, 90, 99, 99.9 };
+
+    /** Rótulos dos {@link #QUANTILES} no formato texto. */
+    private static final String[] QUANTILE_LABELS = { "0.5", "0.9", "0.99", "0.999" };
+
+    private final LongAdder active = new LongAdder();
+
+    private final LongAdder accepted = new LongAdder();
+
+    private final LongAdder inbound = new LongAdder();
+
+    private final LongAdder outbound = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder conflated = new LongAdder();
+
+    private final LongAdder shedConnection = new LongAdder();
+
+    private final LongAdder shedRoom = new LongAdder();
+
+    private final LongAdder mutes = new LongAdder();
+
+    private final LongAdder resumed = new LongAdder();
+
+    private final LongAdder expired = new LongAdder();
+
+    private final LongAdder forfeits = new LongAdder();
+
+    private final LongAdder revealsRejected = new LongAdder();
+
+    /** Destinatários de cada transmissão. */
+    private final Histogram fanout = new Histogram();
+
+    /** Duração de cada transmissão, em nanossegundos. */
+    private final Histogram broadcastDuration = new Histogram();
+
+    /** Duração de cada partida (da primeira jogada ao resultado), em nanossegundos. */
+    private final Histogram roundDuration = new Histogram();
+
+    private final LongAdder[] disconnects = new LongAdder[DisconnectReason.values().length];
+
+    // Taxas por segundo, atualizadas pela amostragem iniciada em register():
+    private volatile double acceptsPerSecond;
+
+    private volatile double inboundPerSecond;
+
+    private volatile double outboundPerSecond;
+
+    private long lastAccepted;
+
+    private long lastInbound;
+
+    private long lastOutbound;
+
+    private long lastSample = System.nanoTime();
+
+    private Metrics() {
+        for (int i = 0; i < disconnects.length; i++)
+            disconnects[i] = new LongAdder();
+    }
+
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Publica as métricas via JMX e inicia o cálculo das taxas por segundo.
+     * Sem essa chamada (ex.: benchmarks), as métricas continuam sendo registradas.
+     */
+    public static synchronized void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            if (ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+                return;
+
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+        } catch (JMException e) {
+            EventLog.error("jmx_register_failed", e); // As métricas seguem disponíveis pelo endpoint.
+        }
+
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        sampler.scheduleAtFixedRate(INSTANCE::sample, 1, 1, TimeUnit.SECONDS);
+    }
+
+    // Registro (caminhos críticos):
+
+    /** Uma conexão foi aceita. */
+    public void connectionAccepted() {
+        accepted.increment();
+        active.increment();
+    }
+
+    /** Uma conexão aceita foi fechada. Deve ser chamado uma única vez por conexão. */
+    public void connectionClosed() {
+        active.decrement();
+    }
+
+    /** Uma linha ou frame foi recebido de um client. */
+    public void messageReceived() {
+        inbound.increment();
+    }
+
+    /** Uma mensagem foi colocada na fila de saída de um client. */
+    public void messageQueued() {
+        outbound.increment();
+    }
+
+    /** Uma mensagem foi descartada por falta de espaço na fila de saída. */
+    public void messageDropped() {
+        dropped.increment();
+    }
+
+    /** Uma mensagem da sala deixou de ser enviada a um espectador lento (ver {@link SpectatorFeed}). */
+    public void messageConflated() {
+        conflated.increment();
+    }
+
+    /**
+     * Uma mensagem recebida foi descartada pelo limite de taxa, antes de ser
+     * processada ou transmitida.
+     * 
+     * @param room {@code true} se o limite excedido foi o do chat da sala, e não
+     *             o da conexão.
+     */
+    public void messageShed(boolean room) {
+        (room ? shedRoom : shedConnection).increment();
+    }
+
+    /** Um client foi silenciado por exceder o limite de mensagens. */
+    public void floodMuted() {
+        mutes.increment();
+    }
+
+    /**
+     * @param recipients Quantidade de destinatários da transmissão.
+     * @param nanos      Duração da transmissão.
+     */
+    public void broadcast(int recipients, long nanos) {
+        fanout.record(recipients);
+        broadcastDuration.record(nanos);
+    }
+
+    /**
+     * @param nanos Tempo entre a primeira jogada da partida e o resultado.
+     */
+    public void roundFinished(long nanos) {
+        roundDuration.record(nanos);
+    }
+
+    /**
+     * @param reason Motivo do encerramento. Deve ser informado uma única vez por
+     *               conexão.
+     */
+    public void disconnected(DisconnectReason reason) {
+        disconnects[reason.ordinal()].increment();
+    }
+
+    /** Uma sessão suspensa foi retomada em uma nova conexão. */
+    public void sessionResumed() {
+        resumed.increment();
+    }
+
+    /** Uma sessão suspensa não foi retomada dentro do período de tolerância. */
+    public void sessionExpired() {
+        expired.increment();
+    }
+
+    /** Uma partida foi encerrada pelo prazo de jogada, com W.O. ou sem jogadas. */
+    public void roundForfeited() {
+        forfeits.increment();
+    }
+
+    /** Uma jogada revelada não conferiu com o compromisso selado (ver {@link Room#sealedMoves}). */
+    public void revealRejected() {
+        revealsRejected.increment();
+    }
+
+    /** Atualiza as taxas por segundo. Executado a cada segundo. */
+    private synchronized void sample() {
+        long now = System.nanoTime();
+        double seconds = (now - lastSample) / 1e9;
+
+        long acceptedNow = accepted.sum();
+        long inboundNow = inbound.sum();
+        long outboundNow = outbound.sum();
+
+        acceptsPerSecond = (acceptedNow - lastAccepted) / seconds;
+        inboundPerSecond = (inboundNow - lastInbound) / seconds;
+        outboundPerSecond = (outboundNow - lastOutbound) / seconds;
+
+        lastAccepted = acceptedNow;
+        lastInbound = inboundNow;
+        lastOutbound = outboundNow;
+        lastSample = now;
+    }
+
+    // Leitura:
+
+    @Override
+    public long getActiveConnections() {
+        return active.sum();
+    }
+
+    @Override
+    public long getAcceptedConnections() {
+        return accepted.sum();
+    }
+
+    @Override
+    public double getAcceptsPerSecond() {
+        return acceptsPerSecond;
+    }
+
+    @Override
+    public long getInboundMessages() {
+        return inbound.sum();
+    }
+
+    @Override
+    public double getInboundMessagesPerSecond() {
+        return inboundPerSecond;
+    }
+
+    @Override
+    public long getOutboundMessages() {
+        return outbound.sum();
+    }
+
+    @Override
+    public double getOutboundMessagesPerSecond() {
+        return outboundPerSecond;
+    }
+
+    @Override
+    public long getDroppedMessages() {
+        return dropped.sum();
+    }
+
+    @Override
+    public long getConflatedMessages() {
+        return conflated.sum();
+    }
+
+    @Override
+    public long getShedMessagesConnection() {
+        return shedConnection.sum();
+    }
+
+    @Override
+    public long getShedMessagesRoom() {
+        return shedRoom.sum();
+    }
+
+    @Override
+    public long getFloodMutes() {
+        return mutes.sum();
+    }
+
+    @Override
+    public long getBroadcasts() {
+        return fanout.getCount();
+    }
+
+    @Override
+    public double getBroadcastFanoutMean() {
+        return fanout.getMean();
+    }
+
+    @Override
+    public long getBroadcastFanoutMax() {
+        return fanout.getMax();
+    }
+
+    @Override
+    public long getBroadcastMicrosP50() {
+        return broadcastDuration.getPercentile(50) / 1_000L;
+    }
+
+    @Override
+    public long getBroadcastMicrosP99() {
+        return broadcastDuration.getPercentile(99) / 1_000L;
+    }
+
+    @Override
+    public long getRounds() {
+        return roundDuration.getCount();
+    }
+
+    @Override
+    public long getRoundMillisP50() {
+        return roundDuration.getPercentile(50) / 1_000_000L;
+    }
+
+    @Override
+    public long getRoundMillisP99() {
+        return roundDuration.getPercentile(99) / 1_000_000L;
+    }
+
+    @Override
+    public int getOutboundQueueDepthMax() {
+        int max = 0;
+
+        for (ClientHandler client : ClientHandler.rooms.getSessions()) {
+            OutboundQueue queue = client.getOutbound();
+
+            if (queue != null)
+                max = Math.max(max, queue.size());
+        }
+
+        return max;
+    }
+
+    @Override
+    public long getOutboundQueueDepthTotal() {
+        long total = 0;
+
+        for (ClientHandler client : ClientHandler.rooms.getSessions()) {
+            OutboundQueue queue = client.getOutbound();
+
+            if (queue != null)
+                total += queue.size();
+        }
+
+        return total;
+    }
+
+    @Override
+    public long getSessionsResumed() {
+        return resumed.sum();
+    }
+
+    @Override
+    public long getSessionsExpired() {
+        return expired.sum();
+    }
+
+    @Override
+    public int getSessionsSuspended() {
+        SessionResumption resumption = ClientHandler.resumption;
+        return (resumption != null) ? resumption.suspendedCount() : 0;
+    }
+
+    @Override
+    public long getRoundsForfeited() {
+        return forfeits.sum();
+    }
+
+    @Override
+    public long getRevealsRejected() {
+        return revealsRejected.sum();
+    }
+
+    @Override
+    public long getTimersPending() {
+        return HashedWheelTimer.shared().pendingCount();
+    }
+
+    @Override
+    public int getClusterNodes() {
+        Cluster cluster = ClientHandler.cluster;
+        return (cluster != null) ? cluster.size() : 0;
+    }
+
+    @Override
+    public int getTournamentMatches() {
+        Tournament tournament = ClientHandler.tournament;
+        return (tournament != null) ? tournament.getActiveMatches() : 0;
+    }
+
+    @Override
+    public int getDraining() {
+        return Drain.isDraining() ? 1 : 0;
+    }
+
+    @Override
+    public int getBots() {
+        return Bot.activeCount();
+    }
+
+    @Override
+    public long getLogDroppedRecords() {
+        return EventLog.getDroppedCount();
+    }
+
+    @Override
+    public long getBusDroppedMessages() {
+        return BusOutbox.getDroppedCount();
+    }
+
+    @Override
+    public int getHistoryDegraded() {
+        MatchHistory history = ClientHandler.history;
+        return (history != null && history.isDegraded()) ? 1 : 0;
+    }
+
+    @Override
+    public Map<String, Long> getDisconnects() {
+        Map<String, Long> result = new LinkedHashMap<>();
+
+        for (DisconnectReason reason : DisconnectReason.values())
+            result.put(reason.getLabel(), disconnects[reason.ordinal()].sum());
+
+        return result;
+    }
+
+    /**
+     * Exporta as métricas no formato de texto do Prometheus (um valor por linha),
+     * legível também por humanos.
+     */
+    @Override
+    public String scrape() {
+        StringBuilder out = new StringBuilder(2048);
+
+        gauge(out, "jokenpo_connections_active", getActiveConnections());
+        counter(out, "jokenpo_connections_accepted_total", getAcceptedConnections());
+        gauge(out, "jokenpo_connections_accepts_per_second", getAcceptsPerSecond());
+        counter(out, "jokenpo_messages_inbound_total", getInboundMessages());
+        gauge(out, "jokenpo_messages_inbound_per_second", getInboundMessagesPerSecond());
+        counter(out, "jokenpo_messages_outbound_total", getOutboundMessages());
+        gauge(out, "jokenpo_messages_outbound_per_second", getOutboundMessagesPerSecond());
+        counter(out, "jokenpo_messages_dropped_total", getDroppedMessages());
+        counter(out, "jokenpo_messages_conflated_total", getConflatedMessages());
+        out.append("# TYPE jokenpo_messages_shed_total counter\n");
+        out.append("jokenpo_messages_shed_total{limit=\"connection\"} ").append(getShedMessagesConnection())
+                .append('\n');
+        out.append("jokenpo_messages_shed_total{limit=\"room\"} ").append(getShedMessagesRoom()).append('\n');
+        counter(out, "jokenpo_flood_mutes_total", getFloodMutes());
+        counter(out, "jokenpo_log_dropped_total", getLogDroppedRecords());
+        counter(out, "jokenpo_bus_dropped_total", getBusDroppedMessages());
+        gauge(out, "jokenpo_history_degraded", getHistoryDegraded());
+        gauge(out, "jokenpo_outbound_queue_depth_max", getOutboundQueueDepthMax());
+        gauge(out, "jokenpo_outbound_queue_depth_total", getOutboundQueueDepthTotal());
+        gauge(out, "jokenpo_sessions", ClientHandler.rooms.sessionCount());
+        gauge(out, "jokenpo_rooms", ClientHandler.rooms.size());
+        gauge(out, "jokenpo_sessions_suspended", getSessionsSuspended());
+        counter(out, "jokenpo_sessions_resumed_total", getSessionsResumed());
+        counter(out, "jokenpo_sessions_expired_total", getSessionsExpired());
+        counter(out, "jokenpo_rounds_forfeited_total", getRoundsForfeited());
+        counter(out, "jokenpo_reveals_rejected_total", getRevealsRejected());
+        gauge(out, "jokenpo_timers_pending", getTimersPending());
+        gauge(out, "jokenpo_cluster_nodes", getClusterNodes());
+        gauge(out, "jokenpo_tournament_matches", getTournamentMatches());
+        gauge(out, "jokenpo_draining", getDraining());
+        gauge(out, "jokenpo_bots", getBots());
+
+        summary(out, "jokenpo_broadcast_fanout", fanout, 1);
+        summary(out, "jokenpo_broadcast_duration_seconds", broadcastDuration, 1e-9);
+        summary(out, "jokenpo_round_duration_seconds", roundDuration, 1e-9);
+
+        out.append("# TYPE jokenpo_disconnects_total counter\n");
+
+        for (DisconnectReason reason : DisconnectReason.values()) {
+            out.append("jokenpo_disconnects_total{reason=\"").append(reason.getLabel()).append("\"} ")
+                    .append(disconnects[reason.ordinal()].sum()).append('\n');
+        }
+
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, long value) {
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, double value) {
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    /** Exporta um histograma como summary: percentis, soma, contagem e máximo. */
+    private static void summary(StringBuilder out, String name, Histogram histogram, double scale) {
+        out.append("# TYPE ").append(name).append(" summary\n");
+
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.append(name).append("{quantile=\"").append(QUANTILE_LABELS[i]).append("\"} ")
+                    .append(format(histogram.getPercentile(QUANTILES[i]) * scale)).append('\n');
+        }
+
+        out.append(name).append("_sum ").append(format(histogram.getSum() * scale)).append('\n');
+        out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+        out.append(name).append("_max ").append(format(histogram.getMax() * scale)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return Long.toString((long) value);
+
+        return String.format(Locale.ROOT, "%.6g", value);
+    }
+}
@@ -0,0 +1,77 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Endpoint HTTP mínimo, aberto apenas no endereço local, que responde qualquer
+ * requisição com as {@link Metrics} em texto (ex.: {@code curl localhost:7778}
+ * ou um coletor do Prometheus).
+ */
+public class MetricsEndpoint implements Runnable {
+
+    /** Porta padrão do endpoint. */
+    public static final int DEFAULT_PORT = 7778;
+
+    private final ServerSocket serverSocket;
+
+    /**
+     * @param port Porta em que o endpoint irá escutar.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public MetricsEndpoint(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+    }
+
+    /** Inicia o endpoint em uma thread própria. */
+    public void start() {
+        Thread thread = new Thread(this, "metrics-endpoint");
+        thread.setDaemon(true);
+        thread.start();
+
+        EventLog.info("metrics_endpoint", "url", "http://localhost:" + serverSocket.getLocalPort() + "/");
+    }
+
+    @Override
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setSoTimeout(1000);
+                skipRequest(socket.getInputStream());
+
+                byte[] body = Metrics.get().scrape().getBytes(StandardCharsets.UTF_8);
+                String header = "HTTP/1.0 200 OK\r\n"
+                        + "Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n"
+                        + "Content-Length: " + body.length + "\r\n"
+                        + "Connection: close\r\n\r\n";
+
+                OutputStream output = socket.getOutputStream();
+                output.write(header.getBytes(StandardCharsets.US_ASCII));
+                output.write(body);
+                output.flush();
+            } catch (IOException e) {
+                // Coletor com problema: apenas descarta a requisição.
+            }
+        }
+    }
+
+    /** Descarta a requisição até a linha em branco que encerra os cabeçalhos. */
+    private static void skipRequest(InputStream input) throws IOException {
+        int matched = 0; // Bytes já vistos da sequência "\r\n\r\n" (ou "\n\n").
+        int b;
+
+        while ((b = input.read()) != -1) {
+            if (b == '\n') {
+                if (++matched == 2)
+                    return;
+            } else if (b != '\r') {
+                matched = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package server;
+
+import java.util.Map;
+
+/**
+ * Interface de gerenciamento das {@link Metrics}, publicada via JMX como
+ * {@code jokenpo:type=Metrics}. Tempos em microssegundos ou milissegundos,
+ * conforme o nome do atributo.
+ */
+public interface MetricsMXBean {
+
+    long getActiveConnections();
+
+    long getAcceptedConnections();
+
+    double getAcceptsPerSecond();
+
+    long getInboundMessages();
+
+    double getInboundMessagesPerSecond();
+
+    long getOutboundMessages();
+
+    double getOutboundMessagesPerSecond();
+
+    long getDroppedMessages();
+
+    long getConflatedMessages();
+
+    /** @return Mensagens descartadas por exceder o limite da conexão (ver {@link TokenBucket}). */
+    long getShedMessagesConnection();
+
+    /** @return Mensagens de chat descartadas por exceder o limite da sala. */
+    long getShedMessagesRoom();
+
+    /** @return Clients silenciados pela {@link FloodPolicy#MUTE}. */
+    long getFloodMutes();
+
+    long getBroadcasts();
+
+    double getBroadcastFanoutMean();
+
+    long getBroadcastFanoutMax();
+
+    long getBroadcastMicrosP50();
+
+    long getBroadcastMicrosP99();
+
+    long getRounds();
+
+    long getRoundMillisP50();
+
+    long getRoundMillisP99();
+
+    int getOutboundQueueDepthMax();
+
+    long getOutboundQueueDepthTotal();
+
+    Map<String, Long> getDisconnects();
+
+    /** @return Sessões suspensas que voltaram dentro do período de tolerância. */
+    long getSessionsResumed();
+
+    /** @return Sessões suspensas encerradas ao fim do período de tolerância. */
+    long getSessionsExpired();
+
+    /** @return Sessões suspensas no momento, aguardando a reconexão. */
+    int getSessionsSuspended();
+
+    /** @return Partidas encerradas pelo prazo de jogada (W.O. ou sem jogadas). */
+    long getRoundsForfeited();
+
+    /** @return Jogadas reveladas que não conferiram com o compromisso selado. */
+    long getRevealsRejected();
+
+    /** @return Prazos pendentes no {@link HashedWheelTimer} (leitura, jogada e retomada). */
+    long getTimersPending();
+
+    /** @return Nós do {@link Cluster}, inclusive este, ou 0 se o servidor roda sozinho. */
+    int getClusterNodes();
+
+    /** @return Partidas em andamento na rodada atual do {@link Tournament}. */
+    int getTournamentMatches();
+
+    /** @return 1 se o servidor está encerrando ou passando as sessões a outro processo (ver {@link Drain}). */
+    int getDraining();
+
+    /** @return {@link Bot}s nas salas, incluídos nas sessões. */
+    int getBots();
+
+    /** @return Registros do {@link EventLog} descartados com o buffer cheio. */
+    long getLogDroppedRecords();
+
+    /** @return Mensagens do barramento descartadas com a fila da conexão cheia (ver {@link BusOutbox}). */
+    long getBusDroppedMessages();
+
+    /** @return 1 se a última gravação do {@link MatchHistory} falhou e ele aguarda o disco voltar. */
+    int getHistoryDegraded();
+
+    /** @return Todas as métricas no formato texto do endpoint de coleta. */
+    String scrape();
+}
@@ -0,0 +1,468 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import protocol.BinaryProtocol;
+import protocol.JoinRequest;
+import protocol.ResumeRequest;
+
+/**
+ * Estado de uma conexão atendida pelo {@link NioServer}: buffers de leitura e
+ * escrita, o enquadramento das linhas (ou frames binários) recebidos e o
+ * {@link ClientHandler} associado após o handshake.
+ *
+ * Cada conexão tem um {@link ReadDeadline}: se o client ficar em silêncio além
+ * do prazo, a conexão é encerrada pelo próprio event loop.
+ *
+ * Os bytes ainda não escritos no canal são limitados a
+ * {@link #MAX_PENDING_BYTES}: acima disso, a {@link OutboundQueue} do client
+ * para de entregar mensagens, que esperam na fila até o canal aceitar os
+ * bytes. Um client que não lê não faz o heap crescer sem limite.
+ */
+public class NioConnection {
+
+    /** Protocolo ainda não identificado: aguardando o primeiro byte. */
+    private static final int UNKNOWN = 0;
+
+    /** Protocolo de linhas de texto. */
+    private static final int TEXT = 1;
+
+    /** Protocolo binário, aguardando o byte de versão. */
+    private static final int BINARY_VERSION = 2;
+
+    /** Protocolo binário (ver {@link BinaryProtocol}). */
+    private static final int BINARY = 3;
+
+    /** Tamanho do buffer de leitura de cada conexão. */
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    /** Bytes aguardando o canal a partir dos quais a fila de saída para de entregar. */
+    static final int MAX_PENDING_BYTES = 64 * 1024;
+
+
+    /** Protocolo da conexão, identificado pelo primeiro byte recebido. */
+    private int protocol = UNKNOWN;
+
+    /** Tamanho do frame binário atual, ou -1 enquanto o cabeçalho é lido. */
+    private int frameLength = -1;
+
+    /** Canal não bloqueante do client. */
+    private final SocketChannel channel;
+
+    /** Event loop responsável por esta conexão. */
+    private final NioEventLoop loop;
+
+    /** Buffer onde o event loop lê os bytes vindos do canal. */
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    /** Bytes da linha (ou do frame binário) atual, ainda sem o terminador. */
+    private byte[] line = new byte[256];
+
+    /** Quantidade de bytes válidos em {@link #line}. */
+    private int lineLength;
+
+    /** Buffers aguardando escrita no canal. Preenchida por qualquer thread. */
+    private final Queue<ByteBuffer> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    /** Bytes em {@link #pendingWrites} ainda não escritos no canal. */
+    private final AtomicInteger pendingBytes = new AtomicInteger();
+
+    /** Buffers em {@link #pendingWrites}: mensagens ainda não escritas por inteiro. */
+    private final AtomicInteger pendingFrames = new AtomicInteger();
+
+    /** Continuação da fila de saída, à espera de espaço (ver {@link BoundedOutput}). */
+    private volatile Runnable writable;
+
+    /** Chave de registro no selector. Definida pelo event loop. */
+    private SelectionKey key;
+
+    /** Handler do client. Fica {@code null} até o username ser recebido. */
+    private ClientHandler handler;
+
+    /** Stream entregue ao {@link ClientHandler} para enviar mensagens. */
+    private final OutputStream output = new ConnectionOutputStream();
+
+    private volatile boolean closed;
+
+    /** A conexão será encerrada assim que as escritas pendentes terminarem. */
+    private boolean closing;
+
+    /** Motivo registrado quando a conexão em {@link #closing} for encerrada. */
+    private DisconnectReason closingReason = DisconnectReason.CLOSED;
+
+    /** Prazo de leitura, ou {@code null} se estiver desativado. */
+    private final ReadDeadline deadline;
+
+    public NioConnection(SocketChannel channel, NioEventLoop loop) {
+        this.channel = channel;
+        this.loop = loop;
+
+        // O prazo vence na thread do timer; o encerramento acontece no event loop.
+        this.deadline = ReadDeadline.start(() -> loop.execute(() -> disconnect(DisconnectReason.IDLE)));
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+
+    /**
+     * Lê os bytes disponíveis no canal e despacha cada linha (ou frame) completa.
+     * Executado apenas pela thread do event loop.
+     */
+    void read() {
+        try {
+            int read = channel.read(readBuffer);
+
+            // Fim do stream: o client encerrou a conexão.
+            if (read == -1) {
+                disconnect(DisconnectReason.CLOSED);
+                return;
+            }
+
+            if (deadline != null)
+                deadline.touch(); // O client está vivo: renova o prazo de leitura.
+
+            readBuffer.flip();
+
+            while (readBuffer.hasRemaining() && !closed && !closing) {
+                byte b = readBuffer.get();
+
+                switch (protocol) {
+                    case UNKNOWN:
+                        if (b == BinaryProtocol.MAGIC) {
+                            protocol = BINARY_VERSION;
+                            break;
+                        }
+
+                        protocol = TEXT; // O byte já faz parte do username.
+                        readText(b);
+                        break;
+                    case TEXT:
+                        readText(b);
+                        break;
+                    case BINARY_VERSION:
+                        if (b != BinaryProtocol.VERSION) {
+                            disconnect(DisconnectReason.PROTOCOL); // Versão do protocolo não suportada.
+                            break;
+                        }
+
+                        protocol = BINARY;
+                        break;
+                    default:
+                        readBinary(b);
+                        break;
+                }
+            }
+
+            readBuffer.clear();
+        } catch (IOException e) {
+            disconnect(DisconnectReason.ERROR);
+        }
+    }
+
+    /**
+     * Escreve no canal os buffers pendentes. Se o canal não aceitar todos os
+     * bytes, o interesse de escrita permanece ativo até a próxima rodada.
+     */
+    void write() {
+        try {
+            ByteBuffer buffer;
+
+            while ((buffer = pendingWrites.peek()) != null) {
+                pendingBytes.addAndGet(-channel.write(buffer));
+
+                if (buffer.hasRemaining()) {
+                    resumeOutbound();
+                    return; // Socket cheio, aguarda o próximo OP_WRITE.
+                }
+
+                pendingWrites.poll();
+                pendingFrames.decrementAndGet();
+            }
+
+            resumeOutbound(); // Pode entregar mais mensagens, escritas no próximo OP_WRITE.
+
+            if (closing) {
+                disconnect(closingReason); // A última mensagem foi entregue.
+                return;
+            }
+
+            key.interestOps(SelectionKey.OP_READ); // Nada mais a escrever.
+
+            // Uma escrita pode ter chegado entre o último poll e a troca de interesse.
+            if (!pendingWrites.isEmpty())
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            disconnect(DisconnectReason.ERROR);
+        }
+    }
+
+    boolean hasPendingWrites() {
+        return !pendingWrites.isEmpty();
+    }
+
+    /** Retoma a fila de saída que parou no limite, se os bytes pendentes baixaram dele. */
+    private void resumeOutbound() {
+        Runnable task = writable;
+
+        if (task != null && pendingBytes.get() < MAX_PENDING_BYTES) {
+            writable = null;
+            task.run();
+        }
+    }
+
+    /**
+     * Encerra a conexão, notificando o handler quando houver um.
+     *
+     * @param reason Motivo do encerramento, registrado nas {@link Metrics}.
+     */
+    void disconnect(DisconnectReason reason) {
+        if (handler != null)
+            handler.closeConnection(null, null, output, reason); // Informa a saída e libera o handler.
+        else if (!closed) {
+            Metrics.get().disconnected(reason); // Antes do handshake não há handler para registrar.
+            EventLog.debug("disconnect", "reason", reason.getLabel(), "handshake", false);
+        }
+
+        close();
+    }
+
+    /** Fecha o canal e cancela o registro no selector. */
+    void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        writable = null;
+        Metrics.get().connectionClosed();
+
+        if (deadline != null)
+            deadline.cancel();
+
+        try {
+            if (key != null)
+                key.cancel();
+
+            channel.close();
+        } catch (IOException e) {
+            EventLog.error("close_failed", e);
+        }
+    }
+
+    private void readText(byte b) {
+        if (b == '\n') {
+            dispatchLine();
+        } else if (b != '\r') {
+            appendToLine(b);
+        }
+    }
+
+    /** Acumula o cabeçalho e o corpo do frame binário atual. */
+    private void readBinary(byte b) {
+        appendToLine(b);
+
+        // Cabeçalho completo: tamanho do corpo em u16 big-endian.
+        if (frameLength < 0 && lineLength == 2) {
+            frameLength = ((line[0] & 0xFF) << 8) | (line[1] & 0xFF);
+            lineLength = 0;
+
+            if (frameLength == 0)
+                disconnect(DisconnectReason.PROTOCOL); // Frame vazio, protocolo violado.
+
+            return;
+        }
+
+        if (frameLength > 0 && lineLength == frameLength) {
+            int length = frameLength;
+            frameLength = -1;
+            lineLength = 0;
+
+            dispatchFrame(length);
+        }
+    }
+
+    private void appendToLine(byte b) {
+        if (protocol != BINARY && lineLength >= LineReader.MAX_LINE_LENGTH) {
+            disconnect(DisconnectReason.PROTOCOL); // Linha grande demais, provavelmente um client malicioso.
+            return;
+        }
+
+        if (lineLength == line.length)
+            line = Arrays.copyOf(line, line.length * 2);
+
+        line[lineLength++] = b;
+    }
+
+    /** Entrega a linha completa para o handler (ou realiza o handshake). */
+    private void dispatchLine() {
+        int length = lineLength;
+        lineLength = 0;
+
+        // A primeira linha enviada pelo client é o username (ou o pedido de retomada).
+        if (handler == null) {
+            String first = new String(line, 0, length, StandardCharsets.UTF_8);
+            ResumeRequest request = ResumeRequest.fromLine(first);
+
+            JoinRequest join = (request == null) ? JoinRequest.fromLine(first) : null;
+
+            if (request != null)
+                resume(request, false);
+            else if (join != null)
+                join(join.getUsername(), join.getRoom(), false); // Redirecionado de outro nó.
+            else
+                join(first, 0, false);
+
+            return;
+        }
+
+        // A linha é processada direto do buffer de leitura, sem virar String.
+        if (!handler.handleLine(line, length))
+            close(); // O usuário saiu com /sair.
+    }
+
+    /** Entrega o frame completo para o handler (ou realiza o handshake). */
+    private void dispatchFrame(int length) {
+        // O primeiro frame do client binário é o HELLO, com o username (ou o pedido de retomada).
+        if (handler == null) {
+            ResumeRequest request = (line[0] == BinaryProtocol.RESUME) ? ResumeRequest.fromFrame(line, length) : null;
+
+            if (request != null) {
+                resume(request, true);
+                return;
+            }
+
+            if (line[0] == BinaryProtocol.JOIN) {
+                JoinRequest join = JoinRequest.fromFrame(line, length);
+
+                if (join != null)
+                    join(join.getUsername(), join.getRoom(), true); // Redirecionado de outro nó.
+                else
+                    disconnect(DisconnectReason.PROTOCOL);
+
+                return;
+            }
+
+            if (line[0] != BinaryProtocol.HELLO) {
+                disconnect(DisconnectReason.PROTOCOL);
+                return;
+            }
+
+            join(BinaryProtocol.payloadText(line, length), 0, true);
+            return;
+        }
+
+        if (!handler.handleFrame(line, length))
+            close(); // O usuário saiu com /sair.
+    }
+
+    /**
+     * Cria o handler do client, que entra em uma sala. Se a sala estiver em outro
+     * nó do {@link Cluster}, a conexão é encerrada depois que o redirecionamento
+     * for escrito.
+     *
+     * @param requestedRoom Sala pedida por um client redirecionado, ou 0.
+     */
+    private void join(String username, int requestedRoom, boolean binary) {
+        if (!BinaryProtocol.fitsUsername(username)) {
+            disconnect(DisconnectReason.PROTOCOL);
+            return;
+        }
+
+        handler = new ClientHandler(username, requestedRoom, output, loop::execute, binary);
+
+        if (handler.getRoom() == null) {
+            closing = true;
+            closingReason = DisconnectReason.REDIRECTED;
+        }
+    }
+
+    /**
+     * Entrega esta conexão à sessão que o client pediu para retomar. Se o pedido
+     * for recusado, a conexão é encerrada depois que o aviso for escrito.
+     */
+    private void resume(ResumeRequest request, boolean binary) {
+        try {
+            handler = ClientHandler.resume(request, null, null, null, null, output, loop::execute, binary);
+        } catch (IOException e) {
+            disconnect(DisconnectReason.ERROR);
+            return;
+        }
+
+        if (handler == null)
+            closing = true;
+    }
+
+    /**
+     * Stream de saída entregue ao handler. Os arrays escritos são mensagens já
+     * codificadas e imutáveis (ver {@link OutboundQueue#encode(String)}), então
+     * são apenas embrulhados em {@link ByteBuffer}s, sem cópia: uma mensagem
+     * transmitida para a sala inteira ocupa um único array na memória.
+     */
+    private class ConnectionOutputStream extends OutputStream implements BoundedOutput {
+
+        @Override
+        public void write(int b) {
+            pendingBytes.incrementAndGet();
+            pendingFrames.incrementAndGet();
+            pendingWrites.add(ByteBuffer.wrap(new byte[] { (byte) b }));
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            pendingBytes.addAndGet(len);
+            pendingFrames.incrementAndGet();
+            pendingWrites.add(ByteBuffer.wrap(b, off, len));
+        }
+
+        @Override
+        public boolean isSaturated() {
+            return pendingBytes.get() >= MAX_PENDING_BYTES;
+        }
+
+        @Override
+        public int pendingBytes() {
+            return pendingBytes.get();
+        }
+
+        @Override
+        public int pendingFrames() {
+            return pendingFrames.get();
+        }
+
+        @Override
+        public void whenWritable(Runnable task) {
+            writable = task; // O próximo OP_WRITE que baixar do limite a executa.
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (closed)
+                throw new IOException("Conexão encerrada.");
+
+            if (!pendingWrites.isEmpty())
+                loop.requestWrite(NioConnection.this); // Pede ao event loop para escrever.
+        }
+
+        @Override
+        public void close() {
+            NioConnection.this.close();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Loop de eventos do {@link NioServer}. Cada instância possui seu próprio
+ * {@link Selector} e atende, em uma única thread, todas as conexões registradas
+ * nela.
+ */
+public class NioEventLoop implements Runnable {
+
+    private final Selector selector;
+
+    /** Canais aceitos que aguardam registro neste selector. */
+    private final Queue<SocketChannel> pendingRegistrations = new ConcurrentLinkedQueue<>();
+
+    /** Conexões que possuem dados para escrever e precisam de OP_WRITE. */
+    private final Queue<NioConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    /** Tarefas entregues por outras threads para rodar no loop (ex.: prazos vencidos). */
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running = true;
+
+    public NioEventLoop() throws IOException {
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Entrega um canal recém-aceito para este loop. Pode ser chamado de qualquer
+     * thread.
+     *
+     * @param channel Canal aceito pelo servidor.
+     */
+    public void register(SocketChannel channel) {
+        pendingRegistrations.add(channel);
+        selector.wakeup(); // Acorda o select para registrar o canal.
+    }
+
+    /**
+     * Solicita que o loop escreva os dados pendentes de uma conexão. Pode ser
+     * chamado de qualquer thread.
+     *
+     * @param connection Conexão com dados pendentes.
+     */
+    void requestWrite(NioConnection connection) {
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Executa uma tarefa na thread deste loop, que é a única que pode mexer no
+     * estado das conexões. Pode ser chamado de qualquer thread.
+     *
+     * @param task Tarefa a executar.
+     */
+    void execute(Runnable task) {
+        pendingTasks.add(task);
+        selector.wakeup();
+    }
+
+    /** Encerra o loop e fecha todas as conexões atendidas por ele. */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+
+                registerPending();
+                enableWrites();
+                runTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    NioConnection connection = (NioConnection) key.attachment();
+
+                    try {
+                        if (key.isValid() && key.isReadable())
+                            connection.read();
+
+                        if (key.isValid() && key.isWritable())
+                            connection.write();
+                    } catch (RuntimeException e) {
+                        // Um erro no tratamento de uma conexão não derruba as outras do loop.
+                        EventLog.error("connection_failed", e, "loop", Thread.currentThread().getName());
+                        connection.disconnect(DisconnectReason.ERROR);
+                    }
+                }
+            } catch (IOException e) {
+                EventLog.error("select_failed", e, "loop", Thread.currentThread().getName());
+            }
+        }
+
+        // Encerrando as conexões restantes:
+        for (SelectionKey key : selector.keys())
+            ((NioConnection) key.attachment()).close();
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            EventLog.error("close_failed", e, "loop", Thread.currentThread().getName());
+        }
+    }
+
+    private void registerPending() {
+        SocketChannel channel;
+
+        while ((channel = pendingRegistrations.poll()) != null) {
+            NioConnection connection = new NioConnection(channel, this);
+
+            try {
+                channel.configureBlocking(false);
+                connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+            } catch (IOException e) {
+                connection.disconnect(DisconnectReason.ERROR);
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+
+        while ((task = pendingTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                EventLog.error("task_failed", e, "loop", Thread.currentThread().getName());
+            }
+        }
+    }
+
+    private void enableWrites() {
+        NioConnection connection;
+
+        while ((connection = pendingWrites.poll()) != null) {
+            SelectionKey key = connection.getKey();
+
+            if (key == null || !key.isValid() || !connection.hasPendingWrites())
+                continue;
+
+            try {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } catch (IllegalStateException e) {
+                connection.close(); // Chave cancelada entre a verificação e a troca.
+            }
+        }
+    }
+}
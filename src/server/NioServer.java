@@ -0,0 +1,98 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Servidor não bloqueante. Em vez de uma thread por client, um pequeno grupo
+ * fixo de {@link NioEventLoop}s atende todas as conexões, e o enquadramento das
+ * linhas é feito dentro do próprio loop.
+ */
+public class NioServer {
+
+    /** Canal utilizado para aceitar novas conexões. */
+    private ServerSocketChannel serverChannel;
+
+    /** Loops de eventos que atendem as conexões aceitas. */
+    private NioEventLoop[] loops;
+
+    /** Índice do próximo loop que receberá uma conexão (round-robin). */
+    private int nextLoop;
+
+    /** Indica se a porta foi fechada para encerrar o servidor (ver {@link Drain}). */
+    private volatile boolean stopped;
+
+    /**
+     * @param port      Porta em que o servidor irá escutar.
+     * @param loopCount Quantidade de threads de event loop.
+     * @throws IOException Se não for possível abrir a porta ou os selectors.
+     */
+    public NioServer(int port, int loopCount) throws IOException {
+        this.serverChannel = ServerSocketChannel.open();
+
+        if (Server.reusePort) {
+            Server.requireReusePort(serverChannel.supportedOptions());
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+
+        this.serverChannel.bind(new InetSocketAddress(port), Server.BACKLOG);
+
+        this.loops = new NioEventLoop[loopCount];
+
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new NioEventLoop();
+
+            Thread thread = new Thread(loops[i], "nio-loop-" + i);
+            thread.start();
+        }
+    }
+
+    /** Inicia o servidor na rede, distribuindo as conexões entre os loops. */
+    public void runServer() {
+        EventLog.info("server_started", "port", serverChannel.socket().getLocalPort(), "mode", "nio", "loops",
+                loops.length);
+
+        try {
+            // A aceitação é bloqueante; a leitura e a escrita ficam com os loops.
+            while (serverChannel.isOpen()) {
+                SocketChannel channel = serverChannel.accept();
+                Metrics.get().connectionAccepted();
+
+                loops[nextLoop].register(channel);
+                nextLoop = (nextLoop + 1) % loops.length;
+            }
+        } catch (IOException e) {
+            if (!stopped)
+                closeServer(); // Caso de erro, fecha o servidor.
+        }
+    }
+
+    /**
+     * Fecha a porta do servidor sem encerrar os loops, que seguem atendendo as
+     * conexões já aceitas até elas serem drenadas (ver {@link Drain}).
+     */
+    public void stopAccepting() {
+        stopped = true;
+
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            EventLog.error("server_close_failed", e);
+        }
+    }
+
+    /** Encerra o servidor e os loops de eventos. */
+    public void closeServer() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            EventLog.error("server_close_failed", e);
+        }
+
+        for (NioEventLoop loop : loops)
+            loop.shutdown();
+    }
+}
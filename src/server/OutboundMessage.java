@@ -0,0 +1,47 @@
+package server;
+
+import protocol.BinaryProtocol;
+
+/**
+ * Mensagem enviada pelo server. Guarda a codificação de cada protocolo, feita
+ * sob demanda e uma única vez: em uma transmissão, todos os clients de texto
+ * recebem o mesmo array de bytes, e todos os clients binários recebem outro.
+ */
+public class OutboundMessage {
+
+    private final String line;
+
+    /** Linha codificada para o protocolo de texto. */
+    private byte[] text;
+
+    /** Frame {@link BinaryProtocol#TEXT} para o protocolo binário. */
+    private byte[] binary;
+
+    /** @param line Linha a ser enviada, sem o terminador. */
+    public OutboundMessage(String line) {
+        this.line = line;
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * @param binaryProtocol {@code true} se o destinatário usa o protocolo
+     *                       binário.
+     * @return Bytes da mensagem no protocolo do destinatário.
+     */
+    public byte[] encoded(boolean binaryProtocol) {
+        if (binaryProtocol) {
+            if (binary == null)
+                binary = BinaryProtocol.textFrame(line);
+
+            return binary;
+        }
+
+        if (text == null)
+            text = OutboundQueue.encode(line);
+
+        return text;
+    }
+}
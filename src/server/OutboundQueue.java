@@ -0,0 +1,368 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Fila de saída de um client. Quem envia uma mensagem apenas a coloca na fila;
+ * uma tarefa de escrita própria do client a esvazia em segundo plano, juntando
+ * todas as mensagens pendentes em um único flush.
+ *
+ * A tarefa de escrita roda no executor da conexão: no {@link Server}, o pool
+ * {@link #WRITERS}, pois a escrita no socket bloqueia; no {@link NioServer}, o
+ * próprio event loop da conexão, onde a escrita apenas entrega os buffers ao
+ * canal e não bloqueia. Nesse caso a saída é uma {@link BoundedOutput}: a
+ * tarefa para quando o canal acumula bytes demais e é retomada pelo event loop
+ * quando ele volta a aceitá-los, então as mensagens atrasadas ficam na fila.
+ *
+ * As mensagens chegam já codificadas em UTF-8. Em uma transmissão, o mesmo
+ * array de bytes é compartilhado por todas as filas da sala, então o texto é
+ * formatado e codificado uma única vez, independente do número de
+ * destinatários. Esses arrays nunca são alterados depois de criados.
+ *
+ * Assim, um espectador lento não trava a thread de quem está transmitindo a
+ * mensagem. Quando a fila enche, a {@link BackpressurePolicy} configurada
+ * decide entre descartar mensagens antigas ou desconectar o client.
+ */
+public class OutboundQueue {
+
+    /** Capacidade padrão da fila de saída de cada client. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** Capacidade das filas criadas a partir de agora. */
+    public static int capacity = DEFAULT_CAPACITY;
+
+    /** Política aplicada às filas criadas a partir de agora. */
+    public static BackpressurePolicy policy = BackpressurePolicy.DROP_OLDEST;
+
+    /**
+     * Threads de plataforma do {@link #WRITERS} quando o JDK não oferece virtual
+     * threads. Um client que não lê prende uma delas até o {@link WriteDeadline}
+     * desconectá-lo, então o pool tem folga sobre o número de processadores.
+     */
+    public static final int WRITER_THREADS = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Executor das tarefas de escrita das conexões bloqueantes: virtual threads
+     * ou um pool limitado (ver {@link Workers#newExecutor(String, int)}).
+     */
+    static final Executor WRITERS = Workers.newExecutor("outbound-writer", WRITER_THREADS);
+
+    /** Onde as tarefas de escrita desta fila rodam. */
+    private final Executor writer;
+
+    /** Mensagens codificadas aguardando escrita. */
+    private final BlockingQueue<byte[]> queue;
+
+    /**
+     * Mensagens reenviadas na retomada da sessão (ver {@link #resend(List)}),
+     * escritas antes das da fila.
+     */
+    private final Queue<byte[]> resent = new ConcurrentLinkedQueue<>();
+
+    private final BackpressurePolicy queuePolicy;
+
+    /** Capacidade desta fila. */
+    private final int queueCapacity;
+
+    /** Stream de saída do client. Utilizado apenas pela tarefa de escrita. */
+    private final OutputStream output;
+
+    /** O {@link #output}, se ele limitar os bytes pendentes; senão, {@code null}. */
+    private final BoundedOutput bounded;
+
+    /**
+     * Prazo das escritas bloqueantes (sem {@link BoundedOutput}), ou
+     * {@code null} se desativado.
+     */
+    private final WriteDeadline deadline;
+
+    /** Mensagens já entregues à conexão, para a retomada da sessão. Pode ser {@code null}. */
+    private final ReplayBuffer replay;
+
+    /** Chamado quando o client precisa ser desconectado (erro ou lentidão). */
+    private final Consumer<DisconnectReason> onFailure;
+
+    /** Indica se já há uma tarefa de escrita agendada ou rodando. */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /** Mensagens descartadas por falta de espaço na fila. */
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean closed;
+
+    /**
+     * @param output    Stream de saída do client.
+     * @param onFailure Ação executada quando a escrita falha ou o client é
+     *                  desconectado pela política de backpressure. Recebe o
+     *                  motivo da desconexão.
+     */
+    public OutboundQueue(OutputStream output, Consumer<DisconnectReason> onFailure) {
+        this(output, null, onFailure);
+    }
+
+    /**
+     * @param output    Stream de saída do client.
+     * @param replay    Onde registrar as mensagens antes de escrevê-las, para a
+     *                  retomada da sessão. Pode ser {@code null}.
+     * @param onFailure Ação executada quando a escrita falha ou o client é
+     *                  desconectado pela política de backpressure. Recebe o
+     *                  motivo da desconexão.
+     */
+    public OutboundQueue(OutputStream output, ReplayBuffer replay, Consumer<DisconnectReason> onFailure) {
+        this(output, replay, WRITERS, onFailure);
+    }
+
+    /**
+     * @param output    Stream de saída do client.
+     * @param replay    Onde registrar as mensagens antes de escrevê-las, para a
+     *                  retomada da sessão. Pode ser {@code null}.
+     * @param writer    Onde executar as tarefas de escrita (ex.: o event loop da
+     *                  conexão).
+     * @param onFailure Ação executada quando a escrita falha ou o client é
+     *                  desconectado pela política de backpressure. Recebe o
+     *                  motivo da desconexão.
+     */
+    public OutboundQueue(OutputStream output, ReplayBuffer replay, Executor writer,
+            Consumer<DisconnectReason> onFailure) {
+        this.writer = writer;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.queueCapacity = capacity;
+        this.queuePolicy = policy;
+        this.output = output;
+        this.bounded = (output instanceof BoundedOutput) ? (BoundedOutput) output : null;
+        this.replay = replay;
+        this.onFailure = onFailure;
+
+        // O event loop nunca bloqueia na escrita; o socket de uma conexão bloqueante, sim.
+        this.deadline = (bounded == null) ? WriteDeadline.start(() -> Workers.execute(this::writeExpired)) : null;
+    }
+
+    /**
+     * Codifica uma linha em UTF-8, já com o terminador.
+     *
+     * @param line Linha sem o terminador.
+     * @return Bytes prontos para serem colocados em uma ou mais filas.
+     */
+    public static byte[] encode(String line) {
+        return (line + '\n').getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Coloca uma mensagem codificada na fila e agenda a escrita, sem bloquear.
+     *
+     * @param frame Mensagem codificada (ver {@link OutboundMessage}).
+     */
+    public void offer(byte[] frame) {
+        if (closed)
+            return;
+
+        // Fila cheia: o client não está consumindo as mensagens a tempo.
+        while (!queue.offer(frame)) {
+            if (queuePolicy == BackpressurePolicy.DISCONNECT) {
+                close();
+                onFailure.accept(DisconnectReason.SLOW);
+                return;
+            }
+
+            if (queue.poll() != null) {
+                dropped.increment(); // Abre espaço descartando a mais antiga.
+                Metrics.get().messageDropped();
+            }
+        }
+
+        Metrics.get().messageQueued();
+
+        if (scheduled.compareAndSet(false, true))
+            writer.execute(this::drain);
+    }
+
+    /**
+     * Reenvia mensagens que já estão no {@link ReplayBuffer} (retomada da
+     * sessão). Elas são escritas antes de qualquer mensagem da fila, sem limite
+     * de capacidade (o replay já é limitado) e sem serem registradas de novo.
+     * Não bloqueia: quem retoma a sessão não espera pelo socket.
+     *
+     * @param frames Mensagens codificadas, em ordem.
+     */
+    public void resend(List<byte[]> frames) {
+        if (closed)
+            return;
+
+        resent.addAll(frames);
+
+        if (scheduled.compareAndSet(false, true))
+            writer.execute(this::drain);
+    }
+
+    /**
+     * Para de aceitar mensagens. As pendentes são descartadas ou, se houver um
+     * {@link ReplayBuffer}, passadas para ele, para serem entregues na retomada.
+     */
+    public void close() {
+        closed = true;
+        resent.clear(); // Continuam no replay.
+
+        if (deadline != null)
+            deadline.cancel();
+
+        if (replay == null) {
+            queue.clear();
+            return;
+        }
+
+        // Cada mensagem retirada por next() é registrada no replay.
+        while (next() != null) {
+        }
+    }
+
+    /** @return Quantidade de mensagens aguardando escrita. */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * @return Mensagens que o client ainda não recebeu do servidor: as da fila
+     *         e, com uma {@link BoundedOutput}, as já entregues a ela e ainda
+     *         não escritas no canal. Mede o atraso real do client nos dois
+     *         modos do servidor.
+     */
+    public int backlog() {
+        int backlog = queue.size() + resent.size();
+        return (bounded != null) ? backlog + bounded.pendingFrames() : backlog;
+    }
+
+    /**
+     * Entregar as mensagens ao {@link #output} não basta: no {@link NioServer}
+     * elas ainda podem estar à espera do canal, e o servidor que encerrasse
+     * nesse momento as perderia.
+     * 
+     * @return {@code true} se não há mensagens pendentes, escrita em andamento
+     *         nem bytes ainda não escritos no socket, ou se a fila já foi
+     *         encerrada.
+     */
+    public boolean isIdle() {
+        if (closed)
+            return true;
+
+        if (!queue.isEmpty() || !resent.isEmpty() || scheduled.get())
+            return false;
+
+        return bounded == null || bounded.pendingBytes() == 0;
+    }
+
+    /** @return Capacidade desta fila. */
+    public int getCapacity() {
+        return queueCapacity;
+    }
+
+    /** @return Quantidade de mensagens descartadas por falta de espaço. */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Escreve todas as mensagens pendentes e faz um único flush. Repete enquanto
+     * novas mensagens chegarem durante a escrita. Com uma {@link BoundedOutput}
+     * cheia, para e continua agendada até ela voltar a aceitar bytes.
+     */
+    private void drain() {
+        try {
+            do {
+                byte[] frame;
+
+                while ((frame = resent.poll()) != null)
+                    write(frame); // Já registrada no replay.
+
+                while (!isSaturated() && (frame = next()) != null)
+                    write(frame);
+
+                if (deadline != null)
+                    deadline.writing();
+
+                output.flush(); // Uma única escrita no socket para todo o lote.
+
+                if (deadline != null)
+                    deadline.idle();
+
+                if (isSaturated() && !queue.isEmpty()) {
+                    bounded.whenWritable(this::resume); // O restante espera na fila.
+                    return;
+                }
+
+                scheduled.set(false);
+
+                // Se algo chegou após o último poll, retoma a escrita (se ninguém agendou).
+            } while ((!queue.isEmpty() || !resent.isEmpty()) && !closed && scheduled.compareAndSet(false, true));
+        } catch (IOException e) {
+            scheduled.set(false);
+
+            if (!closed) {
+                close();
+                onFailure.accept(DisconnectReason.ERROR); // Encerra a conexão do client.
+            }
+        }
+    }
+
+    /** Escreve uma mensagem, registrando o início da escrita no {@link #deadline}. */
+    private void write(byte[] frame) throws IOException {
+        if (deadline != null)
+            deadline.writing();
+
+        output.write(frame);
+    }
+
+    /**
+     * Uma escrita passou do {@link WriteDeadline}: o client não lê o socket.
+     * Desconecta-o como lento, qualquer que seja a política, o que fecha o
+     * socket e libera a thread presa na escrita.
+     */
+    private void writeExpired() {
+        if (closed)
+            return;
+
+        close();
+        onFailure.accept(DisconnectReason.SLOW);
+    }
+
+    /** Continua a escrita parada por {@link BoundedOutput#isSaturated()}. */
+    private void resume() {
+        if (closed)
+            scheduled.set(false);
+        else
+            drain();
+    }
+
+    private boolean isSaturated() {
+        return bounded != null && bounded.isSaturated();
+    }
+
+    /**
+     * Retira a próxima mensagem da fila. Com um {@link ReplayBuffer}, a mensagem
+     * é registrada nele antes da escrita, e a retirada e o registro acontecem
+     * juntos: a escrita e o {@link #close()} não invertem a ordem do replay.
+     */
+    private byte[] next() {
+        if (replay == null)
+            return queue.poll();
+
+        synchronized (replay) {
+            byte[] frame = queue.poll();
+
+            if (frame != null)
+                replay.record(frame);
+
+            return frame;
+        }
+    }
+}
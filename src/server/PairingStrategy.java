@@ -0,0 +1,42 @@
+package server;
+
+import java.util.List;
+
+/**
+ * Estratégia utilizada pelo {@link Matchmaker} para escolher, entre os usuários
+ * da fila, quem ocupará uma vaga de jogador.
+ */
+public interface PairingStrategy {
+
+    /**
+     * Escolhe o próximo usuário da fila.
+     * 
+     * @param waiting  Usuários aguardando, em ordem de chegada na fila. Nunca
+     *                 vazia.
+     * @param opponent Jogador que já ocupa a outra vaga, ou {@code null} se
+     *                 ambas estiverem livres.
+     * @param now      Instante atual, em {@link System#nanoTime()}.
+     * @return Entrada escolhida (deve pertencer a {@code waiting}).
+     */
+    QueueEntry select(List<QueueEntry> waiting, ClientHandler opponent, long now);
+
+    /**
+     * Retorna a estratégia correspondente ao nome informado na linha de comando.
+     * 
+     * @param name {@code fifo}, {@code espera} ou {@code rating}.
+     * @return Estratégia de pareamento.
+     * @throws IllegalArgumentException Se o nome for desconhecido.
+     */
+    static PairingStrategy byName(String name) {
+        switch (name) {
+            case "fifo":
+                return new FifoPairing();
+            case "espera":
+                return new WaitTimePairing();
+            case "rating":
+                return new RatingPairing();
+            default:
+                throw new IllegalArgumentException("Estratégia de pareamento desconhecida: " + name);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Vitórias, derrotas, empates e últimas partidas de um usuário, mantidos em
+ * memória pelo {@link MatchHistory}. Imutável: cada partida gera uma nova
+ * instância, então a leitura nunca vê um estado parcial.
+ */
+public class PlayerStats {
+
+    /** Quantidade de partidas recentes guardadas por usuário. */
+    public static final int RECENT_MATCHES = 10;
+
+    private final String username;
+
+    private final int wins;
+
+    private final int losses;
+
+    private final int draws;
+
+    /** Últimas partidas, da mais recente para a mais antiga. */
+    private final List<MatchRecord> recent;
+
+    public PlayerStats(String username, int wins, int losses, int draws, List<MatchRecord> recent) {
+        this.username = username;
+        this.wins = wins;
+        this.losses = losses;
+        this.draws = draws;
+        this.recent = Collections.unmodifiableList(recent);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    public int getLosses() {
+        return losses;
+    }
+
+    public int getDraws() {
+        return draws;
+    }
+
+    public List<MatchRecord> getRecent() {
+        return recent;
+    }
+
+    /**
+     * @param match  Partida disputada pelo usuário.
+     * @param result 1 para vitória, -1 para derrota e 0 para empate.
+     * @return Estatísticas atualizadas com a partida.
+     */
+    PlayerStats with(MatchRecord match, int result) {
+        List<MatchRecord> updated = new ArrayList<>(Math.min(recent.size() + 1, RECENT_MATCHES));
+        updated.add(match);
+
+        for (int i = 0; i < recent.size() && updated.size() < RECENT_MATCHES; i++)
+            updated.add(recent.get(i));
+
+        return new PlayerStats(username, wins + ((result > 0) ? 1 : 0), losses + ((result < 0) ? 1 : 0),
+                draws + ((result == 0) ? 1 : 0), updated);
+    }
+
+    /** Ordem do ranking: mais vitórias, depois menos derrotas, depois o nome. */
+    static int compareForRanking(PlayerStats a, PlayerStats b) {
+        if (a.wins != b.wins)
+            return Integer.compare(b.wins, a.wins);
+
+        if (a.losses != b.losses)
+            return Integer.compare(a.losses, b.losses);
+
+        return a.username.compareTo(b.username);
+    }
+}
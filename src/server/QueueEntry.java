@@ -0,0 +1,45 @@
+package server;
+
+/**
+ * Usuário aguardando na fila de um {@link Matchmaker}.
+ */
+public class QueueEntry {
+
+    private final ClientHandler client;
+
+    /** Instante de entrada na fila, em {@link System#nanoTime()}. */
+    private final long enqueuedAt;
+
+    /** Tempo total que o usuário já esperou em passagens anteriores pela fila. */
+    private final long previousWait;
+
+    QueueEntry(ClientHandler client, long enqueuedAt, long previousWait) {
+        this.client = client;
+        this.enqueuedAt = enqueuedAt;
+        this.previousWait = previousWait;
+    }
+
+    public ClientHandler getClient() {
+        return client;
+    }
+
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    /**
+     * @param now Instante atual, em {@link System#nanoTime()}.
+     * @return Tempo de espera nesta passagem pela fila, em nanossegundos.
+     */
+    public long waitedSince(long now) {
+        return now - enqueuedAt;
+    }
+
+    /**
+     * @param now Instante atual, em {@link System#nanoTime()}.
+     * @return Tempo de espera somado de todas as passagens pela fila.
+     */
+    public long totalWait(long now) {
+        return previousWait + waitedSince(now);
+    }
+}
@@ -0,0 +1,32 @@
+package server;
+
+import java.util.Random;
+
+import protocol.Move;
+
+/**
+ * Joga ao acaso, com a mesma chance para cada jogada: o equilíbrio do jogo,
+ * que não pode ser explorado, mas também não explora o adversário.
+ */
+public class RandomBotStrategy implements BotStrategy {
+
+    @Override
+    public String getName() {
+        return "aleatória";
+    }
+
+    @Override
+    public Move choose(Random random) {
+        return Move.fromCode(random.nextInt(Move.count()));
+    }
+
+    @Override
+    public void observe(Move own, Move opponent) {
+        // Não depende das rodadas anteriores.
+    }
+
+    @Override
+    public void reset() {
+        // Sem estado.
+    }
+}
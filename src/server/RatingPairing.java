@@ -0,0 +1,75 @@
+package server;
+
+import java.util.List;
+
+/**
+ * Pareamento por faixa de rating (Elo). O adversário escolhido é o primeiro da
+ * fila cujo rating esteja dentro da faixa aceitável, que se alarga conforme o
+ * tempo de espera. Se ninguém estiver na faixa, o rating mais próximo é
+ * escolhido para que a partida não fique parada.
+ */
+public class RatingPairing implements PairingStrategy {
+
+    /** Rating inicial de todo usuário. */
+    public static final int INITIAL_RATING = 1000;
+
+    /** Diferença de rating aceita sem espera. */
+    private static final int BASE_BAND = 100;
+
+    /** Quanto a faixa aceita cresce por segundo de espera. */
+    private static final int BAND_PER_SECOND = 25;
+
+    /** Fator K do Elo: variação máxima de rating por partida. */
+    private static final int K_FACTOR = 32;
+
+    /**
+     * Protege as atualizações de rating. Um jogador pode ter resultados em
+     * threads diferentes (ex.: uma sala e uma partida de torneio), e cada
+     * atualização lê os dois ratings e grava os dois.
+     */
+    private static final Object RATINGS_LOCK = new Object();
+
+    @Override
+    public QueueEntry select(List<QueueEntry> waiting, ClientHandler opponent, long now) {
+        // Sem adversário definido, o primeiro da fila abre a partida.
+        if (opponent == null)
+            return waiting.get(0);
+
+        QueueEntry closest = waiting.get(0);
+
+        for (QueueEntry entry : waiting) {
+            int difference = Math.abs(entry.getClient().getRating() - opponent.getRating());
+            long band = BASE_BAND + BAND_PER_SECOND * (entry.waitedSince(now) / 1_000_000_000L);
+
+            if (difference <= band)
+                return entry; // Primeiro da fila dentro da faixa.
+
+            if (difference < Math.abs(closest.getClient().getRating() - opponent.getRating()))
+                closest = entry;
+        }
+
+        return closest;
+    }
+
+    /**
+     * Atualiza o rating dos jogadores após uma partida. A leitura e a gravação
+     * dos dois ratings acontecem sob um único lock, curto e sem I/O: resultados
+     * simultâneos de um mesmo jogador não perdem atualizações, e a soma dos
+     * ratings da partida se mantém.
+     * 
+     * @param winner Vencedor (ou um dos jogadores, em caso de empate).
+     * @param loser  Perdedor (ou o outro jogador, em caso de empate).
+     * @param draw   {@code true} se a partida empatou.
+     */
+    public static void updateRatings(ClientHandler winner, ClientHandler loser, boolean draw) {
+        double score = draw ? 0.5 : 1.0;
+
+        synchronized (RATINGS_LOCK) {
+            double expected = 1.0 / (1.0 + Math.pow(10, (loser.getRating() - winner.getRating()) / 400.0));
+            int delta = (int) Math.round(K_FACTOR * (score - expected));
+
+            winner.setRating(winner.getRating() + delta);
+            loser.setRating(loser.getRating() - delta);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+
+import protocol.Heartbeat;
+
+/**
+ * Prazo de leitura de uma conexão: se nada chegar do client durante
+ * {@link #timeoutMillis}, a conexão é dada como perdida. Detecta conexões
+ * meio abertas (o client sumiu sem fechar o TCP), que nunca terminam a leitura.
+ *
+ * Clients ativos mantêm o prazo com os heartbeats (ver {@link Heartbeat}). Cada
+ * mensagem recebida apenas registra o instante da leitura, sem reagendar nada;
+ * quando o prazo vence no {@link HashedWheelTimer}, ele confere esse instante e,
+ * se houve leitura, se reagenda para o tempo que falta. Assim, cada conexão
+ * custa um agendamento por período, e não um por mensagem.
+ */
+public class ReadDeadline implements Runnable {
+
+    /** Prazo padrão, o mesmo com que o client dá a conexão como perdida. */
+    public static final long DEFAULT_TIMEOUT_MILLIS = Heartbeat.TIMEOUT_MILLIS;
+
+    /** Prazo das conexões criadas a partir de agora. Zero ou negativo desativa. */
+    public static long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    private final long timeoutNanos;
+
+    /** Encerra a conexão. Executado na thread do timer. */
+    private final Runnable onExpire;
+
+    /** Instante (nanoTime) da última leitura. */
+    private volatile long lastRead = System.nanoTime();
+
+    private volatile HashedWheelTimer.Timeout timeout;
+
+    private volatile boolean cancelled;
+
+    private volatile boolean expired;
+
+    private ReadDeadline(long timeoutMillis, Runnable onExpire) {
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.onExpire = onExpire;
+    }
+
+    /**
+     * Inicia o prazo de leitura de uma conexão.
+     *
+     * @param onExpire Encerra a conexão quando o prazo vence. Executado na thread
+     *                 do timer.
+     * @return Prazo iniciado, ou {@code null} se os prazos estiverem desativados.
+     */
+    public static ReadDeadline start(Runnable onExpire) {
+        if (timeoutMillis <= 0)
+            return null;
+
+        ReadDeadline deadline = new ReadDeadline(timeoutMillis, onExpire);
+        deadline.timeout = HashedWheelTimer.shared().schedule(deadline, timeoutMillis, TimeUnit.MILLISECONDS);
+        return deadline;
+    }
+
+    /** Registra uma leitura. Chamado a cada mensagem recebida. */
+    public void touch() {
+        lastRead = System.nanoTime();
+    }
+
+    /** @return {@code true} se a conexão foi encerrada por este prazo. */
+    public boolean isExpired() {
+        return expired;
+    }
+
+    /** Encerra o prazo (a conexão foi fechada por outro motivo). */
+    public void cancel() {
+        cancelled = true;
+
+        HashedWheelTimer.Timeout current = timeout;
+
+        if (current != null)
+            current.cancel();
+    }
+
+    @Override
+    public void run() {
+        if (cancelled)
+            return;
+
+        long idle = System.nanoTime() - lastRead;
+
+        // Houve leitura desde o agendamento: o prazo conta a partir dela.
+        if (idle < timeoutNanos) {
+            timeout = HashedWheelTimer.shared().schedule(this, timeoutNanos - idle, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        expired = true;
+        onExpire.run();
+    }
+}
@@ -0,0 +1,168 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * {@link MessageBus} entre processos, conectado a um {@link BusBroker}. As
+ * mensagens recebidas do broker são entregues aos assinantes pela thread de
+ * leitura; se a conexão cair, ela é refeita a cada {@link #RECONNECT_MILLIS}, e
+ * o que for publicado nesse meio tempo se perde (o {@link Cluster} republica
+ * seu estado periodicamente).
+ *
+ * As publicadas vão para um {@link BusOutbox}, escrito por uma thread própria:
+ * publicar nunca espera pelo socket. Se o broker não der conta e a fila
+ * encher, as mensagens excedentes também se perdem.
+ */
+public class RemoteBus implements MessageBus, Runnable {
+
+    /** Intervalo entre as tentativas de reconexão ao broker. */
+    public static final long RECONNECT_MILLIS = 1000;
+
+    private final String host;
+
+    private final int port;
+
+    /** Assinantes de cada tópico. */
+    private final Map<String, List<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+
+    private volatile Socket socket;
+
+    /** Fila de saída da conexão atual, ou {@code null} enquanto desconectado. */
+    private volatile BusOutbox outbox;
+
+    private volatile boolean closed;
+
+    /**
+     * Conecta ao broker e inicia a thread de leitura.
+     *
+     * @param host Endereço do broker.
+     * @param port Porta do broker.
+     * @throws IOException Se a primeira conexão falhar.
+     */
+    public RemoteBus(String host, int port) throws IOException {
+        this.host = host;
+        this.port = port;
+
+        connect();
+
+        Thread thread = new Thread(this, "bus-remote");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void connect() throws IOException {
+        Socket connection = new Socket(host, port);
+        connection.setTcpNoDelay(true);
+
+        // Se a escrita falhar, fecha o socket: a thread de leitura percebe a queda e reconecta.
+        this.outbox = new BusOutbox(connection.getOutputStream(), "bus-remote-writer", () -> closeSocket(connection));
+        this.socket = connection;
+    }
+
+    @Override
+    public void publish(String topic, String message) {
+        BusOutbox current = outbox;
+
+        if (current != null)
+            current.offer(topic + ' ' + message); // Desconectado ou com a fila cheia: a mensagem se perde.
+    }
+
+    @Override
+    public void subscribe(String topic, Consumer<String> handler) {
+        subscribers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    /** Lê as mensagens do broker, reconectando sempre que a conexão cair. */
+    @Override
+    public void run() {
+        while (!closed) {
+            try {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                String line;
+
+                while ((line = reader.readLine()) != null)
+                    dispatch(line);
+            } catch (IOException e) {
+                // Tratado abaixo, como o fim do stream.
+            }
+
+            if (closed)
+                return;
+
+            EventLog.warn("bus_disconnected", "broker", host + ":" + port);
+            reconnect();
+        }
+    }
+
+    /** Entrega uma linha {@code "<tópico> <mensagem>"} aos assinantes do tópico. */
+    private void dispatch(String line) {
+        int space = line.indexOf(' ');
+
+        if (space < 0)
+            return; // Linha malformada.
+
+        List<Consumer<String>> handlers = subscribers.get(line.substring(0, space));
+
+        if (handlers == null)
+            return;
+
+        String message = line.substring(space + 1);
+
+        for (Consumer<String> handler : handlers)
+            handler.accept(message);
+    }
+
+    /** Tenta reconectar ao broker até conseguir ou o barramento ser encerrado. */
+    private void reconnect() {
+        closeOutbox();
+        closeSocket(socket);
+
+        while (!closed) {
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+                connect();
+                EventLog.info("bus_reconnected", "broker", host + ":" + port);
+                return;
+            } catch (IOException e) {
+                // Broker ainda inacessível.
+            } catch (InterruptedException e) {
+                closed = true; // Processo encerrando.
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        closeOutbox();
+        closeSocket(socket);
+    }
+
+    private void closeOutbox() {
+        BusOutbox current = outbox;
+        outbox = null;
+
+        if (current != null)
+            current.close();
+    }
+
+    private static void closeSocket(Socket connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            // Já estava fechado.
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Últimas mensagens entregues à conexão de uma sessão, guardadas para serem
+ * reenviadas se a conexão cair (ver {@link SessionResumption}).
+ *
+ * A {@link OutboundQueue} registra cada mensagem imediatamente antes de
+ * escrevê-la, e enquanto a sessão está suspensa as mensagens vêm direto para
+ * cá. As posições são contadas na unidade que o client consegue observar:
+ * linhas no protocolo de texto e frames no binário. Assim, a quantidade de
+ * mensagens recebidas informada pelo client na retomada indica exatamente o que
+ * reenviar.
+ *
+ * O buffer é circular e limitado: os arrays são os mesmos das filas de saída
+ * (uma transmissão não é copiada por destinatário), e só as mensagens mais
+ * recentes são mantidas. O que já saiu do buffer é dado como perdido.
+ */
+public class ReplayBuffer {
+
+    /** Quantidade padrão de mensagens mantidas por sessão. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /** Mensagens codificadas, em ordem circular a partir de {@link #head}. */
+    private final byte[][] frames;
+
+    /** Posição ao final de cada mensagem de {@link #frames}. */
+    private final long[] ends;
+
+    /** Indica se as mensagens são frames binários (senão, linhas de texto). */
+    private final boolean binary;
+
+    /** Índice da mensagem mais antiga. */
+    private int head;
+
+    private int count;
+
+    /** Total de linhas (ou frames) registradas desde o início da sessão. */
+    private long position;
+
+    /** Posição até a qual as mensagens já saíram do buffer. */
+    private long discarded;
+
+    /**
+     * @param capacity Quantidade de mensagens mantidas.
+     * @param binary   {@code true} se a sessão usa o protocolo binário.
+     */
+    public ReplayBuffer(int capacity, boolean binary) {
+        this.frames = new byte[capacity][];
+        this.ends = new long[capacity];
+        this.binary = binary;
+    }
+
+    /**
+     * Registra uma mensagem entregue (ou a entregar) à conexão.
+     *
+     * @param frame Mensagem codificada. Não é alterada nem copiada.
+     */
+    public synchronized void record(byte[] frame) {
+        position += binary ? 1 : lines(frame);
+
+        if (count == frames.length) {
+            discarded = ends[head]; // Buffer cheio: descarta a mais antiga.
+            head = (head + 1) % frames.length;
+            count--;
+        }
+
+        int index = (head + count) % frames.length;
+        frames[index] = frame;
+        ends[index] = position;
+        count++;
+    }
+
+    /**
+     * @param received Linhas (ou frames) que o client já recebeu.
+     * @return Mensagens ainda mantidas que o client não recebeu, em ordem.
+     */
+    public synchronized List<byte[]> since(long received) {
+        List<byte[]> missed = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            int index = (head + i) % frames.length;
+
+            if (ends[index] > received)
+                missed.add(frames[index]);
+        }
+
+        return missed;
+    }
+
+    /**
+     * @param received Linhas (ou frames) que o client já recebeu.
+     * @return Quantas das que ele não recebeu já saíram do buffer e não podem
+     *         mais ser reenviadas.
+     */
+    public synchronized long lostSince(long received) {
+        return Math.max(0, discarded - Math.max(received, 0));
+    }
+
+    /** @return Total de linhas (ou frames) registradas desde o início da sessão. */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * Grava as mensagens mantidas e as posições do buffer, para transferir a
+     * sessão a outro processo (ver {@link Handoff}).
+     *
+     * @param out Destino.
+     * @throws IOException Se a escrita falhar.
+     */
+    synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(position);
+        out.writeLong(discarded);
+        out.writeInt(count);
+
+        for (int i = 0; i < count; i++) {
+            int index = (head + i) % frames.length;
+
+            out.writeLong(ends[index]);
+            out.writeInt(frames[index].length);
+            out.write(frames[index]);
+        }
+    }
+
+    /**
+     * Recupera o conteúdo gravado por {@link #writeTo(DataOutputStream)} em um
+     * buffer ainda vazio. Se a capacidade for menor que a do buffer de origem, as
+     * mensagens mais antigas são descartadas.
+     *
+     * @param in Origem.
+     * @throws IOException Se a leitura falhar.
+     */
+    synchronized void readFrom(DataInputStream in) throws IOException {
+        long savedPosition = in.readLong();
+        long savedDiscarded = in.readLong();
+        int savedCount = in.readInt();
+
+        for (int i = 0; i < savedCount; i++) {
+            long end = in.readLong();
+            byte[] frame = new byte[in.readInt()];
+            in.readFully(frame);
+
+            if (count == frames.length) {
+                savedDiscarded = ends[head];
+                head = (head + 1) % frames.length;
+                count--;
+            }
+
+            int index = (head + count) % frames.length;
+            frames[index] = frame;
+            ends[index] = end;
+            count++;
+        }
+
+        position = savedPosition;
+        discarded = savedDiscarded;
+    }
+
+    /** @return Quantidade de terminadores de linha na mensagem de texto. */
+    private static int lines(byte[] frame) {
+        int lines = 0;
+
+        for (byte b : frame) {
+            if (b == '\n')
+                lines++;
+        }
+
+        return lines;
+    }
+}
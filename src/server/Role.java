@@ -0,0 +1,13 @@
+package server;
+
+/**
+ * Papel de um usuário dentro de sua sala.
+ */
+public enum Role {
+
+    /** Ocupa uma das vagas de jogador da partida. */
+    PLAYER,
+
+    /** Assiste à partida e aguarda na fila por uma vaga. */
+    SPECTATOR
+}
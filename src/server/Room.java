@@ -0,0 +1,659 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import protocol.Move;
+
+/**
+ * Sala de jogo. Cada sala agrupa um número limitado de usuários, que jogam em
+ * várias mesas ({@link Table}), cada uma com uma partida 1x1, e assistem às
+ * partidas das outras. As mensagens e o cálculo de resultado ficam restritos
+ * aos membros da sala.
+ *
+ * As mesas são formadas pelo {@link Matchmaker} da sala: a cada dois usuários
+ * na fila, uma nova mesa; a vaga que fica livre em uma mesa vai para o próximo
+ * da fila. Quem não está jogando aguarda na fila como espectador.
+ *
+ * Os membros ficam em um {@link ConcurrentHashMap} indexado pelo id de sessão:
+ * a transmissão de mensagens percorre a sala sem travas, enquanto as mudanças de
+ * vaga são serializadas pelo monitor da sala.
+ *
+ * As jogadas da rodada ficam nas mesas, sob o mesmo monitor: a segunda jogada
+ * resolve a rodada ali mesmo, de forma atômica, sem depender de um /jogar e
+ * sem que as threads dos dois jogadores leiam a jogada uma da outra (ver
+ * {@link RoundState}). A partida pode ser uma série melhor de N
+ * ({@link #seriesLength}); ao fim da série, os jogadores voltam para a fila e
+ * as mesas são formadas de novo.
+ *
+ * Cada rodada tem um prazo de jogada no {@link HashedWheelTimer}: um jogador
+ * ausente não segura a vaga para sempre (ver
+ * {@link ClientHandler#moveDeadlineExpired(Room, Table, long)}). Quem fica
+ * sozinho em uma mesa enfrenta um {@link Bot} depois de um tempo.
+ *
+ * Com {@link #sealedMoves}, as jogadas chegam seladas e só são reveladas
+ * quando as duas vagas da mesa já fixaram as suas (ver {@link SealedMoves}).
+ */
+public class Room {
+
+    /** Número máximo padrão de usuários (jogadores + espectadores) por sala. */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    /** Número máximo de jogadores por partida. */
+    public static final int MAX_PLAYERS = 2;
+
+    /** Prazo padrão para as jogadas de uma partida, em milissegundos. */
+    public static final long DEFAULT_MOVE_TIMEOUT_MILLIS = 30_000;
+
+    /** Prazo para as jogadas das partidas. Zero ou negativo desativa. */
+    public static long moveTimeoutMillis = DEFAULT_MOVE_TIMEOUT_MILLIS;
+
+    /**
+     * Rodadas de cada partida (melhor de N). Vence a série quem chegar primeiro a
+     * mais da metade das vitórias; empates contam como rodadas jogadas.
+     */
+    public static int seriesLength = 1;
+
+    /**
+     * Indica se o servidor está sendo encerrado (ver {@link Drain}) ou passando
+     * as sessões a outro processo (ver {@link Handoff}): as partidas em
+     * andamento terminam, mas nenhuma nova é formada.
+     */
+    public static volatile boolean closing;
+
+    /**
+     * Indica se os jogadores devem selar as jogadas antes de revelá-las (ver
+     * {@link protocol.MoveCommitment}). Jogadas em claro de usuários são
+     * recusadas; as dos {@link Bot}s, escolhidas no próprio servidor, não.
+     */
+    public static boolean sealedMoves;
+
+    /** Identificador da sala, exibido aos usuários. */
+    private final int id;
+
+    /** Quantidade máxima de usuários na sala. */
+    private final int capacity;
+
+    /** Usuários da sala (jogadores e espectadores), indexados pelo id de sessão. */
+    private final Map<Long, ClientHandler> clients = new ConcurrentHashMap<>();
+
+    /** Mesas com pelo menos um jogador, na ordem em que foram formadas. */
+    private final List<Table> tables = new ArrayList<>();
+
+    /** Fila de quem aguarda uma vaga de jogador. */
+    private final Matchmaker matchmaker;
+
+    /** Mensagens transmitidas para a sala, com snapshot para quem chega depois. */
+    private final SpectatorFeed feed;
+
+    /** Limite do chat da sala, somado por todos os clients, ou {@code null} se desativado. */
+    private final TokenBucket chatLimit = TokenBucket.forRoom();
+
+    /** Prazo para um {@link Bot} enfrentar quem está sozinho em uma mesa, ou {@code null}. */
+    private HashedWheelTimer.Timeout lobbyTimeout;
+
+    /** Indica se a sala esvaziou e saiu do {@link RoomRegistry}: ninguém mais entra nela. */
+    private boolean closed;
+
+    public Room(int id, int capacity, PairingStrategy strategy) {
+        this.id = id;
+        this.capacity = capacity;
+        this.matchmaker = new Matchmaker(strategy);
+        this.feed = new SpectatorFeed(this);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Matchmaker getMatchmaker() {
+        return matchmaker;
+    }
+
+    public SpectatorFeed getFeed() {
+        return feed;
+    }
+
+    /**
+     * Consome o limite de chat da sala para uma mensagem, antes da transmissão.
+     * 
+     * @param now Instante atual (nanoTime).
+     * @return {@code false} se a sala excedeu o limite e a mensagem deve ser
+     *         descartada.
+     */
+    public boolean tryChat(long now) {
+        return chatLimit == null || chatLimit.tryAcquire(now);
+    }
+
+    /**
+     * @return Usuários conectados a esta sala. A visão pode ser percorrida
+     *         enquanto outros usuários entram ou saem, sem lançar
+     *         {@code ConcurrentModificationException}.
+     */
+    public Collection<ClientHandler> getClients() {
+        return clients.values();
+    }
+
+    /**
+     * @param sessionId Id de sessão do usuário.
+     * @return Usuário da sala com o id informado, ou {@code null}.
+     */
+    public ClientHandler getClient(long sessionId) {
+        return clients.get(sessionId);
+    }
+
+    /**
+     * @return Mesas da sala, na ordem em que foram formadas. Para uma visão
+     *         consistente das mesas, o chamador deve estar sob o monitor da
+     *         sala.
+     */
+    synchronized List<Table> getTables() {
+        return new ArrayList<>(tables);
+    }
+
+    /**
+     * @param client Usuário da sala.
+     * @return Jogada do usuário na rodada atual, ou {@code null} se ele não
+     *         escolheu ou não é jogador.
+     */
+    public synchronized Move getMove(ClientHandler client) {
+        Table table = tableOf(client);
+        return (table != null) ? table.getMove(table.seatOf(client)) : null;
+    }
+
+    /**
+     * @param client Jogador.
+     * @return Adversário do jogador na sua mesa, ou {@code null} se ele não
+     *         joga ou está sozinho na mesa.
+     */
+    public synchronized ClientHandler getOpponent(ClientHandler client) {
+        Table table = tableOf(client);
+        return (table != null) ? table.getPlayer(1 - table.seatOf(client)) : null;
+    }
+
+    /** @return Quantidade de vagas de jogador ocupadas, em todas as mesas. */
+    public synchronized int playerCount() {
+        int count = 0;
+
+        for (Table table : tables)
+            count += table.playerCount();
+
+        return count;
+    }
+
+    /**
+     * @param client Usuário da sala.
+     * @return Estado da rodada da mesa do usuário; {@link RoundState#WAITING_PLAYERS}
+     *         se ele ainda não tem adversário.
+     */
+    public synchronized RoundState getRoundState(ClientHandler client) {
+        Table table = tableOf(client);
+        return (table != null) ? table.getRoundState() : RoundState.WAITING_PLAYERS;
+    }
+
+    /**
+     * @return {@code true} se há uma partida em andamento em alguma mesa: alguém
+     *         já jogou na rodada atual, ou a série já tem rodadas resolvidas.
+     */
+    public synchronized boolean isPlaying() {
+        for (Table table : tables) {
+            if (table.isPlaying())
+                return true;
+        }
+
+        return false;
+    }
+
+    /** @return Quantidade máxima de clients (jogadores e espectadores) na sala. */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** @return {@code true} se a sala atingiu sua capacidade máxima. */
+    public boolean isFull() {
+        return clients.size() >= capacity;
+    }
+
+    /** @return {@code true} se não há mais ninguém na sala. */
+    public boolean isEmpty() {
+        return clients.isEmpty();
+    }
+
+    /** Marca a sala como fechada (ver {@link RoomRegistry#leave(ClientHandler, Room)}). */
+    synchronized void close() {
+        closed = true;
+    }
+
+    /** @return {@code true} se a sala já foi fechada pelo registro. */
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Adiciona o usuário à sala. Ele entra na fila e, se houver vaga em uma mesa
+     * ou alguém para enfrentar, já passa a jogar.
+     */
+    synchronized void add(ClientHandler client) {
+        client.setRole(Role.SPECTATOR);
+        clients.put(client.getSessionId(), client);
+        matchmaker.enqueue(client);
+        fillEmptySeats();
+    }
+
+    /**
+     * Remove o usuário da sala, liberando sua vaga de jogador se ele tiver uma.
+     *
+     * @return {@code true} se o usuário estava na sala.
+     */
+    synchronized boolean remove(ClientHandler client) {
+        if (clients.remove(client.getSessionId()) == null)
+            return false;
+
+        matchmaker.remove(client);
+        leaveTable(client); // A partida da mesa foi abandonada.
+        return true;
+    }
+
+    /**
+     * Mantém a vaga de jogador (se houver) de um usuário com a sessão suspensa,
+     * mas o tira da disputa pelas vagas enquanto ele não voltar.
+     */
+    synchronized void suspend(ClientHandler client) {
+        matchmaker.hold(client);
+    }
+
+    /**
+     * Devolve à fila um usuário que retomou a sessão.
+     *
+     * @return Usuários que acabaram de se tornar jogadores.
+     */
+    synchronized List<ClientHandler> resume(ClientHandler client) {
+        matchmaker.release(client);
+        return fillEmptySeats();
+    }
+
+    /**
+     * Tira o usuário da partida sem tirá-lo da sala (ex.: para disputar um
+     * {@link Tournament}). Se ele ocupa uma vaga, ela é liberada e a partida da
+     * mesa é desfeita; na fila, ele mantém a posição, mas sai da disputa pelas
+     * vagas até voltar com {@link #resume(ClientHandler)}.
+     *
+     * A vaga liberada só é preenchida em {@link #fillEmptySeats()}: quem tira
+     * vários usuários de uma vez (ex.: todos os inscritos de um torneio) não
+     * chama para a vaga alguém que sairá em seguida.
+     */
+    synchronized void withdraw(ClientHandler client) {
+        if (leaveTable(client)) {
+            client.setRole(Role.SPECTATOR);
+            matchmaker.enqueue(client); // Volta para o fim da fila, de onde será devolvido.
+        }
+
+        matchmaker.hold(client);
+    }
+
+    /**
+     * Libera a vaga do usuário, se ele tiver uma. A mesa que fica sem ninguém é
+     * descartada; a que fica com um jogador aguarda o próximo da fila.
+     *
+     * @return {@code true} se o usuário ocupava uma vaga.
+     */
+    private boolean leaveTable(ClientHandler client) {
+        Table table = tableOf(client);
+
+        if (table == null)
+            return false;
+
+        table.vacate(table.seatOf(client));
+
+        if (table.playerCount() == 0)
+            tables.remove(table);
+
+        return true;
+    }
+
+    /**
+     * Recria as mesas e a fila recebidas de outro processo (ver {@link Handoff}).
+     * Os usuários chegam com a sessão suspensa: mantêm as vagas, as jogadas e a
+     * ordem na fila, mas ficam fora da disputa pelas vagas até retomarem a
+     * sessão. O prazo de jogada recomeça do zero.
+     *
+     * @param restored Mesas, já com as vagas, as jogadas e o placar (ver
+     *                 {@link Table#restore}).
+     * @param queue    Quem aguarda uma vaga, em ordem de chegada.
+     */
+    synchronized void restore(List<Table> restored, List<ClientHandler> queue) {
+        for (Table table : restored) {
+            for (int seat = 0; seat < MAX_PLAYERS; seat++) {
+                ClientHandler player = table.getPlayer(seat);
+
+                if (player != null) {
+                    player.setRole(Role.PLAYER);
+                    clients.put(player.getSessionId(), player);
+                }
+            }
+
+            tables.add(table);
+        }
+
+        for (ClientHandler client : queue) {
+            client.setRole(Role.SPECTATOR);
+            clients.put(client.getSessionId(), client);
+            matchmaker.enqueue(client); // Suspenso: fica retido até a retomada.
+        }
+
+        for (Table table : tables)
+            table.startRound(this);
+    }
+
+    /**
+     * Registra a jogada de um jogador. Se for a segunda jogada da rodada na sua
+     * mesa, a rodada é resolvida na mesma operação, sob o monitor da sala:
+     * apenas uma das threads dos jogadores vê as duas jogadas e calcula o
+     * resultado.
+     *
+     * @param client Jogador.
+     * @param move   Jogada escolhida.
+     * @return Resultado, se esta jogada resolveu a rodada; {@code null} se a
+     *         rodada aguarda o outro jogador, ou se a jogada foi ignorada (o
+     *         client não ocupa uma vaga ou já jogou nesta rodada).
+     */
+    synchronized RoundResult submitMove(ClientHandler client, Move move) {
+        Table table = tableOf(client);
+
+        if (table == null)
+            return null;
+
+        int seat = table.seatOf(client);
+
+        if (table.getMove(seat) != null || !table.move(seat, move))
+            return null;
+
+        return resolve(table, false);
+    }
+
+    /**
+     * Sela a jogada de um jogador (ver {@link #sealedMoves}): o compromisso fica
+     * guardado até a revelação, e o horário do selo vale como o da jogada.
+     *
+     * @param client     Jogador.
+     * @param commitment Compromisso enviado pelo client.
+     * @return {@code false} se o client não ocupa uma vaga ou já fixou sua
+     *         jogada nesta rodada.
+     */
+    synchronized boolean seal(ClientHandler client, byte[] commitment) {
+        Table table = tableOf(client);
+        return table != null && table.seal(table.seatOf(client), commitment);
+    }
+
+    /**
+     * @param client Jogador.
+     * @return Compromisso selado pelo jogador na rodada atual, ou {@code null}.
+     */
+    synchronized byte[] getCommitment(ClientHandler client) {
+        Table table = tableOf(client);
+        return (table != null) ? table.getCommitment(table.seatOf(client)) : null;
+    }
+
+    /**
+     * @param client Jogador.
+     * @return {@code true} se a revelação já foi pedida ao jogador nesta rodada.
+     */
+    synchronized boolean isRevealing(ClientHandler client) {
+        Table table = tableOf(client);
+        return table != null && table.isRevealing(table.seatOf(client));
+    }
+
+    /**
+     * @param client Jogador que acabou de jogar ou selar.
+     * @return Jogadores da mesa do client a quem a revelação deve ser pedida
+     *         agora (ver {@link SealedMoves#takeRevealRequests(ClientHandler[], Move[])}).
+     */
+    synchronized ClientHandler[] takeRevealRequests(ClientHandler client) {
+        Table table = tableOf(client);
+        return (table != null) ? table.takeRevealRequests() : new ClientHandler[0];
+    }
+
+    /**
+     * Registra a jogada revelada, já conferida com o compromisso fora do monitor
+     * (ver {@link protocol.MoveCommitment#verify}). Daí em diante, segue como
+     * {@link #submitMove(ClientHandler, Move)}.
+     *
+     * @param client     Jogador.
+     * @param move       Jogada revelada.
+     * @param commitment Compromisso conferido. Se a rodada mudou desde a
+     *                   conferência, a revelação é ignorada.
+     * @return Resultado, se esta revelação resolveu a rodada; {@code null} caso
+     *         contrário.
+     */
+    synchronized RoundResult reveal(ClientHandler client, Move move, byte[] commitment) {
+        Table table = tableOf(client);
+
+        if (table == null || !table.reveal(table.seatOf(client), move, commitment))
+            return null;
+
+        return resolve(table, false);
+    }
+
+    /**
+     * Resolve a rodada cujo prazo de jogada venceu: quem não jogou perde por
+     * W.O.; se ninguém jogou, a série é encerrada.
+     *
+     * @param table Mesa do prazo.
+     * @param round Rodada do prazo.
+     * @return Resultado, ou {@code null} se a rodada já terminou (ou foi
+     *         desfeita) antes do prazo.
+     */
+    synchronized RoundResult expireRound(Table table, long round) {
+        if (!tables.contains(table) || !table.expire(round))
+            return null;
+
+        return resolve(table, true);
+    }
+
+    /**
+     * Resolve a rodada da mesa e avança a máquina de estados: se a série
+     * continua, começa a próxima rodada com os mesmos jogadores; senão, os
+     * jogadores voltam para a fila e as mesas são formadas de novo.
+     */
+    private RoundResult resolve(Table table, boolean timedOut) {
+        RoundResult result = table.resolve(timedOut);
+
+        if (!result.isSeriesOver()) {
+            table.startRound(this); // Próxima rodada da série.
+            return result;
+        }
+
+        tables.remove(table);
+        requeue(table);
+        return result.withSeated(fillEmptySeats());
+    }
+
+    /** @return Mesa em que o usuário joga, ou {@code null}. */
+    private Table tableOf(ClientHandler client) {
+        for (Table table : tables) {
+            if (table.seatOf(client) >= 0)
+                return table;
+        }
+
+        return null;
+    }
+
+    /**
+     * Devolve os jogadores de uma mesa desfeita para o fim da fila. Os usuários
+     * entram antes dos {@link Bot}s, para que os bots só voltem a jogar se não
+     * houver outro usuário para enfrentar.
+     */
+    private void requeue(Table table) {
+        table.cancelMoveDeadline();
+
+        for (boolean bots : new boolean[] { false, true }) {
+            for (int seat = 0; seat < MAX_PLAYERS; seat++) {
+                ClientHandler player = table.getPlayer(seat);
+
+                if (player != null && (player instanceof Bot) == bots) {
+                    player.setRole(Role.SPECTATOR);
+                    matchmaker.enqueue(player);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forma as mesas com quem aguarda na fila, escolhido pelo {@link Matchmaker}:
+     * primeiro as vagas livres das mesas com um jogador só (ex.: o adversário
+     * saiu), depois uma mesa nova para cada dois usuários. Quem sobra sozinho
+     * abre uma mesa e aguarda um adversário, a não ser que já haja uma mesa com
+     * vaga.
+     *
+     * @return Usuários que acabaram de se tornar jogadores.
+     */
+    public synchronized List<ClientHandler> fillEmptySeats() {
+        List<ClientHandler> seated = new ArrayList<>();
+
+        if (closing)
+            return seated; // O servidor está sendo encerrado: nenhuma partida nova.
+
+        for (Table table : tables) {
+            int seat = table.freeSeat();
+
+            if (seat < 0)
+                continue;
+
+            ClientHandler next = matchmaker.next(table.getPlayer(1 - seat));
+
+            if (next == null)
+                break; // Fila vazia.
+
+            seat(table, seat, next, seated);
+        }
+
+        pairLonePlayers(seated);
+
+        while (matchmaker.getQueueDepth() >= MAX_PLAYERS || (matchmaker.getQueueDepth() > 0 && !hasFreeSeat())) {
+            Table table = new Table();
+            tables.add(table);
+
+            ClientHandler first = matchmaker.next(null);
+            seat(table, 0, first, seated);
+
+            ClientHandler second = matchmaker.next(first);
+
+            if (second != null)
+                seat(table, 1, second, seated);
+        }
+
+        watchLobby();
+        return seated;
+    }
+
+    /**
+     * Com a fila vazia, junta na mesma mesa os jogadores que ficaram sozinhos em
+     * mesas diferentes. Dois {@link Bot}s não são juntados: os que completavam
+     * uma partida saem quando ficam sozinhos (ver {@link Bot#lobbyExpired(Room)}).
+     */
+    private void pairLonePlayers(List<ClientHandler> seated) {
+        Table waiting = null;
+
+        for (Table table : new ArrayList<>(tables)) {
+            ClientHandler alone = table.lonePlayer();
+
+            if (alone == null)
+                continue;
+
+            if (waiting == null) {
+                waiting = table;
+                continue;
+            }
+
+            if (alone instanceof Bot && waiting.lonePlayer() instanceof Bot)
+                continue;
+
+            table.vacate(table.seatOf(alone));
+            tables.remove(table);
+            seat(waiting, waiting.freeSeat(), alone, seated);
+            waiting = null;
+        }
+    }
+
+    /**
+     * Coloca um jogador na vaga e, se ela completou a mesa, inicia a rodada. As
+     * mesas que já estavam completas não são tocadas: a entrada de outros
+     * usuários na sala não reabre os selos, não reinicia o prazo de jogada nem
+     * chama de novo os {@link Bot}s.
+     */
+    private void seat(Table table, int seat, ClientHandler client, List<ClientHandler> seated) {
+        if (table.seat(seat, client))
+            table.startRound(this); // Partida formada: os jogadores têm um prazo para jogar.
+
+        client.setRole(Role.PLAYER);
+        seated.add(client);
+    }
+
+    /** @return {@code true} se alguma mesa tem uma vaga livre. */
+    private boolean hasFreeSeat() {
+        for (Table table : tables) {
+            if (table.freeSeat() >= 0)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Com um jogador sozinho em uma mesa, agenda a entrada de um {@link Bot}
+     * para enfrentá-lo (ver {@link Bot#lobbyDelayMillis}). Sem ninguém sozinho, o
+     * prazo é cancelado.
+     */
+    private void watchLobby() {
+        if (findLonePlayer() == null) {
+            if (lobbyTimeout != null) {
+                lobbyTimeout.cancel();
+                lobbyTimeout = null;
+            }
+
+            return;
+        }
+
+        if (lobbyTimeout == null && Bot.lobbyDelayMillis > 0)
+            lobbyTimeout = HashedWheelTimer.shared().schedule(() -> Workers.execute(() -> Bot.lobbyExpired(this)),
+                    Bot.lobbyDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Encerra o prazo agendado por {@link #watchLobby()}.
+     *
+     * @return Jogador que segue sozinho em uma mesa, ou {@code null} se todas as
+     *         mesas têm dois jogadores (ou não há mesas).
+     */
+    synchronized ClientHandler lonePlayer() {
+        lobbyTimeout = null;
+        return findLonePlayer();
+    }
+
+    private ClientHandler findLonePlayer() {
+        for (Table table : tables) {
+            ClientHandler alone = table.lonePlayer();
+
+            if (alone != null)
+                return alone;
+        }
+
+        return null;
+    }
+
+    /**
+     * Desfaz todas as mesas, devolvendo os jogadores para o fim da fila, e forma
+     * novas mesas com os escolhidos pelo {@link Matchmaker}.
+     */
+    public synchronized void rotatePlayers() {
+        for (Table table : tables)
+            requeue(table);
+
+        tables.clear();
+        fillEmptySeats();
+    }
+}
@@ -0,0 +1,269 @@
+package server;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Registro das salas abertas no servidor. Distribui os usuários que chegam
+ * entre as salas, criando uma nova sempre que todas estiverem cheias, e mantém
+ * o índice de sessões conectadas.
+ *
+ * Não há um lock global: cada entrada ou saída trava apenas a sala envolvida
+ * (o monitor da {@link Room}), e as salas com vaga ficam em um índice
+ * concorrente ordenado pelo id. Assim, quem chega não percorre as salas
+ * cheias, e entradas em salas diferentes não disputam o mesmo lock.
+ *
+ * Em um {@link Cluster}, os ids das salas são compartilhados entre os nós: cada
+ * registro só abre as salas cujos ids pertencem ao seu nó (ver
+ * {@link #setOwnership(IntPredicate)}).
+ */
+public class RoomRegistry {
+
+    /** Salas abertas, ordenadas pelo id (ordem de criação). */
+    private final Map<Integer, Room> rooms = new ConcurrentSkipListMap<>();
+
+    /**
+     * Salas abertas com vaga, ordenadas pelo id. Atualizado sob o monitor de
+     * cada sala; uma sala que lotou sem passar pelo registro (ex.: os
+     * {@link Bot}s de carga) sai na próxima tentativa de entrada.
+     */
+    private final ConcurrentSkipListMap<Integer, Room> vacancies = new ConcurrentSkipListMap<>();
+
+    /** Sessões conectadas em qualquer sala, indexadas pelo id de sessão. */
+    private final Map<Long, ClientHandler> sessions = new ConcurrentHashMap<>();
+
+    /** Capacidade das salas criadas por este registro. */
+    private final int roomCapacity;
+
+    /** Estratégia de pareamento das salas criadas por este registro. */
+    private final PairingStrategy strategy;
+
+    /** Identificador da próxima sala a ser criada. Protegido pelo monitor do registro. */
+    private int nextId = 1;
+
+    /** Indica quais ids de sala este registro pode abrir. */
+    private volatile IntPredicate ownership = id -> true;
+
+    public RoomRegistry(int roomCapacity, PairingStrategy strategy) {
+        this.roomCapacity = roomCapacity;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Coloca o client na primeira sala com vaga, abrindo uma nova se necessário.
+     * 
+     * @param client Client que acabou de se conectar.
+     * @return Sala em que o client foi colocado.
+     */
+    public Room join(ClientHandler client) {
+        Map.Entry<Integer, Room> first;
+
+        // A primeira sala com vaga; as que lotaram ou fecharam saem do índice na tentativa.
+        while ((first = vacancies.firstEntry()) != null) {
+            if (tryJoin(first.getValue(), client))
+                return first.getValue();
+        }
+
+        while (true) {
+            Room room = openNext();
+
+            if (tryJoin(room, client))
+                return room; // Outros clients podem lotar a sala nova antes deste.
+        }
+    }
+
+    /**
+     * Coloca o client na sala informada, abrindo-a se ainda não existir. Se ela
+     * estiver cheia, o client vai para a primeira sala com vaga.
+     * 
+     * @param client Client redirecionado por outro nó do {@link Cluster}.
+     * @param roomId Id da sala escolhida para ele.
+     * @return Sala em que o client foi colocado.
+     */
+    public Room join(ClientHandler client, int roomId) {
+        while (true) {
+            Room room = open(roomId);
+
+            if (tryJoin(room, client))
+                return room;
+
+            if (room.isFull())
+                return join(client); // Lotou enquanto o client era redirecionado.
+
+            // A sala esvaziou e fechou entre a busca e a entrada: é aberta de novo.
+        }
+    }
+
+    /**
+     * Coloca o client na sala se ela ainda estiver aberta e com vaga, sob o
+     * monitor da sala. Uma sala que lotou (ou fechou) sai do índice de vagas.
+     *
+     * @return {@code false} se a sala estava cheia ou fechada.
+     */
+    private boolean tryJoin(Room room, ClientHandler client) {
+        synchronized (room) {
+            if (room.isClosed() || room.isFull()) {
+                vacancies.remove(room.getId(), room);
+                return false;
+            }
+
+            room.add(client);
+
+            if (room.isFull())
+                vacancies.remove(room.getId(), room);
+        }
+
+        sessions.put(client.getSessionId(), client);
+        return true;
+    }
+
+    /**
+     * Abre uma sala transferida de outro processo (ver {@link Handoff}) com as
+     * mesas e a fila que ela tinha (ver {@link Room#restore}).
+     *
+     * @param roomId Id da sala no processo anterior.
+     * @return Sala recriada.
+     */
+    Room restore(int roomId, List<Table> tables, List<ClientHandler> queue) {
+        Room room = open(roomId);
+        room.restore(tables, queue);
+
+        for (ClientHandler client : room.getClients())
+            sessions.put(client.getSessionId(), client);
+
+        return room;
+    }
+
+    /**
+     * Abre uma sala nova, com o próximo id livre deste nó, mesmo que outras
+     * ainda tenham vaga (ex.: para os {@link Bot}s de carga, ver
+     * {@link Bot#spawn(RoomRegistry, int)}).
+     *
+     * @return Sala aberta, ainda vazia.
+     */
+    synchronized Room openNext() {
+        while (true) {
+            int id = nextId++;
+
+            // O id pode já ter sido aberto por um client redirecionado (ver join(ClientHandler, int)).
+            Room room = ownership.test(id) ? create(id) : null;
+
+            if (room != null)
+                return room;
+        }
+    }
+
+    /** @return Sala aberta com o id informado, criada se ainda não existir. */
+    private Room open(int id) {
+        while (true) {
+            Room room = rooms.get(id);
+
+            if (room != null || (room = create(id)) != null)
+                return room;
+        }
+    }
+
+    /**
+     * Cria a sala e a coloca no índice de vagas.
+     *
+     * @return Sala criada, ou {@code null} se outra thread já abriu o id.
+     */
+    private Room create(int id) {
+        Room room = new Room(id, roomCapacity, strategy);
+
+        if (rooms.putIfAbsent(id, room) != null)
+            return null;
+
+        vacancies.put(id, room);
+        return room;
+    }
+
+    /**
+     * Define quais ids de sala este registro pode abrir por conta própria.
+     * 
+     * @param ownership Recebe um id e informa se ele pertence a este nó.
+     */
+    public void setOwnership(IntPredicate ownership) {
+        this.ownership = ownership;
+    }
+
+    /** @return {@code true} se alguma sala aberta ainda tem vaga. */
+    public boolean hasVacancy() {
+        for (Room room : vacancies.values()) {
+            if (!room.isFull())
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param roomId Id da sala.
+     * @return {@code true} se a sala está aberta neste registro.
+     */
+    public boolean contains(int roomId) {
+        return rooms.containsKey(roomId);
+    }
+
+    /** @return Salas abertas, em ordem de id. */
+    public Collection<Room> getRooms() {
+        return rooms.values();
+    }
+
+    /**
+     * Remove o client de sua sala, sob o monitor da sala. Salas vazias são
+     * fechadas; as demais voltam ao índice de vagas.
+     * 
+     * @param client Client que saiu.
+     * @param room   Sala em que ele estava.
+     * @return {@code true} se o client estava na sala.
+     */
+    public boolean leave(ClientHandler client, Room room) {
+        boolean removed;
+
+        synchronized (room) {
+            removed = room.remove(client);
+
+            if (room.isEmpty()) {
+                room.close(); // Quem a encontrou no índice antes da remoção procura outra.
+                rooms.remove(room.getId(), room);
+                vacancies.remove(room.getId(), room);
+            } else if (removed) {
+                vacancies.put(room.getId(), room); // Abriu uma vaga.
+            }
+        }
+
+        sessions.remove(client.getSessionId(), client);
+        return removed;
+    }
+
+    /**
+     * @param sessionId Id de sessão procurado.
+     * @return Client conectado com o id informado, ou {@code null}.
+     */
+    public ClientHandler findSession(long sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    /**
+     * @return Sessões conectadas em qualquer sala. A visão pode ser percorrida
+     *         enquanto usuários entram ou saem.
+     */
+    public Collection<ClientHandler> getSessions() {
+        return sessions.values();
+    }
+
+    /** @return Quantidade de salas abertas. */
+    public int size() {
+        return rooms.size();
+    }
+
+    /** @return Quantidade de sessões conectadas em todas as salas. */
+    public int sessionCount() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,163 @@
+package server;
+
+import java.util.List;
+
+import protocol.Move;
+
+/**
+ * Resultado de uma rodada, montado pela {@link Room} no momento em que a rodada
+ * é resolvida (segunda jogada ou prazo vencido). Imutável: o anúncio, os
+ * ratings e o histórico são tratados fora do monitor da sala a partir desta
+ * cópia.
+ */
+public class RoundResult {
+
+    private final ClientHandler player1;
+
+    private final ClientHandler player2;
+
+    /** Jogada do jogador 1, ou {@code null} se ele não jogou a tempo. */
+    private final Move move1;
+
+    /** Jogada do jogador 2, ou {@code null} se ele não jogou a tempo. */
+    private final Move move2;
+
+    /** 1 se o jogador 1 venceu, -1 se o jogador 2 venceu e 0 em caso de empate. */
+    private final int outcome;
+
+    /** Indica se a rodada foi resolvida pelo prazo de jogada. */
+    private final boolean timedOut;
+
+    /** Tempo entre a primeira jogada e o resultado, ou 0 se ninguém jogou. */
+    private final long nanos;
+
+    /**
+     * Tempo que o jogador 1 levou para fixar sua jogada (ou selá-la) desde o
+     * início da rodada, no relógio do servidor, ou 0.
+     */
+    private final long moveNanos1;
+
+    /** Como {@link #moveNanos1}, para o jogador 2. */
+    private final long moveNanos2;
+
+    /** Vitórias do jogador 1 na série, incluindo esta rodada. */
+    private final int wins1;
+
+    /** Vitórias do jogador 2 na série, incluindo esta rodada. */
+    private final int wins2;
+
+    /** Rodadas jogadas na série, incluindo esta. */
+    private final int seriesRound;
+
+    /** Indica se esta rodada encerrou a série (e os jogadores foram trocados). */
+    private final boolean seriesOver;
+
+    /** Usuários chamados para jogar na formação das mesas que seguiu a série. */
+    private final List<ClientHandler> seated;
+
+    RoundResult(ClientHandler player1, ClientHandler player2, Move move1, Move move2, int outcome,
+            boolean timedOut, long nanos, long moveNanos1, long moveNanos2, int wins1, int wins2, int seriesRound,
+            boolean seriesOver) {
+        this(player1, player2, move1, move2, outcome, timedOut, nanos, moveNanos1, moveNanos2, wins1, wins2,
+                seriesRound, seriesOver, List.of());
+    }
+
+    private RoundResult(ClientHandler player1, ClientHandler player2, Move move1, Move move2, int outcome,
+            boolean timedOut, long nanos, long moveNanos1, long moveNanos2, int wins1, int wins2, int seriesRound,
+            boolean seriesOver, List<ClientHandler> seated) {
+        this.player1 = player1;
+        this.player2 = player2;
+        this.move1 = move1;
+        this.move2 = move2;
+        this.outcome = outcome;
+        this.timedOut = timedOut;
+        this.nanos = nanos;
+        this.moveNanos1 = moveNanos1;
+        this.moveNanos2 = moveNanos2;
+        this.wins1 = wins1;
+        this.wins2 = wins2;
+        this.seriesRound = seriesRound;
+        this.seriesOver = seriesOver;
+        this.seated = seated;
+    }
+
+    /**
+     * @param seated Usuários chamados para jogar quando a série terminou.
+     * @return Cópia deste resultado com os usuários chamados.
+     */
+    RoundResult withSeated(List<ClientHandler> seated) {
+        return new RoundResult(player1, player2, move1, move2, outcome, timedOut, nanos, moveNanos1, moveNanos2,
+                wins1, wins2, seriesRound, seriesOver, List.copyOf(seated));
+    }
+
+    public ClientHandler getPlayer1() {
+        return player1;
+    }
+
+    public ClientHandler getPlayer2() {
+        return player2;
+    }
+
+    public Move getMove1() {
+        return move1;
+    }
+
+    public Move getMove2() {
+        return move2;
+    }
+
+    public int getOutcome() {
+        return outcome;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /** @return {@code true} se nenhum dos jogadores jogou a tempo. */
+    public boolean isAbandoned() {
+        return move1 == null && move2 == null;
+    }
+
+    /** @return {@code true} se apenas um dos jogadores jogou a tempo. */
+    public boolean isForfeit() {
+        return (move1 == null) != (move2 == null);
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public long getMoveNanos1() {
+        return moveNanos1;
+    }
+
+    public long getMoveNanos2() {
+        return moveNanos2;
+    }
+
+    public int getWins1() {
+        return wins1;
+    }
+
+    public int getWins2() {
+        return wins2;
+    }
+
+    public int getSeriesRound() {
+        return seriesRound;
+    }
+
+    public boolean isSeriesOver() {
+        return seriesOver;
+    }
+
+    /**
+     * @return Usuários que passaram a jogar na nova formação das mesas, se a
+     *         série terminou (inclusive os próprios jogadores, se voltaram a
+     *         jogar).
+     */
+    public List<ClientHandler> getSeated() {
+        return seated;
+    }
+}
@@ -0,0 +1,18 @@
+package server;
+
+/**
+ * Estado da rodada atual de uma mesa (ver {@link Table}). As transições
+ * acontecem sob o monitor da sala, a cada jogada, mudança de vaga ou prazo
+ * vencido.
+ */
+public enum RoundState {
+
+    /** Há uma vaga de jogador livre: a partida ainda não começou. */
+    WAITING_PLAYERS,
+
+    /** Partida formada: nenhum jogador escolheu sua jogada. */
+    WAITING_MOVES,
+
+    /** Um dos jogadores já escolheu: a jogada do outro resolve a rodada. */
+    WAITING_LAST_MOVE
+}
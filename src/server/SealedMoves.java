@@ -0,0 +1,133 @@
+package server;
+
+import java.util.Arrays;
+
+import protocol.Move;
+import protocol.MoveCommitment;
+
+/**
+ * Compromissos e horários das jogadas de uma rodada, mantidos pelo motor da
+ * partida ({@link Room} ou {@link TournamentMatch}) sob o seu monitor.
+ *
+ * Com {@link Room#sealedMoves}, cada vaga primeiro sela a jogada (ver
+ * {@link MoveCommitment}) e só a revela quando todas as vagas fixaram a sua: a
+ * jogada de um {@link Bot}, escolhida no próprio servidor, conta como fixada.
+ *
+ * Os horários vêm apenas do relógio do servidor: a abertura da rodada e o
+ * recebimento do selo (ou da jogada). O tempo de revelação não conta, então
+ * ninguém ganha tempo por segurar a revelação, e nada do que o client informa
+ * entra na medida.
+ */
+class SealedMoves {
+
+    /** Compromisso de cada vaga na rodada atual, ou {@code null}. */
+    private final byte[][] commitments;
+
+    /** Indica se a revelação já foi pedida a cada vaga nesta rodada. */
+    private final boolean[] requested;
+
+    /** Momento (nanoTime) em que cada vaga fixou sua jogada, ou 0. */
+    private final long[] fixedAt;
+
+    /** Momento (nanoTime) em que a rodada começou com as vagas ocupadas, ou 0. */
+    private long openedAt;
+
+    SealedMoves(int seats) {
+        this.commitments = new byte[seats][];
+        this.requested = new boolean[seats];
+        this.fixedAt = new long[seats];
+    }
+
+    /** A rodada começou: marca o início, se ainda não marcado. */
+    void open(long now) {
+        if (openedAt == 0)
+            openedAt = now;
+    }
+
+    /**
+     * Guarda o compromisso de uma vaga.
+     *
+     * @return {@code false} se a vaga já selou nesta rodada.
+     */
+    boolean seal(int seat, byte[] commitment, long now) {
+        if (commitments[seat] != null)
+            return false;
+
+        commitments[seat] = commitment;
+        fixedAt[seat] = now;
+        return true;
+    }
+
+    /** Registra o horário de uma jogada enviada sem selo. */
+    void moved(int seat, long now) {
+        if (fixedAt[seat] == 0)
+            fixedAt[seat] = now;
+    }
+
+    /** @return Compromisso da vaga na rodada atual, ou {@code null}. */
+    byte[] commitment(int seat) {
+        return commitments[seat];
+    }
+
+    /** @return {@code true} se a revelação já foi pedida à vaga nesta rodada. */
+    boolean isRevealing(int seat) {
+        return requested[seat];
+    }
+
+    /**
+     * Quando todas as vagas fixaram suas jogadas (seladas ou não), marca a
+     * revelação como pedida às que selaram e ainda não revelaram.
+     *
+     * @param players Jogador de cada vaga.
+     * @param moves   Jogada de cada vaga na rodada atual.
+     * @return Jogadores a quem a revelação deve ser pedida agora. Cada vaga
+     *         aparece no máximo uma vez por rodada.
+     */
+    ClientHandler[] takeRevealRequests(ClientHandler[] players, Move[] moves) {
+        int count = 0;
+
+        for (int i = 0; i < players.length; i++) {
+            if (players[i] == null || (moves[i] == null && commitments[i] == null))
+                return new ClientHandler[0]; // Alguém ainda escolhe.
+
+            if (moves[i] == null && !requested[i])
+                count++;
+        }
+
+        ClientHandler[] pending = new ClientHandler[count];
+        count = 0;
+
+        for (int i = 0; i < players.length; i++) {
+            if (moves[i] == null && !requested[i]) {
+                requested[i] = true;
+                pending[count++] = players[i];
+            }
+        }
+
+        return pending;
+    }
+
+    /**
+     * @return Tempo entre o início da rodada e o momento em que a vaga fixou sua
+     *         jogada, ou 0 se ela não jogou (ou jogou antes de o adversário
+     *         chegar).
+     */
+    long elapsed(int seat) {
+        return (openedAt != 0 && fixedAt[seat] > openedAt) ? fixedAt[seat] - openedAt : 0;
+    }
+
+    /** Esquece o que a vaga fixou: ela mudou de jogador. */
+    void clear(int seat) {
+        commitments[seat] = null;
+        requested[seat] = false;
+        fixedAt[seat] = 0;
+    }
+
+    /** Esquece a rodada inteira: ela foi resolvida ou desfeita. */
+    void reset() {
+        Arrays.fill(commitments, null);
+        Arrays.fill(requested, false);
+        Arrays.fill(fixedAt, 0);
+        openedAt = 0;
+    }
+}
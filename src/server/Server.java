@@ -1,36 +1,100 @@
 package server;
 
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Server {
 
+    /** Porta padrão do servidor. */
+    public static final int PORT = 7777;
+
+    /**
+     * Conexões aguardando aceite na porta. Comporta a onda de reconexões que
+     * chega a um processo que acabou de assumir a porta (ver {@link Handoff}).
+     */
+    public static final int BACKLOG = 1024;
+
+    /**
+     * Abre a porta com {@code SO_REUSEPORT}, para que outro processo possa
+     * escutá-la ao mesmo tempo e assumi-la (ver {@link Handoff}).
+     */
+    public static boolean reusePort;
+
     /** Socket utilizado para instânciar um servidor. */
     private ServerSocket serverSocket;
 
+    /**
+     * Executor que roda os handlers. Se for {@code null}, cada handler ganha sua
+     * própria thread de plataforma.
+     */
+    private ExecutorService executor;
+
+    /** Indica se a porta foi fechada para encerrar o servidor (ver {@link Drain}). */
+    private volatile boolean stopped;
+
     // Construtor para receber um Server Socket:
     public Server(ServerSocket serverSocket) {
         this.serverSocket = serverSocket;
     }
 
+    /**
+     * @param serverSocket Socket do servidor.
+     * @param executor     Executor onde cada {@link ClientHandler} será executado.
+     */
+    public Server(ServerSocket serverSocket, ExecutorService executor) {
+        this.serverSocket = serverSocket;
+        this.executor = executor;
+    }
+
     /** Inicia um servidor na rede. */
     public void runServer() {
+        EventLog.info("server_started", "port", serverSocket.getLocalPort(), "mode",
+                (executor != null) ? "executor" : "threads");
+
         try {
             // Mantém o server aberto até que o host o desligue:
             while (!serverSocket.isClosed()) {
-                System.out.println("Servidor iniciado na porta: " + serverSocket.getLocalPort());
                 Socket socket = serverSocket.accept(); // Aceita a conexão de um jogador ao server.
+                Metrics.get().connectionAccepted();
 
+                // O handshake (username) é feito pelo próprio handler, fora do loop de aceite.
                 ClientHandler clientHandler = new ClientHandler(socket); // Instância um novo handler.
-                System.out.println(clientHandler.getUsername() + " entrou na partida!");
 
-                // Instância uma nova thread para cada jogador:
-                Thread thread = new Thread(clientHandler);
-                thread.start();
+                if (executor != null) {
+                    executor.execute(clientHandler);
+                } else {
+                    // Instância uma nova thread para cada jogador:
+                    Thread thread = new Thread(clientHandler);
+                    thread.start();
+                }
             }
         } catch (IOException e) {
-            closeServer(); // Caso de erro, fecha o servidor.
+            if (!stopped)
+                closeServer(); // Caso de erro, fecha o servidor.
+        }
+    }
+
+    /**
+     * Fecha a porta do servidor sem encerrar as conexões já aceitas, que seguem
+     * sendo atendidas até serem drenadas (ver {@link Drain}).
+     */
+    public void stopAccepting() {
+        stopped = true;
+
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            EventLog.error("server_close_failed", e);
         }
     }
 
@@ -39,17 +103,412 @@ public class Server {
         try {
             serverSocket.close(); // Encerrando o servidor.
         } catch (IOException e) {
-            e.printStackTrace(); // Pilha de execução.
+            EventLog.error("server_close_failed", e);
+        }
+
+        if (executor != null)
+            executor.shutdown();
+    }
+
+    /**
+     * Abre a porta do servidor, com {@code SO_REUSEPORT} se {@link #reusePort}
+     * estiver ativado.
+     * 
+     * @param port Porta.
+     * @return Socket do servidor, já escutando.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public static ServerSocket bind(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket();
+
+        if (reusePort) {
+            requireReusePort(serverSocket.supportedOptions());
+            serverSocket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
         }
+
+        serverSocket.bind(new InetSocketAddress(port), BACKLOG);
+        return serverSocket;
+    }
+
+    /**
+     * @param options Opções suportadas pelo socket do servidor.
+     * @throws IllegalStateException Se a plataforma não oferecer {@code SO_REUSEPORT}.
+     */
+    static void requireReusePort(Set<SocketOption<?>> options) {
+        if (!options.contains(StandardSocketOptions.SO_REUSEPORT))
+            throw new IllegalStateException(
+                    "SO_REUSEPORT indisponível nesta plataforma: a porta não pode ser transferida.");
+    }
+
+    /**
+     * Cria um executor que inicia uma virtual thread por tarefa, para tarefas
+     * que passam a vida bloqueadas (ex.: a leitura de um client).
+     * 
+     * Em JDKs sem virtual threads (anteriores ao 21), um pool de threads de
+     * plataforma daemon sob demanda é utilizado (ver
+     * {@link Workers#newVirtualThreadPerTaskExecutor()}).
+     * 
+     * @param name Prefixo do nome das threads de plataforma.
+     * @return Executor de virtual threads ou, se indisponível, de threads de
+     *         plataforma.
+     */
+    public static ExecutorService newVirtualThreadExecutor(String name) {
+        ExecutorService virtual = Workers.newVirtualThreadPerTaskExecutor();
+
+        return (virtual != null) ? virtual : Executors.newCachedThreadPool(Workers.daemonThreads(name));
     }
 
     /**
      * Instânca e roda um novo servidor.
      * 
+     * Por padrão utiliza uma thread por client. Argumentos aceitos:
+     * <ul>
+     * <li>{@code --nio [loops]}: roda sobre um {@link NioServer}, opcionalmente
+     * com a quantidade de event loops (ex.: {@code --nio 4});</li>
+     * <li>{@code --virtual}: cada handler roda em uma virtual thread;</li>
+     * <li>{@code --pareamento <fifo|espera|rating>}: estratégia usada para chamar
+     * os próximos jogadores de cada sala (padrão: {@code fifo});</li>
+     * <li>{@code --fila-saida <n>}: capacidade da fila de saída de cada client;</li>
+     * <li>{@code --lentos <descartar|desconectar>}: o que fazer quando a fila de
+     * saída de um client enche (padrão: {@code descartar});</li>
+     * <li>{@code --limite-conexao <msgs/s>}: mensagens (chat, comandos e
+     * jogadas) que cada conexão pode enviar por segundo (padrão:
+     * {@value TokenBucket#DEFAULT_CLIENT_RATE}; {@code 0} desativa);</li>
+     * <li>{@code --rajada-conexao <n>}: rajada tolerada acima do limite da
+     * conexão (padrão: {@value TokenBucket#DEFAULT_CLIENT_BURST});</li>
+     * <li>{@code --limite-sala <msgs/s>}: mensagens de chat que cada sala
+     * transmite por segundo, somando todos os clients (padrão:
+     * {@value TokenBucket#DEFAULT_ROOM_RATE}; {@code 0} desativa);</li>
+     * <li>{@code --rajada-sala <n>}: rajada tolerada acima do limite da sala
+     * (padrão: {@value TokenBucket#DEFAULT_ROOM_BURST});</li>
+     * <li>{@code --flood <descartar|silenciar|desconectar>}: o que fazer com quem
+     * excede o limite da conexão (padrão: {@code descartar});</li>
+     * <li>{@code --metricas [porta]}: abre o endpoint de métricas em texto no
+     * endereço local (padrão: porta {@value MetricsEndpoint#DEFAULT_PORT}). As
+     * métricas também ficam disponíveis via JMX, em {@value Metrics#OBJECT_NAME};</li>
+     * <li>{@code --log <debug|info|warn|error>}: nível mínimo do {@link EventLog}
+     * (padrão: {@code info});</li>
+     * <li>{@code --log-arquivo <caminho>}: escreve o log no arquivo informado, em
+     * vez da saída padrão;</li>
+     * <li>{@code --historico <diretório>}: onde o {@link MatchHistory} grava as
+     * partidas (padrão: {@code historico});</li>
+     * <li>{@code --sem-historico}: não grava as partidas (desativa /ranking e
+     * /historico);</li>
+     * <li>{@code --retomada <segundos>}: por quanto tempo a sessão de um client
+     * que caiu é mantida à espera da reconexão (padrão:
+     * {@value SessionResumption#DEFAULT_GRACE_SECONDS}; {@code 0} desativa a
+     * retomada);</li>
+     * <li>{@code --prazo-leitura <segundos>}: tempo sem receber nada de um client
+     * (nem heartbeats) após o qual a conexão é dada como perdida (padrão: 30;
+     * {@code 0} desativa);</li>
+     * <li>{@code --prazo-escrita <segundos>}: tempo que uma escrita no socket de
+     * um client pode ficar parada antes de ele ser desconectado como lento,
+     * qualquer que seja a política de {@code --lentos} (padrão: 10; {@code 0}
+     * desativa);</li>
+     * <li>{@code --prazo-jogada <segundos>}: tempo que os jogadores de uma partida
+     * têm para jogar; quem não jogar perde por W.O. (padrão: 30; {@code 0}
+     * desativa);</li>
+     * <li>{@code --melhor-de <n>}: cada partida é uma série melhor de N rodadas
+     * com os mesmos jogadores (padrão: 1);</li>
+     * <li>{@code --jogadas-seladas}: os clients selam as jogadas e só as revelam
+     * depois que o adversário também selou (ver {@link protocol.MoveCommitment});
+     * jogadas em claro de usuários são recusadas;</li>
+     * <li>{@code --torneio <eliminatoria|suico>}: ativa os torneios (ver
+     * {@link Tournament}), no formato informado. Os usuários se inscrevem com
+     * /torneio;</li>
+     * <li>{@code --inscricao <segundos>}: duração das inscrições de cada torneio,
+     * contada a partir da primeira (padrão:
+     * {@value Tournament#DEFAULT_REGISTRATION_SECONDS});</li>
+     * <li>{@code --bot-espera <segundos>}: tempo que um jogador sozinho na sala
+     * aguarda até um {@link Bot} entrar para enfrentá-lo (padrão:
+     * {@value Bot#DEFAULT_LOBBY_SECONDS}; {@code 0} desativa);</li>
+     * <li>{@code --bot-estrategia <aleatoria|frequencia|markov>}: como os bots
+     * escolhem suas jogadas (padrão: {@code markov}, ver {@link BotStrategy});</li>
+     * <li>{@code --bot-reflexao <ms>}: tempo médio que os bots levam para jogar
+     * (padrão: {@value Bot#DEFAULT_THINK_MILLIS});</li>
+     * <li>{@code --bots <n>}: coloca N bots jogando entre si, aos pares, como
+     * carga para testes de capacidade;</li>
+     * <li>{@code --porta <n>}: porta em que o servidor atende os clients (padrão:
+     * {@value #PORT});</li>
+     * <li>{@code --no <id>}: roda como um nó de um {@link Cluster}, que divide as
+     * salas com os outros nós. Sem barramento, usa um {@link LoopbackBus} (um
+     * único nó). O histórico padrão passa a ser {@code historico/<id>};</li>
+     * <li>{@code --endereco <host>}: endereço pelo qual os clients alcançam este
+     * nó, enviado nos redirecionamentos (padrão: {@code localhost});</li>
+     * <li>{@code --barramento <host:porta>}: conecta o nó ao {@link BusBroker}
+     * do cluster;</li>
+     * <li>{@code --barramento-servidor [porta]}: abre o {@link BusBroker} neste
+     * nó (padrão: porta {@value BusBroker#DEFAULT_PORT}) e conecta o nó a ele;</li>
+     * <li>{@code --drenagem <segundos>}: ao receber o sinal de término, quanto
+     * tempo as partidas em andamento têm para terminar antes de as conexões serem
+     * encerradas (ver {@link Drain}; padrão:
+     * {@value Drain#DEFAULT_DEADLINE_SECONDS});</li>
+     * <li>{@code --controle [porta]}: abre a porta de controle no endereço local
+     * (padrão: {@value Handoff#DEFAULT_PORT}), por onde um novo processo pode
+     * assumir o servidor, e a porta do servidor com {@code SO_REUSEPORT};</li>
+     * <li>{@code --assumir [porta]}: assume a porta, as salas e as sessões do
+     * processo com a porta de controle informada (ver {@link Handoff}), e abre a
+     * mesma porta de controle em seguida.</li>
+     * </ul>
+     * 
+     * Exemplo de cluster local com dois nós:
+     * 
+     * <pre>
+     * java server.Server --no a --barramento-servidor
+     * java server.Server --no b --porta 7787 --barramento localhost:7700
+     * </pre>
+     * 
+     * Reinício sem derrubar as partidas (o segundo comando, com a nova versão,
+     * assume o lugar do primeiro):
+     * 
+     * <pre>
+     * java server.Server --controle
+     * java server.Server --assumir
+     * </pre>
+     * 
      * @param args
      */
     public static void main(String[] args) throws IOException {
-        Server server = new Server(new ServerSocket(7777)); // Instânciando um novo servidor.
-        server.runServer(); // Rodando o servidor.
+        boolean nio = false;
+        boolean virtual = false;
+        int loops = Runtime.getRuntime().availableProcessors();
+        int metricsPort = -1;
+        String historyDirectory = "historico";
+        int graceSeconds = SessionResumption.DEFAULT_GRACE_SECONDS;
+        PairingStrategy strategy = new FifoPairing();
+        int port = PORT;
+        String nodeId = null;
+        String advertisedHost = "localhost";
+        String busAddress = null;
+        int brokerPort = -1;
+        TournamentFormat tournamentFormat = null;
+        int registrationSeconds = Tournament.DEFAULT_REGISTRATION_SECONDS;
+        int drainSeconds = Drain.DEFAULT_DEADLINE_SECONDS;
+        int controlPort = -1;
+        int takeoverPort = -1;
+        int bots = 0;
+
+        // Lendo os argumentos da linha de comando:
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--nio":
+                    nio = true;
+
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                        loops = Integer.parseInt(args[++i]);
+                    break;
+                case "--virtual":
+                    virtual = true;
+                    break;
+                case "--pareamento":
+                    strategy = PairingStrategy.byName(args[++i]);
+                    break;
+                case "--fila-saida":
+                    OutboundQueue.capacity = Integer.parseInt(args[++i]);
+                    break;
+                case "--lentos":
+                    OutboundQueue.policy = BackpressurePolicy.byName(args[++i]);
+                    break;
+                case "--limite-conexao":
+                    TokenBucket.clientRate = Double.parseDouble(args[++i]);
+                    break;
+                case "--rajada-conexao":
+                    TokenBucket.clientBurst = Integer.parseInt(args[++i]);
+                    break;
+                case "--limite-sala":
+                    TokenBucket.roomRate = Double.parseDouble(args[++i]);
+                    break;
+                case "--rajada-sala":
+                    TokenBucket.roomBurst = Integer.parseInt(args[++i]);
+                    break;
+                case "--flood":
+                    ClientHandler.floodPolicy = FloodPolicy.byName(args[++i]);
+                    break;
+                case "--metricas":
+                    metricsPort = MetricsEndpoint.DEFAULT_PORT;
+
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                        metricsPort = Integer.parseInt(args[++i]);
+                    break;
+                case "--historico":
+                    historyDirectory = args[++i];
+                    break;
+                case "--sem-historico":
+                    historyDirectory = null;
+                    break;
+                case "--retomada":
+                    graceSeconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--prazo-leitura":
+                    ReadDeadline.timeoutMillis = Integer.parseInt(args[++i]) * 1000L;
+                    break;
+                case "--prazo-escrita":
+                    WriteDeadline.timeoutMillis = Integer.parseInt(args[++i]) * 1000L;
+                    break;
+                case "--prazo-jogada":
+                    Room.moveTimeoutMillis = Integer.parseInt(args[++i]) * 1000L;
+                    break;
+                case "--melhor-de":
+                    Room.seriesLength = Integer.parseInt(args[++i]);
+
+                    if (Room.seriesLength < 1)
+                        throw new IllegalArgumentException("A série deve ter pelo menos uma rodada.");
+                    break;
+                case "--jogadas-seladas":
+                    Room.sealedMoves = true;
+                    break;
+                case "--torneio":
+                    tournamentFormat = TournamentFormat.byName(args[++i]);
+                    break;
+                case "--inscricao":
+                    registrationSeconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--bot-espera":
+                    Bot.lobbyDelayMillis = Integer.parseInt(args[++i]) * 1000L;
+                    break;
+                case "--bot-estrategia":
+                    BotStrategy.byName(args[++i]); // Valida o nome antes de criar qualquer bot.
+                    Bot.strategyName = args[i];
+                    break;
+                case "--bot-reflexao":
+                    Bot.thinkMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--bots":
+                    bots = Integer.parseInt(args[++i]);
+                    break;
+                case "--porta":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--no":
+                    nodeId = args[++i];
+
+                    if (nodeId.isEmpty() || nodeId.contains(" "))
+                        throw new IllegalArgumentException("O id do nó não pode ser vazio nem conter espaços.");
+                    break;
+                case "--endereco":
+                    advertisedHost = args[++i];
+                    break;
+                case "--barramento":
+                    busAddress = args[++i];
+                    break;
+                case "--barramento-servidor":
+                    brokerPort = BusBroker.DEFAULT_PORT;
+
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                        brokerPort = Integer.parseInt(args[++i]);
+                    break;
+                case "--drenagem":
+                    drainSeconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--controle":
+                    controlPort = Handoff.DEFAULT_PORT;
+
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                        controlPort = Integer.parseInt(args[++i]);
+                    break;
+                case "--assumir":
+                    takeoverPort = Handoff.DEFAULT_PORT;
+
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                        takeoverPort = Integer.parseInt(args[++i]);
+                    break;
+                case "--log":
+                    EventLog.setLevel(LogLevel.byName(args[++i]));
+                    break;
+                case "--log-arquivo":
+                    EventLog.setOutput(new BufferedOutputStream(new FileOutputStream(args[++i], true)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Argumento desconhecido: " + args[i]);
+            }
+        }
+
+        ClientHandler.rooms = new RoomRegistry(Room.DEFAULT_CAPACITY, strategy);
+
+        if (tournamentFormat != null)
+            ClientHandler.tournament = new Tournament(tournamentFormat, registrationSeconds);
+
+        if (graceSeconds > 0)
+            ClientHandler.resumption = new SessionResumption(graceSeconds * 1000L, ReplayBuffer.DEFAULT_CAPACITY);
+        Metrics.register();
+
+        if (metricsPort >= 0)
+            new MetricsEndpoint(metricsPort).start();
+
+        if (nodeId != null) {
+            MessageBus bus;
+
+            if (brokerPort >= 0) {
+                new BusBroker(brokerPort).start();
+                bus = new RemoteBus("localhost", brokerPort);
+            } else if (busAddress != null) {
+                int colon = busAddress.lastIndexOf(':');
+                bus = new RemoteBus(busAddress.substring(0, colon), Integer.parseInt(busAddress.substring(colon + 1)));
+            } else {
+                bus = new LoopbackBus();
+            }
+
+            ClientHandler.cluster = new Cluster(nodeId, advertisedHost, port, bus, ClientHandler.rooms);
+            ClientHandler.cluster.start();
+
+            // Cada nó grava as suas partidas; dois processos não compartilham o mesmo diretório.
+            if ("historico".equals(historyDirectory))
+                historyDirectory = Paths.get(historyDirectory, nodeId).toString();
+        }
+
+        // O processo que assume a porta também pode ser assumido depois, pela mesma porta de controle.
+        if (takeoverPort >= 0 && controlPort < 0)
+            controlPort = takeoverPort;
+
+        Server.reusePort = controlPort >= 0;
+
+        // A porta é aberta antes da transferência: as reconexões aguardam no backlog até as sessões chegarem.
+        NioServer nioServer = null;
+        Server server = null;
+
+        // Sem virtual threads (JDK anterior ao 21), cada handler ocupa uma thread de plataforma.
+        if (virtual && !Workers.hasVirtualThreads())
+            EventLog.warn("virtual_threads_unavailable", "jdk", Runtime.version().feature(), "fallback", "platform");
+
+        if (nio)
+            nioServer = new NioServer(port, loops); // Servidor não bloqueante.
+        else
+            server = new Server(bind(port), virtual ? newVirtualThreadExecutor("client-handler") : null); // Novo servidor.
+
+        if (takeoverPort >= 0)
+            Handoff.takeOver(takeoverPort, ClientHandler.rooms);
+
+        MatchHistory history = null;
+
+        if (historyDirectory != null) {
+            history = new MatchHistory(Paths.get(historyDirectory));
+            ClientHandler.history = history;
+        }
+
+        if (bots > 0)
+            Bot.spawn(ClientHandler.rooms, bots);
+
+        Drain drain = new Drain(ClientHandler.rooms, nio ? nioServer::stopAccepting : server::stopAccepting,
+                drainSeconds * 1000L);
+        MatchHistory closing = history;
+
+        // Ao receber o sinal de término, drena as partidas; depois grava as pendentes e compacta o índice.
+        Thread shutdown = new Thread(() -> {
+            drain.run();
+
+            if (closing != null)
+                closing.close();
+        }, "server-shutdown");
+
+        Runtime.getRuntime().addShutdownHook(shutdown);
+        EventLog.stopAfter(shutdown);
+
+        if (controlPort >= 0)
+            new Handoff(controlPort, ClientHandler.rooms, drain).start();
+
+        if (nio)
+            nioServer.runServer();
+        else
+            server.runServer(); // Rodando o servidor.
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+package server;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retomada de sessões após quedas de conexão.
+ *
+ * Cada usuário recebe um token ao entrar. Se a conexão cair por erro ou fim do
+ * stream (e não por /sair), a sessão fica suspensa durante o período de
+ * tolerância: a vaga de jogador, a jogada já feita e a posição na fila são
+ * mantidas, e as mensagens da sala continuam sendo guardadas no
+ * {@link ReplayBuffer} da sessão. Uma nova conexão que apresente o token
+ * assume a sessão e recebe o que se perdeu; se ninguém voltar a tempo, o
+ * usuário sai da sala normalmente.
+ */
+public class SessionResumption {
+
+    /** Período de tolerância padrão, em segundos. */
+    public static final int DEFAULT_GRACE_SECONDS = 30;
+
+    /** Tamanho do token em bytes, antes da codificação em Base64. */
+    private static final int TOKEN_BYTES = 18;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /** Sessões que podem ser retomadas, indexadas pelo token. */
+    private final Map<String, ClientHandler> sessions = new ConcurrentHashMap<>();
+
+    private final long graceMillis;
+
+    /** Mensagens mantidas no {@link ReplayBuffer} de cada sessão. */
+    private final int replayCapacity;
+
+    /**
+     * @param graceMillis    Tempo que uma sessão suspensa aguarda a reconexão.
+     * @param replayCapacity Mensagens mantidas para reenvio em cada sessão.
+     */
+    public SessionResumption(long graceMillis, int replayCapacity) {
+        this.graceMillis = graceMillis;
+        this.replayCapacity = replayCapacity;
+    }
+
+    public long getGraceMillis() {
+        return graceMillis;
+    }
+
+    /**
+     * @param binary {@code true} se a sessão usa o protocolo binário.
+     * @return Novo buffer de reenvio para uma sessão.
+     */
+    ReplayBuffer newReplayBuffer(boolean binary) {
+        return new ReplayBuffer(replayCapacity, binary);
+    }
+
+    /**
+     * Gera o token de uma sessão que acabou de entrar.
+     *
+     * @param session Sessão do usuário.
+     * @return Token que permite retomar a sessão.
+     */
+    String register(ClientHandler session) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, session);
+        return token;
+    }
+
+    /**
+     * Registra uma sessão transferida de outro processo (ver {@link Handoff}), com
+     * o token que o client já tem.
+     *
+     * @param token   Token emitido pelo processo anterior.
+     * @param session Sessão recriada.
+     */
+    void restore(String token, ClientHandler session) {
+        sessions.put(token, session);
+    }
+
+    /** @param token Token de uma sessão encerrada, que não pode mais ser retomada. */
+    void unregister(String token) {
+        sessions.remove(token);
+    }
+
+    /**
+     * @param token Token apresentado por uma nova conexão.
+     * @return Sessão com o token, ou {@code null} se ele for inválido ou a
+     *         sessão já tiver sido encerrada.
+     */
+    ClientHandler find(String token) {
+        return sessions.get(token);
+    }
+
+    /**
+     * Agenda o fim do período de tolerância de uma sessão suspensa no
+     * {@link HashedWheelTimer} do servidor.
+     *
+     * @param expire Executado ao final do período, na thread do timer.
+     * @return Prazo agendado, cancelado se a sessão for retomada.
+     */
+    HashedWheelTimer.Timeout scheduleExpiry(Runnable expire) {
+        return HashedWheelTimer.shared().schedule(expire, graceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** @return Quantidade de sessões suspensas, aguardando reconexão. */
+    public int suspendedCount() {
+        int suspended = 0;
+
+        for (ClientHandler session : sessions.values()) {
+            if (session.isSuspended())
+                suspended++;
+        }
+
+        return suspended;
+    }
+}
@@ -0,0 +1,19 @@
+package server;
+
+/**
+ * Estado da sessão de um usuário (ver {@link SessionResumption}).
+ */
+public enum SessionState {
+
+    /** Conectado: as mensagens seguem pela fila de saída da conexão atual. */
+    CONNECTED,
+
+    /**
+     * A conexão caiu, mas a vaga, a jogada e a posição na fila são mantidas até o
+     * fim do período de tolerância. As mensagens vão para o {@link ReplayBuffer}.
+     */
+    SUSPENDED,
+
+    /** Encerrada: o usuário saiu ou não voltou a tempo. */
+    CLOSED
+}
@@ -0,0 +1,151 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feed de eventos de uma sala: cada mensagem transmitida para a sala recebe uma
+ * versão, e as mais recentes ficam guardadas em um buffer circular (a cauda).
+ *
+ * Quem chega no meio da partida recebe um snapshot compacto do estado da sala
+ * (jogadores, placar, quem já jogou e a fila), seguido da cauda e, depois, das
+ * mensagens ao vivo. A inscrição acontece sob o monitor do feed: as mensagens
+ * com versão até a do snapshot já vieram na cauda e não são entregues de novo,
+ * e as seguintes só chegam depois dele (ver {@link ClientHandler}).
+ *
+ * Espectadores lentos passam para atualizações resumidas: enquanto a fila de
+ * saída estiver acima de {@link #LAG_THRESHOLD}, as mensagens da sala não são
+ * enfileiradas para eles; quando a fila esvazia, recebem apenas o estado atual.
+ * Assim, um espectador lento nunca acumula mensagens que já perderam a
+ * relevância, e os jogadores não disputam a escrita com ele.
+ */
+public class SpectatorFeed {
+
+    /** Mensagens recentes entregues a quem entra na sala. */
+    public static final int TAIL_SIZE = 20;
+
+    /**
+     * Fração da capacidade da fila de saída a partir da qual um espectador passa
+     * para as atualizações resumidas.
+     */
+    public static final double LAG_THRESHOLD = 0.5;
+
+    /** Fração da capacidade abaixo da qual o espectador volta às mensagens ao vivo. */
+    public static final double CATCH_UP_THRESHOLD = 0.125;
+
+    private final Room room;
+
+    /** Mensagens recentes, em ordem circular. */
+    private final OutboundMessage[] tail = new OutboundMessage[TAIL_SIZE];
+
+    /** Versão da última mensagem publicada. */
+    private long version;
+
+    public SpectatorFeed(Room room) {
+        this.room = room;
+    }
+
+    /**
+     * Registra uma mensagem transmitida para a sala.
+     *
+     * @param message Mensagem transmitida.
+     * @return Versão atribuída à mensagem.
+     */
+    public synchronized long publish(OutboundMessage message) {
+        version++;
+        tail[(int) (version % TAIL_SIZE)] = message;
+        return version;
+    }
+
+    /** @return Versão da última mensagem publicada. */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Inscreve um client que acabou de entrar na sala: se já havia alguém nela,
+     * coloca na fila dele o snapshot e a cauda. Define a partir de qual versão as
+     * mensagens ao vivo passam a ser entregues.
+     *
+     * @param client Client que entrou na sala.
+     */
+    void subscribe(ClientHandler client) {
+        // O estado é lido antes do monitor do feed: publish() nunca roda sob o monitor da sala.
+        OutboundMessage snapshot = new OutboundMessage("📺: " + describe());
+
+        synchronized (this) {
+            // Sala vazia: não há partida para resumir, e a cauda é de quem já saiu.
+            if (room.getClients().size() <= 1) {
+                client.setFeedVersion(version);
+                return;
+            }
+
+            client.send(snapshot);
+
+            long first = Math.max(1, version - TAIL_SIZE + 1);
+
+            if (first <= version)
+                client.send(new OutboundMessage("📜: Últimas mensagens da sala:"));
+
+            for (long v = first; v <= version; v++)
+                client.send(tail[(int) (v % TAIL_SIZE)]);
+
+            client.setFeedVersion(version); // Daqui em diante, só as mensagens ao vivo.
+        }
+    }
+
+    /**
+     * @return Resumo do estado da sala, mesa por mesa (ex.: "Sala 1 — ana x
+     *         bia, rodada 2 de 3, placar 1 x 0; ana já jogou | caio aguardando
+     *         um oponente. Espectadores: 3, fila: 0.").
+     */
+    public String describe() {
+        StringBuilder state = new StringBuilder("Sala ").append(room.getId()).append(" — ");
+
+        synchronized (room) { // Uma visão consistente das mesas, jogadas e placares.
+            List<Table> tables = room.getTables();
+
+            if (tables.isEmpty())
+                state.append("aguardando jogadores");
+
+            for (int i = 0; i < tables.size(); i++) {
+                if (i > 0)
+                    state.append(" | ");
+
+                describe(tables.get(i), state);
+            }
+
+            state.append(". Espectadores: ").append(room.getClients().size() - room.playerCount())
+                    .append(", fila: ").append(room.getMatchmaker().getQueueDepth()).append('.');
+        }
+
+        return state.toString();
+    }
+
+    /** Acrescenta o resumo de uma mesa. Chamado sob o monitor da sala. */
+    private static void describe(Table table, StringBuilder state) {
+        ClientHandler player1 = table.getPlayer(0);
+        ClientHandler player2 = table.getPlayer(1);
+
+        if (player1 == null || player2 == null) {
+            state.append(table.lonePlayer().getUsername()).append(" aguardando um oponente");
+            return;
+        }
+
+        state.append(player1.getUsername()).append(" x ").append(player2.getUsername());
+
+        if (Room.seriesLength > 1)
+            state.append(", rodada ").append(table.getSeriesRound() + 1).append(" de ").append(Room.seriesLength)
+                    .append(", placar ").append(table.getWins(0)).append(" x ").append(table.getWins(1));
+
+        List<String> moved = new ArrayList<>(Room.MAX_PLAYERS);
+
+        for (int seat = 0; seat < Room.MAX_PLAYERS; seat++) {
+            if (table.getMove(seat) != null)
+                moved.add(table.getPlayer(seat).getUsername());
+        }
+
+        state.append(moved.isEmpty() ? "; ninguém jogou ainda"
+                : "; " + String.join(" e ", moved) + ((moved.size() > 1) ? " já jogaram" : " já jogou"));
+    }
+}
@@ -0,0 +1,338 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+
+import protocol.Move;
+
+/**
+ * Mesa de uma {@link Room}: uma partida 1x1, com as duas vagas, as jogadas da
+ * rodada, os selos e o placar da série. A sala tem quantas mesas o
+ * {@link Matchmaker} conseguir formar com quem aguarda na fila; os demais
+ * membros assistem a todas.
+ *
+ * Não é thread-safe: as mesas só são lidas e alteradas sob o monitor da sala
+ * dona, que as cria, as descarta quando esvaziam e decide o que fazer ao fim
+ * de cada série.
+ */
+class Table {
+
+    /** Vagas de jogador. Uma posição {@code null} é uma vaga livre. */
+    private final ClientHandler[] players = new ClientHandler[Room.MAX_PLAYERS];
+
+    /** Jogada de cada vaga na rodada atual. {@code null} enquanto o jogador não escolhe. */
+    private final Move[] moves = new Move[Room.MAX_PLAYERS];
+
+    /** Compromissos e horários das jogadas da rodada atual. */
+    private final SealedMoves seals = new SealedMoves(Room.MAX_PLAYERS);
+
+    /** Vitórias de cada vaga na série atual. */
+    private final int[] wins = new int[Room.MAX_PLAYERS];
+
+    /** Rodadas já resolvidas na série atual. */
+    private int seriesRounds;
+
+    /** Momento (nanoTime) da primeira jogada da rodada atual, ou 0. */
+    private long roundStartedAt;
+
+    /** Rodadas iniciadas na mesa. Identifica a rodada de cada prazo de jogada. */
+    private long round;
+
+    /** Prazo de jogada da rodada atual, ou {@code null}. */
+    private HashedWheelTimer.Timeout moveDeadline;
+
+    /**
+     * @param seat Índice da vaga (0 ou 1).
+     * @return Jogador na vaga, ou {@code null} se ela estiver livre.
+     */
+    ClientHandler getPlayer(int seat) {
+        return players[seat];
+    }
+
+    /**
+     * @param seat Índice da vaga (0 ou 1).
+     * @return Jogada da vaga na rodada atual, ou {@code null}.
+     */
+    Move getMove(int seat) {
+        return moves[seat];
+    }
+
+    /**
+     * @param seat Índice da vaga (0 ou 1).
+     * @return Vitórias do jogador da vaga na série atual.
+     */
+    int getWins(int seat) {
+        return wins[seat];
+    }
+
+    /** @return Rodadas já resolvidas na série atual. */
+    int getSeriesRound() {
+        return seriesRounds;
+    }
+
+    /**
+     * @param client Usuário da sala.
+     * @return Vaga do usuário nesta mesa, ou -1.
+     */
+    int seatOf(ClientHandler client) {
+        for (int i = 0; i < players.length; i++) {
+            if (players[i] == client)
+                return i;
+        }
+
+        return -1;
+    }
+
+    /** @return Quantidade de vagas ocupadas. */
+    int playerCount() {
+        return ((players[0] != null) ? 1 : 0) + ((players[1] != null) ? 1 : 0);
+    }
+
+    /** @return Índice de uma vaga livre, ou -1 se as duas estiverem ocupadas. */
+    int freeSeat() {
+        for (int i = 0; i < players.length; i++) {
+            if (players[i] == null)
+                return i;
+        }
+
+        return -1;
+    }
+
+    /** @return Jogador sozinho na mesa, ou {@code null} se ela tem dois jogadores (ou nenhum). */
+    ClientHandler lonePlayer() {
+        if ((players[0] == null) == (players[1] == null))
+            return null;
+
+        return (players[0] != null) ? players[0] : players[1];
+    }
+
+    /** @return Estado da rodada atual. */
+    RoundState getRoundState() {
+        if (players[0] == null || players[1] == null)
+            return RoundState.WAITING_PLAYERS;
+
+        return (moves[0] == null && moves[1] == null) ? RoundState.WAITING_MOVES : RoundState.WAITING_LAST_MOVE;
+    }
+
+    /**
+     * @return {@code true} se há uma partida em andamento: alguém já jogou na
+     *         rodada atual, ou a série já tem rodadas resolvidas.
+     */
+    boolean isPlaying() {
+        return players[0] != null && players[1] != null && (roundStartedAt != 0 || seriesRounds > 0);
+    }
+
+    /**
+     * Coloca um jogador em uma vaga livre. A série recomeça: a partida mudou de
+     * jogadores.
+     *
+     * @return {@code true} se a mesa acabou de ficar completa, ou seja, se a
+     *         rodada deve ser iniciada com {@link #startRound(Room)}. Uma vaga
+     *         já ocupada não é alterada.
+     */
+    boolean seat(int seat, ClientHandler client) {
+        if (players[seat] != null)
+            return false;
+
+        players[seat] = client;
+        moves[seat] = null;
+        seals.clear(seat);
+        resetSeries();
+        return players[1 - seat] != null;
+    }
+
+    /** Libera uma vaga, desfazendo a partida. */
+    void vacate(int seat) {
+        players[seat] = null;
+        moves[seat] = null;
+        roundStartedAt = 0;
+        seals.reset();
+        cancelMoveDeadline();
+        resetSeries();
+    }
+
+    /**
+     * Recria a partida recebida de outro processo (ver {@link Handoff}). O prazo
+     * de jogada recomeça do zero em {@link #startRound(Room)}.
+     *
+     * @param seated      Jogador de cada vaga, ou {@code null}.
+     * @param seatedMoves Jogada de cada vaga na rodada atual, ou {@code null}.
+     * @param seriesWins  Vitórias de cada vaga na série.
+     * @param seriesRound Rodadas já resolvidas na série.
+     */
+    void restore(ClientHandler[] seated, Move[] seatedMoves, int[] seriesWins, int seriesRound) {
+        for (int i = 0; i < players.length; i++) {
+            players[i] = seated[i];
+            moves[i] = (seated[i] != null) ? seatedMoves[i] : null;
+            wins[i] = seriesWins[i];
+        }
+
+        seriesRounds = seriesRound;
+
+        if (moves[0] != null || moves[1] != null)
+            roundStartedAt = System.nanoTime();
+    }
+
+    /**
+     * Registra a jogada de uma vaga.
+     *
+     * @return {@code true} se as duas vagas já jogaram e a rodada pode ser
+     *         resolvida.
+     */
+    boolean move(int seat, Move move) {
+        moves[seat] = move;
+        seals.moved(seat, System.nanoTime());
+
+        if (roundStartedAt == 0)
+            roundStartedAt = System.nanoTime(); // A primeira jogada marca o início da rodada.
+
+        return isComplete();
+    }
+
+    /**
+     * Sela a jogada de uma vaga (ver {@link Room#sealedMoves}).
+     *
+     * @return {@code false} se a vaga já fixou sua jogada nesta rodada.
+     */
+    boolean seal(int seat, byte[] commitment) {
+        if (moves[seat] != null || !seals.seal(seat, commitment, System.nanoTime()))
+            return false;
+
+        if (roundStartedAt == 0)
+            roundStartedAt = System.nanoTime();
+
+        return true;
+    }
+
+    /** @return Compromisso selado pela vaga na rodada atual, ou {@code null}. */
+    byte[] getCommitment(int seat) {
+        return seals.commitment(seat);
+    }
+
+    /** @return {@code true} se a revelação já foi pedida à vaga nesta rodada. */
+    boolean isRevealing(int seat) {
+        return seals.isRevealing(seat);
+    }
+
+    /** @see SealedMoves#takeRevealRequests(ClientHandler[], Move[]) */
+    ClientHandler[] takeRevealRequests() {
+        return seals.takeRevealRequests(players, moves);
+    }
+
+    /**
+     * Registra a jogada revelada por uma vaga, se ela corresponde ao
+     * compromisso atual e a revelação foi pedida.
+     *
+     * @return {@code true} se as duas vagas já jogaram e a rodada pode ser
+     *         resolvida.
+     */
+    boolean reveal(int seat, Move move, byte[] commitment) {
+        if (moves[seat] != null || seals.commitment(seat) != commitment || !seals.isRevealing(seat))
+            return false;
+
+        moves[seat] = move;
+        return isComplete();
+    }
+
+    private boolean isComplete() {
+        return moves[0] != null && moves[1] != null && players[0] != null && players[1] != null;
+    }
+
+    /**
+     * Consome o prazo de jogada vencido.
+     *
+     * @param round Rodada do prazo.
+     * @return {@code false} se a rodada já terminou (ou foi desfeita) antes do
+     *         prazo.
+     */
+    boolean expire(long round) {
+        if (round != this.round || moveDeadline == null || players[0] == null || players[1] == null)
+            return false;
+
+        moveDeadline = null;
+        return true;
+    }
+
+    /**
+     * Calcula o resultado da rodada atual e o placar da série. Quem não jogou
+     * perde por W.O.; se ninguém jogou, a série é encerrada. A próxima rodada
+     * (ou a próxima formação das mesas, se a série acabou) fica com a sala.
+     */
+    RoundResult resolve(boolean timedOut) {
+        ClientHandler player1 = players[0];
+        ClientHandler player2 = players[1];
+        Move move1 = moves[0];
+        Move move2 = moves[1];
+
+        int outcome;
+
+        if (move1 != null && move2 != null)
+            outcome = move1.against(move2);
+        else
+            outcome = (move1 != null) ? 1 : (move2 != null) ? -1 : 0; // W.O., ou ninguém jogou.
+
+        long nanos = (roundStartedAt != 0) ? System.nanoTime() - roundStartedAt : 0;
+        long moveNanos1 = seals.elapsed(0);
+        long moveNanos2 = seals.elapsed(1);
+        roundStartedAt = 0;
+        moves[0] = null;
+        moves[1] = null;
+        seals.reset();
+        cancelMoveDeadline();
+
+        if (outcome > 0)
+            wins[0]++;
+        else if (outcome < 0)
+            wins[1]++;
+
+        seriesRounds++;
+
+        int needed = Room.seriesLength / 2 + 1;
+        boolean seriesOver = (move1 == null && move2 == null) || wins[0] >= needed || wins[1] >= needed
+                || seriesRounds >= Room.seriesLength;
+
+        return new RoundResult(player1, player2, move1, move2, outcome, timedOut, nanos, moveNanos1, moveNanos2,
+                wins[0], wins[1], seriesRounds, seriesOver);
+    }
+
+    /**
+     * Inicia a rodada, se as duas vagas estiverem ocupadas: os {@link Bot}s que
+     * ainda não jogaram escolhem suas jogadas, e começa o prazo de jogada. O
+     * horário das jogadas conta a partir daqui.
+     *
+     * @param room Sala da mesa, avisada quando o prazo vencer.
+     */
+    void startRound(Room room) {
+        if (players[0] == null || players[1] == null)
+            return;
+
+        seals.open(System.nanoTime());
+
+        for (int i = 0; i < players.length; i++) {
+            if (players[i] instanceof Bot && moves[i] == null)
+                ((Bot) players[i]).turnStarted();
+        }
+
+        if (moveDeadline != null || Room.moveTimeoutMillis <= 0)
+            return;
+
+        long current = ++round;
+        moveDeadline = HashedWheelTimer.shared().schedule(
+                () -> Workers.execute(() -> ClientHandler.moveDeadlineExpired(room, this, current)),
+                Room.moveTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Cancela o prazo de jogada, se houver. */
+    void cancelMoveDeadline() {
+        if (moveDeadline != null) {
+            moveDeadline.cancel();
+            moveDeadline = null;
+        }
+    }
+
+    /** Zera o placar: a partida mudou de jogadores. */
+    private void resetSeries() {
+        wins[0] = 0;
+        wins[1] = 0;
+        seriesRounds = 0;
+    }
+}
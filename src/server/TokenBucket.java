@@ -0,0 +1,94 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Limite de taxa por token bucket: o bucket acumula até {@code burst} tokens,
+ * repostos à taxa de {@code rate} por segundo, e cada mensagem consome um.
+ * Limita as mensagens de cada conexão e o chat de cada sala antes da
+ * transmissão, para que um client abusivo (ou com defeito) não multiplique cada
+ * linha em N escritas.
+ *
+ * O estado é um único {@code long}, no formato do GCRA (generic cell rate
+ * algorithm): o instante teórico em que o bucket estará cheio de novo. Consumir
+ * um token é uma comparação e um CAS, sem travas nem threads de reposição, e o
+ * bucket ocupa apenas o campo.
+ */
+public class TokenBucket {
+
+    /** Taxa padrão de mensagens de cada conexão, por segundo. */
+    public static final double DEFAULT_CLIENT_RATE = 5;
+
+    /** Rajada padrão de mensagens de cada conexão. */
+    public static final int DEFAULT_CLIENT_BURST = 10;
+
+    /** Taxa padrão de mensagens de chat de cada sala, por segundo. */
+    public static final double DEFAULT_ROOM_RATE = 50;
+
+    /** Rajada padrão de mensagens de chat de cada sala. */
+    public static final int DEFAULT_ROOM_BURST = 100;
+
+    /** Taxa das conexões criadas a partir de agora. Zero ou negativo desativa. */
+    public static double clientRate = DEFAULT_CLIENT_RATE;
+
+    /** Rajada das conexões criadas a partir de agora. */
+    public static int clientBurst = DEFAULT_CLIENT_BURST;
+
+    /** Taxa de chat das salas criadas a partir de agora. Zero ou negativo desativa. */
+    public static double roomRate = DEFAULT_ROOM_RATE;
+
+    /** Rajada de chat das salas criadas a partir de agora. */
+    public static int roomBurst = DEFAULT_ROOM_BURST;
+
+    private static final AtomicLongFieldUpdater<TokenBucket> FULL_AT = AtomicLongFieldUpdater
+            .newUpdater(TokenBucket.class, "fullAt");
+
+    /** Tempo para repor um token. */
+    private final long intervalNanos;
+
+    /** Quanto o {@link #fullAt} pode estar à frente do relógio: a rajada menos um token. */
+    private final long toleranceNanos;
+
+    /** Instante (nanoTime) em que o bucket estará cheio; no passado, ele já está. */
+    private volatile long fullAt = System.nanoTime();
+
+    /**
+     * @param rate  Tokens repostos por segundo.
+     * @param burst Capacidade do bucket (pelo menos 1).
+     */
+    public TokenBucket(double rate, int burst) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        this.toleranceNanos = intervalNanos * (Math.max(burst, 1) - 1);
+    }
+
+    /** @return Bucket de uma nova conexão, ou {@code null} se o limite estiver desativado. */
+    public static TokenBucket forClient() {
+        return (clientRate > 0) ? new TokenBucket(clientRate, clientBurst) : null;
+    }
+
+    /** @return Bucket do chat de uma nova sala, ou {@code null} se o limite estiver desativado. */
+    public static TokenBucket forRoom() {
+        return (roomRate > 0) ? new TokenBucket(roomRate, roomBurst) : null;
+    }
+
+    /**
+     * Consome um token, se houver.
+     *
+     * @param now Instante atual (nanoTime).
+     * @return {@code true} se havia um token; {@code false} se a mensagem
+     *         excede o limite.
+     */
+    public boolean tryAcquire(long now) {
+        while (true) {
+            long current = fullAt;
+            long start = (current - now > 0) ? current : now; // Bucket cheio: conta a partir de agora.
+
+            if (start - now > toleranceNanos)
+                return false; // Sem tokens: o bucket só teria espaço no futuro.
+
+            if (FULL_AT.compareAndSet(this, current, start + intervalNanos))
+                return true;
+        }
+    }
+}
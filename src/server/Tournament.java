@@ -0,0 +1,734 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import protocol.Move;
+
+/**
+ * Torneio do servidor. Os usuários se inscrevem com /torneio; quando as
+ * inscrições fecham, os inscritos saem da partida das suas salas (continuam
+ * nelas, no chat) e disputam as rodadas do torneio no {@link TournamentFormat}
+ * configurado. Ao fim, ou quando é eliminado, cada um volta para a fila da sua
+ * sala.
+ *
+ * Todas as partidas de uma rodada acontecem ao mesmo tempo, cada uma em um
+ * {@link TournamentMatch}, sem threads próprias: as jogadas chegam pelas
+ * conexões dos jogadores e os prazos ficam no {@link HashedWheelTimer}
+ * compartilhado, que entrega aos {@link Workers} o trabalho de cada prazo
+ * vencido. Quem resolve a última partida da rodada forma a próxima, na
+ * mesma thread. A quantidade de threads não depende do tamanho da chave, e cada
+ * rodada dura o tempo da sua partida mais lenta (no máximo, o prazo de jogada
+ * de cada rodada da série).
+ *
+ * Cada nó de um {@link Cluster} tem o seu torneio, com os usuários conectados a
+ * ele. As inscrições reabrem assim que um torneio termina.
+ */
+public class Tournament {
+
+    /** Duração padrão das inscrições, contada a partir da primeira, em segundos. */
+    public static final int DEFAULT_REGISTRATION_SECONDS = 60;
+
+    /** Pontos (em meios pontos) de uma vitória, inclusive por bye, no sistema suíço. */
+    private static final int WIN_POINTS = 2;
+
+    /** Pontos (em meios pontos) de um empate no sistema suíço. */
+    private static final int DRAW_POINTS = 1;
+
+    /** Colocados exibidos na classificação final do sistema suíço. */
+    private static final int STANDINGS_SIZE = 3;
+
+    /** Classificação do suíço: pontos e, no empate, rating. */
+    private static final Comparator<Entrant> STANDINGS = Comparator
+            .comparingInt((Entrant entrant) -> entrant.points).reversed()
+            .thenComparing(Comparator.comparingInt((Entrant entrant) -> entrant.client.getRating()).reversed());
+
+    private final TournamentFormat format;
+
+    private final long registrationMillis;
+
+    /** Inscritos do torneio atual (ou das inscrições abertas), indexados pelo client. */
+    private final Map<ClientHandler, Entrant> entrants = new ConcurrentHashMap<>();
+
+    /** Inscritos na ordem de inscrição. */
+    private final List<Entrant> registered = new ArrayList<>();
+
+    /** Fechamento das inscrições, agendado na primeira, ou {@code null}. */
+    private HashedWheelTimer.Timeout registrationClose;
+
+    /** Momento (nanoTime) do fechamento das inscrições. */
+    private long registrationClosesAt;
+
+    private volatile boolean running;
+
+    /** Rodada atual, a partir de 1. */
+    private int round;
+
+    /** Rodadas previstas (no suíço) ou necessárias (na eliminatória). */
+    private int totalRounds;
+
+    /** Inscritos que seguem na eliminatória, na ordem da chave. */
+    private List<Entrant> bracket = new ArrayList<>();
+
+    /** Partidas da rodada atual. */
+    private List<TournamentMatch> matches = List.of();
+
+    /** Partidas da rodada atual ainda em andamento. */
+    private volatile int pending;
+
+    private long startedAt;
+
+    private long roundStartedAt;
+
+    /**
+     * @param format              Formato dos torneios.
+     * @param registrationSeconds Duração das inscrições, a partir da primeira.
+     */
+    public Tournament(TournamentFormat format, int registrationSeconds) {
+        this.format = format;
+        this.registrationMillis = registrationSeconds * 1000L;
+    }
+
+    public TournamentFormat getFormat() {
+        return format;
+    }
+
+    /** @return {@code true} se há um torneio em andamento. */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** @return Partidas em andamento na rodada atual. */
+    public int getActiveMatches() {
+        return pending;
+    }
+
+    /** @return Partidas da rodada atual, inclusive as já encerradas. */
+    public synchronized List<TournamentMatch> getMatches() {
+        return matches;
+    }
+
+    /**
+     * @param client Usuário.
+     * @return {@code true} se o usuário está disputando o torneio em andamento
+     *         (e, portanto, fora da partida da sua sala). Não trava o torneio.
+     */
+    public boolean isCompeting(ClientHandler client) {
+        Entrant entrant = entrants.get(client);
+        return entrant != null && entrant.competing;
+    }
+
+    /**
+     * Atende o /torneio: inscreve o usuário enquanto as inscrições estão abertas
+     * (a primeira inscrição agenda o fechamento) ou informa a situação do torneio
+     * em andamento.
+     *
+     * @param client Usuário que enviou o comando.
+     */
+    public synchronized void register(ClientHandler client) {
+        Entrant entrant = entrants.get(client);
+
+        if (running) {
+            client.sendMessageToClient(status(entrant));
+            return;
+        }
+
+        if (entrant == null) {
+            entrant = new Entrant(client);
+            entrants.put(client, entrant);
+            registered.add(entrant);
+
+            if (registrationClose == null) {
+                registrationClosesAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(registrationMillis);
+                registrationClose = HashedWheelTimer.shared().schedule(() -> Workers.execute(this::start),
+                        registrationMillis, TimeUnit.MILLISECONDS);
+            }
+
+            EventLog.debug("tournament_registered", "user", client.getUsername(), "entrants", registered.size());
+        }
+
+        long seconds = Math.max(0, TimeUnit.NANOSECONDS.toSeconds(registrationClosesAt - System.nanoTime()));
+        client.sendMessageToClient("🏟️ Inscrição confirmada no torneio (" + format.getLabel() + "). Começa em "
+                + seconds + "s; inscritos: " + registered.size() + ".");
+    }
+
+    /**
+     * Fecha as inscrições e começa o torneio, se houver pelo menos dois
+     * inscritos. Chamado nos {@link Workers}, a partir do timer, ao fim das
+     * inscrições: tira os inscritos das salas e forma a primeira rodada.
+     */
+    public synchronized void start() {
+        if (registrationClose != null) {
+            registrationClose.cancel(); // Começo antecipado (ex.: benchmarks).
+            registrationClose = null;
+        }
+
+        if (running)
+            return;
+
+        if (registered.size() < 2) {
+            for (Entrant entrant : registered)
+                entrant.client.sendMessageToClient(
+                        "🏟️ Torneio cancelado: são necessários pelo menos dois inscritos.");
+
+            clear();
+            return;
+        }
+
+        running = true;
+        round = 0;
+        startedAt = System.nanoTime();
+
+        // Cabeças de chave: os melhores ratings.
+        List<Entrant> seeded = new ArrayList<>(registered);
+        seeded.sort(Comparator.comparingInt((Entrant entrant) -> entrant.client.getRating()).reversed());
+        bracket = seed(seeded);
+
+        int size = seeded.size();
+        totalRounds = 32 - Integer.numberOfLeadingZeros(size - 1); // log2(N), arredondado para cima.
+
+        EventLog.info("tournament_started", "format", format.name().toLowerCase(), "entrants", size, "rounds",
+                totalRounds);
+
+        Set<Room> rooms = new LinkedHashSet<>();
+
+        for (Entrant entrant : seeded) {
+            entrant.competing = true;
+            rooms.add(entrant.client.withdrawFromRoom());
+            entrant.client.sendMessageToClient("🏟️ O torneio começou! Formato: " + format.getLabel() + ", "
+                    + size + " inscritos, " + totalRounds + ((totalRounds > 1) ? " rodadas." : " rodada."));
+        }
+
+        // As vagas liberadas ficam para quem não está no torneio, chamado depois de todas as saídas.
+        for (Room room : rooms)
+            ClientHandler.fillSeats(room);
+
+        nextRound();
+    }
+
+    /**
+     * Registra a jogada de um inscrito na sua partida do torneio.
+     *
+     * @param client Usuário que jogou.
+     * @param move   Jogada.
+     * @return {@code false} se o usuário não está disputando o torneio (a jogada
+     *         vale para a partida da sala).
+     */
+    public boolean submitMove(ClientHandler client, Move move) {
+        Entrant entrant = entrants.get(client);
+
+        if (entrant == null || !entrant.competing)
+            return false;
+
+        TournamentMatch match = entrant.match;
+
+        if (match == null) {
+            client.sendMessageToClient("🏟️ Aguarde a próxima rodada do torneio.");
+            return true;
+        }
+
+        Move current = match.getMove(client);
+
+        if (current != null) {
+            client.sendMessageToClient("Você já escolheu " + current.getLabel() + ".");
+            return true;
+        }
+
+        RoundResult result = match.submitMove(client, move);
+
+        client.sendMessageToClient("Você escolheu " + move.getLabel() + ".");
+        match.opponentOf(client).sendMessageToClient(client.getUsername() + " escolheu sua jogada.");
+
+        if (result != null)
+            announce(match, result);
+
+        return true;
+    }
+
+    /**
+     * @param client Usuário.
+     * @return Partida do torneio que o usuário disputa agora, ou {@code null}.
+     */
+    public TournamentMatch matchOf(ClientHandler client) {
+        Entrant entrant = entrants.get(client);
+        return (entrant != null && entrant.competing) ? entrant.match : null;
+    }
+
+    /**
+     * Sela a jogada de um inscrito na sua partida do torneio (ver
+     * {@link Room#sealedMoves}). Quando os dois selaram, pede a revelação.
+     *
+     * @param client     Usuário que selou.
+     * @param commitment Compromisso enviado pelo client.
+     * @return {@code false} se o usuário não está disputando o torneio (o selo
+     *         vale para a partida da sala).
+     */
+    public boolean seal(ClientHandler client, byte[] commitment) {
+        Entrant entrant = entrants.get(client);
+
+        if (entrant == null || !entrant.competing)
+            return false;
+
+        TournamentMatch match = entrant.match;
+
+        if (match == null) {
+            client.sendMessageToClient("🏟️ Aguarde a próxima rodada do torneio.");
+            return true;
+        }
+
+        if (!match.seal(client, commitment)) {
+            client.sendMessageToClient("Você já escolheu sua jogada.");
+            return true;
+        }
+
+        client.sendMessageToClient("Você selou sua jogada 🔒.");
+        match.opponentOf(client).sendMessageToClient(client.getUsername() + " selou sua jogada 🔒.");
+        ClientHandler.requestReveals(match.takeRevealRequests(), match::getCommitment);
+        return true;
+    }
+
+    /**
+     * Registra a jogada revelada por um inscrito, já conferida com o compromisso
+     * da partida (ver {@link TournamentMatch#reveal(ClientHandler, Move, byte[])}).
+     *
+     * @param client     Usuário que revelou.
+     * @param match      Partida do compromisso.
+     * @param move       Jogada revelada.
+     * @param commitment Compromisso conferido.
+     */
+    public void reveal(ClientHandler client, TournamentMatch match, Move move, byte[] commitment) {
+        RoundResult result = match.reveal(client, move, commitment);
+
+        client.sendMessageToClient("Você revelou " + move.getLabel() + ".");
+
+        if (result != null)
+            announce(match, result);
+    }
+
+    /**
+     * Tira do torneio um usuário que saiu do servidor: durante as inscrições, a
+     * inscrição é cancelada; durante o torneio, ele perde a partida atual e não
+     * é mais chamado para as próximas.
+     *
+     * @param client Usuário que saiu.
+     */
+    public void withdraw(ClientHandler client) {
+        TournamentMatch match;
+
+        synchronized (this) {
+            Entrant entrant = entrants.get(client);
+
+            if (entrant == null)
+                return;
+
+            if (!running) {
+                entrants.remove(client);
+                registered.remove(entrant);
+                return;
+            }
+
+            entrant.withdrawn = true;
+            entrant.competing = false;
+            match = entrant.match;
+        }
+
+        if (match != null && match.forfeit(client)) {
+            match.opponentOf(client).sendMessageToClient(
+                    "🏟️ " + client.getUsername() + " saiu do servidor. Você venceu a partida por W.O.!");
+            matchFinished(match);
+        }
+    }
+
+    /**
+     * Prazo de jogada vencido em uma partida. Executado nos {@link Workers}, a
+     * partir do {@link HashedWheelTimer}: o resultado é anunciado e pode formar
+     * a próxima rodada.
+     */
+    void deadlineExpired(TournamentMatch match, long game) {
+        RoundResult result = match.expire(game);
+
+        if (result != null)
+            announce(match, result);
+    }
+
+    /**
+     * Anuncia o resultado de uma rodada aos dois jogadores e atualiza os
+     * ratings. Se a série terminou, encerra a partida no torneio.
+     */
+    private void announce(TournamentMatch match, RoundResult result) {
+        ClientHandler player1 = result.getPlayer1();
+        ClientHandler player2 = result.getPlayer2();
+        int outcome = result.getOutcome();
+        String message;
+
+        if (result.isAbandoned()) {
+            message = "⏰ Tempo esgotado! Nenhum jogador fez sua jogada.";
+        } else if (outcome == 0) {
+            message = "Ambos os jogadores escolheram " + result.getMove1().getLabel() + ". Empate 🔥!";
+            RatingPairing.updateRatings(player1, player2, true);
+        } else {
+            ClientHandler winner = (outcome > 0) ? player1 : player2;
+            ClientHandler loser = (outcome > 0) ? player2 : player1;
+            Move winnerMove = (outcome > 0) ? result.getMove1() : result.getMove2();
+            Move loserMove = (outcome > 0) ? result.getMove2() : result.getMove1();
+
+            message = result.isForfeit()
+                    ? "⏰ " + loser.getUsername() + " não jogou a tempo e perdeu por W.O. " + winner.getUsername()
+                            + " venceu 🔥!"
+                    : winner.getUsername() + " venceu! (" + winnerMove.getLabel() + " vs. " + loserMove.getLabel()
+                            + ") 🔥!";
+            RatingPairing.updateRatings(winner, loser, false);
+        }
+
+        if (!result.isSeriesOver())
+            message += " Rodada " + (result.getSeriesRound() + 1) + " da partida: " + player1.getUsername() + " "
+                    + result.getWins1() + " x " + result.getWins2() + " " + player2.getUsername()
+                    + ". Escolham suas jogadas ✅.";
+
+        player1.sendMessageToClient("🏟️ " + message);
+        player2.sendMessageToClient("🏟️ " + message);
+
+        if (result.isSeriesOver())
+            matchFinished(match);
+    }
+
+    /**
+     * Contabiliza uma partida encerrada: pontos no suíço, eliminação na
+     * eliminatória. A última partida da rodada forma a próxima.
+     */
+    private synchronized void matchFinished(TournamentMatch match) {
+        if (!running || match.getRound() != round)
+            return; // Torneio encerrado (ou partida de uma rodada que já foi fechada).
+
+        ClientHandler winner = match.getWinner();
+
+        for (int seat = 0; seat < 2; seat++) {
+            Entrant entrant = entrants.get(match.getPlayer(seat));
+            entrant.match = null;
+
+            boolean won = entrant.client == winner;
+
+            if (format == TournamentFormat.SWISS) {
+                if (won)
+                    entrant.points += WIN_POINTS;
+                else if (winner == null && !match.isAbandoned())
+                    entrant.points += DRAW_POINTS;
+
+                if (!entrant.withdrawn)
+                    entrant.client.sendMessageToClient("🏟️ Partida encerrada. Sua pontuação: "
+                            + points(entrant.points) + ".");
+            } else if (won) {
+                if (!entrant.withdrawn)
+                    entrant.client.sendMessageToClient("🏟️ Você venceu a partida e avança no torneio!");
+            } else {
+                eliminate(entrant);
+            }
+        }
+
+        if (--pending > 0)
+            return;
+
+        EventLog.info("tournament_round", "round", round, "matches", matches.size(), "duration_ms",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - roundStartedAt));
+
+        nextRound(); // A rodada termina com a sua partida mais lenta.
+    }
+
+    /** Tira da eliminatória quem perdeu e o devolve à partida da sua sala. */
+    private void eliminate(Entrant entrant) {
+        boolean connected = !entrant.withdrawn;
+
+        entrant.eliminated = true;
+        entrant.competing = false; // Antes da volta à sala: a retomada da sessão consulta o flag.
+
+        if (connected) {
+            entrant.client.sendMessageToClient("🏟️ Você foi eliminado do torneio. Obrigado por jogar!");
+            entrant.client.returnToRoom();
+        }
+    }
+
+    /** Forma e inicia as partidas da próxima rodada, ou encerra o torneio. */
+    private void nextRound() {
+        while (true) {
+            round++;
+            roundStartedAt = System.nanoTime();
+
+            List<Entrant[]> pairs;
+
+            if (format == TournamentFormat.SWISS) {
+                pairs = (round <= totalRounds) ? swissPairs() : null;
+            } else {
+                bracket.removeIf(entrant -> entrant.eliminated || entrant.withdrawn);
+                pairs = (bracket.size() > 1) ? eliminationPairs() : null;
+            }
+
+            if (pairs == null) {
+                finish();
+                return;
+            }
+
+            List<TournamentMatch> created = new ArrayList<>(pairs.size());
+
+            for (Entrant[] pair : pairs) {
+                if (pair[1] == null) {
+                    bye(pair[0]);
+                    continue;
+                }
+
+                TournamentMatch match = new TournamentMatch(this, round, pair[0].client, pair[1].client,
+                        format == TournamentFormat.SINGLE_ELIMINATION);
+                pair[0].match = match;
+                pair[1].match = match;
+                pair[0].opponents.add(pair[1].client);
+                pair[1].opponents.add(pair[0].client);
+                created.add(match);
+
+                for (int i = 0; i < 2; i++)
+                    pair[i].client.sendMessageToClient("🏟️ Rodada " + round + " de " + totalRounds
+                            + " do torneio: você enfrenta " + pair[1 - i].client.getUsername() + " (melhor de "
+                            + Room.seriesLength + "). Escolha sua jogada ✅.");
+            }
+
+            matches = created;
+            pending = created.size();
+
+            for (TournamentMatch match : created)
+                match.start();
+
+            if (pending > 0)
+                return;
+
+            // Só houve bye (ex.: um único inscrito restante no suíço): a rodada já terminou.
+        }
+    }
+
+    /** Avança um inscrito sem jogar: conta como vitória no suíço. */
+    private void bye(Entrant entrant) {
+        entrant.hadBye = true;
+
+        if (format == TournamentFormat.SWISS)
+            entrant.points += WIN_POINTS;
+
+        entrant.client.sendMessageToClient("🏟️ Rodada " + round + " de " + totalRounds
+                + " do torneio: você avança sem jogar (bye).");
+    }
+
+    /**
+     * Confrontos da eliminatória: os vizinhos na chave. Com uma quantidade ímpar,
+     * o primeiro da chave (o caminho do melhor cabeça de chave) avança sem jogar.
+     */
+    private List<Entrant[]> eliminationPairs() {
+        List<Entrant[]> pairs = new ArrayList<>();
+        int from = 0;
+
+        if (bracket.size() % 2 != 0) {
+            pairs.add(new Entrant[] { bracket.get(0), null });
+            from = 1;
+        }
+
+        for (int i = from; i + 1 < bracket.size(); i += 2)
+            pairs.add(new Entrant[] { bracket.get(i), bracket.get(i + 1) });
+
+        return pairs;
+    }
+
+    /**
+     * Confrontos do suíço: os inscritos ordenados pela pontuação (e pelo
+     * rating), cada um contra o próximo que ainda não enfrentou. Com uma
+     * quantidade ímpar, o último colocado que ainda não teve bye avança sem jogar.
+     */
+    private List<Entrant[]> swissPairs() {
+        List<Entrant> standing = new ArrayList<>();
+
+        for (Entrant entrant : registered) {
+            if (!entrant.withdrawn)
+                standing.add(entrant);
+        }
+
+        standing.sort(STANDINGS);
+
+        List<Entrant[]> pairs = new ArrayList<>();
+        boolean[] paired = new boolean[standing.size()];
+
+        if (standing.size() % 2 != 0) {
+            int bye = standing.size() - 1;
+
+            while (bye > 0 && standing.get(bye).hadBye)
+                bye--;
+
+            paired[bye] = true;
+            pairs.add(new Entrant[] { standing.get(bye), null });
+        }
+
+        // Marca os já pareados em vez de removê-los da lista, o que custaria O(N²) por rodada.
+        for (int i = 0; i < standing.size(); i++) {
+            if (paired[i])
+                continue;
+
+            Entrant first = standing.get(i);
+            int closest = -1;
+            int opponent = -1;
+
+            // Evita revanches quando possível; senão, enfrenta o mais próximo na tabela.
+            for (int j = i + 1; j < standing.size(); j++) {
+                if (paired[j])
+                    continue;
+
+                if (closest < 0)
+                    closest = j;
+
+                if (!first.opponents.contains(standing.get(j).client)) {
+                    opponent = j;
+                    break;
+                }
+            }
+
+            if (opponent < 0)
+                opponent = closest;
+
+            paired[i] = true;
+            paired[opponent] = true;
+            pairs.add(new Entrant[] { first, standing.get(opponent) });
+        }
+
+        return pairs;
+    }
+
+    /**
+     * Ordena os cabeças de chave para a primeira rodada da eliminatória: o melhor
+     * enfrenta o pior, o segundo enfrenta o penúltimo, e assim por diante. Com
+     * uma quantidade ímpar, o melhor fica no início da chave, com o bye.
+     */
+    private static List<Entrant> seed(List<Entrant> seeded) {
+        List<Entrant> order = new ArrayList<>(seeded.size());
+        int first = 0;
+        int last = seeded.size() - 1;
+
+        if (seeded.size() % 2 != 0)
+            order.add(seeded.get(first++));
+
+        while (first < last) {
+            order.add(seeded.get(first++));
+            order.add(seeded.get(last--));
+        }
+
+        return order;
+    }
+
+    /** Anuncia o resultado final, devolve os inscritos às salas e reabre as inscrições. */
+    private void finish() {
+        String message;
+        String champion;
+
+        if (format == TournamentFormat.SWISS) {
+            List<Entrant> standing = new ArrayList<>(registered);
+            standing.sort(STANDINGS);
+
+            StringBuilder text = new StringBuilder("🏆 Torneio encerrado! Classificação final:");
+
+            for (int i = 0; i < Math.min(STANDINGS_SIZE, standing.size()); i++)
+                text.append(' ').append(i + 1).append(". ").append(standing.get(i).client.getUsername())
+                        .append(" (").append(points(standing.get(i).points)).append(" pts)");
+
+            message = text.toString();
+            champion = standing.get(0).client.getUsername();
+        } else {
+            Entrant winner = bracket.isEmpty() ? null : bracket.get(0);
+            champion = (winner != null) ? winner.client.getUsername() : null;
+            message = (champion != null) ? "🏆 " + champion + " venceu o torneio!"
+                    : "🏆 Torneio encerrado sem campeão: ninguém jogou a final.";
+        }
+
+        EventLog.info("tournament_finished", "format", format.name().toLowerCase(), "entrants", registered.size(),
+                "rounds", round - 1, "champion", champion, "duration_ms",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+
+        running = false;
+
+        for (Entrant entrant : registered) {
+            if (entrant.withdrawn)
+                continue;
+
+            entrant.client.sendMessageToClient(message);
+
+            if (entrant.competing) {
+                entrant.competing = false;
+                entrant.client.returnToRoom();
+            }
+        }
+
+        clear();
+    }
+
+    /** Descarta os inscritos e reabre as inscrições. */
+    private void clear() {
+        entrants.clear();
+        registered.clear();
+        bracket = new ArrayList<>();
+        matches = List.of();
+        pending = 0;
+    }
+
+    /** Situação do torneio em andamento, para o /torneio. */
+    private String status(Entrant entrant) {
+        String situation;
+
+        if (entrant == null)
+            situation = "As inscrições reabrem ao fim dele.";
+        else if (entrant.eliminated)
+            situation = "Você foi eliminado.";
+        else if (entrant.match != null)
+            situation = "Você enfrenta " + entrant.match.opponentOf(entrant.client).getUsername() + ".";
+        else
+            situation = "Você aguarda a próxima rodada.";
+
+        return "🏟️ Torneio (" + format.getLabel() + ") em andamento, rodada " + round + " de " + totalRounds + ": "
+                + pending + " partidas em andamento. " + situation
+                + ((entrant != null && format == TournamentFormat.SWISS) ? " Sua pontuação: "
+                        + points(entrant.points) + "." : "");
+    }
+
+    /** Formata meios pontos (ex.: 3 → "1,5"). */
+    private static String points(int halfPoints) {
+        return (halfPoints / 2) + ((halfPoints % 2 != 0) ? ",5" : "");
+    }
+
+    /** Inscrito no torneio. Alterado sob o monitor do torneio. */
+    private static class Entrant {
+
+        private final ClientHandler client;
+
+        /** Quem o inscrito já enfrentou, para evitar revanches no suíço. */
+        private final Set<ClientHandler> opponents = new HashSet<>();
+
+        /** Pontuação no suíço, em meios pontos. */
+        private int points;
+
+        private boolean hadBye;
+
+        private boolean eliminated;
+
+        /** Indica se saiu do servidor durante o torneio. */
+        private boolean withdrawn;
+
+        /**
+         * Indica se está disputando o torneio, fora da partida da sala. Lido sem
+         * trava pela retomada de sessão (ver {@link Tournament#isCompeting}).
+         */
+        private volatile boolean competing;
+
+        /** Partida atual, ou {@code null} entre as rodadas. Lido sem trava pelas jogadas. */
+        private volatile TournamentMatch match;
+
+        Entrant(ClientHandler client) {
+            this.client = client;
+        }
+    }
+}
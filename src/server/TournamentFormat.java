@@ -0,0 +1,51 @@
+package server;
+
+/**
+ * Formato de um {@link Tournament}: como os confrontos de cada rodada são
+ * formados e quando o torneio termina.
+ */
+public enum TournamentFormat {
+
+    /**
+     * Eliminatória simples: quem perde uma partida sai do torneio, e os
+     * vencedores se enfrentam na rodada seguinte, na ordem da chave. Partidas
+     * empatadas seguem em rodadas extras até alguém vencer.
+     */
+    SINGLE_ELIMINATION("eliminatória"),
+
+    /**
+     * Sistema suíço: ninguém é eliminado. A cada rodada, os inscritos enfrentam
+     * quem tem a pontuação mais próxima e que ainda não enfrentaram; vence quem
+     * somar mais pontos ao fim de log2(N) rodadas.
+     */
+    SWISS("suíço");
+
+    /** Nome exibido aos usuários. */
+    private final String label;
+
+    TournamentFormat(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Retorna o formato correspondente ao nome informado na linha de comando.
+     *
+     * @param name {@code eliminatoria} ou {@code suico}.
+     * @return Formato do torneio.
+     * @throws IllegalArgumentException Se o nome for desconhecido.
+     */
+    public static TournamentFormat byName(String name) {
+        switch (name) {
+            case "eliminatoria":
+                return SINGLE_ELIMINATION;
+            case "suico":
+                return SWISS;
+            default:
+                throw new IllegalArgumentException("Formato de torneio desconhecido: " + name);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+
+import protocol.Move;
+
+/**
+ * Partida de um {@link Tournament}: dois inscritos em uma série melhor de
+ * {@link Room#seriesLength}, com as regras das salas (prazo de jogada, W.O. e
+ * série encerrada quando ninguém joga).
+ *
+ * A partida não tem thread nem sala própria. As jogadas chegam pelas threads
+ * (ou event loops) dos jogadores, e a segunda jogada resolve a rodada sob o
+ * monitor da partida, como em {@link Room#submitMove(ClientHandler, Move)}; o
+ * prazo de cada rodada fica no {@link HashedWheelTimer} compartilhado. Assim,
+ * milhares de partidas simultâneas custam apenas memória e entradas no timer.
+ * Com {@link Room#sealedMoves}, as jogadas são seladas e reveladas como nas
+ * salas (ver {@link SealedMoves}).
+ */
+public class TournamentMatch {
+
+    private final Tournament tournament;
+
+    /** Rodada do torneio em que a partida é disputada. */
+    private final int round;
+
+    private final ClientHandler[] players;
+
+    /**
+     * Indica se a partida precisa de um vencedor (eliminatória): uma série
+     * empatada segue em rodadas extras.
+     */
+    private final boolean decisive;
+
+    /** Jogada de cada vaga na rodada atual. {@code null} enquanto o jogador não escolhe. */
+    private final Move[] moves = new Move[2];
+
+    /** Compromissos e horários das jogadas da rodada atual. */
+    private final SealedMoves seals = new SealedMoves(2);
+
+    /** Vitórias de cada vaga na série. */
+    private final int[] wins = new int[2];
+
+    /** Rodadas já resolvidas na série. */
+    private int seriesRounds;
+
+    /** Momento (nanoTime) da primeira jogada da rodada atual, ou 0. */
+    private long roundStartedAt;
+
+    /** Rodadas iniciadas. Identifica a rodada de cada prazo de jogada. */
+    private long game;
+
+    /** Prazo de jogada da rodada atual, ou {@code null}. */
+    private HashedWheelTimer.Timeout deadline;
+
+    /** Indica se a partida terminou (série decidida, W.O. duplo ou desistência). */
+    private boolean finished;
+
+    /** Vaga do vencedor (0 ou 1), ou -1 se a partida terminou empatada ou sem vencedor. */
+    private int winner = -1;
+
+    /** Indica se a partida terminou sem que nenhum dos jogadores jogasse. */
+    private boolean abandoned;
+
+    TournamentMatch(Tournament tournament, int round, ClientHandler player1, ClientHandler player2,
+            boolean decisive) {
+        this.tournament = tournament;
+        this.round = round;
+        this.players = new ClientHandler[] { player1, player2 };
+        this.decisive = decisive;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     * @param seat Índice da vaga (0 ou 1).
+     * @return Jogador da vaga.
+     */
+    public ClientHandler getPlayer(int seat) {
+        return players[seat];
+    }
+
+    /**
+     * @param client Um dos jogadores.
+     * @return O outro jogador.
+     */
+    public ClientHandler opponentOf(ClientHandler client) {
+        return (players[0] == client) ? players[1] : players[0];
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /** @return Vencedor, ou {@code null} se a partida não terminou, empatou ou ficou sem vencedor. */
+    public synchronized ClientHandler getWinner() {
+        return (winner >= 0) ? players[winner] : null;
+    }
+
+    /** @return {@code true} se a partida terminou sem que ninguém jogasse. */
+    public synchronized boolean isAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * @param client Um dos jogadores.
+     * @return Jogada do jogador na rodada atual, ou {@code null}.
+     */
+    public synchronized Move getMove(ClientHandler client) {
+        int seat = seatOf(client);
+        return (seat >= 0) ? moves[seat] : null;
+    }
+
+    /** Começa a partida: inicia o prazo da primeira rodada. */
+    synchronized void start() {
+        startDeadline();
+    }
+
+    /**
+     * Registra a jogada de um jogador. Se for a segunda da rodada, a rodada é
+     * resolvida na mesma operação.
+     *
+     * @return Resultado, se esta jogada resolveu a rodada; {@code null} se a
+     *         rodada aguarda o outro jogador, ou se a jogada foi ignorada.
+     */
+    synchronized RoundResult submitMove(ClientHandler client, Move move) {
+        int seat = seatOf(client);
+
+        if (finished || seat < 0 || moves[seat] != null)
+            return null;
+
+        moves[seat] = move;
+        seals.moved(seat, System.nanoTime());
+
+        if (roundStartedAt == 0)
+            roundStartedAt = System.nanoTime();
+
+        if (moves[0] == null || moves[1] == null)
+            return null;
+
+        return resolve(false);
+    }
+
+    /**
+     * Sela a jogada de um jogador, como em
+     * {@link Room#seal(ClientHandler, byte[])}.
+     *
+     * @return {@code false} se a partida terminou ou o jogador já fixou sua
+     *         jogada nesta rodada.
+     */
+    synchronized boolean seal(ClientHandler client, byte[] commitment) {
+        int seat = seatOf(client);
+
+        if (finished || seat < 0 || moves[seat] != null || !seals.seal(seat, commitment, System.nanoTime()))
+            return false;
+
+        if (roundStartedAt == 0)
+            roundStartedAt = System.nanoTime();
+
+        return true;
+    }
+
+    /**
+     * @param client Um dos jogadores.
+     * @return Compromisso selado pelo jogador na rodada atual, ou {@code null}.
+     */
+    synchronized byte[] getCommitment(ClientHandler client) {
+        int seat = seatOf(client);
+        return (!finished && seat >= 0) ? seals.commitment(seat) : null;
+    }
+
+    /**
+     * @param client Um dos jogadores.
+     * @return {@code true} se a revelação já foi pedida ao jogador nesta rodada.
+     */
+    synchronized boolean isRevealing(ClientHandler client) {
+        int seat = seatOf(client);
+        return seat >= 0 && seals.isRevealing(seat);
+    }
+
+    /** @return Jogadores a quem a revelação deve ser pedida agora. */
+    synchronized ClientHandler[] takeRevealRequests() {
+        return finished ? new ClientHandler[0] : seals.takeRevealRequests(players, moves);
+    }
+
+    /**
+     * Registra a jogada revelada, já conferida com o compromisso, como em
+     * {@link Room#reveal(ClientHandler, Move, byte[])}.
+     *
+     * @return Resultado, se esta revelação resolveu a rodada; {@code null} caso
+     *         contrário.
+     */
+    synchronized RoundResult reveal(ClientHandler client, Move move, byte[] commitment) {
+        int seat = seatOf(client);
+
+        if (finished || seat < 0 || moves[seat] != null || seals.commitment(seat) != commitment
+                || !seals.isRevealing(seat))
+            return null;
+
+        moves[seat] = move;
+
+        if (moves[0] == null || moves[1] == null)
+            return null;
+
+        return resolve(false);
+    }
+
+    /**
+     * Resolve a rodada cujo prazo venceu: quem não jogou perde por W.O.
+     *
+     * @param game Rodada do prazo.
+     * @return Resultado, ou {@code null} se a rodada já havia terminado.
+     */
+    synchronized RoundResult expire(long game) {
+        if (finished || game != this.game || deadline == null)
+            return null;
+
+        deadline = null;
+        return resolve(true);
+    }
+
+    /**
+     * Encerra a partida porque um dos jogadores saiu do servidor: o outro vence.
+     *
+     * @param client Jogador que saiu.
+     * @return {@code true} se esta chamada encerrou a partida; {@code false} se
+     *         ela já havia terminado.
+     */
+    synchronized boolean forfeit(ClientHandler client) {
+        int seat = seatOf(client);
+
+        if (finished || seat < 0)
+            return false;
+
+        finished = true;
+        winner = 1 - seat;
+        cancelDeadline();
+        return true;
+    }
+
+    /**
+     * Calcula o resultado da rodada atual e decide se a série terminou. Uma
+     * série decisiva empatada continua até alguém vencer uma rodada; uma série
+     * em que ninguém joga termina na hora.
+     */
+    private RoundResult resolve(boolean timedOut) {
+        Move move1 = moves[0];
+        Move move2 = moves[1];
+        int outcome;
+
+        if (move1 != null && move2 != null)
+            outcome = move1.against(move2);
+        else
+            outcome = (move1 != null) ? 1 : (move2 != null) ? -1 : 0; // W.O., ou ninguém jogou.
+
+        long nanos = (roundStartedAt != 0) ? System.nanoTime() - roundStartedAt : 0;
+        long moveNanos1 = seals.elapsed(0);
+        long moveNanos2 = seals.elapsed(1);
+        roundStartedAt = 0;
+        moves[0] = null;
+        moves[1] = null;
+        seals.reset();
+        cancelDeadline();
+
+        if (outcome > 0)
+            wins[0]++;
+        else if (outcome < 0)
+            wins[1]++;
+
+        seriesRounds++;
+
+        int needed = Room.seriesLength / 2 + 1;
+        boolean nobodyPlayed = move1 == null && move2 == null;
+        boolean level = wins[0] == wins[1];
+
+        finished = nobodyPlayed || wins[0] >= needed || wins[1] >= needed
+                || (seriesRounds >= Room.seriesLength && !(decisive && level));
+
+        if (finished) {
+            abandoned = nobodyPlayed && level;
+            winner = level ? -1 : (wins[0] > wins[1]) ? 0 : 1;
+        } else {
+            startDeadline(); // Próxima rodada da série.
+        }
+
+        return new RoundResult(players[0], players[1], move1, move2, outcome, timedOut, nanos, moveNanos1,
+                moveNanos2, wins[0], wins[1], seriesRounds, finished);
+    }
+
+    private int seatOf(ClientHandler client) {
+        return (players[0] == client) ? 0 : (players[1] == client) ? 1 : -1;
+    }
+
+    /**
+     * Inicia o prazo de jogada da rodada. Sem o prazo das salas, usa o padrão:
+     * um jogador ausente não pode segurar o torneio inteiro.
+     */
+    private void startDeadline() {
+        long timeout = (Room.moveTimeoutMillis > 0) ? Room.moveTimeoutMillis : Room.DEFAULT_MOVE_TIMEOUT_MILLIS;
+        long current = ++game;
+        seals.open(System.nanoTime());
+
+        deadline = HashedWheelTimer.shared().schedule(
+                () -> Workers.execute(() -> tournament.deadlineExpired(this, current)), timeout,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelDeadline() {
+        if (deadline != null) {
+            deadline.cancel();
+            deadline = null;
+        }
+    }
+}
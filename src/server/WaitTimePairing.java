@@ -0,0 +1,23 @@
+package server;
+
+import java.util.List;
+
+/**
+ * Pareamento pelo maior tempo de espera acumulado. Quem passou mais tempo na
+ * fila ao longo da sessão (somando todas as passagens) joga primeiro, o que
+ * reduz a pior espera da sala quando há muitos espectadores.
+ */
+public class WaitTimePairing implements PairingStrategy {
+
+    @Override
+    public QueueEntry select(List<QueueEntry> waiting, ClientHandler opponent, long now) {
+        QueueEntry selected = waiting.get(0);
+
+        for (QueueEntry entry : waiting) {
+            if (entry.totalWait(now) > selected.totalWait(now))
+                selected = entry;
+        }
+
+        return selected;
+    }
+}
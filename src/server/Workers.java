@@ -0,0 +1,98 @@
+package server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads de trabalho compartilhadas pelo servidor, para o que não pode rodar na
+ * thread do {@link HashedWheelTimer}: as tarefas do timer devem ser curtas, e
+ * uma jogada de bot ou um prazo vencido resolve a rodada, anuncia o resultado
+ * para a sala inteira e grava o histórico, podendo esperar pelo monitor de uma
+ * sala. O timer apenas entrega o trabalho aqui, e os outros prazos não atrasam.
+ *
+ * Utiliza virtual threads quando o JDK as oferece; senão, um pool limitado de
+ * threads de plataforma, para que milhares de tarefas simultâneas (ex.: bots
+ * como carga) não virem milhares de threads do sistema.
+ */
+public final class Workers {
+
+    /** Threads do pool de plataforma, usado quando não há virtual threads. */
+    public static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService SHARED = newExecutor("worker", DEFAULT_THREADS);
+
+    private Workers() {
+    }
+
+    /**
+     * Executa a tarefa em uma thread de trabalho.
+     *
+     * @param task Tarefa, que pode bloquear em monitores e na rede.
+     */
+    public static void execute(Runnable task) {
+        SHARED.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                EventLog.error("worker_failed", e); // Não derruba a thread do pool.
+            }
+        });
+    }
+
+    /**
+     * Cria um executor de virtual threads (uma por tarefa) ou, se o JDK não as
+     * oferecer, um pool fixo de threads de plataforma daemon.
+     *
+     * @param name    Prefixo do nome das threads do pool.
+     * @param threads Tamanho do pool de plataforma.
+     * @return Executor.
+     */
+    public static ExecutorService newExecutor(String name, int threads) {
+        ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+
+        return (virtual != null) ? virtual : Executors.newFixedThreadPool(threads, daemonThreads(name));
+    }
+
+    /**
+     * Cria um executor que inicia uma virtual thread por tarefa.
+     *
+     * O método é resolvido por reflexão para que o projeto continue compilando
+     * em JDKs sem virtual threads (anteriores ao 21).
+     *
+     * @return Executor, ou {@code null} se o JDK não oferecer virtual threads.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /** @return {@code true} se o JDK oferece virtual threads. */
+    static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param name Prefixo do nome das threads.
+     * @return Fábrica de threads de plataforma daemon, como as virtual threads:
+     *         elas não impedem o processo de encerrar.
+     */
+    static ThreadFactory daemonThreads(String name) {
+        AtomicInteger next = new AtomicInteger();
+
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + next.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
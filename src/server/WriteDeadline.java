@@ -0,0 +1,95 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prazo de escrita de uma conexão bloqueante: se uma escrita no socket ficar
+ * parada além de {@link #timeoutMillis}, o client deixou de ler (a janela TCP
+ * fechou) e é desconectado como lento, seja qual for a
+ * {@link BackpressurePolicy}. Sem isso, uma thread do pool de escrita (ver
+ * {@link OutboundQueue#WRITERS}) ficaria presa com ele, e alguns clients assim
+ * bastariam para parar a saída de todos.
+ *
+ * Como o {@link ReadDeadline}, cada escrita apenas registra o instante em que
+ * começou, sem reagendar nada; quando o prazo vence no {@link HashedWheelTimer},
+ * ele confere esse instante e se reagenda para o tempo que falta.
+ */
+public class WriteDeadline implements Runnable {
+
+    /** Prazo padrão para uma escrita terminar. */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+
+    /** Prazo das conexões criadas a partir de agora. Zero ou negativo desativa. */
+    public static long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    private final long timeoutNanos;
+
+    /** Desconecta o client. Executado na thread do timer. */
+    private final Runnable onExpire;
+
+    /** Instante (nanoTime) em que a escrita atual começou, ou 0 sem escrita. */
+    private volatile long writingSince;
+
+    private volatile HashedWheelTimer.Timeout timeout;
+
+    private volatile boolean cancelled;
+
+    private WriteDeadline(long timeoutMillis, Runnable onExpire) {
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.onExpire = onExpire;
+    }
+
+    /**
+     * Inicia o prazo de escrita de uma conexão.
+     *
+     * @param onExpire Desconecta o client quando uma escrita passa do prazo.
+     *                 Executado na thread do timer: deve apenas entregar o
+     *                 trabalho a outra thread.
+     * @return Prazo iniciado, ou {@code null} se os prazos estiverem desativados.
+     */
+    public static WriteDeadline start(Runnable onExpire) {
+        if (timeoutMillis <= 0)
+            return null;
+
+        WriteDeadline deadline = new WriteDeadline(timeoutMillis, onExpire);
+        deadline.timeout = HashedWheelTimer.shared().schedule(deadline, timeoutMillis, TimeUnit.MILLISECONDS);
+        return deadline;
+    }
+
+    /** Registra o início de uma escrita (ou o progresso da atual). */
+    public void writing() {
+        writingSince = System.nanoTime();
+    }
+
+    /** Registra que não há escrita em andamento. */
+    public void idle() {
+        writingSince = 0;
+    }
+
+    /** Encerra o prazo (a conexão foi fechada). */
+    public void cancel() {
+        cancelled = true;
+
+        HashedWheelTimer.Timeout current = timeout;
+
+        if (current != null)
+            current.cancel();
+    }
+
+    @Override
+    public void run() {
+        if (cancelled)
+            return;
+
+        long since = writingSince;
+        long blocked = (since == 0) ? 0 : System.nanoTime() - since;
+
+        if (blocked < timeoutNanos) {
+            timeout = HashedWheelTimer.shared().schedule(this, timeoutNanos - blocked, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        cancelled = true;
+        onExpire.run();
+    }
+}